@@ -17,6 +17,7 @@
  */
 package dmg.cells.network;
 
+import dmg.cells.nucleus.CDC;
 import dmg.cells.nucleus.CellAdapter;
 import dmg.cells.nucleus.CellDomainInfo;
 import dmg.cells.nucleus.CellDomainRole;
@@ -44,7 +45,9 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.SocketChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -67,6 +70,11 @@ public class LocationMgrTunnel
     private static final Logger _log =
           LoggerFactory.getLogger(LocationMgrTunnel.class);
 
+    /**
+     * Default bound of the outbound queue of the non-blocking transport.
+     */
+    private static final long DEFAULT_MAX_OUTBOUND_BYTES = 16 * 1024 * 1024;
+
     private final CellNucleus _nucleus;
 
     private final CellDomainInfo _localDomainInfo;
@@ -82,6 +90,15 @@ public class LocationMgrTunnel
     private ObjectSource _input;
     private ObjectSink _output;
 
+    /**
+     * Whether to use the shared event loop rather than a reader thread, if the socket supports
+     * it.
+     */
+    private final boolean _isNonBlockingRequested;
+    private final long _maxQueuedBytes;
+    private NioTunnelTransport _transport;
+    private byte[] _handshakeRemainder;
+
     private SerializationHandler.Serializer _serializer;
 
     //
@@ -98,6 +115,8 @@ public class LocationMgrTunnel
         _rawIn = new BufferedInputStream(engine.getInputStream());
         CellDomainRole role = args.hasOption("role") ? CellDomainRole.valueOf(
               args.getOption("role").toUpperCase()) : CellDomainRole.SATELLITE;
+        _isNonBlockingRequested = args.getOption("transport", "blocking").equals("nio");
+        _maxQueuedBytes = args.getLongOption("max-outbound-bytes", DEFAULT_MAX_OUTBOUND_BYTES);
         _localDomainInfo = new CellDomainInfo(_nucleus.getCellDomainName(),
               Version.of(LocationMgrTunnel.class).getVersion(),
               role,
@@ -114,8 +133,18 @@ public class LocationMgrTunnel
     @Override
     protected void started() {
         installRoutes();
-        _thread = _nucleus.newThread(this, "Tunnel");
-        _thread.start();
+        if (_transport != null) {
+            try {
+                _transport.start(_handshakeRemainder);
+            } catch (IOException e) {
+                _log.warn("Error while reading from tunnel: {}", e.toString());
+                kill();
+            }
+            _handshakeRemainder = null;
+        } else {
+            _thread = _nucleus.newThread(this, "Tunnel");
+            _thread.start();
+        }
     }
 
     @Override
@@ -123,6 +152,9 @@ public class LocationMgrTunnel
         _log.info("Closing tunnel to {}", getRemoteDomainName());
         _tunnels.remove(this);
         try {
+            if (_transport != null) {
+                _transport.close();
+            }
             _socket.shutdownOutput();
             if (_thread != null) {
                 _thread.join(2_000);
@@ -183,7 +215,19 @@ public class LocationMgrTunnel
                 /* Since dCache 3.0 we use raw encoding of CellMessage. */
                 _input = new RawObjectSource(_rawIn);
 
-                _output = new RawObjectSink(_rawOut, serializer);
+                SocketChannel channel = _socket.getChannel();
+                if (channel == null) {
+                    _output = new RawObjectSink(_rawOut, serializer);
+                } else if (_isNonBlockingRequested) {
+                    /* Messages may already have been read into the buffer of the input stream. */
+                    _handshakeRemainder = new byte[_rawIn.available()];
+                    new DataInputStream(_rawIn).readFully(_handshakeRemainder);
+                    _transport = new NioTunnelTransport(channel, serializer, _maxQueuedBytes,
+                          this::deliverFromTransport, this::onTransportFailure);
+                    _output = _transport::send;
+                } else {
+                    _output = new ChannelObjectSink(channel, serializer);
+                }
             }
 
             _allowForwardingOfRemoteMessages = (_remoteDomainInfo.getRole() != CellDomainRole.CORE);
@@ -218,6 +262,30 @@ public class LocationMgrTunnel
         }
     }
 
+    /**
+     * Called by the non-blocking transport for every message received from the peer.
+     */
+    private void deliverFromTransport(CellMessage msg) {
+        try (CDC ignored = CDC.reset(_nucleus)) {
+            NDC.push(_remoteDomainInfo.toString());
+            try {
+                _nucleus.sendMessage(msg, true, _allowForwardingOfRemoteMessages, false);
+                _messagesToSystem.increment();
+            } finally {
+                NDC.pop();
+            }
+        }
+    }
+
+    private void onTransportFailure(Exception e) {
+        try (CDC ignored = CDC.reset(_nucleus)) {
+            if (!(e instanceof EOFException || e instanceof AsynchronousCloseException)) {
+                _log.warn("Error in tunnel to {}: {}", getRemoteDomainName(), e.toString());
+            }
+            kill();
+        }
+    }
+
     @Override
     public void messageArrived(MessageEvent me) {
         if (me instanceof RoutedMessageEvent) {
@@ -280,6 +348,11 @@ public class LocationMgrTunnel
     public void getInfo(PrintWriter pw) {
         pw.println("Tunnel                    : " + getCellName());
         pw.println("Message payload serializer: " + _serializer);
+        if (_transport != null) {
+            _transport.getInfo(pw);
+        } else {
+            pw.println("Transport                 : blocking");
+        }
         pw.println("Messages delivered to");
         pw.println("   Peer       : " + _messagesToTunnel);
         pw.println("   Local      : " + _messagesToSystem);
@@ -378,6 +451,95 @@ public class LocationMgrTunnel
         }
     }
 
+    /**
+     * ObjectSink for plain TCP tunnels backed by a {@link SocketChannel}.
+     * <p>
+     * The message envelope is written to a reusable direct buffer owned by the sink, and the
+     * envelope and the already encoded payload are handed to the socket in a single gathering
+     * write. Contrary to {@link RawObjectSink}, the payload is never copied into an intermediate
+     * stream buffer. The wire format is identical.
+     * <p>
+     * Not thread safe; the tunnel delivers messages from a single thread.
+     */
+    private static class ChannelObjectSink implements ObjectSink {
+
+        private static final int INITIAL_ENVELOPE_SIZE = 1024;
+
+        private final SerializationHandler.Serializer serializer;
+        private final SocketChannel channel;
+        private final ByteBufferOutputStream envelope =
+              new ByteBufferOutputStream(INITIAL_ENVELOPE_SIZE);
+        private final DataOutputStream envelopeOut = new DataOutputStream(envelope);
+        private final ByteBuffer[] buffers = new ByteBuffer[2];
+
+        private ChannelObjectSink(SocketChannel channel,
+              SerializationHandler.Serializer serializer) {
+            this.channel = channel;
+            this.serializer = serializer;
+        }
+
+        @Override
+        public void writeObject(CellMessage message) throws IOException {
+            // Due to lack of message versioning support, always use JOS with different dCache versions
+            message.ensureEncodedWith(serializer);
+
+            envelope.reset();
+            message.writeEnvelopeTo(envelopeOut);
+
+            buffers[0] = envelope.flip();
+            buffers[1] = message.getEncodedPayload();
+            try {
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+            } finally {
+                buffers[1] = null;
+            }
+        }
+    }
+
+    /**
+     * An OutputStream writing to a growable, reusable direct byte buffer.
+     */
+    private static class ByteBufferOutputStream extends OutputStream {
+
+        private ByteBuffer buffer;
+
+        private ByteBufferOutputStream(int initialCapacity) {
+            buffer = ByteBuffer.allocateDirect(initialCapacity);
+        }
+
+        private void ensureRemaining(int len) {
+            if (buffer.remaining() < len) {
+                int capacity = Math.max(buffer.capacity() * 2, buffer.position() + len);
+                ByteBuffer larger = ByteBuffer.allocateDirect(capacity);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensureRemaining(1);
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureRemaining(len);
+            buffer.put(b, off, len);
+        }
+
+        void reset() {
+            buffer.clear();
+        }
+
+        ByteBuffer flip() {
+            return buffer.flip();
+        }
+    }
+
     private interface ObjectSource {
 
         CellMessage readObject() throws IOException, ClassNotFoundException;
@@ -0,0 +1,281 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dmg.cells.network;
+
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.SerializationHandler;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking message transport for a tunnel.
+ * <p>
+ * Reads and writes are performed by the domain wide {@link TunnelEventLoop}, so no thread is
+ * dedicated to the tunnel. Outbound messages are framed by the sending thread and queued; the
+ * event loop coalesces queued frames into gathering writes. A frame consists of the encoded
+ * envelope and the encoded payload of the message, so the payload is never copied. The queue
+ * is bounded in bytes: a sender that finds the queue full waits until the peer has drained it,
+ * which is recorded as back pressure.
+ * <p>
+ * The wire format is identical to that of the blocking transport.
+ */
+class NioTunnelTransport implements TunnelEventLoop.Handler {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of frames passed to a single gathering write.
+     */
+    private static final int MAX_FRAMES_PER_WRITE = 64;
+
+    private final SocketChannel channel;
+    private final SerializationHandler.Serializer serializer;
+    private final TunnelEventLoop eventLoop;
+    private final Consumer<CellMessage> onMessage;
+    private final Consumer<Exception> onFailure;
+    private final long maxQueuedBytes;
+
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    /* Outbound queue of frames, each holding the envelope and the payload of a message,
+     * guarded by this.
+     */
+    private final Deque<ByteBuffer[]> frames = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean isClosed;
+    private Exception failure;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder framesWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder stallTime = new LongAdder();
+    private volatile long maxQueuedBytesSeen;
+
+    NioTunnelTransport(SocketChannel channel, SerializationHandler.Serializer serializer,
+          long maxQueuedBytes, Consumer<CellMessage> onMessage, Consumer<Exception> onFailure) {
+        this.channel = channel;
+        this.serializer = serializer;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.onMessage = onMessage;
+        this.onFailure = onFailure;
+        this.eventLoop = TunnelEventLoop.getInstance();
+    }
+
+    /**
+     * Starts reading from the channel.
+     *
+     * @param initial bytes already read from the channel during the handshake
+     */
+    void start(byte[] initial) throws IOException {
+        if (initial.length > readBuffer.capacity()) {
+            readBuffer = ByteBuffer.allocateDirect(initial.length);
+        }
+        readBuffer.put(initial).flip();
+        deliver();
+        SelectionKey key = eventLoop.register(channel, this);
+        boolean hasFrames;
+        synchronized (this) {
+            this.key = key;
+            hasFrames = !frames.isEmpty();
+        }
+        /* Messages may have been queued before the channel was registered. */
+        if (hasFrames) {
+            eventLoop.setWriteInterest(key, true);
+        }
+    }
+
+    /**
+     * Queues a message for sending, waiting if the outbound queue is full.
+     */
+    void send(CellMessage message) throws IOException {
+        message.ensureEncodedWith(serializer);
+        ByteArrayOutputStream envelope = new ByteArrayOutputStream(256);
+        message.writeEnvelopeTo(new DataOutputStream(envelope));
+        ByteBuffer[] frame = {
+              ByteBuffer.wrap(envelope.toByteArray()), message.getEncodedPayload()};
+        long size = frame[0].remaining() + frame[1].remaining();
+
+        SelectionKey key;
+        boolean wasEmpty;
+        synchronized (this) {
+            if (queuedBytes >= maxQueuedBytes) {
+                awaitCapacity();
+            }
+            if (isClosed) {
+                throw new IOException("Tunnel is closed", failure);
+            }
+            wasEmpty = frames.isEmpty();
+            frames.add(frame);
+            queuedBytes += size;
+            if (queuedBytes > maxQueuedBytesSeen) {
+                maxQueuedBytesSeen = queuedBytes;
+            }
+            key = this.key;
+        }
+        /* Until the channel is registered, start enables writing of queued frames. */
+        if (wasEmpty && key != null) {
+            eventLoop.setWriteInterest(key, true);
+        }
+    }
+
+    private void awaitCapacity() throws InterruptedIOException {
+        stalls.increment();
+        long start = System.nanoTime();
+        try {
+            while (queuedBytes >= maxQueuedBytes && !isClosed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for tunnel capacity");
+        } finally {
+            stallTime.add(System.nanoTime() - start);
+        }
+    }
+
+    void close() throws IOException {
+        synchronized (this) {
+            isClosed = true;
+            frames.clear();
+            queuedBytes = 0;
+            notifyAll();
+        }
+        channel.close();
+    }
+
+    @Override
+    public void onReadable() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            throw new EOFException();
+        }
+        readBuffer.flip();
+        deliver();
+    }
+
+    /**
+     * Delivers all complete messages in the read buffer. The buffer is expected to be in read
+     * mode and is left in write mode. A buffer grown to hold a large message is replaced by one
+     * of the default size once it has been drained.
+     */
+    private void deliver() throws IOException {
+        CellMessage message;
+        while ((message = CellMessage.createFrom(readBuffer)) != null) {
+            onMessage.accept(message);
+        }
+        if (readBuffer.position() == 0 && readBuffer.limit() == readBuffer.capacity()) {
+            /* The buffer is too small for the next message. */
+            ByteBuffer larger = ByteBuffer.allocateDirect(readBuffer.capacity() * 2);
+            larger.put(readBuffer);
+            readBuffer = larger;
+        } else {
+            readBuffer.compact();
+            if (readBuffer.position() == 0 && readBuffer.capacity() > READ_BUFFER_SIZE) {
+                /* All data was consumed; release the buffer grown for a large message. */
+                readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            }
+        }
+    }
+
+    @Override
+    public void onWritable() throws IOException {
+        ByteBuffer[] batch;
+        synchronized (this) {
+            batch = frames.stream().limit(MAX_FRAMES_PER_WRITE).flatMap(Arrays::stream)
+                  .toArray(ByteBuffer[]::new);
+        }
+
+        long written = channel.write(batch);
+        writes.increment();
+        bytesWritten.add(written);
+
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            queuedBytes -= written;
+            while (!frames.isEmpty() && isWritten(frames.peek())) {
+                frames.remove();
+                framesWritten.increment();
+            }
+            if (frames.isEmpty()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+            notifyAll();
+        }
+    }
+
+    private static boolean isWritten(ByteBuffer[] frame) {
+        return !frame[0].hasRemaining() && !frame[1].hasRemaining();
+    }
+
+    @Override
+    public void onFailure(Exception e) {
+        fail(e);
+    }
+
+    private void fail(Exception e) {
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            failure = e;
+        }
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+        onFailure.accept(e);
+    }
+
+    void getInfo(PrintWriter pw) {
+        int depth;
+        long bytes;
+        synchronized (this) {
+            depth = frames.size();
+            bytes = queuedBytes;
+        }
+        long writeCount = writes.sum();
+        pw.println("Transport                 : non-blocking");
+        pw.println("Outbound queue");
+        pw.println("   Messages   : " + depth);
+        pw.println("   Bytes      : " + bytes + " (max " + maxQueuedBytesSeen
+              + ", limit " + maxQueuedBytes + ")");
+        pw.println("   Stalls     : " + stalls + " (" + TimeUnit.NANOSECONDS.toMillis(
+              stallTime.sum()) + " ms)");
+        pw.println("Writes        : " + writeCount);
+        pw.println("   Messages   : " + framesWritten);
+        pw.println("   Bytes      : " + bytesWritten);
+        pw.println("   Coalescing : " + (writeCount == 0 ? "-" : String.format("%.2f messages/write",
+              framesWritten.sum() / (double) writeCount)));
+    }
+}
@@ -0,0 +1,77 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dmg.cells.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import javax.net.SocketFactory;
+
+/**
+ * SocketFactory creating plain TCP sockets backed by a {@link SocketChannel}.
+ * <p>
+ * Tunnels need the channel to use the non-blocking transport.
+ */
+public class SocketChannelFactory extends SocketFactory {
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return SocketChannel.open().socket();
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return createSocket(new InetSocketAddress(host, port), null);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort)
+          throws IOException {
+        return createSocket(new InetSocketAddress(host, port),
+              new InetSocketAddress(localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return createSocket(new InetSocketAddress(host, port), null);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress,
+          int localPort) throws IOException {
+        return createSocket(new InetSocketAddress(address, port),
+              new InetSocketAddress(localAddress, localPort));
+    }
+
+    private static Socket createSocket(InetSocketAddress remote, InetSocketAddress local)
+          throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            if (local != null) {
+                channel.bind(local);
+            }
+            channel.connect(remote);
+            return channel.socket();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dmg.cells.network;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single selector thread shared by all non-blocking tunnels of a domain.
+ * <p>
+ * Channels are registered together with a {@link Handler} that is invoked on the event loop
+ * thread whenever the channel becomes readable or writable. Handlers must never block.
+ * <p>
+ * The event loop is started lazily when the first channel is registered and runs as a daemon
+ * thread for the lifetime of the domain.
+ */
+class TunnelEventLoop implements Executor, Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TunnelEventLoop.class);
+
+    private static TunnelEventLoop instance;
+
+    /**
+     * Callback interface for channels registered with the event loop.
+     */
+    interface Handler {
+
+        void onReadable() throws IOException;
+
+        void onWritable() throws IOException;
+
+        /**
+         * Called when either of the other methods failed. The channel is no longer registered
+         * with the event loop.
+         */
+        void onFailure(Exception e);
+    }
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    private TunnelEventLoop() throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, "tunnel-io");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static synchronized TunnelEventLoop getInstance() {
+        if (instance == null) {
+            try {
+                instance = new TunnelEventLoop();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open selector: " + e, e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a non-blocking channel for reading. The returned key may be used to update the
+     * interest set through {@link #setWriteInterest}.
+     */
+    SelectionKey register(SelectableChannel channel, Handler handler) throws IOException {
+        channel.configureBlocking(false);
+        if (inEventLoop()) {
+            return channel.register(selector, SelectionKey.OP_READ, handler);
+        }
+        /* Registration blocks while the selector is in select, hence the wakeup.
+         */
+        synchronized (this) {
+            selector.wakeup();
+            return channel.register(selector, SelectionKey.OP_READ, handler);
+        }
+    }
+
+    /**
+     * Enables or disables the write interest of a key. May be called from any thread.
+     */
+    void setWriteInterest(SelectionKey key, boolean enabled) {
+        if (inEventLoop()) {
+            updateInterest(key, enabled);
+        } else {
+            execute(() -> updateInterest(key, enabled));
+        }
+    }
+
+    private static void updateInterest(SelectionKey key, boolean enabled) {
+        if (key.isValid()) {
+            int ops = key.interestOps();
+            key.interestOps(enabled ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE);
+        }
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                /* Wait for registrations in progress to complete.
+                 */
+                synchronized (this) {
+                }
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Tunnel event loop failed to select: {}", e.toString());
+            } catch (RuntimeException e) {
+                LOGGER.error("Tunnel event loop failed. Please report this to support@dcache.org",
+                      e);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static void handle(SelectionKey key) {
+        Handler handler = (Handler) key.attachment();
+        try {
+            if (key.isReadable()) {
+                handler.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                handler.onWritable();
+            }
+        } catch (CancelledKeyException ignored) {
+        } catch (IOException | RuntimeException e) {
+            key.cancel();
+            handler.onFailure(e);
+        }
+    }
+}
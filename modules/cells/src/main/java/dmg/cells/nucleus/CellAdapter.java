@@ -38,7 +38,9 @@ import java.util.concurrent.Future;
 import java.util.concurrent.atomic.LongAdder;
 import org.apache.curator.framework.CuratorFramework;
 import org.dcache.util.Args;
+import org.dcache.util.ColumnWriter;
 import org.dcache.util.Version;
+import org.dcache.util.VirtualThreads;
 import org.dcache.util.cli.CommandExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +69,7 @@ public class CellAdapter
           LoggerFactory.getLogger(CellAdapter.class);
     public static final String MAX_MESSAGE_THREADS = "cell.max-message-threads";
     public static final String MAX_MESSAGES_QUEUED = "cell.max-messages-queued";
+    public static final String MESSAGE_THREADS = "cell.message-threads";
 
     private final CellVersion _version = new CellVersion(Version.of(this));
 
@@ -160,7 +163,8 @@ public class CellAdapter
             setCommandExceptionEnabled(false);
         }
 
-        _nucleus = new CellNucleus(this, cellName, cellType, executor);
+        _nucleus = new CellNucleus(this, cellName, cellType, executor,
+              useVirtualThreads(cellName, _args.getOption(MESSAGE_THREADS)));
         if (!Strings.isNullOrEmpty(_args.getOption(MAX_MESSAGE_THREADS))) {
             _nucleus.setMaximumPoolSize(_args.getIntOption(MAX_MESSAGE_THREADS));
         }
@@ -173,6 +177,22 @@ public class CellAdapter
         addCellEventListener(this);
     }
 
+    private static boolean useVirtualThreads(String cellName, String threads) {
+        if (Strings.isNullOrEmpty(threads) || threads.equals("platform")) {
+            return false;
+        }
+        if (!threads.equals("virtual")) {
+            throw new IllegalArgumentException(
+                  "Invalid value for " + MESSAGE_THREADS + ": " + threads);
+        }
+        if (!VirtualThreads.isSupported()) {
+            _log.warn("Cell {} uses platform threads as virtual threads are not supported by "
+                  + "this Java runtime.", cellName);
+            return false;
+        }
+        return true;
+    }
+
     /**
      * starts the delivery of messages to this cell and executes the auto and defined Setup context.
      * (&lt;cellName&gt;Setup and "!&lt;setupContextName&gt;) Failures to start the cell due to
@@ -633,6 +653,60 @@ public class CellAdapter
         }
     }
 
+    @Command(name = "show message statistics",
+          hint = "display latency and size of delivered messages",
+          description = "Shows, for each type of message delivered to this cell, how long " +
+                "messages waited in the message queue, how long the cell took to process " +
+                "them, how long it took until a reply was sent and the serialized size of " +
+                "the messages. Times are in milliseconds, sizes in bytes. For each " +
+                "distribution the median, the 99th percentile and the maximum are shown.")
+    public class ShowMessageStatisticsCommand implements Callable<String> {
+
+        @Option(name = "reset", usage = "Clear the statistics after displaying them.")
+        boolean reset;
+
+        @Override
+        public String call() {
+            MessageStatistics statistics = _nucleus.getMessageStatistics();
+            ColumnWriter writer = new ColumnWriter()
+                  .header("TYPE").left("type").space()
+                  .header("COUNT").right("count").space()
+                  .header("QUEUE 50%").right("queue-50").space()
+                  .header("99%").right("queue-99").space()
+                  .header("MAX").right("queue-max").space()
+                  .header("PROCESS 50%").right("process-50").space()
+                  .header("99%").right("process-99").space()
+                  .header("MAX").right("process-max").space()
+                  .header("REPLY 50%").right("reply-50").space()
+                  .header("99%").right("reply-99").space()
+                  .header("SIZE 50%").right("size-50").space()
+                  .header("MAX").right("size-max");
+            for (MessageTypeStatistics type : statistics.getSummary()) {
+                writer.row()
+                      .value("type", CellInfo.cutClass(type.getMessageType()))
+                      .value("count", type.getProcessingTime().getCount())
+                      .value("queue-50", millis(type.getQueueTime().getMedian()))
+                      .value("queue-99", millis(type.getQueueTime().get99thPercentile()))
+                      .value("queue-max", millis(type.getQueueTime().getMax()))
+                      .value("process-50", millis(type.getProcessingTime().getMedian()))
+                      .value("process-99", millis(type.getProcessingTime().get99thPercentile()))
+                      .value("process-max", millis(type.getProcessingTime().getMax()))
+                      .value("reply-50", millis(type.getReplyTime().getMedian()))
+                      .value("reply-99", millis(type.getReplyTime().get99thPercentile()))
+                      .value("size-50", type.getSize().getMedian())
+                      .value("size-max", type.getSize().getMax());
+            }
+            if (reset) {
+                statistics.reset();
+            }
+            return writer.toString();
+        }
+
+        private String millis(long micros) {
+            return String.format("%.3f", micros / 1000.0);
+        }
+    }
+
     @Command(name = "show pinboard",
           hint = "display the most recent pinboard messages",
           description = "The pinboard always stores the most recent log messages.  It has " +
@@ -1,7 +1,9 @@
 package dmg.cells.nucleus;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author Patrick Fuhrmann
@@ -24,6 +26,7 @@ public class CellInfo implements Serializable {
     private int _threadCount;
     private long _expectedQueueTime;
     private CellVersion _version = new CellVersion();
+    private List<MessageTypeStatistics> _messageStatistics = Collections.emptyList();
 
     static final int INITIAL = 0;
     static final int ACTIVE = 1;
@@ -50,6 +53,7 @@ public class CellInfo implements Serializable {
         _expectedQueueTime = info._expectedQueueTime;
         _threadCount = info._threadCount;
         _version = info._version;
+        _messageStatistics = info._messageStatistics;
     }
 
     public void setCellName(String name) {
@@ -100,6 +104,10 @@ public class CellInfo implements Serializable {
         _threadCount = threadCount;
     }
 
+    public void setMessageStatistics(List<MessageTypeStatistics> statistics) {
+        _messageStatistics = statistics;
+    }
+
     public void setState(int state) {
         _state = (state < 0) || (_state >= _stateNames.length) ?
               _stateNames.length : state;
@@ -173,6 +181,13 @@ public class CellInfo implements Serializable {
         return _threadCount;
     }
 
+    /**
+     * Returns latency and size statistics for each type of message delivered to the cell.
+     */
+    public List<MessageTypeStatistics> getMessageStatistics() {
+        return _messageStatistics == null ? Collections.emptyList() : _messageStatistics;
+    }
+
     //
     // and some needfull things
     //
@@ -6,10 +6,14 @@ import static dmg.cells.nucleus.SerializationHandler.Serializer;
 
 import com.google.common.base.Strings;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -53,6 +57,8 @@ public final class CellMessage implements Cloneable, Serializable {
      */
     private static final int STREAM_MODE = 1;
     private transient long _receivedAt;
+    private transient int _encodedSize = -1;
+    private transient CellNucleus.Dispatch _dispatch;
 
     public CellMessage(CellAddressCore address, Serializable msg) {
         this(new CellPath(address));
@@ -214,6 +220,19 @@ public final class CellMessage implements Cloneable, Serializable {
         return _mode == STREAM_MODE;
     }
 
+    void setDispatch(CellNucleus.Dispatch dispatch) {
+        _dispatch = dispatch;
+    }
+
+    /**
+     * Returns and clears the dispatch of the request this envelope was reverted from, if any.
+     */
+    CellNucleus.Dispatch takeDispatch() {
+        CellNucleus.Dispatch dispatch = _dispatch;
+        _dispatch = null;
+        return dispatch;
+    }
+
     /**
      * The method does not copy the message object - only the encoded message stream (if any).
      */
@@ -259,9 +278,18 @@ public final class CellMessage implements Cloneable, Serializable {
         decoded._mode = ORIGINAL_MODE;
         decoded._messageStream = null;
         decoded._message = SerializationHandler.decode(_messageStream);
+        decoded._encodedSize = _messageStream.length;
         return decoded;
     }
 
+    /**
+     * Returns the size of the encoded payload in bytes. For a decoded message, this is the size
+     * of the payload it was decoded from. Returns -1 if the message has never been encoded.
+     */
+    public int getEncodedSize() {
+        return (_mode == STREAM_MODE) ? _messageStream.length : _encodedSize;
+    }
+
     public void addSourceAddress(CellAddressCore source) {
         _source.add(source);
     }
@@ -299,6 +327,20 @@ public final class CellMessage implements Cloneable, Serializable {
      * This is the raw encoding used by tunnels since release 3.0.
      */
     public void writeTo(DataOutput out) throws IOException {
+        writeEnvelopeTo(out);
+        out.write(_messageStream);
+    }
+
+    /**
+     * Writes everything but the encoded payload of the CellMessage to a data output stream.
+     * <p>
+     * Writing the result of this method followed by the bytes of {@link #getEncodedPayload()}
+     * is equivalent to {@link #writeTo}. This allows tunnels to hand the payload to the socket
+     * without first copying it into an intermediate buffer.
+     * <p>
+     * The CellMessage must be in stream mode.
+     */
+    public void writeEnvelopeTo(DataOutput out) throws IOException {
         checkState(_mode == STREAM_MODE);
 
         out.writeByte(_mode);
@@ -312,7 +354,16 @@ public final class CellMessage implements Cloneable, Serializable {
 
         out.writeUTF(Objects.toString(_session, ""));
         out.writeInt(_messageStream.length);
-        out.write(_messageStream);
+    }
+
+    /**
+     * Returns a read-only view of the encoded payload.
+     * <p>
+     * The CellMessage must be in stream mode.
+     */
+    public ByteBuffer getEncodedPayload() {
+        checkState(_mode == STREAM_MODE);
+        return ByteBuffer.wrap(_messageStream).asReadOnlyBuffer();
     }
 
     /**
@@ -321,6 +372,41 @@ public final class CellMessage implements Cloneable, Serializable {
      * This is the raw encoding used by tunnels since release 3.0.
      */
     public static CellMessage createFrom(DataInput in) throws IOException {
+        CellMessage message = createEnvelopeFrom(in);
+        int len = in.readInt();
+        message._messageStream = new byte[len];
+        in.readFully(message._messageStream);
+        return message;
+    }
+
+    /**
+     * Reads CellMessage from a byte buffer.
+     * <p>
+     * If the buffer does not contain a complete message, null is returned and the position of
+     * the buffer is left unchanged. Otherwise the position is advanced past the message.
+     * <p>
+     * This is the raw encoding used by tunnels since release 3.0.
+     */
+    public static CellMessage createFrom(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        try {
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+            CellMessage message = createEnvelopeFrom(in);
+            int len = in.readInt();
+            if (buffer.remaining() < len) {
+                buffer.position(start);
+                return null;
+            }
+            message._messageStream = new byte[len];
+            buffer.get(message._messageStream);
+            return message;
+        } catch (EOFException e) {
+            buffer.position(start);
+            return null;
+        }
+    }
+
+    private static CellMessage createEnvelopeFrom(DataInput in) throws IOException {
         CellMessage message = new CellMessage();
         message._mode = in.readByte();
         if (message._mode != STREAM_MODE) {
@@ -338,9 +424,36 @@ public final class CellMessage implements Cloneable, Serializable {
         message._source = CellPath.createFrom(in);
         message._destination = CellPath.createFrom(in);
         message._session = Strings.emptyToNull(in.readUTF());
-        int len = in.readInt();
-        message._messageStream = new byte[len];
-        in.readFully(message._messageStream);
         return message;
     }
+
+    /**
+     * Minimal InputStream over the remaining bytes of a byte buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
 }
@@ -60,6 +60,7 @@ import org.apache.curator.framework.CuratorFramework;
 import org.dcache.util.BoundedCachedExecutor;
 import org.dcache.util.BoundedExecutor;
 import org.dcache.util.FireAndForgetTask;
+import org.dcache.util.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -164,6 +165,11 @@ public class CellNucleus implements ThreadFactory {
 
     private volatile long _lastQueueTime;
 
+    /**
+     * Per message type latency and size statistics of messages delivered to this cell.
+     */
+    private final MessageStatistics _messageStatistics = new MessageStatistics();
+
     private final CellCuratorFramework _curatorFramework;
 
     private final Monitor _lifeCycleMonitor = new Monitor();
@@ -179,6 +185,22 @@ public class CellNucleus implements ThreadFactory {
 
 
     public CellNucleus(Cell cell, String name, String type, Executor executor) {
+        this(cell, name, type, executor, false);
+    }
+
+    /**
+     * Creates a new nucleus.
+     * <p>
+     * Messages are delivered on threads of {@code executor} if given. Otherwise threads are
+     * created by the nucleus: either platform threads that are cached for reuse, or, if {@code
+     * useVirtualThreads} is true, a new virtual thread per burst of messages. In either case the
+     * number of concurrently delivered messages is limited by {@link #setMaximumPoolSize}.
+     *
+     * @throws UnsupportedOperationException if virtual threads are requested but not supported
+     *                                       by the Java runtime
+     */
+    public CellNucleus(Cell cell, String name, String type, Executor executor,
+          boolean useVirtualThreads) {
         String cellName = name.replace('@', '+');
 
         if (cellName.isEmpty()) {
@@ -221,8 +243,15 @@ public class CellNucleus implements ThreadFactory {
                     : parentNucleus.getLoggingThresholds();
         setLoggingThresholds(new FilterThresholdSet(parentThresholds));
 
-        _messageExecutor = (executor == null) ? new BoundedCachedExecutor(this, 1)
-              : new BoundedExecutor(executor, 1);
+        if (executor != null) {
+            _messageExecutor = new BoundedExecutor(executor, 1);
+        } else if (useVirtualThreads) {
+            ThreadFactory factory = VirtualThreads.newThreadFactory(_cellName + "-virtual-");
+            _messageExecutor = new BoundedExecutor(VirtualThreads.newThreadPerTaskExecutor(
+                  target -> factory.newThread(wrapLoggingContext(target))), 1);
+        } else {
+            _messageExecutor = new BoundedCachedExecutor(this, 1);
+        }
 
         CuratorFramework curatorFramework = __cellGlue.getCuratorFramework();
         _curatorFramework = new CellCuratorFramework(curatorFramework, _messageExecutor);
@@ -364,6 +393,7 @@ public class CellNucleus implements ThreadFactory {
             info.setExpectedQueueTime((eventQueueSize == 0) ? 0 : _lastQueueTime);
             info.setState(_state.externalState);
             info.setThreadCount(_threads.activeCount());
+            info.setMessageStatistics(_messageStatistics.getSummary());
         } catch (Exception e) {
             info.setEventQueueSize(0);
             info.setState(0);
@@ -414,6 +444,13 @@ public class CellNucleus implements ThreadFactory {
             msg.addSourceAddress(getThisAddress());
         }
 
+        if (msg.isReply()) {
+            Dispatch dispatch = msg.takeDispatch();
+            if (dispatch != null) {
+                dispatch.replied();
+            }
+        }
+
         EventLogger.sendBegin(msg, "async");
         try {
             __cellGlue.sendMessage(msg, locally, remotely);
@@ -471,6 +508,10 @@ public class CellNucleus implements ThreadFactory {
         }
     }
 
+    public MessageStatistics getMessageStatistics() {
+        return _messageStatistics;
+    }
+
     public Map<UOID, CellLock> getWaitQueue() {
         return Collections.unmodifiableMap(_waitHash);
     }
@@ -1248,12 +1289,36 @@ public class CellNucleus implements ThreadFactory {
         }
     }
 
+    /**
+     * Records when a request of a particular type was dispatched to a cell. Kept on the envelope
+     * of the request, such that the reply sent by reverting that envelope can be accounted for
+     * without remembering requests that are never answered.
+     */
+    static class Dispatch {
+
+        private final MessageStatistics statistics;
+        private final Class<?> type;
+        private final long time;
+
+        Dispatch(MessageStatistics statistics, Class<?> type, long time) {
+            this.statistics = statistics;
+            this.type = type;
+            this.time = time;
+        }
+
+        void replied() {
+            statistics.replied(type, System.nanoTime() - time);
+        }
+    }
+
     private class DeliverMessageTask implements Runnable {
 
         private final MessageEvent _event;
+        private final long _enqueuedAt;
 
         public DeliverMessageTask(MessageEvent event) {
             _event = event;
+            _enqueuedAt = System.nanoTime();
         }
 
         @Override
@@ -1270,6 +1335,12 @@ public class CellNucleus implements ThreadFactory {
                         CellMessage msg = _event.getMessage();
                         CDC.setMessageContext(msg);
                         msg.getDestinationPath().next();
+                        Object messageObject = msg.getMessageObject();
+                        Class<?> type = (messageObject == null) ? Void.class : messageObject.getClass();
+                        long dispatchedAt = System.nanoTime();
+                        if (!msg.isReply()) {
+                            msg.setDispatch(new Dispatch(_messageStatistics, type, dispatchedAt));
+                        }
                         try {
                             _cell.messageArrived(_event);
                         } catch (RuntimeException e) {
@@ -1279,6 +1350,9 @@ public class CellNucleus implements ThreadFactory {
                                 sendMessage(msg, true, true, true);
                             }
                             throw e;
+                        } finally {
+                            _messageStatistics.delivered(type, dispatchedAt - _enqueuedAt,
+                                  System.nanoTime() - dispatchedAt, msg.getEncodedSize());
                         }
                     }
                 } catch (Throwable e) {
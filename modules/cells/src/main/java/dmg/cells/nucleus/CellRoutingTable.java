@@ -1,17 +1,19 @@
 package dmg.cells.nucleus;
 
-import static java.util.stream.Collectors.toList;
-
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.math.IntMath;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -19,123 +21,130 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import org.dcache.util.ColumnWriter;
 
+/**
+ * The routing table of a domain.
+ * <p>
+ * Routes are looked up for every message sent, while they only change when tunnels or cells
+ * come and go. Lookups are therefore served from an immutable snapshot of the table that is
+ * read without locking. Updates are serialized on the table, modify the authoritative route
+ * collections and mark the affected part of the snapshot as stale. The first lookup after a
+ * change publishes a new snapshot in which only the stale parts are rebuilt; the remainder is
+ * shared with the previous snapshot. A burst of updates, such as the routes of a reconnecting
+ * domain, thus costs a single rebuild.
+ */
 public class CellRoutingTable implements Serializable {
 
     private static final long serialVersionUID = -1456280129622980563L;
 
+    private static final CellRoute[] NO_ROUTES = new CellRoute[0];
+
+    /* Bit masks of route types, each selecting a part of the snapshot. */
+    private static final int EXACT_ROUTES = 1 << CellRoute.EXACT | 1 << CellRoute.ALIAS;
+    private static final int QUEUE_ROUTES = 1 << CellRoute.QUEUE;
+    private static final int TOPIC_ROUTES = 1 << CellRoute.TOPIC;
+    private static final int DOMAIN_ROUTES = 1 << CellRoute.DOMAIN;
+    private static final int DEFAULT_ROUTES = 1 << CellRoute.DEFAULT;
+    private static final int ALL_ROUTES =
+          EXACT_ROUTES | QUEUE_ROUTES | TOPIC_ROUTES | DOMAIN_ROUTES | DEFAULT_ROUTES;
+
+    /* Authoritative route collections, guarded by this. */
     private final ListMultimap<String, CellRoute> _queue = ArrayListMultimap.create();
     private final SetMultimap<String, CellRoute> _domain = LinkedHashMultimap.create();
     private final SetMultimap<String, CellRoute> _exact = LinkedHashMultimap.create();
-    private final Map<String, CopyOnWriteArraySet<CellRoute>> _topic = new HashMap<>();
+    private final SetMultimap<String, CellRoute> _topic = LinkedHashMultimap.create();
     private final AtomicReference<CellRoute> _dumpster = new AtomicReference<>();
     private final List<CellRoute> _default = new ArrayList<>();
 
-    public void add(CellRoute route)
+    /* Last published snapshot and the route types changed since, guarded by this. */
+    private transient Snapshot _published = Snapshot.EMPTY;
+    private transient int _stale;
+
+    /* Snapshot used for lookups, or null if routes changed since it was published. */
+    private transient volatile Snapshot _snapshot = Snapshot.EMPTY;
+
+    public synchronized void add(CellRoute route)
           throws IllegalArgumentException {
         String dest;
         switch (route.getRouteType()) {
             case CellRoute.EXACT:
             case CellRoute.ALIAS:
                 dest = route.getCellName() + '@' + route.getDomainName();
-                synchronized (_exact) {
-                    if (!_exact.put(dest, route)) {
-                        throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                    }
+                if (!_exact.put(dest, route)) {
+                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
                 }
                 break;
             case CellRoute.QUEUE:
                 dest = route.getCellName();
-                synchronized (_queue) {
-                    if (_queue.containsEntry(dest, route)) {
-                        throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                    }
-                    _queue.put(dest, route);
+                if (_queue.containsEntry(dest, route)) {
+                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
                 }
+                _queue.put(dest, route);
                 break;
             case CellRoute.TOPIC:
                 dest = route.getCellName();
-                synchronized (_topic) {
-                    if (!_topic.computeIfAbsent(dest, key -> new CopyOnWriteArraySet())
-                          .add(route)) {
-                        throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                    }
+                if (!_topic.put(dest, route)) {
+                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
                 }
                 break;
             case CellRoute.DOMAIN:
                 dest = route.getDomainName();
-                synchronized (_domain) {
-                    if (!_domain.put(dest, route)) {
-                        throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                    }
+                if (!_domain.put(dest, route)) {
+                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
                 }
                 break;
             case CellRoute.DEFAULT:
-                synchronized (_default) {
-                    if (!_default.contains(route)) {
-                        _default.add(route);
-                    }
+                if (_default.contains(route)) {
+                    return;
                 }
+                _default.add(route);
                 break;
             case CellRoute.DUMPSTER:
                 if (!_dumpster.compareAndSet(null, route)) {
                     throw new IllegalArgumentException("Duplicated route entry for dumpster");
                 }
-                break;
+                return;
         }
+        invalidate(1 << route.getRouteType());
     }
 
-    public void delete(CellRoute route)
+    public synchronized void delete(CellRoute route)
           throws IllegalArgumentException {
         String dest;
         switch (route.getRouteType()) {
             case CellRoute.EXACT:
             case CellRoute.ALIAS:
                 dest = route.getCellName() + '@' + route.getDomainName();
-                synchronized (_exact) {
-                    if (!_exact.remove(dest, route)) {
-                        throw new IllegalArgumentException("Route entry not found for : " + dest);
-                    }
+                if (!_exact.remove(dest, route)) {
+                    throw new IllegalArgumentException("Route entry not found for : " + dest);
                 }
                 break;
             case CellRoute.QUEUE:
                 dest = route.getCellName();
-                synchronized (_queue) {
-                    if (!_queue.remove(dest, route)) {
-                        throw new IllegalArgumentException("Route entry not found for : " + dest);
-                    }
+                if (!_queue.remove(dest, route)) {
+                    throw new IllegalArgumentException("Route entry not found for : " + dest);
                 }
                 break;
             case CellRoute.TOPIC:
                 dest = route.getCellName();
-                synchronized (_topic) {
-                    Set<CellRoute> routes = _topic.get(dest);
-                    if (!routes.remove(route)) {
-                        throw new IllegalArgumentException("Route entry not found for : " + dest);
-                    }
-                    if (routes.isEmpty()) {
-                        _topic.remove(dest);
-                    }
+                if (!_topic.remove(dest, route)) {
+                    throw new IllegalArgumentException("Route entry not found for : " + dest);
                 }
                 break;
             case CellRoute.DOMAIN:
                 dest = route.getDomainName();
-                synchronized (_domain) {
-                    if (!_domain.remove(dest, route)) {
-                        throw new IllegalArgumentException("Route entry not found for : " + dest);
-                    }
+                if (!_domain.remove(dest, route)) {
+                    throw new IllegalArgumentException("Route entry not found for : " + dest);
                 }
                 break;
             case CellRoute.DEFAULT:
-                synchronized (_default) {
-                    if (!_default.remove(route)) {
-                        throw new IllegalArgumentException("Route entry not found for default");
-                    }
+                if (!_default.remove(route)) {
+                    throw new IllegalArgumentException("Route entry not found for default");
                 }
                 break;
             case CellRoute.DUMPSTER:
@@ -144,42 +153,20 @@ public class CellRoutingTable implements Serializable {
                       currentDumpster, null)) {
                     throw new IllegalArgumentException("Route entry not found dumpster");
                 }
-                break;
+                return;
         }
+        invalidate(1 << route.getRouteType());
     }
 
-    public Collection<CellRoute> delete(CellAddressCore target) {
+    public synchronized Collection<CellRoute> delete(CellAddressCore target) {
         Collection<CellRoute> deleted = new ArrayList<>();
-
-        synchronized (_exact) {
-            delete(_exact.values(), target, deleted);
-        }
-        synchronized (_queue) {
-            delete(_queue.values(), target, deleted);
-        }
-        synchronized (_domain) {
-            delete(_domain.values(), target, deleted);
-        }
-        synchronized (_topic) {
-            /* We cannot use the regular delete method because a CopyOnWriteArraySet iterator
-             * doesn't allow manipulating operations. We trade expensive deletion for not having
-             * to copy the set of topic routes in findTopicRoutes.
-             */
-            Iterator<CopyOnWriteArraySet<CellRoute>> iterator = _topic.values().iterator();
-            while (iterator.hasNext()) {
-                Set<CellRoute> routes = iterator.next();
-                List<CellRoute> toRemove =
-                      routes.stream().filter(route -> route.getTarget().equals(target))
-                            .collect(toList());
-                routes.removeAll(toRemove);
-                if (routes.isEmpty()) {
-                    iterator.remove();
-                }
-                deleted.addAll(toRemove);
-            }
-        }
-        synchronized (_default) {
-            delete(_default, target, deleted);
+        delete(_exact.values(), target, deleted);
+        delete(_queue.values(), target, deleted);
+        delete(_domain.values(), target, deleted);
+        delete(_topic.values(), target, deleted);
+        delete(_default, target, deleted);
+        if (!deleted.isEmpty()) {
+            invalidate(ALL_ROUTES);
         }
         return deleted;
     }
@@ -196,72 +183,118 @@ public class CellRoutingTable implements Serializable {
         }
     }
 
+    /**
+     * Marks the parts of the snapshot holding routes of the given types as stale. Must be called
+     * while holding the monitor of this table.
+     */
+    private void invalidate(int routeTypes) {
+        _stale |= routeTypes;
+        _snapshot = null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot snapshot = _snapshot;
+        return (snapshot != null) ? snapshot : publish();
+    }
+
+    /**
+     * Rebuilds the stale parts of the snapshot and publishes the result.
+     */
+    private synchronized Snapshot publish() {
+        Snapshot snapshot = _published;
+        if ((_stale & EXACT_ROUTES) != 0) {
+            snapshot = snapshot.withExact(firstOf(_exact));
+        }
+        if ((_stale & QUEUE_ROUTES) != 0) {
+            snapshot = snapshot.withQueue(queueRoutesOf(_queue));
+        }
+        if ((_stale & TOPIC_ROUTES) != 0) {
+            snapshot = snapshot.withTopic(topicRoutesOf(_topic));
+        }
+        if ((_stale & DOMAIN_ROUTES) != 0) {
+            snapshot = snapshot.withDomain(firstOf(_domain));
+        }
+        if ((_stale & DEFAULT_ROUTES) != 0) {
+            snapshot = snapshot.withDefault(_default.toArray(NO_ROUTES));
+        }
+        _stale = 0;
+        _published = snapshot;
+        _snapshot = snapshot;
+        return snapshot;
+    }
+
     public CellRoute find(CellAddressCore addr, Optional<String> zone, boolean allowRemote) {
+        Snapshot snapshot = snapshot();
         String cellName = addr.getCellName();
         String domainName = addr.getCellDomainName();
-        Optional<CellRoute> route;
-        synchronized (_exact) {
-            route = _exact.get(cellName + '@' + domainName).stream().findFirst();
-        }
-        if (route.isPresent()) {
-            return route.get();
+        CellRoute route = snapshot.exact.get(cellName + '@' + domainName);
+        if (route != null) {
+            return route;
         }
         if (domainName.equals("local")) {
             //
             // this is not really local but wellknown
             // we checked for local before we called this.
             //
-            synchronized (_queue) {
-                List<CellRoute> routes = _queue.get(cellName);
-                Random random = ThreadLocalRandom.current();
-                if (!allowRemote) {
-                    CellRoute[] localRoutes =
-                          routes.stream().filter(r -> !r.getTarget().isDomainAddress())
-                                .toArray(CellRoute[]::new);
-                    return (localRoutes.length > 0) ? localRoutes[random.nextInt(
-                          localRoutes.length)] : null;
-                } else if (!routes.isEmpty()) {
-
-                    if (zone.isPresent()) {
-                        CellRoute[] localRoutes = routes
-                              .stream()
-                              .filter(r -> r.getZone().equals(zone))
-                              .toArray(CellRoute[]::new);
-
-                        if (localRoutes.length > 0) {
-                            return localRoutes[random.nextInt(localRoutes.length)];
-                        }
+            QueueRoutes routes = snapshot.queue.get(cellName);
+            Random random = ThreadLocalRandom.current();
+            if (!allowRemote) {
+                CellRoute[] localRoutes = (routes == null) ? NO_ROUTES : routes.local;
+                return (localRoutes.length > 0) ? localRoutes[random.nextInt(
+                      localRoutes.length)] : null;
+            } else if (routes != null) {
+                if (zone.isPresent()) {
+                    route = anyInZone(routes.all, zone, random);
+                    if (route != null) {
+                        return route;
                     }
-                    return routes.get(random.nextInt(routes.size()));
                 }
+                return routes.all[random.nextInt(routes.all.length)];
             }
         } else {
-            synchronized (_domain) {
-                route = _domain.get(domainName).stream().findFirst();
-            }
-            if (route.isPresent()) {
-                return route.get();
+            route = snapshot.domain.get(domainName);
+            if (route != null) {
+                return route;
             }
         }
-        synchronized (_default) {
 
-            if (_default.isEmpty()) {
-                return null;
-            }
-
-            if (zone.isPresent()) {
-                Optional<CellRoute> defaultZonedRoute = _default
-                      .stream()
-                      .filter(r -> r.getZone().equals(zone))
-                      .findAny();
+        CellRoute[] defaults = snapshot.defaults;
+        if (defaults.length == 0) {
+            return null;
+        }
 
-                if (defaultZonedRoute.isPresent()) {
-                    return defaultZonedRoute.get();
+        if (zone.isPresent()) {
+            for (CellRoute defaultRoute : defaults) {
+                if (defaultRoute.getZone().equals(zone)) {
+                    return defaultRoute;
                 }
             }
+        }
+
+        return defaults[IntMath.mod(addr.hashCode(), defaults.length)];
+    }
 
-            return _default.get(IntMath.mod(addr.hashCode(), _default.size()));
+    /**
+     * Returns a random route from {@code routes} in the given zone, or null if there is no such
+     * route. Avoids allocating a filtered copy of the routes.
+     */
+    private static CellRoute anyInZone(CellRoute[] routes, Optional<String> zone, Random random) {
+        int count = 0;
+        for (CellRoute route : routes) {
+            if (route.getZone().equals(zone)) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
         }
+        int n = random.nextInt(count);
+        for (CellRoute route : routes) {
+            if (route.getZone().equals(zone) && n-- == 0) {
+                return route;
+            }
+        }
+        throw new AssertionError("Unreachable");
     }
 
     public Set<CellRoute> findTopicRoutes(CellAddressCore addr) {
@@ -270,14 +303,11 @@ public class CellRoutingTable implements Serializable {
         if (!domainName.equals("local")) {
             return Collections.emptySet();
         }
-        CopyOnWriteArraySet<CellRoute> routes;
-        synchronized (_topic) {
-            routes = _topic.get(cellName);
-        }
+        Set<CellRoute> routes = snapshot().topic.get(cellName);
         return (routes != null) ? routes : Collections.emptySet();
     }
 
-    public String toString() {
+    public synchronized String toString() {
         ColumnWriter writer = new ColumnWriter()
               .header("CELL").left("cell").space()
               .header("DOMAIN").left("domain").space()
@@ -291,21 +321,11 @@ public class CellRoutingTable implements Serializable {
                     .value("gateway", route.getTarget())
                     .value("type", route.getRouteTypeName());
 
-        synchronized (_topic) {
-            _topic.values().forEach(routes -> routes.forEach(append));
-        }
-        synchronized (_exact) {
-            _exact.values().forEach(append);
-        }
-        synchronized (_queue) {
-            _queue.values().forEach(append);
-        }
-        synchronized (_domain) {
-            _domain.values().forEach(append);
-        }
-        synchronized (_default) {
-            _default.forEach(append);
-        }
+        _topic.values().forEach(append);
+        _exact.values().forEach(append);
+        _queue.values().forEach(append);
+        _domain.values().forEach(append);
+        _default.forEach(append);
         CellRoute dumpsterRoute = _dumpster.get();
         if (dumpsterRoute != null) {
             append.accept(dumpsterRoute);
@@ -313,23 +333,13 @@ public class CellRoutingTable implements Serializable {
         return writer.toString();
     }
 
-    public CellRoute[] getRoutingList() {
+    public synchronized CellRoute[] getRoutingList() {
         List<CellRoute> routes = new ArrayList<>();
-        synchronized (_topic) {
-            _topic.values().forEach(routes::addAll);
-        }
-        synchronized (_exact) {
-            routes.addAll(_exact.values());
-        }
-        synchronized (_queue) {
-            routes.addAll(_queue.values());
-        }
-        synchronized (_domain) {
-            routes.addAll(_domain.values());
-        }
-        synchronized (_default) {
-            routes.addAll(_default);
-        }
+        routes.addAll(_topic.values());
+        routes.addAll(_exact.values());
+        routes.addAll(_queue.values());
+        routes.addAll(_domain.values());
+        routes.addAll(_default);
         CellRoute dumpsterRoute = _dumpster.get();
         if (dumpsterRoute != null) {
             routes.add(dumpsterRoute);
@@ -338,8 +348,103 @@ public class CellRoutingTable implements Serializable {
     }
 
     public boolean hasDefaultRoute() {
-        synchronized (_default) {
-            return !_default.isEmpty();
+        return snapshot().defaults.length > 0;
+    }
+
+    private void readObject(ObjectInputStream stream)
+          throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        _published = new Snapshot(this);
+        _snapshot = _published;
+    }
+
+    private static ImmutableMap<String, CellRoute> firstOf(Multimap<String, CellRoute> routes) {
+        return transform(routes, values -> values.iterator().next());
+    }
+
+    private static ImmutableMap<String, QueueRoutes> queueRoutesOf(
+          Multimap<String, CellRoute> routes) {
+        return transform(routes, QueueRoutes::new);
+    }
+
+    private static ImmutableMap<String, ImmutableSet<CellRoute>> topicRoutesOf(
+          Multimap<String, CellRoute> routes) {
+        return transform(routes, ImmutableSet::copyOf);
+    }
+
+    private static <T> ImmutableMap<String, T> transform(Multimap<String, CellRoute> routes,
+          Function<Collection<CellRoute>, T> f) {
+        ImmutableMap.Builder<String, T> builder =
+              ImmutableMap.builderWithExpectedSize(routes.keySet().size());
+        for (Map.Entry<String, Collection<CellRoute>> entry : routes.asMap().entrySet()) {
+            builder.put(entry.getKey(), f.apply(entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Queue routes for a cell name. Routes to cells in this domain are precomputed as they are
+     * needed for every lookup that doesn't allow remote routes.
+     */
+    private static class QueueRoutes {
+
+        final CellRoute[] all;
+        final CellRoute[] local;
+
+        QueueRoutes(Collection<CellRoute> routes) {
+            all = routes.toArray(NO_ROUTES);
+            local = routes.stream().filter(r -> !r.getTarget().isDomainAddress())
+                  .toArray(CellRoute[]::new);
+        }
+    }
+
+    /**
+     * Immutable view of the routes used for lookups.
+     */
+    private static class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(ImmutableMap.of(), ImmutableMap.of(),
+              ImmutableMap.of(), ImmutableMap.of(), NO_ROUTES);
+
+        final ImmutableMap<String, CellRoute> exact;
+        final ImmutableMap<String, QueueRoutes> queue;
+        final ImmutableMap<String, CellRoute> domain;
+        final ImmutableMap<String, ImmutableSet<CellRoute>> topic;
+        final CellRoute[] defaults;
+
+        Snapshot(ImmutableMap<String, CellRoute> exact, ImmutableMap<String, QueueRoutes> queue,
+              ImmutableMap<String, CellRoute> domain,
+              ImmutableMap<String, ImmutableSet<CellRoute>> topic, CellRoute[] defaults) {
+            this.exact = exact;
+            this.queue = queue;
+            this.domain = domain;
+            this.topic = topic;
+            this.defaults = defaults;
+        }
+
+        Snapshot(CellRoutingTable table) {
+            this(firstOf(table._exact), queueRoutesOf(table._queue), firstOf(table._domain),
+                  topicRoutesOf(table._topic), table._default.toArray(NO_ROUTES));
+        }
+
+        Snapshot withExact(ImmutableMap<String, CellRoute> exact) {
+            return new Snapshot(exact, queue, domain, topic, defaults);
+        }
+
+        Snapshot withQueue(ImmutableMap<String, QueueRoutes> queue) {
+            return new Snapshot(exact, queue, domain, topic, defaults);
+        }
+
+        Snapshot withDomain(ImmutableMap<String, CellRoute> domain) {
+            return new Snapshot(exact, queue, domain, topic, defaults);
+        }
+
+        Snapshot withTopic(ImmutableMap<String, ImmutableSet<CellRoute>> topic) {
+            return new Snapshot(exact, queue, domain, topic, defaults);
+        }
+
+        Snapshot withDefault(CellRoute[] defaults) {
+            return new Snapshot(exact, queue, domain, topic, defaults);
         }
     }
 }
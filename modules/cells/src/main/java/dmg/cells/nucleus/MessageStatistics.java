@@ -0,0 +1,105 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dmg.cells.nucleus;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.dcache.commons.stats.LogHistogram;
+
+/**
+ * Per message type latency and size histograms of a cell.
+ * <p>
+ * For every type of message delivered to the cell, the time spent in the message queue, the time
+ * spent in {@code messageArrived}, the time from dispatch until the reply was sent and the
+ * serialized size of the message are recorded. Times are recorded in microseconds.
+ */
+public class MessageStatistics {
+
+    private final ConcurrentMap<Class<?>, Entry> entries = new ConcurrentHashMap<>();
+
+    private Entry entryFor(Class<?> type) {
+        return entries.computeIfAbsent(type, Entry::new);
+    }
+
+    /**
+     * Records the delivery of a message.
+     *
+     * @param type           class of the message object
+     * @param queueNanos     time between enqueuing and dispatching the message
+     * @param processNanos   time spent delivering the message to the cell
+     * @param serializedSize size of the serialized message, or -1 if unknown
+     */
+    void delivered(Class<?> type, long queueNanos, long processNanos, int serializedSize) {
+        Entry entry = entryFor(type);
+        entry.queueTime.record(TimeUnit.NANOSECONDS.toMicros(queueNanos));
+        entry.processTime.record(TimeUnit.NANOSECONDS.toMicros(processNanos));
+        if (serializedSize >= 0) {
+            entry.size.record(serializedSize);
+        }
+    }
+
+    /**
+     * Records that a reply was sent for a message of the given type.
+     *
+     * @param type       class of the message object of the request
+     * @param replyNanos time between dispatching the request and sending the reply
+     */
+    void replied(Class<?> type, long replyNanos) {
+        entryFor(type).replyTime.record(TimeUnit.NANOSECONDS.toMicros(replyNanos));
+    }
+
+    public void reset() {
+        entries.clear();
+    }
+
+    /**
+     * Returns a summary of the statistics, ordered by message type.
+     */
+    public List<MessageTypeStatistics> getSummary() {
+        return entries.values().stream()
+              .sorted(comparing(e -> e.type.getName()))
+              .map(Entry::summarize)
+              .collect(toList());
+    }
+
+    private static class Entry {
+
+        private final Class<?> type;
+        private final LogHistogram queueTime = new LogHistogram();
+        private final LogHistogram processTime = new LogHistogram();
+        private final LogHistogram replyTime = new LogHistogram();
+        private final LogHistogram size = new LogHistogram();
+
+        Entry(Class<?> type) {
+            this.type = type;
+        }
+
+        MessageTypeStatistics summarize() {
+            return new MessageTypeStatistics(type.getName(),
+                  new MessageTypeStatistics.Distribution(queueTime),
+                  new MessageTypeStatistics.Distribution(processTime),
+                  new MessageTypeStatistics.Distribution(replyTime),
+                  new MessageTypeStatistics.Distribution(size));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dmg.cells.nucleus;
+
+import java.io.Serializable;
+import org.dcache.commons.stats.LogHistogram;
+
+/**
+ * Immutable summary of the statistics of a single message type delivered to a cell.
+ * <p>
+ * Times are in microseconds, sizes in bytes.
+ */
+public class MessageTypeStatistics implements Serializable {
+
+    private static final long serialVersionUID = -2279541424356893398L;
+
+    /**
+     * Summary of a single distribution.
+     */
+    public static class Distribution implements Serializable {
+
+        private static final long serialVersionUID = 5370470218532307441L;
+
+        private final long count;
+        private final double mean;
+        private final long median;
+        private final long p99;
+        private final long max;
+
+        Distribution(LogHistogram histogram) {
+            count = histogram.getCount();
+            mean = histogram.getMean();
+            median = histogram.getValueAtPercentile(50);
+            p99 = histogram.getValueAtPercentile(99);
+            max = histogram.getMax();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getMedian() {
+            return median;
+        }
+
+        public long get99thPercentile() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+
+    private final String messageType;
+    private final Distribution queueTime;
+    private final Distribution processingTime;
+    private final Distribution replyTime;
+    private final Distribution size;
+
+    MessageTypeStatistics(String messageType, Distribution queueTime,
+          Distribution processingTime, Distribution replyTime, Distribution size) {
+        this.messageType = messageType;
+        this.queueTime = queueTime;
+        this.processingTime = processingTime;
+        this.replyTime = replyTime;
+        this.size = size;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * Time from enqueuing a message until it was dispatched to the cell.
+     */
+    public Distribution getQueueTime() {
+        return queueTime;
+    }
+
+    /**
+     * Time spent in the message handler of the cell.
+     */
+    public Distribution getProcessingTime() {
+        return processingTime;
+    }
+
+    /**
+     * Time from dispatching a request until the reply was sent. Only recorded for requests that
+     * were answered.
+     */
+    public Distribution getReplyTime() {
+        return replyTime;
+    }
+
+    /**
+     * Serialized size of the message. Not recorded for messages delivered without serialization.
+     */
+    public Distribution getSize() {
+        return size;
+    }
+}
@@ -19,9 +19,11 @@ package dmg.cells.nucleus;
 
 import static com.google.common.base.Preconditions.checkState;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import org.nustaq.serialization.FSTConfiguration;
+import org.nustaq.serialization.FSTObjectOutput;
 
 /**
  * The class contains methods for serializing and deserializing objects to/from a byte array
@@ -29,7 +31,6 @@ import org.nustaq.serialization.FSTConfiguration;
  */
 public final class MsgSerializerFst {
 
-    private static final int INITIAL_BUFFER_SIZE = 256;
     private static final FSTConfiguration fstConf = FSTConfiguration.createDefaultConfiguration();
 
     static {
@@ -44,15 +45,28 @@ public final class MsgSerializerFst {
     private MsgSerializerFst() {
     }
 
+    /**
+     * Serializes {@code message} into a byte array prefixed with the FST header.
+     * <p>
+     * The payload is serialized into the thread local, reusable buffer of the FST configuration
+     * and then copied exactly once into a correctly sized result array. The header cannot be
+     * written into the FST stream itself as FST back references are relative to the start of the
+     * stream.
+     */
     public static byte[] encode(Object message) {
         checkState(message != null, "Unencoded message payload is null.");
-        byte[] serialized = fstConf.asByteArray(message);
+        FSTObjectOutput out = fstConf.getObjectOutput();
+        try {
+            out.writeObject(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize message payload: " + e, e);
+        }
 
-        ByteArrayOutputStream array = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
-        array.write(FST_MESSAGE_HEADER, 0, FST_MESSAGE_HEADER.length);
-        array.write(serialized, 0, serialized.length);
-
-        return array.toByteArray();
+        int length = out.getWritten();
+        byte[] encoded = new byte[FST_MESSAGE_HEADER.length + length];
+        System.arraycopy(FST_MESSAGE_HEADER, 0, encoded, 0, FST_MESSAGE_HEADER.length);
+        System.arraycopy(out.getBuffer(), 0, encoded, FST_MESSAGE_HEADER.length, length);
+        return encoded;
     }
 
     public static Object decode(byte[] messageStream) {
@@ -28,6 +28,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.net.HostAndPort;
 import dmg.cells.network.LocationManagerConnector;
+import dmg.cells.network.SocketChannelFactory;
 import dmg.cells.nucleus.CellAdapter;
 import dmg.cells.nucleus.CellDomainRole;
 import dmg.cells.nucleus.CellEvent;
@@ -93,6 +94,7 @@ public class LocationManager extends CellAdapter {
     private final CoreConfig coreConfig;
     private final Args args;
     private final CellDomainRole role;
+    private final String transport;
     private final Client client;
 
     enum State {
@@ -714,13 +716,16 @@ public class LocationManager extends CellAdapter {
     }
 
     /**
-     * Usage : ... [-legacy=<port>] [-role=satellite|core] -mode=none|tls -- [<port>] <client
-     * options>
+     * Usage : ... [-legacy=<port>] [-role=satellite|core] -mode=none|tls
+     * [-transport=blocking|nio] -- [<port>] <client options>
      */
     public LocationManager(String name, String args)
           throws CommandException, IOException, BadConfigException {
         super(name, "System", args);
         this.args = getArgs();
+        transport = this.args.getOption("transport", "blocking");
+        checkArgument(transport.equals("blocking") || transport.equals("nio"),
+              "Invalid tunnel transport: %s", transport);
 
         coreDomains = CoreDomains.createWithMode(getCellDomainName(), getCuratorFramework(),
               this.args.getOpt("mode"));
@@ -780,7 +785,8 @@ public class LocationManager extends CellAdapter {
           throws ExecutionException, InterruptedException {
         String cellName = "l*";
         String cellClass = "dmg.cells.network.LocationMgrTunnel";
-        String cellArgs = args + ' ' + cellClass + ' ' + "-prot=raw" + " -role=" + role;
+        String cellArgs = args + ' ' + cellClass + ' ' + "-prot=raw" + " -role=" + role
+              + " -transport=" + transport;
         LOGGER.info("Starting acceptor with arguments: {}", cellArgs);
         LoginManager c = new LoginManager(cellName, "System", cellArgs);
         c.start().get();
@@ -809,7 +815,8 @@ public class LocationManager extends CellAdapter {
             case PLAIN:
                 LOGGER.info("Starting Connection in mode: PLAIN with {}", args.getArguments());
                 where = domainInfo.getEndpointForSchema("tcp").orElseThrow(BadConfigException::new);
-                socketFactory = SocketFactory.getDefault();
+                socketFactory = transport.equals("nio")
+                      ? new SocketChannelFactory() : SocketFactory.getDefault();
                 break;
             case TLS:
                 LOGGER.info("Starting Connection in mode: TLS with {}", args.getArguments());
@@ -839,6 +846,7 @@ public class LocationManager extends CellAdapter {
               + "-lm=" + getCellName() + ' '
               + "-role=" + role + ' '
               + "-where=" + where + ' '
+              + "-transport=" + transport + ' '
               + clientKey + ' '
               + clientName;
 
@@ -9,6 +9,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import org.junit.Test;
 
 public class CellMessageTest {
@@ -60,6 +61,54 @@ public class CellMessageTest {
         assertThat(decoded.getTtl(), is(message.getTtl()));
     }
 
+    @Test
+    public void shouldWriteSameBytesWithSeparatePayload() throws Exception {
+        CellMessage message = new CellMessage(new CellPath("foo", "bar"), "payload");
+        CellMessage encoded = message.encodeWith(SerializationHandler.Serializer.FST);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        encoded.writeTo(new DataOutputStream(expected));
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        encoded.writeEnvelopeTo(new DataOutputStream(actual));
+        ByteBuffer payload = encoded.getEncodedPayload();
+        while (payload.hasRemaining()) {
+            actual.write(payload.get());
+        }
+
+        assertThat(actual.toByteArray(), is(expected.toByteArray()));
+    }
+
+    @Test
+    public void shouldReadMessageFromBufferOnlyWhenComplete() throws Exception {
+        CellMessage message = new CellMessage(new CellPath("foo", "bar"), "payload");
+        CellMessage encoded = message.encodeWith(SerializationHandler.Serializer.FST);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoded.writeTo(new DataOutputStream(out));
+        byte[] bytes = out.toByteArray();
+
+        for (int i = 0; i < bytes.length; i++) {
+            ByteBuffer partial = ByteBuffer.wrap(bytes, 0, i);
+            assertThat(CellMessage.createFrom(partial), nullValue());
+            assertThat(partial.position(), is(0));
+        }
+
+        ByteBuffer complete = ByteBuffer.wrap(bytes);
+        CellMessage decoded = CellMessage.createFrom(complete).decode();
+        assertThat(complete.hasRemaining(), is(false));
+        assertThat(decoded.getUOID(), is(message.getUOID()));
+        assertThat(decoded.getMessageObject(), is((Serializable) "payload"));
+    }
+
+    @Test
+    public void shouldDecodeFstEncodedPayload() throws Exception {
+        byte[] encoded = MsgSerializerFst.encode("payload");
+
+        assertThat(MsgSerializerFst.isFstEncoded(encoded), is(true));
+        assertThat(MsgSerializerFst.decode(encoded), is((Object) "payload"));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void shouldFailToSerializedUnencodedMessages() throws Exception {
         CellMessage message = new CellMessage(new CellPath("foo", "bar"), "payload");
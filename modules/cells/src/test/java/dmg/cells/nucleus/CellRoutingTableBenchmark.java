@@ -0,0 +1,138 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dmg.cells.nucleus;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures route lookup throughput of 64 sending threads while the routing table is updated the
+ * way it is during a failover between two core domains: all routes through the failed core are
+ * dropped at once and the queue and topic routes are then re-announced one by one through the
+ * surviving core.
+ * <p>
+ * Not run as part of the unit tests. Run with
+ * <pre>
+ *     mvn -pl modules/cells test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=dmg.cells.nucleus.CellRoutingTableBenchmark
+ * </pre>
+ * The {@code find} and {@code findTopicRoutes} scores are the lookup throughput; the
+ * {@code failover} score is the rate of route updates sustained alongside.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellRoutingTableBenchmark {
+
+    private static final CellAddressCore CORE_A = new CellAddressCore("c-core-a", "coreA");
+    private static final CellAddressCore CORE_B = new CellAddressCore("c-core-b", "coreB");
+
+    @Param({"100", "1000"})
+    public int cells;
+
+    private CellRoutingTable table;
+    private CellAddressCore[] queues;
+    private CellAddressCore[] topics;
+    private boolean isOnCoreA;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = new CellRoutingTable();
+        queues = new CellAddressCore[cells];
+        topics = new CellAddressCore[cells / 10];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new CellAddressCore("queue-" + i);
+        }
+        for (int i = 0; i < topics.length; i++) {
+            topics[i] = new CellAddressCore("topic-" + i);
+        }
+        table.add(new CellRoute(null, CORE_A, Optional.empty(), CellRoute.DEFAULT));
+        table.add(new CellRoute(null, CORE_B, Optional.empty(), CellRoute.DEFAULT));
+        announce(CORE_A);
+        isOnCoreA = true;
+    }
+
+    private void announce(CellAddressCore core) {
+        for (CellAddressCore queue : queues) {
+            table.add(new CellRoute(queue.getCellName(), core, Optional.empty(), CellRoute.QUEUE));
+        }
+        for (CellAddressCore topic : topics) {
+            table.add(new CellRoute(topic.getCellName(), core, Optional.empty(), CellRoute.TOPIC));
+        }
+    }
+
+    @Benchmark
+    @Group("failover")
+    @GroupThreads(56)
+    public CellRoute find() {
+        CellAddressCore queue = queues[ThreadLocalRandom.current().nextInt(queues.length)];
+        return table.find(queue, Optional.empty(), true);
+    }
+
+    @Benchmark
+    @Group("failover")
+    @GroupThreads(8)
+    public void findTopicRoutes(Blackhole blackhole) {
+        CellAddressCore topic = topics[ThreadLocalRandom.current().nextInt(topics.length)];
+        for (CellRoute route : table.findTopicRoutes(topic)) {
+            blackhole.consume(route);
+        }
+    }
+
+    @Benchmark
+    @Group("failover")
+    @GroupThreads(1)
+    public void failover() {
+        CellAddressCore failed = isOnCoreA ? CORE_A : CORE_B;
+        CellAddressCore surviving = isOnCoreA ? CORE_B : CORE_A;
+        table.delete(failed);
+        table.add(new CellRoute(null, failed, Optional.empty(), CellRoute.DEFAULT));
+        announce(surviving);
+        isOnCoreA = !isOnCoreA;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+              .include(CellRoutingTableBenchmark.class.getSimpleName())
+              .build();
+        new Runner(options).run();
+    }
+}
@@ -281,4 +281,58 @@ public class CellRoutingTableTest {
 
         assertEquals(2, alternativeRoutes.size());
     }
+
+    @Test
+    public void testFindTopicRoutes() {
+
+        CellAddressCore gateway1 = new CellAddressCore("gw-1", "core-1");
+        CellAddressCore gateway2 = new CellAddressCore("gw-2", "core-2");
+        CellRoute route1 = new CellRoute("topic-A", gateway1, Optional.empty(), CellRoute.TOPIC);
+        CellRoute route2 = new CellRoute("topic-A", gateway2, Optional.empty(), CellRoute.TOPIC);
+
+        routingTable.add(route1);
+        routingTable.add(route2);
+        assertEquals(2, routingTable.findTopicRoutes(new CellAddressCore("topic-A")).size());
+
+        routingTable.delete(gateway1);
+        assertEquals(1, routingTable.findTopicRoutes(new CellAddressCore("topic-A")).size());
+
+        routingTable.delete(route2);
+        assertTrue(routingTable.findTopicRoutes(new CellAddressCore("topic-A")).isEmpty());
+    }
+
+    @Test
+    public void testFindAfterDeleteGateway() {
+
+        CellAddressCore gateway1 = new CellAddressCore("gw-1", "core-1");
+        CellAddressCore gateway2 = new CellAddressCore("gw-2", "core-2");
+        routingTable.add(new CellRoute("cell-A", gateway1, Optional.empty(), CellRoute.QUEUE));
+        routingTable.add(new CellRoute("cell-A", gateway2, Optional.empty(), CellRoute.QUEUE));
+
+        routingTable.delete(gateway1);
+
+        for (int i = 0; i < 10; i++) {
+            CellRoute route = routingTable.find(new CellAddressCore("cell-A"), Optional.empty(),
+                  true);
+            assertEquals(gateway2, route.getTarget());
+        }
+    }
+
+    @Test
+    public void testFindLocalQueueRoute() {
+
+        CellAddressCore remote = new CellAddressCore("*", "core");
+        CellAddressCore local = new CellAddressCore("cell-A", "local-domain");
+        routingTable.add(new CellRoute("cell-A", remote, Optional.empty(), CellRoute.QUEUE));
+
+        assertNull(routingTable.find(new CellAddressCore("cell-A"), Optional.empty(), false));
+
+        routingTable.add(new CellRoute("cell-A", local, Optional.empty(), CellRoute.QUEUE));
+
+        for (int i = 0; i < 10; i++) {
+            CellRoute route = routingTable.find(new CellAddressCore("cell-A"), Optional.empty(),
+                  false);
+            assertEquals(local, route.getTarget());
+        }
+    }
 }
@@ -0,0 +1,123 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dmg.cells.nucleus;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.dcache.util.BoundedCachedExecutor;
+import org.dcache.util.BoundedExecutor;
+import org.dcache.util.VirtualThreads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the message throughput of a cell using platform threads with one using virtual
+ * threads when message processing blocks, e.g. on a database or on a nested cell request.
+ * <p>
+ * The executors are set up the way CellNucleus sets them up, with {@code limit} being the value
+ * of {@code cell.max-message-threads}. Every message blocks for {@code blockMicros}.
+ * <p>
+ * Not run as part of the unit tests. The virtual mode requires a Java runtime that supports
+ * virtual threads. Run with
+ * <pre>
+ *     mvn -pl modules/cells test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=dmg.cells.nucleus.MessageThreadsBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageThreadsBenchmark {
+
+    private static final int MESSAGES = 10_000;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"45", "1000"})
+    public int limit;
+
+    @Param({"1000"})
+    public long blockMicros;
+
+    private BoundedExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (threads) {
+            case "platform":
+                executor = new BoundedCachedExecutor(Executors.defaultThreadFactory(), limit);
+                break;
+            case "virtual":
+                executor = new BoundedExecutor(VirtualThreads.newThreadPerTaskExecutor(
+                      VirtualThreads.newThreadFactory("benchmark-virtual-")), limit);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown thread mode: " + threads);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void deliver() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            executor.execute(() -> {
+                try {
+                    TimeUnit.MICROSECONDS.sleep(blockMicros);
+                } catch (InterruptedException ignored) {
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+              .include(MessageThreadsBenchmark.class.getSimpleName())
+              .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,159 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dmg.cells.nucleus;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.nustaq.serialization.FSTConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the FST message encoding and tunnel write path against the previous implementation,
+ * which serialized into a temporary array, copied it into a ByteArrayOutputStream to prepend the
+ * header and copied it once more into a buffered output stream.
+ * <p>
+ * Not run as part of the unit tests. Run with
+ * <pre>
+ *     mvn -pl modules/cells test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=dmg.cells.nucleus.MsgSerializerFstBenchmark
+ * </pre>
+ * The allocation rate is reported by the GC profiler ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MsgSerializerFstBenchmark {
+
+    private static final FSTConfiguration LEGACY_CONF = FSTConfiguration.createDefaultConfiguration();
+
+    static {
+        LEGACY_CONF.setPreferSpeed(true);
+    }
+
+    private static final byte[] HEADER = new byte[]{0x05, 0x4d, 0x00, 0x01};
+
+    @Param({"4", "64", "1024"})
+    public int entries;
+
+    private Payload payload;
+    private CellMessage encoded;
+    private DataOutputStream legacyOut;
+    private DataOutputStream envelopeOut;
+    private NullOutputStream sink;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = new Payload(entries);
+        encoded = new CellMessage(new CellPath("PnfsManager", "dCacheDomain"), payload)
+              .encodeWith(SerializationHandler.Serializer.FST);
+        sink = new NullOutputStream();
+        legacyOut = new DataOutputStream(new BufferedOutputStream(sink));
+        envelopeOut = new DataOutputStream(sink);
+    }
+
+    @Benchmark
+    public byte[] encodeLegacy() {
+        byte[] serialized = LEGACY_CONF.asByteArray(payload);
+        ByteArrayOutputStream array = new ByteArrayOutputStream(256);
+        array.write(HEADER, 0, HEADER.length);
+        array.write(serialized, 0, serialized.length);
+        return array.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return MsgSerializerFst.encode(payload);
+    }
+
+    @Benchmark
+    public void writeLegacy() throws IOException {
+        encoded.writeTo(legacyOut);
+        legacyOut.flush();
+    }
+
+    @Benchmark
+    public void writeEnvelopeAndPayload(Blackhole blackhole) throws IOException {
+        encoded.writeEnvelopeTo(envelopeOut);
+        ByteBuffer buffer = encoded.getEncodedPayload();
+        blackhole.consume(buffer.remaining());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+              .include(MsgSerializerFstBenchmark.class.getSimpleName())
+              .addProfiler("gc")
+              .build();
+        new Runner(options).run();
+    }
+
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private static class Payload implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Long> sizes = new HashMap<>();
+
+        private Payload(int entries) {
+            for (int i = 0; i < entries; i++) {
+                String name = "0000" + Integer.toHexString(i) + "A1B2C3D4E5F60718293A4B5C";
+                names.add(name);
+                sizes.put(name, (long) i * 4096);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.dcache.chimera.store.InodeStorageInformation;
+import org.dcache.util.Checksum;
+
+/**
+ * Additional {@link InodeAttribute}s of several inodes. The requested attributes are fetched
+ * with a single query for all inodes, combining several attribute classes into one statement.
+ */
+class BulkAttributes {
+
+    private final Map<Long, List<StorageLocatable>> _locations;
+    private final Map<Long, List<Checksum>> _checksums;
+    private final Map<Long, InodeStorageInformation> _storageInfo;
+
+    BulkAttributes(FsSqlDriver driver, Collection<FsInode> inodes,
+          Set<InodeAttribute> attributes) {
+        boolean isEmpty = inodes.isEmpty();
+        if (attributes.size() > 1 && !isEmpty) {
+            _locations = attributes.contains(InodeAttribute.LOCATIONS) ? new HashMap<>() : null;
+            _checksums = attributes.contains(InodeAttribute.CHECKSUMS) ? new HashMap<>() : null;
+            _storageInfo =
+                  attributes.contains(InodeAttribute.STORAGE_INFO) ? new HashMap<>() : null;
+            driver.getInodeAttributes(inodes, attributes, _locations, _checksums, _storageInfo);
+        } else {
+            List<Long> numbers = inodes.stream().map(FsInode::ino).collect(toList());
+            _locations = attributes.contains(InodeAttribute.LOCATIONS) && !isEmpty
+                  ? driver.getInodeLocations(numbers) : null;
+            _checksums = attributes.contains(InodeAttribute.CHECKSUMS) && !isEmpty
+                  ? driver.getInodeChecksums(numbers) : null;
+            _storageInfo = attributes.contains(InodeAttribute.STORAGE_INFO) && !isEmpty
+                  ? driver.getStorageInfo(inodes) : null;
+        }
+    }
+
+    /**
+     * Returns the online locations of an inode, or null if locations were not requested.
+     */
+    List<StorageLocatable> locationsOf(FsInode inode) {
+        return _locations == null ? null : _locations.getOrDefault(inode.ino(), emptyList());
+    }
+
+    /**
+     * Returns the checksums of an inode, or null if checksums were not requested.
+     */
+    List<Checksum> checksumsOf(FsInode inode) {
+        return _checksums == null ? null : _checksums.getOrDefault(inode.ino(), emptyList());
+    }
+
+    /**
+     * Returns the storage information of an inode, or null if storage information was not
+     * requested or the inode has none.
+     */
+    InodeStorageInformation storageInfoOf(FsInode inode) {
+        return _storageInfo == null ? null : _storageInfo.get(inode.ino());
+    }
+}
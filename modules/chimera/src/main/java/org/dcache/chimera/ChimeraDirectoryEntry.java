@@ -16,33 +16,32 @@
  */
 package org.dcache.chimera;
 
+import java.util.List;
+import javax.annotation.Nullable;
 import org.dcache.chimera.posix.Stat;
+import org.dcache.chimera.store.InodeStorageInformation;
+import org.dcache.util.Checksum;
 
-public class ChimeraDirectoryEntry {
+public class ChimeraDirectoryEntry extends ChimeraInodeEntry {
 
     private final String _name;
-    private final Stat _stat;
-    private final FsInode _inode;
 
     public ChimeraDirectoryEntry(String name, FsInode inode) throws ChimeraFsException {
         this(name, inode, inode.statCache());
     }
 
     public ChimeraDirectoryEntry(String name, FsInode inode, Stat stat) {
-        _inode = inode;
-        _name = name;
-        _stat = stat;
+        this(name, inode, stat, null, null, null);
     }
 
-    public FsInode getInode() {
-        return _inode;
+    public ChimeraDirectoryEntry(String name, FsInode inode, Stat stat,
+          @Nullable List<StorageLocatable> locations, @Nullable List<Checksum> checksums,
+          @Nullable InodeStorageInformation storageInfo) {
+        super(inode, stat, locations, checksums, storageInfo);
+        _name = name;
     }
 
     public String getName() {
         return _name;
     }
-
-    public Stat getStat() {
-        return _stat;
-    }
 }
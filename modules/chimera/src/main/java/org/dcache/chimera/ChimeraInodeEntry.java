@@ -0,0 +1,80 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import org.dcache.chimera.posix.Stat;
+import org.dcache.chimera.store.InodeStorageInformation;
+import org.dcache.util.Checksum;
+
+/**
+ * An inode together with its stat information and any additional {@link InodeAttribute}s that
+ * were fetched with it.
+ */
+public class ChimeraInodeEntry {
+
+    private final FsInode _inode;
+    private final Stat _stat;
+    private final List<StorageLocatable> _locations;
+    private final List<Checksum> _checksums;
+    private final InodeStorageInformation _storageInfo;
+
+    public ChimeraInodeEntry(FsInode inode, Stat stat,
+          @Nullable List<StorageLocatable> locations, @Nullable List<Checksum> checksums,
+          @Nullable InodeStorageInformation storageInfo) {
+        _inode = inode;
+        _stat = stat;
+        _locations = locations;
+        _checksums = checksums;
+        _storageInfo = storageInfo;
+    }
+
+    public FsInode getInode() {
+        return _inode;
+    }
+
+    public Stat getStat() {
+        return _stat;
+    }
+
+    /**
+     * Returns the online locations of the inode, or null if they were not fetched with the
+     * inode.
+     */
+    @Nullable
+    public List<StorageLocatable> getLocations() {
+        return _locations;
+    }
+
+    /**
+     * Returns the checksums of the inode, or null if they were not fetched with the inode.
+     */
+    @Nullable
+    public List<Checksum> getChecksums() {
+        return _checksums;
+    }
+
+    /**
+     * Returns the storage information of the inode, or null if it was not fetched with the inode
+     * or the inode has no storage information.
+     */
+    @Nullable
+    public InodeStorageInformation getStorageInfo() {
+        return _storageInfo;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+/**
+ * Describes a regular file to be created by {@link FileSystemProvider#createFiles}.
+ */
+public class CreateFileRequest {
+
+    private final FsInode parent;
+    private final String name;
+    private final String id;
+    private final int owner;
+    private final int group;
+    private final int mode;
+
+    public CreateFileRequest(FsInode parent, String name, int owner, int group, int mode) {
+        this(parent, name, FsInode.generateNewID(), owner, group, mode);
+    }
+
+    public CreateFileRequest(FsInode parent, String name, String id, int owner, int group,
+          int mode) {
+        this.parent = parent;
+        this.name = name;
+        this.id = id;
+        this.owner = owner;
+        this.group = group;
+        this.mode = mode;
+    }
+
+    public FsInode getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getOwner() {
+        return owner;
+    }
+
+    public int getGroup() {
+        return group;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns a copy of this request with the group replaced.
+     */
+    CreateFileRequest withGroup(int group) {
+        return new CreateFileRequest(parent, name, id, owner, group, mode);
+    }
+}
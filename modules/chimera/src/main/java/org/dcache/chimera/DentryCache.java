@@ -0,0 +1,165 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.dcache.chimera.posix.Stat;
+
+/**
+ * Cache of directory entries that refer to directories, mapping the inumber of the parent
+ * directory and the entry name to the inumber of the child directory.
+ * <p>
+ * The cache allows path resolution to skip the lookup of any directory already seen. Only
+ * directories are cached: files are far more numerous and the last element of a path is always
+ * resolved against the database. Special names such as {@code .}, {@code ..} and pnfs commands
+ * are never cached.
+ * <p>
+ * Entries are invalidated when the directory is renamed or removed through the owning file
+ * system. Changes made by other processes sharing the database are not observed by the cache;
+ * callers must check cached entries against the database before relying on them.
+ */
+class DentryCache {
+
+    private final Cache<Key, Long> _cache;
+
+    /**
+     * Keys of the cached entries referring to a directory, indexed by the inumber of that
+     * directory.
+     */
+    private final Map<Long, Set<Key>> _byChild = new ConcurrentHashMap<>();
+
+    DentryCache(long maximumSize, long lifetime, TimeUnit unit) {
+        _cache = CacheBuilder.newBuilder()
+              .maximumSize(maximumSize)
+              .expireAfterWrite(lifetime, unit)
+              .removalListener(this::removed)
+              .recordStats()
+              .build();
+    }
+
+    private void removed(RemovalNotification<Key, Long> notification) {
+        Key key = notification.getKey();
+        Long child = notification.getValue();
+        if (key != null && child != null && !child.equals(_cache.getIfPresent(key))) {
+            _byChild.computeIfPresent(child, (ino, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    /**
+     * Returns the inumber of the child directory {@code name} in {@code parent}, or null if not
+     * cached.
+     */
+    @Nullable
+    Long get(long parent, String name) {
+        return _cache.getIfPresent(new Key(parent, name));
+    }
+
+    /**
+     * Adds {@code child} as the entry {@code name} in {@code parent} if it is a directory with
+     * known stat information.
+     *
+     * @return true if the entry was added
+     */
+    boolean putIfDirectory(FsInode parent, String name, FsInode child) {
+        if (!isCacheable(name) || child.type() != FsInodeType.INODE || child.getLevel() != 0) {
+            return false;
+        }
+        Stat stat = child.getStatCache();
+        if (stat == null || UnixPermission.getType(stat.getMode()) != UnixPermission.S_IFDIR) {
+            return false;
+        }
+        Key key = new Key(parent.ino(), name);
+        _cache.put(key, child.ino());
+        _byChild.compute(child.ino(), (ino, keys) -> {
+            Set<Key> set = (keys == null) ? ConcurrentHashMap.newKeySet() : keys;
+            set.add(key);
+            return set;
+        });
+        return true;
+    }
+
+    void invalidate(long parent, String name) {
+        _cache.invalidate(new Key(parent, name));
+    }
+
+    /**
+     * Removes all entries referring to the given directory. Used when the name of a removed
+     * directory is unknown.
+     */
+    void invalidateChild(long child) {
+        Set<Key> keys = _byChild.remove(child);
+        if (keys != null) {
+            _cache.invalidateAll(keys);
+        }
+    }
+
+    void invalidateAll() {
+        _cache.invalidateAll();
+    }
+
+    long size() {
+        return _cache.size();
+    }
+
+    CacheStats stats() {
+        return _cache.stats();
+    }
+
+    static boolean isCacheable(String name) {
+        return !name.equals(".") && !name.equals("..") && !name.startsWith(".(");
+    }
+
+    private static class Key {
+
+        private final long _parent;
+        private final String _name;
+
+        Key(long parent, String name) {
+            _parent = parent;
+            _name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return _parent == that._parent && _name.equals(that._name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_parent, _name);
+        }
+    }
+}
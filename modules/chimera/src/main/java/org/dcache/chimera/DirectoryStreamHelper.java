@@ -19,6 +19,7 @@ package org.dcache.chimera;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +47,27 @@ public class DirectoryStreamHelper {
         return listStream.stream().onClose(uncheckedRunnable(listStream));
     }
 
+    /**
+     * Returns a {@link Stream} of {@link ChimeraDirectoryEntry} in the directory {@code inode},
+     * ordered by name and without the entries "." and "..".
+     * <p>
+     * Entries are fetched in chunks of {@code chunkSize}, together with the requested
+     * {@code attributes}. No db Connection is kept between chunks.
+     *
+     * @param inode      of a directory to be listed
+     * @param chunkSize  number of entries fetched per query
+     * @param attributes additional attributes to fetch with the entries
+     * @return a stream of {@link ChimeraDirectoryEntry}
+     * @throws IOException
+     * @see FileSystemProvider#readdirPlus
+     */
+    public static Stream<ChimeraDirectoryEntry> streamOf(FsInode inode, int chunkSize,
+          Set<InodeAttribute> attributes) throws IOException, ChimeraFsException {
+        DirectoryStreamB<ChimeraDirectoryEntry> listStream =
+              inode.getFs().readdirPlus(inode, null, chunkSize, attributes);
+        return listStream.stream().onClose(uncheckedRunnable(listStream));
+    }
+
     private static Runnable uncheckedRunnable(Closeable closeable) {
         return () -> {
             try {
@@ -147,6 +147,20 @@ public interface FileSystemProvider extends Closeable {
           int type)
           throws ChimeraFsException;
 
+    /**
+     * Creates many regular files in a single transaction. The files may be spread over any
+     * number of directories. Compared to creating the files one by one, the number of database
+     * round trips is independent of the number of files.
+     * <p>
+     * The creation is atomic: if any of the files cannot be created, none is.
+     *
+     * @param requests the files to create
+     * @return the new inodes in the order of the requests
+     * @throws FileExistsChimeraFsException if any of the names already exists
+     * @throws ChimeraFsException
+     */
+    List<FsInode> createFiles(List<CreateFileRequest> requests) throws ChimeraFsException;
+
     /**
      * Returns {@link DirectoryStreamB} of ChimeraDirectoryEntry in the directory.
      * <p>
@@ -161,6 +175,26 @@ public interface FileSystemProvider extends Closeable {
           throws ChimeraFsException;
 
 
+    /**
+     * Returns {@link DirectoryStreamB} of ChimeraDirectoryEntry in the directory, ordered by
+     * name and with the entries "." and ".." omitted.
+     * <p>
+     * Entries are fetched in chunks of {@code chunkSize}, each with its own short query, so no
+     * system resources are held between chunks. Besides the stat information, which is always
+     * included, the requested {@code attributes} are fetched for a whole chunk at once. The name
+     * of any entry may be passed as {@code cookie} to resume the listing after that entry.
+     *
+     * @param dir        inode of the directory to list
+     * @param cookie     name of the entry after which to resume the listing, or null to start
+     *                   with the first entry
+     * @param chunkSize  number of entries fetched per query, at most 1000
+     * @param attributes additional attributes to fetch with the entries
+     * @return stream of directory entries
+     */
+    DirectoryStreamB<ChimeraDirectoryEntry> readdirPlus(FsInode dir, String cookie,
+          int chunkSize, Set<InodeAttribute> attributes)
+          throws ChimeraFsException;
+
     /**
      * Returns {@link DirectoryStreamB} of ChimeraDirectoryEntry in the directory.
      * <p>
@@ -331,6 +365,20 @@ public interface FileSystemProvider extends Closeable {
     boolean rename(FsInode inode, FsInode srcDir, String source,
           FsInode destDir, String dest) throws ChimeraFsException;
 
+    /**
+     * Returns the inodes with the given PNFS ids together with their stat information and the
+     * requested additional {@code attributes}.
+     * <p>
+     * Rather than looking up every inode on its own, the inodes are fetched in batches of up to
+     * 1000. Every batch takes one query for the inodes and one for each requested attribute.
+     *
+     * @param ids        PNFS ids of the inodes
+     * @param attributes additional attributes to fetch with the inodes
+     * @return map from PNFS id to inode; ids of inodes that do not exist are not included
+     */
+    Map<String, ChimeraInodeEntry> getInodes(Collection<String> ids,
+          Set<InodeAttribute> attributes) throws ChimeraFsException;
+
     List<StorageLocatable> getInodeLocations(FsInode inode,
           int type) throws ChimeraFsException;
 
@@ -417,7 +465,8 @@ public interface FileSystemProvider extends Closeable {
     String getInfo();
 
     /**
-     * Update file system statistics.
+     * Verify the file system statistics against the name space and correct any drift. The
+     * statistics are maintained incrementally; this is an expensive consistency check.
      */
     void updateFsStat() throws ChimeraFsException;
 
@@ -540,6 +589,16 @@ public interface FileSystemProvider extends Closeable {
      */
     byte[] getXattr(FsInode inode, String attr) throws ChimeraFsException;
 
+    /**
+     * Get all Extended Attributes of a inode. Cheaper than fetching the attributes listed by
+     * {@link #listXattrs} one by one.
+     *
+     * @param inode file system object.
+     * @return extended attribute names and values.
+     * @throws ChimeraFsException
+     */
+    Map<String, byte[]> getAllXattrs(FsInode inode) throws ChimeraFsException;
+
     /**
      * Set or change extended attribute of a given file system object.
      *
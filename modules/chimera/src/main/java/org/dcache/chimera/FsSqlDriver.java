@@ -22,10 +22,12 @@ import static org.dcache.chimera.FileSystemProvider.StatCacheOption.STAT;
 
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Ints;
 import diskCacheV111.util.AccessLatency;
 import diskCacheV111.util.RetentionPolicy;
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,6 +43,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -50,6 +53,8 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import org.dcache.acl.ACE;
@@ -61,6 +66,7 @@ import org.dcache.chimera.FileSystemProvider.StatCacheOption;
 import org.dcache.chimera.posix.Stat;
 import org.dcache.chimera.spi.DBDriverProvider;
 import org.dcache.chimera.store.InodeStorageInformation;
+import org.dcache.commons.stats.RequestExecutionTimeGauges;
 import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
 import org.slf4j.Logger;
@@ -76,6 +82,8 @@ import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * SQL driver
@@ -112,8 +120,24 @@ public class FsSqlDriver {
     private static final ServiceLoader<DBDriverProvider> ALL_PROVIDERS
           = ServiceLoader.load(DBDriverProvider.class);
 
+    /**
+     * Maximum number of elements in an IN list. Some databases do not support longer lists.
+     */
+    static final int MAX_IN_LIST_SIZE = 1000;
+
+    /**
+     * Number of rows in t_fstat_counters.
+     */
+    static final int FSSTAT_SHARDS = 16;
+
+    private static final String UPDATE_USAGE = "UPDATE t_fstat_counters SET " +
+          "iusedfiles=iusedfiles+?, iusedspace=iusedspace+? WHERE ishard=?";
+
     final JdbcTemplate _jdbc;
 
+    private final RequestExecutionTimeGauges<String> _createFilesGauges =
+          new RequestExecutionTimeGauges<>("ChimeraCreateFiles");
+
     private final long _root;
 
 
@@ -144,13 +168,88 @@ public class FsSqlDriver {
     }
 
     /**
-     * Update file system cache table.
+     * Adds the given deltas to the file system usage counters. Must be called in the same
+     * transaction as the change being accounted for.
+     * <p>
+     * The counters are spread over {@value #FSSTAT_SHARDS} rows. All updates of a thread go to
+     * the same row, so a transaction never locks more than one of them. Within a transaction the
+     * deltas are accumulated and written just before commit, after all other rows of the
+     * transaction have been locked. Otherwise transactions locking a parent directory and the
+     * counter row in opposite orders could deadlock.
+     */
+    void updateUsage(long files, long space) {
+        if (files == 0 && space == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyUsage(files, space);
+            return;
+        }
+        UsageUpdate update = TransactionSynchronizationManager.getSynchronizations().stream()
+              .filter(s -> s instanceof UsageUpdate && ((UsageUpdate) s).isFor(this))
+              .map(UsageUpdate.class::cast)
+              .findFirst()
+              .orElseGet(() -> {
+                  UsageUpdate u = new UsageUpdate();
+                  TransactionSynchronizationManager.registerSynchronization(u);
+                  return u;
+              });
+        update.add(files, space);
+    }
+
+    private void applyUsage(long files, long space) {
+        if (files != 0 || space != 0) {
+            _jdbc.update(UPDATE_USAGE, files, space,
+                  (int) (Thread.currentThread().getId() % FSSTAT_SHARDS));
+        }
+    }
+
+    /**
+     * Usage deltas of a transaction, written to the counters before the transaction commits.
+     */
+    private class UsageUpdate implements TransactionSynchronization {
+
+        private long _files;
+        private long _space;
+
+        boolean isFor(FsSqlDriver driver) {
+            return driver == FsSqlDriver.this;
+        }
+
+        void add(long files, long space) {
+            _files += files;
+            _space += space;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            applyUsage(_files, _space);
+        }
+    }
+
+    /**
+     * Verifies the file system usage counters against the inodes and corrects any drift. This
+     * scans t_inodes and is thus expensive on large name spaces.
      */
     void updateFsStat() {
         try {
-            _jdbc.update("UPDATE t_fstat SET " +
-                  "iusedFiles = (SELECT count(*) AS usedFiles FROM t_inodes WHERE itype=32768), " +
-                  "iusedSpace =  (SELECT SUM(isize) AS usedSpace FROM t_inodes WHERE itype=32768)");
+            /* Both aggregates are computed by a single statement and thus from the same
+             * snapshot. The drift is applied as a delta, which preserves any updates made
+             * concurrently.
+             */
+            BigDecimal[] drift = _jdbc.queryForObject(
+                  "SELECT f.files - c.files AS files, f.space - c.space AS space FROM " +
+                        "(SELECT count(*) AS files, COALESCE(SUM(isize), 0) AS space " +
+                        "FROM t_inodes WHERE itype=32768) f, " +
+                        "(SELECT COALESCE(SUM(iusedfiles), 0) AS files, " +
+                        "COALESCE(SUM(iusedspace), 0) AS space FROM t_fstat_counters) c",
+                  (rs, rowNum) -> new BigDecimal[]{
+                        rs.getBigDecimal("files"), rs.getBigDecimal("space")});
+            if (drift[0].signum() != 0 || drift[1].signum() != 0) {
+                LOGGER.warn("File system usage counters were off by {} files and {} bytes.",
+                      drift[0], drift[1]);
+                _jdbc.update(UPDATE_USAGE, drift[0], drift[1], 0);
+            }
         } catch (DataAccessException e) {
             Throwable cause = Throwables.getRootCause(e);
             if (cause instanceof SocketException) {
@@ -166,11 +265,12 @@ public class FsSqlDriver {
      */
     FsStat getFsStat() {
         return _jdbc.queryForObject(
-              "SELECT iusedfiles AS usedFiles, iusedspace AS usedSpace from t_fstat",
+              "SELECT SUM(iusedfiles) AS usedFiles, SUM(iusedspace) AS usedSpace " +
+                    "FROM t_fstat_counters",
               (rs, rowNum) -> {
-                  long usedFiles = rs.getBigDecimal("usedFiles")
-                        .min(BigDecimal.valueOf(Long.MAX_VALUE))
-                        .longValue();
+                  BigDecimal usedFilesB = rs.getBigDecimal("usedFiles");
+                  long usedFiles = usedFilesB == null ? 0L
+                        : usedFilesB.min(BigDecimal.valueOf(Long.MAX_VALUE)).longValue();
                   BigDecimal usedSpaceB = rs.getBigDecimal("usedSpace");
                   long usedSpace = usedSpaceB == null ? 0L
                         : usedSpaceB.min(BigDecimal.valueOf(Long.MAX_VALUE)).longValue();
@@ -197,7 +297,8 @@ public class FsSqlDriver {
 
     /**
      * Creates a new entry with given inode is in parent directory. Parent reference count and
-     * modification time is updated.
+     * modification time is updated. Regular files are added to the file system usage counters
+     * here rather than by the dialect specific inode creation.
      *
      * @param parent
      * @param id
@@ -210,7 +311,137 @@ public class FsSqlDriver {
      */
     FsInode createFileWithId(FsInode parent, String id, String name, int owner, int group, int mode,
           int type) {
-        return createInodeInParent(parent, name, id, owner, group, mode, type, 1, 0);
+        FsInode inode = createInodeInParent(parent, name, id, owner, group, mode, type, 1, 0);
+        if (type == UnixPermission.S_IFREG) {
+            updateUsage(1, 0);
+        }
+        return inode;
+    }
+
+    /**
+     * Creates regular files in bulk. Every stage of the creation is a single JDBC batch or
+     * query covering all files: the inodes are inserted, read back to learn their inumbers,
+     * linked into their parents, the link counts of the parents are updated once per parent,
+     * and inheritable ACLs are copied once per parent. The execution time of each stage is
+     * recorded in {@link #getCreateFilesGauges()}.
+     * <p>
+     * Must be called within a transaction, as a failure at any stage leaves the files
+     * partially created.
+     *
+     * @param requests the files to create; group ownership must already be resolved
+     * @return the new inodes in the order of the requests
+     */
+    List<FsInode> createFiles(FileSystemProvider fs, List<CreateFileRequest> requests) {
+        long start = System.nanoTime();
+        long stageStart = start;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        _jdbc.batchUpdate("INSERT INTO t_inodes (ipnfsid,itype,imode,inlink,iuid,igid,isize,iio,"
+                    + "ictime,iatime,imtime,icrtime,igeneration) VALUES(?,?,?,1,?,?,0,?,?,?,?,?,0)",
+              requests, requests.size(),
+              (ps, request) -> {
+                  ps.setString(1, request.getId());
+                  ps.setInt(2, UnixPermission.S_IFREG);
+                  ps.setInt(3, request.getMode() & UnixPermission.S_PERMS);
+                  ps.setInt(4, request.getOwner());
+                  ps.setInt(5, request.getGroup());
+                  ps.setInt(6, FileState.CREATED.getValue());
+                  ps.setTimestamp(7, now);
+                  ps.setTimestamp(8, now);
+                  ps.setTimestamp(9, now);
+                  ps.setTimestamp(10, now);
+              });
+        updateUsage(requests.size(), 0);
+        stageStart = recordCreateStage("inodes", stageStart);
+
+        Map<String, FsInode> byId = new HashMap<>();
+        for (List<CreateFileRequest> chunk : Lists.partition(requests, MAX_IN_LIST_SIZE)) {
+            byId.putAll(getInodesById(fs,
+                  chunk.stream().map(CreateFileRequest::getId).collect(toList())));
+        }
+        List<FsInode> inodes = requests.stream()
+              .map(request -> byId.get(request.getId()))
+              .collect(toList());
+        stageStart = recordCreateStage("inumbers", stageStart);
+
+        _jdbc.batchUpdate("INSERT INTO t_dirs (iparent,ichild,iname) VALUES(?,?,?)",
+              requests, requests.size(),
+              new ParameterizedPreparedStatementSetter<CreateFileRequest>() {
+                  int index = 0;
+
+                  @Override
+                  public void setValues(PreparedStatement ps, CreateFileRequest request)
+                        throws SQLException {
+                      ps.setLong(1, request.getParent().ino());
+                      ps.setLong(2, inodes.get(index++).ino());
+                      ps.setString(3, request.getName());
+                  }
+              });
+        stageStart = recordCreateStage("entries", stageStart);
+
+        /* Parents are updated in inumber order, so concurrent bulk creates lock the parent
+         * rows in the same order.
+         */
+        Map<FsInode, Integer> links = requests.stream()
+              .collect(Collectors.toMap(CreateFileRequest::getParent, r -> 1, Integer::sum,
+                    () -> new TreeMap<>(Comparator.comparingLong(FsInode::ino))));
+        _jdbc.batchUpdate(
+              "UPDATE t_inodes SET inlink=inlink+?,imtime=?,ictime=?,igeneration=igeneration+1 WHERE inumber=?",
+              links.entrySet(), links.size(),
+              (ps, link) -> {
+                  ps.setInt(1, link.getValue());
+                  ps.setTimestamp(2, now);
+                  ps.setTimestamp(3, now);
+                  ps.setLong(4, link.getKey().ino());
+              });
+        stageStart = recordCreateStage("parents", stageStart);
+
+        int msk = AceFlags.INHERIT_ONLY_ACE.getValue() | AceFlags.DIRECTORY_INHERIT_ACE.getValue()
+              | AceFlags.FILE_INHERIT_ACE.getValue();
+        Map<FsInode, List<ACE>> inherited = new HashMap<>();
+        for (FsInode parent : links.keySet()) {
+            List<ACE> acl = readAcl(parent).stream()
+                  .filter(ace -> (ace.getFlags() & AceFlags.FILE_INHERIT_ACE.getValue()) > 0)
+                  .map(ace -> new ACE(ace.getType(), (ace.getFlags() | msk) ^ msk,
+                        ace.getAccessMsk(), ace.getWho(), ace.getWhoID()))
+                  .collect(toList());
+            if (!acl.isEmpty()) {
+                inherited.put(parent, acl);
+            }
+        }
+        if (!inherited.isEmpty()) {
+            List<Object[]> aces = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                List<ACE> acl = inherited.getOrDefault(requests.get(i).getParent(),
+                      Collections.emptyList());
+                for (int order = 0; order < acl.size(); order++) {
+                    ACE ace = acl.get(order);
+                    aces.add(new Object[]{inodes.get(i).ino(), RsType.FILE.getValue(),
+                          ace.getType().getValue(), ace.getFlags(), ace.getAccessMsk(),
+                          ace.getWho().getValue(), ace.getWhoID(), order});
+                }
+            }
+            _jdbc.batchUpdate(
+                  "INSERT INTO t_acl (inumber,rs_type,type,flags,access_msk,who,who_id,ace_order) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                  aces);
+        }
+        recordCreateStage("acls", stageStart);
+        recordCreateStage("total", start);
+
+        return inodes;
+    }
+
+    private long recordCreateStage(String stage, long since) {
+        long now = System.nanoTime();
+        _createFilesGauges.update(stage, TimeUnit.NANOSECONDS.toMicros(now - since));
+        return now;
+    }
+
+    /**
+     * Returns the execution time, in microseconds, of the stages of {@link #createFiles}.
+     */
+    RequestExecutionTimeGauges<String> getCreateFilesGauges() {
+        return _createFilesGauges;
     }
 
     Long getInumber(String id) {
@@ -283,6 +514,69 @@ public class FsSqlDriver {
         };
     }
 
+    /**
+     * Returns up to {@code limit} entries of a directory ordered by name, starting with the
+     * first entry after {@code after}, or with the first entry of the directory if {@code after}
+     * is null. The entries "." and ".." are not included.
+     * <p>
+     * The directory is paginated by its primary key (parent, name), so every chunk is a short
+     * index range scan and no cursor is kept open between chunks.
+     *
+     * @param dir   inode of the directory to list
+     * @param after name of the last entry of the previous chunk or null
+     * @param limit maximum number of entries to return
+     * @return list of directory entries
+     */
+    List<ChimeraDirectoryEntry> listDirectory(FsInode dir, String after, int limit) {
+        String sql = "SELECT i.*, d.iname FROM t_dirs d JOIN t_inodes i ON i.inumber = d.ichild "
+              + (after == null ? "WHERE d.iparent=? " : "WHERE d.iparent=? AND d.iname > ? ")
+              + "ORDER BY d.iname FETCH FIRST ? ROWS ONLY";
+        return _jdbc.query(sql,
+              ps -> {
+                  int idx = 1;
+                  ps.setLong(idx++, dir.ino());
+                  if (after != null) {
+                      ps.setString(idx++, after);
+                  }
+                  ps.setInt(idx, limit);
+              },
+              (rs, rowNum) -> {
+                  Stat stat = toStat(rs);
+                  FsInode inode = new FsInode(dir.getFs(), rs.getLong("inumber"),
+                        FsInodeType.INODE, 0, stat);
+                  inode.setParent(dir);
+                  return new ChimeraDirectoryEntry(rs.getString("iname"), inode, stat);
+              });
+    }
+
+    /**
+     * Returns the inodes with the given PNFS ids in a single query. The inodes carry their stat
+     * information.
+     *
+     * @param fs  file system the inodes belong to
+     * @param ids PNFS ids
+     * @return map from PNFS id to inode; ids of inodes that do not exist are not included
+     */
+    Map<String, FsInode> getInodesById(FileSystemProvider fs, Collection<String> ids) {
+        Map<String, FsInode> inodes = new HashMap<>();
+        if (!ids.isEmpty()) {
+            _jdbc.query("SELECT * FROM t_inodes WHERE ipnfsid IN (" + placeholders(ids.size())
+                        + ")",
+                  ps -> {
+                      int idx = 1;
+                      for (String id : ids) {
+                          ps.setString(idx++, id);
+                      }
+                  },
+                  rs -> {
+                      Stat stat = toStat(rs);
+                      inodes.put(stat.getId(), new FsInode(fs, stat.getIno(), FsInodeType.INODE,
+                            0, stat));
+                  });
+        }
+        return inodes;
+    }
+
     /**
      * Removes the hard link {@code name} in {@code parent} to {@code inode}. If the last link is
      * removed the object is deleted.
@@ -535,6 +829,76 @@ public class FsSqlDriver {
         }
     }
 
+    /**
+     * The outcome of {@link #lookupBelowDirectoryEntries}.
+     */
+    static final class DentryLookup {
+
+        static final DentryLookup STALE = new DentryLookup(false, null);
+
+        /**
+         * Whether the directory entries leading to the looked up entry still exist.
+         */
+        final boolean isValid;
+
+        /**
+         * The inode of the looked up entry, or null if there is no such entry.
+         */
+        final FsInode inode;
+
+        DentryLookup(boolean isValid, FsInode inode) {
+            this.isValid = isValid;
+            this.inode = inode;
+        }
+    }
+
+    /**
+     * Looks up {@code name} in {@code dir}, which was reached through directory entries that
+     * may be stale. The {@code k}-th entry is named {@code names.get(k)}, resides in {@code
+     * parents[k]} and refers to {@code children[k]}. The entries are checked in the same query
+     * as the lookup. A symbolic link is resolved like by {@link #path2inode}.
+     *
+     * @return the result of the lookup, or {@link DentryLookup#STALE} if any of the entries no
+     * longer exists
+     */
+    DentryLookup lookupBelowDirectoryEntries(FsInode dir, long[] parents, List<String> names,
+          long[] children, String name) throws ChimeraFsException {
+        int n = names.size();
+        String sql = "SELECT c.entries, d.ichild, i.itype FROM (SELECT COUNT(*) AS entries "
+              + "FROM t_dirs WHERE "
+              + String.join(" OR ", Collections.nCopies(n, "(iparent=? AND iname=? AND ichild=?)"))
+              + ") c LEFT JOIN t_dirs d ON d.iparent=? AND d.iname=? "
+              + "LEFT JOIN t_inodes i ON i.inumber=d.ichild";
+        long[] found = _jdbc.query(sql,
+              ps -> {
+                  int idx = 1;
+                  for (int k = 0; k < n; k++) {
+                      ps.setLong(idx++, parents[k]);
+                      ps.setString(idx++, names.get(k));
+                      ps.setLong(idx++, children[k]);
+                  }
+                  ps.setLong(idx++, dir.ino());
+                  ps.setString(idx, name);
+              },
+              rs -> {
+                  if (!rs.next() || rs.getLong("entries") != n) {
+                      return null;
+                  }
+                  long child = rs.getLong("ichild");
+                  return rs.wasNull() ? new long[0] : new long[]{child, rs.getInt("itype")};
+              });
+        if (found == null) {
+            return DentryLookup.STALE;
+        }
+        if (found.length == 0) {
+            return new DentryLookup(true, null);
+        }
+        if (found[1] == UnixPermission.S_IFLNK) {
+            return new DentryLookup(true, path2inode(dir, name));
+        }
+        return new DentryLookup(true, new FsInode(dir.getFs(), found[0]));
+    }
+
     /**
      * return the path associated with inode, starting from root of the tree. in case of hard link,
      * one of the possible paths is returned
@@ -673,18 +1037,25 @@ public class FsSqlDriver {
     }
 
     boolean removeInodeIfUnlinked(FsInode inode) {
-        List<String> ids
-              = _jdbc.queryForList(
-              "SELECT ipnfsid FROM t_inodes WHERE inumber=? AND inlink=0 FOR UPDATE",
-              String.class, inode.ino());
-        if (ids.isEmpty()) {
+        List<Stat> stats
+              = _jdbc.query(
+              "SELECT ipnfsid,itype,isize FROM t_inodes WHERE inumber=? AND inlink=0 FOR UPDATE",
+              (rs, rowNum) -> {
+                  Stat stat = new Stat();
+                  stat.setId(rs.getString("ipnfsid"));
+                  stat.setMode(rs.getInt("itype"));
+                  stat.setSize(rs.getLong("isize"));
+                  return stat;
+              },
+              inode.ino());
+        if (stats.isEmpty()) {
             return false;
         }
-        if (ids.size() > 1) {
-            throw new IncorrectResultSizeDataAccessException(1, ids.size());
+        if (stats.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, stats.size());
         }
         Timestamp now = new Timestamp(System.currentTimeMillis());
-        String id = ids.get(0);
+        String id = stats.get(0).getId();
         _jdbc.update(
               "INSERT INTO t_locationinfo_trash (ipnfsid,itype,ilocation,ipriority,ictime,iatime,istate) "
                     +
@@ -703,6 +1074,9 @@ public class FsSqlDriver {
                   ps.setTimestamp(3, now);
               });
         _jdbc.update("DELETE FROM t_inodes WHERE inumber=?", inode.ino());
+        if (stats.get(0).getMode() == UnixPermission.S_IFREG) {
+            updateUsage(-1, -stats.get(0).getSize());
+        }
         return true;
     }
 
@@ -803,7 +1177,28 @@ public class FsSqlDriver {
     }
 
     boolean setInodeAttributes(FsInode inode, int level, Stat stat) {
-        return _jdbc.update(con -> generateAttributeUpdateStatement(con, inode, stat, level)) > 0;
+        long oldSize = (level == 0 && stat.isDefined(Stat.StatAttributes.SIZE))
+              ? lockFileSize(inode) : -1;
+        boolean applied =
+              _jdbc.update(con -> generateAttributeUpdateStatement(con, inode, stat, level)) > 0;
+        if (applied && oldSize >= 0) {
+            updateUsage(0, stat.getSize() - oldSize);
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the size of a regular file and locks its inode until the end of the transaction.
+     *
+     * @return the size or -1 if the inode is not a regular file
+     */
+    private long lockFileSize(FsInode inode) {
+        return _jdbc.query("SELECT isize FROM t_inodes WHERE inumber=? AND itype=? FOR UPDATE",
+              ps -> {
+                  ps.setLong(1, inode.ino());
+                  ps.setInt(2, UnixPermission.S_IFREG);
+              },
+              rs -> rs.next() ? rs.getLong("isize") : -1L);
     }
 
     /**
@@ -858,11 +1253,15 @@ public class FsSqlDriver {
             }
 
             // correct file size
+            long oldSize = lockFileSize(inode);
             _jdbc.update("UPDATE t_inodes SET isize=? WHERE inumber=?",
                   ps -> {
                       ps.setLong(1, len);
                       ps.setLong(2, inode.ino());
                   });
+            if (oldSize >= 0) {
+                updateUsage(0, len - oldSize);
+            }
         } else {
             int n = _jdbc.queryForObject(
                   "SELECT count(*) FROM t_level_" + level + " WHERE inumber=?", Integer.class,
@@ -898,20 +1297,18 @@ public class FsSqlDriver {
 
     int read(FsInode inode, int level, long beginIndex, byte[] data, int offset, int len) {
         ResultSetExtractor<Integer> extractor = rs -> {
-            try {
-                int count = 0;
-                if (rs.next()) {
-                    InputStream in = rs.getBinaryStream(1);
-                    if (in != null) {
-                        in.skip(beginIndex);
-                        int c;
-                        while (((c = in.read()) != -1) && (count < len)) {
-                            data[offset + count] = (byte) c;
-                            ++count;
-                        }
-                    }
+            if (!rs.next()) {
+                return 0;
+            }
+            try (InputStream in = rs.getBinaryStream(1)) {
+                if (in == null) {
+                    return 0;
                 }
-                return count;
+                ByteStreams.skipFully(in, beginIndex);
+                return in.readNBytes(data, offset, len);
+            } catch (EOFException e) {
+                /* beginIndex is beyond the end of the data */
+                return 0;
             } catch (IOException e) {
                 throw new LobRetrievalFailureException(e.getMessage(), e);
             }
@@ -949,6 +1346,46 @@ public class FsSqlDriver {
               });
     }
 
+    /**
+     * Returns the online locations of several inodes in a single query.
+     *
+     * @param inodes inode numbers
+     * @return map from inode number to locations ordered by priority; inodes without online
+     * locations are not included
+     */
+    Map<Long, List<StorageLocatable>> getInodeLocations(Collection<Long> inodes) {
+        Map<Long, List<StorageLocatable>> locations = new HashMap<>();
+        if (!inodes.isEmpty()) {
+            _jdbc.query("SELECT inumber,itype,ilocation,ipriority,ictime,iatime FROM t_locationinfo "
+                        + "WHERE inumber IN (" + placeholders(inodes.size()) + ") AND istate=1 "
+                        + "ORDER BY ipriority DESC",
+                  ps -> setLongs(ps, inodes),
+                  rs -> {
+                      int type = rs.getInt("itype");
+                      long ctime = rs.getTimestamp("ictime").getTime();
+                      long atime = rs.getTimestamp("iatime").getTime();
+                      int priority = rs.getInt("ipriority");
+                      String location = rs.getString("ilocation");
+                      locations.computeIfAbsent(rs.getLong("inumber"), k -> new ArrayList<>())
+                            .add(new StorageGenericLocation(type, priority, location, ctime,
+                                  atime, true));
+                  });
+        }
+        return locations;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+
+    private static void setLongs(PreparedStatement ps, Collection<Long> values)
+          throws SQLException {
+        int idx = 1;
+        for (long value : values) {
+            ps.setLong(idx++, value);
+        }
+    }
+
     /**
      * returns a list of locations for the inode. only 'online' locations is returned
      *
@@ -1505,6 +1942,34 @@ public class FsSqlDriver {
         }
     }
 
+    /**
+     * Returns the storage information of several inodes in a single query.
+     *
+     * @param inodes inodes
+     * @return map from inode number to storage information; inodes without storage information
+     * are not included
+     */
+    Map<Long, InodeStorageInformation> getStorageInfo(Collection<FsInode> inodes) {
+        Map<Long, FsInode> byNumber = new HashMap<>();
+        inodes.forEach(inode -> byNumber.put(inode.ino(), inode));
+        Map<Long, InodeStorageInformation> storageInfo = new HashMap<>();
+        if (!byNumber.isEmpty()) {
+            _jdbc.query("SELECT inumber, ihsmName, istorageGroup, istorageSubGroup "
+                        + "FROM t_storageinfo WHERE inumber IN ("
+                        + placeholders(byNumber.size()) + ")",
+                  ps -> setLongs(ps, byNumber.keySet()),
+                  rs -> {
+                      FsInode inode = byNumber.get(rs.getLong("inumber"));
+                      String hsmName = rs.getString("ihsmName");
+                      String storageGroup = rs.getString("istoragegroup");
+                      String storageSubGroup = rs.getString("istoragesubgroup");
+                      storageInfo.put(inode.ino(), new InodeStorageInformation(inode, hsmName,
+                            storageGroup, storageSubGroup));
+                  });
+        }
+        return storageInfo;
+    }
+
     /**
      * add a checksum value of <i>type</i> to an inode
      *
@@ -1527,6 +1992,103 @@ public class FsSqlDriver {
         setInodeAttributes(inode, 0, new Stat());
     }
 
+    /**
+     * Returns the checksums of several inodes in a single query.
+     *
+     * @param inodes inode numbers
+     * @return map from inode number to checksums; inodes without checksums are not included
+     */
+    Map<Long, List<Checksum>> getInodeChecksums(Collection<Long> inodes) {
+        Map<Long, List<Checksum>> checksums = new HashMap<>();
+        if (!inodes.isEmpty()) {
+            _jdbc.query("SELECT inumber, isum, itype FROM t_inodes_checksum WHERE inumber IN ("
+                        + placeholders(inodes.size()) + ")",
+                  ps -> setLongs(ps, inodes),
+                  rs -> {
+                      String checksum = rs.getString("isum");
+                      int type = rs.getInt("itype");
+                      checksums.computeIfAbsent(rs.getLong("inumber"), k -> new ArrayList<>())
+                            .add(new Checksum(ChecksumType.getChecksumType(type), checksum));
+                  });
+        }
+        return checksums;
+    }
+
+    /**
+     * Fetches several classes of attributes of several inodes with a single query.
+     * <p>
+     * The attribute classes are combined with UNION ALL. Every row is tagged with the class it
+     * belongs to and uses a common column layout, padding the columns the class does not have
+     * with NULL. The results are added to the maps of the requested classes; maps of classes
+     * that were not requested are left untouched and may be null.
+     *
+     * @param inodes      inodes
+     * @param attributes  attribute classes to fetch
+     * @param locations   map from inode number to online locations ordered by priority
+     * @param checksums   map from inode number to checksums
+     * @param storageInfo map from inode number to storage information
+     */
+    void getInodeAttributes(Collection<FsInode> inodes, Set<InodeAttribute> attributes,
+          Map<Long, List<StorageLocatable>> locations, Map<Long, List<Checksum>> checksums,
+          Map<Long, InodeStorageInformation> storageInfo) {
+        Map<Long, FsInode> byNumber = new HashMap<>();
+        inodes.forEach(inode -> byNumber.put(inode.ino(), inode));
+        if (byNumber.isEmpty() || attributes.isEmpty()) {
+            return;
+        }
+
+        String in = "inumber IN (" + placeholders(byNumber.size()) + ")";
+        List<String> selects = new ArrayList<>();
+        if (attributes.contains(InodeAttribute.LOCATIONS)) {
+            selects.add("SELECT 0 AS kind, inumber, itype, ipriority, ilocation AS s1, "
+                  + "CAST(NULL AS VARCHAR(64)) AS s2, CAST(NULL AS VARCHAR(256)) AS s3, "
+                  + "ictime, iatime FROM t_locationinfo WHERE " + in + " AND istate=1");
+        }
+        if (attributes.contains(InodeAttribute.CHECKSUMS)) {
+            selects.add("SELECT 1, inumber, itype, CAST(NULL AS INT), isum, "
+                  + "CAST(NULL AS VARCHAR(64)), CAST(NULL AS VARCHAR(256)), "
+                  + "CAST(NULL AS TIMESTAMP), CAST(NULL AS TIMESTAMP) "
+                  + "FROM t_inodes_checksum WHERE " + in);
+        }
+        if (attributes.contains(InodeAttribute.STORAGE_INFO)) {
+            selects.add("SELECT 2, inumber, CAST(NULL AS INT), CAST(NULL AS INT), ihsmName, "
+                  + "istorageGroup, istorageSubGroup, "
+                  + "CAST(NULL AS TIMESTAMP), CAST(NULL AS TIMESTAMP) "
+                  + "FROM t_storageinfo WHERE " + in);
+        }
+
+        int branches = selects.size();
+        _jdbc.query(String.join(" UNION ALL ", selects) + " ORDER BY 1, 4 DESC",
+              ps -> {
+                  int idx = 1;
+                  for (int i = 0; i < branches; i++) {
+                      for (long ino : byNumber.keySet()) {
+                          ps.setLong(idx++, ino);
+                      }
+                  }
+              },
+              rs -> {
+                  long ino = rs.getLong(2);
+                  switch (rs.getInt(1)) {
+                      case 0:
+                          locations.computeIfAbsent(ino, k -> new ArrayList<>())
+                                .add(new StorageGenericLocation(rs.getInt(3), rs.getInt(4),
+                                      rs.getString(5), rs.getTimestamp(8).getTime(),
+                                      rs.getTimestamp(9).getTime(), true));
+                          break;
+                      case 1:
+                          checksums.computeIfAbsent(ino, k -> new ArrayList<>())
+                                .add(new Checksum(ChecksumType.getChecksumType(rs.getInt(3)),
+                                      rs.getString(5)));
+                          break;
+                      case 2:
+                          storageInfo.put(ino, new InodeStorageInformation(byNumber.get(ino),
+                                rs.getString(5), rs.getString(6), rs.getString(7)));
+                          break;
+                  }
+              });
+    }
+
     /**
      * @param inode
      */
@@ -1915,6 +2477,22 @@ public class FsSqlDriver {
         }
     }
 
+    /**
+     * Get all Extended Attributes of a inode.
+     *
+     * @param inode file system object.
+     * @return extended attribute names and values.
+     */
+    Map<String, byte[]> getAllXattrs(FsInode inode) {
+        Map<String, byte[]> xattrs = new HashMap<>();
+        _jdbc.query("SELECT ikey, ivalue FROM t_xattr WHERE inumber=?",
+              rs -> {
+                  xattrs.put(rs.getString("ikey"), rs.getBytes("ivalue"));
+              },
+              inode.ino());
+        return xattrs;
+    }
+
     /**
      * Set or change extended attribute of a given file system object.
      *
@@ -26,11 +26,14 @@ import static org.dcache.chimera.FileSystemProvider.StatCacheOption.STAT;
 import static org.dcache.util.ByteUnit.EiB;
 import static org.dcache.util.SqlHelper.tryToClose;
 
+import com.google.common.base.Splitter;
 import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Iterables;
 import com.google.common.io.ByteSource;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import diskCacheV111.util.RetentionPolicy;
@@ -39,8 +42,11 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +61,7 @@ import org.dcache.acl.enums.RsType;
 import org.dcache.chimera.posix.Stat;
 import org.dcache.chimera.quota.QuotaHandler;
 import org.dcache.chimera.store.InodeStorageInformation;
+import org.dcache.commons.stats.RequestExecutionTimeGauges;
 import org.dcache.util.Checksum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -114,6 +121,8 @@ public class JdbcFs implements FileSystemProvider {
      * matter - only that it's the same value every time
      */
     private static final Integer DUMMY_KEY = 0;
+
+    private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
     /**
      * Cache value of FsStat
      */
@@ -151,6 +160,19 @@ public class JdbcFs implements FileSystemProvider {
                 .maximumSize(100000)
                 .build();
 
+    /* Directory entries of directories, used to resolve paths without querying every path
+     * element.
+     */
+    private volatile DentryCache _dentryCache = new DentryCache(100000, 60, TimeUnit.SECONDS);
+    private long _dentryCacheSize = 100000;
+    private long _dentryCacheLifetime = 60;
+    private TimeUnit _dentryCacheLifetimeUnit = TimeUnit.SECONDS;
+
+    private volatile TagCache _tagCache = new TagCache(10000, 10, TimeUnit.SECONDS);
+    private long _tagCacheSize = 10000;
+    private long _tagCacheLifetime = 10;
+    private TimeUnit _tagCacheLifetimeUnit = TimeUnit.SECONDS;
+
     private QuotaHandler _quota;
 
     /**
@@ -212,6 +234,59 @@ public class JdbcFs implements FileSystemProvider {
         _defaultRetentionPolicy = rp;
     }
 
+    /**
+     * Sets the maximum number of directory entries kept in the dentry cache. Zero disables the
+     * cache.
+     */
+    public synchronized void setDentryCacheSize(long size) {
+        checkArgument(size >= 0, "Cache size must not be negative");
+        _dentryCacheSize = size;
+        _dentryCache = new DentryCache(_dentryCacheSize, _dentryCacheLifetime,
+              _dentryCacheLifetimeUnit);
+    }
+
+    /**
+     * Sets the time after which cached directory entries expire. Cached entries are checked
+     * against the database before use, so this only bounds how long unused entries are kept.
+     */
+    public synchronized void setDentryCacheLifetime(long lifetime) {
+        checkArgument(lifetime >= 0, "Cache lifetime must not be negative");
+        _dentryCacheLifetime = lifetime;
+        _dentryCache = new DentryCache(_dentryCacheSize, _dentryCacheLifetime,
+              _dentryCacheLifetimeUnit);
+    }
+
+    public synchronized void setDentryCacheLifetimeUnit(TimeUnit unit) {
+        _dentryCacheLifetimeUnit = unit;
+        _dentryCache = new DentryCache(_dentryCacheSize, _dentryCacheLifetime,
+              _dentryCacheLifetimeUnit);
+    }
+
+    /**
+     * Sets the maximum number of directories whose tags are kept in the tag cache. Zero
+     * disables the cache.
+     */
+    public synchronized void setTagCacheSize(long size) {
+        checkArgument(size >= 0, "Cache size must not be negative");
+        _tagCacheSize = size;
+        _tagCache = new TagCache(_tagCacheSize, _tagCacheLifetime, _tagCacheLifetimeUnit);
+    }
+
+    /**
+     * Sets the time after which cached tags expire. This bounds how long tag changes made by
+     * other processes sharing the database may go unnoticed.
+     */
+    public synchronized void setTagCacheLifetime(long lifetime) {
+        checkArgument(lifetime >= 0, "Cache lifetime must not be negative");
+        _tagCacheLifetime = lifetime;
+        _tagCache = new TagCache(_tagCacheSize, _tagCacheLifetime, _tagCacheLifetimeUnit);
+    }
+
+    public synchronized void setTagCacheLifetimeUnit(TimeUnit unit) {
+        _tagCacheLifetimeUnit = unit;
+        _tagCache = new TagCache(_tagCacheSize, _tagCacheLifetime, _tagCacheLifetimeUnit);
+    }
+
     private FsInode getWormID() throws ChimeraFsException {
 
         return this.path2inode("/admin/etc/config");
@@ -498,12 +573,63 @@ public class JdbcFs implements FileSystemProvider {
         });
     }
 
+    @Override
+    public List<FsInode> createFiles(List<CreateFileRequest> requests) throws ChimeraFsException {
+        for (CreateFileRequest request : requests) {
+            if (request.getName().startsWith(".(")) {
+                throw new InvalidNameChimeraException(
+                      "Special names cannot be created in bulk: " + request.getName());
+            }
+            checkNameLength(request.getName());
+        }
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return inTransaction(status -> {
+            try {
+                Map<FsInode, Stat> parents = new HashMap<>();
+                List<CreateFileRequest> resolved = new ArrayList<>(requests.size());
+                for (CreateFileRequest request : requests) {
+                    FsInode parent = request.getParent();
+                    Stat parentStat = parents.get(parent);
+                    if (parentStat == null) {
+                        parentStat = parent.statCache();
+                        if ((parentStat.getMode() & UnixPermission.F_TYPE)
+                              != UnixPermission.S_IFDIR) {
+                            throw new NotDirChimeraException(parent);
+                        }
+                        parents.put(parent, parentStat);
+                    }
+                    int gid = (parentStat.getMode() & UnixPermission.S_ISGID) != 0
+                          ? parentStat.getGid() : request.getGroup();
+                    if (_quotaEnabled) {
+                        RetentionPolicy rp = getRetentionPolicyFromParentTag(parent);
+                        checkQuota(request.getOwner(), gid, rp);
+                    }
+                    resolved.add(request.withGroup(gid));
+                }
+                List<FsInode> inodes = _sqlDriver.createFiles(this, resolved);
+                inodes.forEach(this::fillIdCaches);
+                return inodes;
+            } catch (DuplicateKeyException e) {
+                throw new FileExistsChimeraFsException(e);
+            }
+        });
+    }
+
     @Override
     public DirectoryStreamB<ChimeraDirectoryEntry> newDirectoryStream(FsInode dir)
           throws ChimeraFsException {
         return _sqlDriver.newDirectoryStream(dir);
     }
 
+    @Override
+    public DirectoryStreamB<ChimeraDirectoryEntry> readdirPlus(FsInode dir, String cookie,
+          int chunkSize, Set<InodeAttribute> attributes) throws ChimeraFsException {
+        return new ReaddirPlusStream(_sqlDriver, dir, cookie, chunkSize, attributes);
+    }
+
     @Override
     public DirectoryStreamB<ChimeraDirectoryEntry> virtualDirectoryStream(FsInode dir,
           String labelname) throws ChimeraFsException {
@@ -527,6 +653,7 @@ public class JdbcFs implements FileSystemProvider {
             if (inode == null || !_sqlDriver.remove(parent, name, inode)) {
                 throw new FileNotFoundChimeraFsException(path);
             }
+            _dentryCache.invalidate(parent.ino(), name);
             return null;
         });
     }
@@ -537,6 +664,7 @@ public class JdbcFs implements FileSystemProvider {
             if (!_sqlDriver.remove(directory, name, inode)) {
                 throw new FileNotFoundChimeraFsException(name);
             }
+            _dentryCache.invalidate(directory.ino(), name);
             return null;
         });
     }
@@ -554,10 +682,15 @@ public class JdbcFs implements FileSystemProvider {
             if (!inode.exists()) {
                 throw new FileNotFoundChimeraFsException("No such file.");
             }
-            if (inode.isDirectory() && inode.statCache().getNlink() > 2) {
+            boolean isDirectory = inode.isDirectory();
+            if (isDirectory && inode.statCache().getNlink() > 2) {
                 throw new DirNotEmptyChimeraFsException("Directory is not empty");
             }
             _sqlDriver.remove(inode);
+            if (isDirectory) {
+                _dentryCache.invalidateChild(inode.ino());
+                _tagCache.invalidate(inode.ino());
+            }
             return null;
         });
     }
@@ -679,7 +812,7 @@ public class JdbcFs implements FileSystemProvider {
 
     @Override
     public FsInode path2inode(String path, FsInode startFrom) throws ChimeraFsException {
-        FsInode inode = _sqlDriver.path2inode(startFrom, path);
+        FsInode inode = resolve(startFrom, path);
         if (inode == null) {
             throw new FileNotFoundChimeraFsException(path);
         }
@@ -687,6 +820,85 @@ public class JdbcFs implements FileSystemProvider {
         return inode;
     }
 
+    /**
+     * Resolves a path relative to {@code startFrom}.
+     * <p>
+     * If all directories of the path are in the dentry cache, the last path element is looked
+     * up in a single query that also checks the cached entries against the database. Entries
+     * that no longer exist, because the directory was renamed or removed through another file
+     * system instance sharing the database, are dropped. Otherwise the path is resolved by the
+     * driver, which on PostgreSQL is a single query as well, and the directories found on the
+     * way are added to the cache.
+     *
+     * @return the inode or null if the path does not exist
+     */
+    private FsInode resolve(FsInode startFrom, String path) throws ChimeraFsException {
+        List<String> elements = PATH_SPLITTER.splitToList(path);
+        if (elements.isEmpty() || startFrom.type() != FsInodeType.INODE
+              || startFrom.getLevel() != 0) {
+            return _sqlDriver.path2inode(startFrom, path);
+        }
+
+        DentryCache cache = _dentryCache;
+        int last = elements.size() - 1;
+        long[] parents = new long[last];
+        long[] children = new long[last];
+        long dir = startFrom.ino();
+        int i = 0;
+        while (i < last) {
+            String name = elements.get(i);
+            Long ino = DentryCache.isCacheable(name) ? cache.get(dir, name) : null;
+            if (ino == null) {
+                break;
+            }
+            parents[i] = dir;
+            children[i] = ino;
+            dir = ino;
+            i++;
+        }
+
+        if (i > 0 && i == last) {
+            FsSqlDriver.DentryLookup lookup = _sqlDriver.lookupBelowDirectoryEntries(
+                  new FsInode(this, dir), parents, elements.subList(0, last), children,
+                  elements.get(last));
+            if (lookup.isValid) {
+                return lookup.inode;
+            }
+            for (int k = 0; k < last; k++) {
+                cache.invalidate(parents[k], elements.get(k));
+            }
+        }
+
+        List<FsInode> inodes = _sqlDriver.path2inodes(startFrom, path);
+        if (inodes.isEmpty()) {
+            return null;
+        }
+        cacheDentries(elements, inodes);
+        return inodes.get(inodes.size() - 1);
+    }
+
+    /**
+     * Adds the directories resolved by the driver to the dentry cache. The inodes are expected
+     * to start with the inode the path was resolved from. Caching stops at the first element
+     * that is not a directory, as resolving a symbolic link inserts additional inodes.
+     */
+    private void cacheDentries(List<String> elements, List<FsInode> inodes) {
+        DentryCache cache = _dentryCache;
+        for (int k = 1; k < inodes.size() && k <= elements.size(); k++) {
+            if (!cache.putIfDirectory(inodes.get(k - 1), elements.get(k - 1), inodes.get(k))) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Drops the cached directory entry {@code name} in {@code dir}. Must be called when the
+     * entry is changed by other means than this file system.
+     */
+    protected void invalidateDentry(FsInode dir, String name) {
+        _dentryCache.invalidate(dir.ino(), name);
+    }
+
     @Override
     public String inode2id(FsInode inode) throws ChimeraFsException {
         try {
@@ -745,6 +957,7 @@ public class JdbcFs implements FileSystemProvider {
         if (inodes.isEmpty()) {
             throw new FileNotFoundChimeraFsException(path);
         }
+        cacheDentries(PATH_SPLITTER.splitToList(path), inodes);
         fillIdCaches(inodes.get(inodes.size() - 1));
         return inodes;
     }
@@ -1116,36 +1329,41 @@ public class JdbcFs implements FileSystemProvider {
           String dest) throws ChimeraFsException {
         checkNameLength(dest);
 
-        return inTransaction(status -> {
-            if (!destDir.isDirectory()) {
-                throw new NotDirChimeraException(destDir);
-            }
+        try {
+            return inTransaction(status -> {
+                if (!destDir.isDirectory()) {
+                    throw new NotDirChimeraException(destDir);
+                }
 
-            FsInode destInode = _sqlDriver.inodeOf(destDir, dest, STAT);
+                FsInode destInode = _sqlDriver.inodeOf(destDir, dest, STAT);
 
-            if (destInode != null) {
-                if (destInode.equals(inode)) {
-                    // according to POSIX, we are done
-                    return false;
-                }
+                if (destInode != null) {
+                    if (destInode.equals(inode)) {
+                        // according to POSIX, we are done
+                        return false;
+                    }
 
-                /* Renaming into existing is only allowed for the same type of entry.
-                 */
-                if (inode.isDirectory() != destInode.isDirectory()) {
-                    throw new FileExistsChimeraFsException(dest);
-                }
+                    /* Renaming into existing is only allowed for the same type of entry.
+                     */
+                    if (inode.isDirectory() != destInode.isDirectory()) {
+                        throw new FileExistsChimeraFsException(dest);
+                    }
 
-                if (!_sqlDriver.remove(destDir, dest, destInode)) {
-                    // Concurrent modification - retry
-                    return rename(inode, srcDir, source, destDir, dest);
+                    if (!_sqlDriver.remove(destDir, dest, destInode)) {
+                        // Concurrent modification - retry
+                        return rename(inode, srcDir, source, destDir, dest);
+                    }
                 }
-            }
 
-            if (!_sqlDriver.rename(inode, srcDir, source, destDir, dest)) {
-                throw new FileNotFoundChimeraFsException(source);
-            }
-            return true;
-        });
+                if (!_sqlDriver.rename(inode, srcDir, source, destDir, dest)) {
+                    throw new FileNotFoundChimeraFsException(source);
+                }
+                return true;
+            });
+        } finally {
+            invalidateDentry(srcDir, source);
+            invalidateDentry(destDir, dest);
+        }
     }
 
     /////////////////////////////////////////////////////////////////////
@@ -1159,6 +1377,24 @@ public class JdbcFs implements FileSystemProvider {
         return _sqlDriver.getInodeLocations(inode, type);
     }
 
+    @Override
+    public Map<String, ChimeraInodeEntry> getInodes(Collection<String> ids,
+          Set<InodeAttribute> attributes) throws ChimeraFsException {
+        Map<String, ChimeraInodeEntry> entries = new HashMap<>();
+        for (List<String> batch : Iterables.partition(ids, FsSqlDriver.MAX_IN_LIST_SIZE)) {
+            Map<String, FsInode> inodes = _sqlDriver.getInodesById(this, batch);
+            BulkAttributes bulk = new BulkAttributes(_sqlDriver, inodes.values(), attributes);
+            inodes.forEach((id, inode) -> {
+                _inoCache.put(id, inode.ino());
+                _idCache.put(inode.ino(), id);
+                entries.put(id, new ChimeraInodeEntry(inode, inode.getStatCache(),
+                      bulk.locationsOf(inode), bulk.checksumsOf(inode),
+                      bulk.storageInfoOf(inode)));
+            });
+        }
+        return entries;
+    }
+
     @Override
     public List<StorageLocatable> getInodeLocations(FsInode inode) throws ChimeraFsException {
         return _sqlDriver.getInodeLocations(inode);
@@ -1206,7 +1442,16 @@ public class JdbcFs implements FileSystemProvider {
 
     @Override
     public Map<String, byte[]> getAllTags(FsInode inode) throws ChimeraFsException {
-        return _sqlDriver.getAllTags(inode);
+        if (!TagCache.isCacheable(inode)) {
+            return _sqlDriver.getAllTags(inode);
+        }
+        Map<String, byte[]> tags = new HashMap<>();
+        getCachedTags(inode).forEach((name, value) -> tags.put(name, value.clone()));
+        return tags;
+    }
+
+    private Map<String, byte[]> getCachedTags(FsInode dir) {
+        return _tagCache.get(dir, () -> _sqlDriver.getAllTags(dir));
     }
 
     @Override
@@ -1225,17 +1470,27 @@ public class JdbcFs implements FileSystemProvider {
                 throw new FileExistsChimeraFsException();
             }
         });
+        _tagCache.invalidate(inode.ino());
     }
 
     @Override
     public int pushTag(FsInode inode, String tagName) throws ChimeraFsException {
-        return inTransaction(status -> _sqlDriver.pushTag(inode, tagName));
+        try {
+            return inTransaction(status -> _sqlDriver.pushTag(inode, tagName));
+        } finally {
+            _tagCache.invalidateAll();
+        }
     }
 
     @Override
     public int setTag(FsInode inode, String tagName, byte[] data, int offset, int len)
           throws ChimeraFsException {
-        return inTransaction(status -> _sqlDriver.setTag(inode, tagName, data, offset, len));
+        try {
+            return inTransaction(status -> _sqlDriver.setTag(inode, tagName, data, offset, len));
+        } finally {
+            /* The tag may be inherited by other directories. */
+            _tagCache.invalidateAll();
+        }
     }
 
     @Override
@@ -1244,6 +1499,7 @@ public class JdbcFs implements FileSystemProvider {
             _sqlDriver.removeTag(dir, tagName);
             return null;
         });
+        _tagCache.invalidate(dir.ino());
     }
 
     @Override
@@ -1252,12 +1508,22 @@ public class JdbcFs implements FileSystemProvider {
             _sqlDriver.removeTag(dir);
             return null;
         });
+        _tagCache.invalidate(dir.ino());
     }
 
     @Override
     public int getTag(FsInode inode, String tagName, byte[] data, int offset, int len)
           throws ChimeraFsException {
-        return _sqlDriver.getTag(inode, tagName, data, offset, len);
+        if (!TagCache.isCacheable(inode)) {
+            return _sqlDriver.getTag(inode, tagName, data, offset, len);
+        }
+        byte[] value = getCachedTags(inode).get(tagName);
+        if (value == null) {
+            return 0;
+        }
+        int n = Math.min(len, value.length);
+        System.arraycopy(value, 0, data, offset, n);
+        return n;
     }
 
     @Override
@@ -1452,6 +1718,21 @@ public class JdbcFs implements FileSystemProvider {
             sb.append("rootID    : ").append(e.getMessage()).append('\n');
         }
         sb.append("FsId      : ").append(_fsId).append('\n');
+        DentryCache dentryCache = _dentryCache;
+        CacheStats stats = dentryCache.stats();
+        sb.append("Dentries  : ").append(dentryCache.size()).append(" cached, ")
+              .append(stats.hitCount()).append(" hits, ")
+              .append(stats.missCount()).append(" misses (")
+              .append(String.format("%.1f%%", stats.hitRate() * 100)).append(" hit rate)\n");
+        TagCache tagCache = _tagCache;
+        CacheStats tagStats = tagCache.stats();
+        sb.append("Tags      : ").append(tagCache.size()).append(" directories cached, ")
+              .append(tagStats.hitCount()).append(" queries saved, ")
+              .append(tagStats.missCount()).append(" queries\n");
+        RequestExecutionTimeGauges<String> gauges = _sqlDriver.getCreateFilesGauges();
+        if (!gauges.keySet().isEmpty()) {
+            sb.append(gauges.toString("\u00B5s")).append('\n');
+        }
         return sb.toString();
     }
 
@@ -1492,6 +1773,11 @@ public class JdbcFs implements FileSystemProvider {
         return inTransaction(status -> _sqlDriver.getXattr(inode, attr));
     }
 
+    @Override
+    public Map<String, byte[]> getAllXattrs(FsInode inode) throws ChimeraFsException {
+        return inTransaction(status -> _sqlDriver.getAllXattrs(inode));
+    }
+
     @Override
     public void setXattr(FsInode inode, String attr, byte[] value, SetXattrMode mode)
           throws ChimeraFsException {
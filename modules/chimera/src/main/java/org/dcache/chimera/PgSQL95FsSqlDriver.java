@@ -16,9 +16,7 @@
  */
 package org.dcache.chimera;
 
-import com.google.common.base.Throwables;
 import java.io.File;
-import java.net.SocketException;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
 import java.util.ArrayList;
@@ -32,7 +30,6 @@ import org.dcache.chimera.posix.Stat;
 import org.dcache.chimera.store.InodeStorageInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
 
@@ -127,7 +124,17 @@ public class PgSQL95FsSqlDriver extends FsSqlDriver {
 
     @Override
     boolean removeInodeIfUnlinked(FsInode inode) {
-        return _jdbc.update("DELETE FROM t_inodes WHERE inumber=? AND inlink = 0", inode.ino()) > 0;
+        return _jdbc.query("DELETE FROM t_inodes WHERE inumber=? AND inlink = 0 RETURNING itype, isize",
+              ps -> ps.setLong(1, inode.ino()),
+              rs -> {
+                  if (!rs.next()) {
+                      return false;
+                  }
+                  if (rs.getInt("itype") == UnixPermission.S_IFREG) {
+                      updateUsage(-1, -rs.getLong("isize"));
+                  }
+                  return true;
+              });
     }
 
     /**
@@ -413,24 +420,4 @@ public class PgSQL95FsSqlDriver extends FsSqlDriver {
             }
         }
     }
-
-    /**
-     * Update file system cache table.
-     */
-
-    @Override
-    void updateFsStat() {
-        try {
-            _jdbc.update("UPDATE t_fstat SET iusedFiles = t.usedFiles, " +
-                  "iusedSpace = t.usedSpace " +
-                  "FROM (SELECT count(*) AS usedFiles, " +
-                  "SUM(isize) AS usedSpace FROM t_inodes " +
-                  "WHERE itype=32768) as t");
-        } catch (DataAccessException e) {
-            Throwable cause = Throwables.getRootCause(e);
-            if (cause instanceof SocketException) {
-                LOGGER.warn("FS stat update interrupted {}", e.getMessage());
-            }
-        }
-    }
 }
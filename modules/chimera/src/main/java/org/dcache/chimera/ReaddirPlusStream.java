@@ -0,0 +1,109 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.AbstractIterator;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link DirectoryStreamB} that fetches the entries of a directory, joined with their stat
+ * information and optionally further attributes, in chunks ordered by name.
+ * <p>
+ * Each chunk is fetched with its own short query (keyset pagination), so unlike {@link
+ * DirectoryStreamImpl} no database connection or cursor is held while the consumer processes
+ * the entries. The attributes requested in addition to the stat information are fetched with
+ * one query per chunk and attribute rather than one query per entry.
+ * <p>
+ * The listing is resumable: the name of any returned entry may be passed as a cookie to start
+ * a new stream with the entry following it. Entries created or removed while the directory is
+ * listed may or may not be seen, but no entry that exists during the whole listing is skipped or
+ * returned twice.
+ */
+class ReaddirPlusStream implements DirectoryStreamB<ChimeraDirectoryEntry> {
+
+    private final FsSqlDriver _driver;
+    private final FsInode _dir;
+    private final String _cookie;
+    private final int _chunkSize;
+    private final Set<InodeAttribute> _attributes;
+
+    ReaddirPlusStream(FsSqlDriver driver, FsInode dir, String cookie, int chunkSize,
+          Set<InodeAttribute> attributes) {
+        if (chunkSize <= 0 || chunkSize > FsSqlDriver.MAX_IN_LIST_SIZE) {
+            throw new IllegalArgumentException("Chunk size out of range: " + chunkSize);
+        }
+        _driver = driver;
+        _dir = dir;
+        _cookie = cookie;
+        _chunkSize = chunkSize;
+        _attributes = attributes;
+    }
+
+    @Override
+    public Iterator<ChimeraDirectoryEntry> iterator() {
+        return new AbstractIterator<ChimeraDirectoryEntry>() {
+            private String last = _cookie;
+            private Iterator<ChimeraDirectoryEntry> chunk = Collections.emptyIterator();
+            private boolean isExhausted;
+
+            @Override
+            protected ChimeraDirectoryEntry computeNext() {
+                if (!chunk.hasNext()) {
+                    if (isExhausted) {
+                        return endOfData();
+                    }
+                    List<ChimeraDirectoryEntry> entries = nextChunk(last);
+                    isExhausted = entries.size() < _chunkSize;
+                    if (entries.isEmpty()) {
+                        return endOfData();
+                    }
+                    chunk = entries.iterator();
+                }
+                ChimeraDirectoryEntry entry = chunk.next();
+                last = entry.getName();
+                return entry;
+            }
+        };
+    }
+
+    private List<ChimeraDirectoryEntry> nextChunk(String after) {
+        List<ChimeraDirectoryEntry> entries = _driver.listDirectory(_dir, after, _chunkSize);
+        if (entries.isEmpty() || _attributes.isEmpty()) {
+            return entries;
+        }
+
+        BulkAttributes attributes = new BulkAttributes(_driver,
+              entries.stream().map(ChimeraDirectoryEntry::getInode).collect(toList()),
+              _attributes);
+        return entries.stream()
+              .map(e -> new ChimeraDirectoryEntry(e.getName(), e.getInode(), e.getStat(),
+                    attributes.locationsOf(e.getInode()),
+                    attributes.checksumsOf(e.getInode()),
+                    attributes.storageInfoOf(e.getInode())))
+              .collect(toList());
+    }
+
+    @Override
+    public void close() {
+        /* No resources are held between chunks. */
+    }
+}
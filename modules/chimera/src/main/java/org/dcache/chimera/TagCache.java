@@ -0,0 +1,149 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the tags of directories, mapping the inumber of a directory to an immutable snapshot
+ * of all its tags, whether inherited or not.
+ * <p>
+ * File creation and storage info extraction read several tags of the same directory, often
+ * for many files in the same directory at once. With the cache, the tags of a directory are
+ * fetched with a single query and concurrent readers of the same directory share that query.
+ * The number of queries saved is the hit count of the cache. Only directories are cached; the
+ * tags of other inodes are always fetched from the database.
+ * <p>
+ * Changing the value of a tag may change the tags of all directories inheriting it, hence
+ * setting and pushing tags invalidates the whole cache. Creating and removing tags only
+ * affects a single directory. Changes made by other processes sharing the database are
+ * observed once the snapshot expires.
+ * <p>
+ * Every snapshot records the generation at which its load started, and every invalidation
+ * advances the generation. A snapshot whose load was overtaken by an invalidation is discarded
+ * rather than returned, so a load in flight during an invalidation cannot leave a stale
+ * snapshot behind.
+ */
+class TagCache {
+
+    /**
+     * Number of stripes tracking the generation of the last invalidation of single directories.
+     */
+    private static final int STRIPES = 64;
+
+    private final Cache<Long, Snapshot> _cache;
+
+    private final AtomicLong _generation = new AtomicLong();
+
+    /* Generation of the last invalidation of all directories. */
+    private final AtomicLong _invalidatedAll = new AtomicLong();
+
+    /* Generation of the last invalidation of any directory in a stripe. */
+    private final AtomicLongArray _invalidated = new AtomicLongArray(STRIPES);
+
+    TagCache(long maximumSize, long lifetime, TimeUnit unit) {
+        _cache = CacheBuilder.newBuilder()
+              .maximumSize(maximumSize)
+              .expireAfterWrite(lifetime, unit)
+              .recordStats()
+              .build();
+    }
+
+    /**
+     * Returns the tags of {@code inode}, calling {@code loader} to fetch them if they are not
+     * cached. The values of the returned map must not be modified.
+     */
+    ImmutableMap<String, byte[]> get(FsInode inode, Supplier<Map<String, byte[]>> loader) {
+        long ino = inode.ino();
+        Snapshot snapshot = _cache.asMap().get(ino);
+        if (snapshot == null) {
+            if (!inode.isDirectory()) {
+                return ImmutableMap.copyOf(loader.get());
+            }
+            snapshot = load(ino, loader);
+        }
+        while (snapshot.generation < invalidatedAt(ino)) {
+            _cache.asMap().remove(ino, snapshot);
+            snapshot = load(ino, loader);
+        }
+        return snapshot.tags;
+    }
+
+    private Snapshot load(long ino, Supplier<Map<String, byte[]>> loader) {
+        try {
+            return _cache.get(ino, () -> {
+                long generation = _generation.get();
+                return new Snapshot(generation, ImmutableMap.copyOf(loader.get()));
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private long invalidatedAt(long ino) {
+        return Math.max(_invalidatedAll.get(), _invalidated.get(stripe(ino)));
+    }
+
+    private static int stripe(long ino) {
+        return (int) ((ino ^ (ino >>> 32)) & (STRIPES - 1));
+    }
+
+    void invalidate(long dir) {
+        _invalidated.accumulateAndGet(stripe(dir), _generation.incrementAndGet(), Math::max);
+        _cache.invalidate(dir);
+    }
+
+    void invalidateAll() {
+        _invalidatedAll.accumulateAndGet(_generation.incrementAndGet(), Math::max);
+        _cache.invalidateAll();
+    }
+
+    long size() {
+        return _cache.size();
+    }
+
+    CacheStats stats() {
+        return _cache.stats();
+    }
+
+    static boolean isCacheable(FsInode inode) {
+        return inode.type() == FsInodeType.INODE && inode.getLevel() == 0;
+    }
+
+    private static class Snapshot {
+
+        final long generation;
+        final ImmutableMap<String, byte[]> tags;
+
+        Snapshot(long generation, ImmutableMap<String, byte[]> tags) {
+            this.generation = generation;
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel walker of a directory tree.
+ * <p>
+ * Every directory is listed by its own fork-join task and subdirectories are forked once their
+ * parent has been listed, so idle workers steal whole subtrees from busy ones. Directories are
+ * listed with {@link FileSystemProvider#readdirPlus}, which holds no database resources
+ * between chunks; the number of directories listed concurrently, and hence the number of
+ * outstanding queries, is bounded independently of the parallelism.
+ * <p>
+ * Entries are passed to a {@link Visitor} as they are listed. The visitor is called
+ * concurrently from several threads and in no particular order, except that the entry of a
+ * directory is always visited before any entry within it.
+ * <p>
+ * Progress is recorded in a {@link Checkpoint}. A walk that failed or was interrupted may be
+ * resumed with the same checkpoint, in which case subtrees that were walked completely are
+ * skipped. Entries of directories that were only partially walked are visited again, so
+ * visitors of resumable walks must be idempotent.
+ */
+public class TreeWalker {
+
+    /**
+     * Receives the entries found by a walk.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        /**
+         * Called for every entry below the root of the walk. Must be thread safe.
+         *
+         * @param parent the directory containing the entry
+         * @param entry  the entry
+         * @throws ChimeraFsException to abort the walk
+         */
+        void visit(FsInode parent, ChimeraDirectoryEntry entry) throws ChimeraFsException;
+    }
+
+    /**
+     * The progress of a walk, expressed as the set of directories whose subtrees have been
+     * walked completely.
+     * <p>
+     * The set is kept compact: once a directory is complete, its subdirectories are removed from
+     * the set. The inumbers may be persisted and passed to a new checkpoint to resume a walk
+     * in another process.
+     */
+    public static class Checkpoint {
+
+        private final Set<Long> _completed = Collections.synchronizedSet(new HashSet<>());
+
+        public Checkpoint() {
+        }
+
+        public Checkpoint(Collection<Long> completed) {
+            _completed.addAll(completed);
+        }
+
+        /**
+         * Returns the inumbers of the directories whose subtrees have been walked completely.
+         */
+        public Set<Long> getCompletedDirectories() {
+            synchronized (_completed) {
+                return new HashSet<>(_completed);
+            }
+        }
+
+        public boolean isComplete(FsInode dir) {
+            return _completed.contains(dir.ino());
+        }
+
+        private void complete(FsInode dir, List<FsInode> subdirectories) {
+            synchronized (_completed) {
+                _completed.add(dir.ino());
+                subdirectories.forEach(d -> _completed.remove(d.ino()));
+            }
+        }
+    }
+
+    private final FileSystemProvider _fs;
+    private final int _parallelism;
+    private final int _maxListings;
+    private final int _chunkSize;
+    private final Set<InodeAttribute> _attributes;
+
+    /**
+     * @param fs          the file system to walk
+     * @param parallelism the number of worker threads
+     * @param maxListings the maximum number of directories listed concurrently
+     * @param chunkSize   the number of entries fetched per query
+     * @param attributes  additional attributes to fetch with the entries
+     */
+    public TreeWalker(FileSystemProvider fs, int parallelism, int maxListings, int chunkSize,
+          Set<InodeAttribute> attributes) {
+        checkArgument(parallelism > 0, "Parallelism must be positive");
+        checkArgument(maxListings > 0, "Maximum number of listings must be positive");
+        _fs = requireNonNull(fs);
+        _parallelism = parallelism;
+        _maxListings = maxListings;
+        _chunkSize = chunkSize;
+        _attributes = attributes;
+    }
+
+    /**
+     * Walks the tree below {@code root}, not including {@code root} itself.
+     *
+     * @param root       the directory at which to start
+     * @param visitor    receives the entries found
+     * @param checkpoint records the progress of the walk and is used to skip subtrees that were
+     *                   walked completely by an earlier walk
+     * @return the number of entries visited
+     * @throws ChimeraFsException   if listing a directory or the visitor failed
+     * @throws InterruptedException if the calling thread was interrupted, in which case the
+     *                              walk is cancelled
+     */
+    public long walk(FsInode root, Visitor visitor, Checkpoint checkpoint)
+          throws ChimeraFsException, InterruptedException {
+        if (!root.isDirectory()) {
+            throw new NotDirChimeraException(root);
+        }
+        if (checkpoint.isComplete(root)) {
+            return 0;
+        }
+
+        Walk walk = new Walk(visitor, checkpoint);
+        ForkJoinPool pool = new ForkJoinPool(_parallelism);
+        try {
+            pool.submit(walk.new DirectoryTask(root)).get();
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Exception failure = walk._failure.get();
+        if (failure != null) {
+            Throwables.throwIfInstanceOf(failure, ChimeraFsException.class);
+            Throwables.throwIfUnchecked(failure);
+            throw new ChimeraFsException("Failed to walk " + root + ": " + failure.getMessage(),
+                  failure);
+        }
+        return walk._visited.sum();
+    }
+
+    /**
+     * State shared by the tasks of a single walk.
+     */
+    private class Walk {
+
+        private final Visitor _visitor;
+        private final Checkpoint _checkpoint;
+        private final Semaphore _listings = new Semaphore(_maxListings);
+        private final LongAdder _visited = new LongAdder();
+        private final AtomicReference<Exception> _failure = new AtomicReference<>();
+
+        Walk(Visitor visitor, Checkpoint checkpoint) {
+            _visitor = visitor;
+            _checkpoint = checkpoint;
+        }
+
+        private class DirectoryTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final FsInode _dir;
+
+            DirectoryTask(FsInode dir) {
+                _dir = dir;
+            }
+
+            @Override
+            protected void compute() {
+                List<FsInode> subdirectories;
+                try {
+                    subdirectories = list();
+                } catch (IOException | RuntimeException e) {
+                    _failure.compareAndSet(null, e);
+                    return;
+                } catch (InterruptedException e) {
+                    /* The walk was cancelled. */
+                    return;
+                }
+
+                List<DirectoryTask> tasks = new ArrayList<>();
+                for (FsInode subdirectory : subdirectories) {
+                    if (!_checkpoint.isComplete(subdirectory)) {
+                        tasks.add(new DirectoryTask(subdirectory));
+                    }
+                }
+                ForkJoinTask.invokeAll(tasks);
+                if (tasks.stream().allMatch(this::isComplete)) {
+                    _checkpoint.complete(_dir, subdirectories);
+                }
+            }
+
+            private boolean isComplete(DirectoryTask task) {
+                return _checkpoint.isComplete(task._dir);
+            }
+
+            /**
+             * Lists the directory, passing its entries to the visitor, and returns its
+             * subdirectories. The listing permit is held only while listing and never while
+             * waiting for other tasks, hence listings cannot deadlock.
+             */
+            private List<FsInode> list() throws IOException, InterruptedException {
+                acquireListing();
+                try (DirectoryStreamB<ChimeraDirectoryEntry> stream =
+                      _fs.readdirPlus(_dir, null, _chunkSize, _attributes)) {
+                    List<FsInode> subdirectories = new ArrayList<>();
+                    for (ChimeraDirectoryEntry entry : stream) {
+                        if (Thread.interrupted() || _failure.get() != null) {
+                            throw new InterruptedException();
+                        }
+                        _visitor.visit(_dir, entry);
+                        _visited.increment();
+                        if ((entry.getStat().getMode() & UnixPermission.F_TYPE)
+                              == UnixPermission.S_IFDIR) {
+                            subdirectories.add(entry.getInode());
+                        }
+                    }
+                    return subdirectories;
+                } finally {
+                    _listings.release();
+                }
+            }
+
+            private void acquireListing() throws InterruptedException {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    private boolean _acquired;
+
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        if (!_acquired) {
+                            _listings.acquire();
+                            _acquired = true;
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return _acquired || (_acquired = _listings.tryAcquire());
+                    }
+                });
+            }
+        }
+    }
+}
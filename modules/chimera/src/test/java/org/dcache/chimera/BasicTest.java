@@ -14,6 +14,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -32,7 +33,10 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
@@ -40,10 +44,12 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.dcache.acl.ACE;
 import org.dcache.acl.enums.AccessMask;
+import org.dcache.acl.enums.AceFlags;
 import org.dcache.acl.enums.AceType;
 import org.dcache.acl.enums.RsType;
 import org.dcache.acl.enums.Who;
 import org.dcache.chimera.posix.Stat;
+import org.dcache.chimera.store.InodeStorageInformation;
 import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
 import org.junit.Ignore;
@@ -51,6 +57,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 
 public class BasicTest extends ChimeraTestCaseHelper {
 
@@ -1274,6 +1281,25 @@ public class BasicTest extends ChimeraTestCaseHelper {
 
     }
 
+    @Test
+    public void testLevelReadAtOffset() throws ChimeraFsException {
+        FsInode file = _fs.createFile(_rootInode, "aFile", 0, 0, 0755 | UnixPermission.S_IFREG,
+              UnixPermission.S_IFREG);
+        FsInode level = _fs.createFileLevel(file, 2);
+
+        byte[] data = Strings.repeat("0123456789", 1000).getBytes(UTF_8);
+        level.write(0, data, 0, data.length);
+
+        byte[] buffer = new byte[20];
+        int n = level.read(4995, buffer, 5, 10);
+        assertEquals(10, n);
+        assertEquals("5678901234", new String(buffer, 5, n, UTF_8));
+
+        n = level.read(data.length - 3, buffer, 0, buffer.length);
+        assertEquals(3, n);
+        assertEquals(0, level.read(data.length + 10, buffer, 0, buffer.length));
+    }
+
     @Test
     public void testTagDeletionOnDirectoryRemove() throws ChimeraFsException, SQLException {
 
@@ -1326,6 +1352,54 @@ public class BasicTest extends ChimeraTestCaseHelper {
         assertArrayEquals(new String[]{tagName}, _fs.tags(d));
     }
 
+    @Test
+    public void testCachedTagsFollowInheritedTagChange() throws Exception {
+        FsInode top = _rootInode.mkdir("top");
+        byte[] value1 = "value1".getBytes(UTF_8);
+        _fs.createTag(top, "aTag");
+        _fs.setTag(top, "aTag", value1, 0, value1.length);
+        FsInode child = top.mkdir("child");
+
+        assertThat(_fs.getAllTags(child), hasEntry("aTag", value1));
+
+        byte[] value2 = "value2".getBytes(UTF_8);
+        _fs.setTag(top, "aTag", value2, 0, value2.length);
+
+        assertThat(_fs.getAllTags(child), hasEntry("aTag", value2));
+        byte[] data = new byte[64];
+        int len = _fs.getTag(child, "aTag", data, 0, data.length);
+        assertEquals("value2", new String(data, 0, len, UTF_8));
+    }
+
+    @Test
+    public void testCachedTagsFollowPushAndRemove() throws Exception {
+        FsInode top = _rootInode.mkdir("top");
+        FsInode child = top.mkdir("child");
+        assertTrue(_fs.getAllTags(child).isEmpty());
+
+        byte[] value = "value".getBytes(UTF_8);
+        _fs.createTag(top, "aTag");
+        _fs.setTag(top, "aTag", value, 0, value.length);
+        _fs.pushTag(top, "aTag");
+        assertThat(_fs.getAllTags(child), hasEntry("aTag", value));
+
+        _fs.removeTag(child, "aTag");
+        assertTrue(_fs.getAllTags(child).isEmpty());
+        assertEquals(0, _fs.getTag(child, "aTag", new byte[64], 0, 64));
+    }
+
+    @Test
+    public void testCachedTagsAreNotModifiedByCaller() throws Exception {
+        FsInode top = _rootInode.mkdir("top");
+        byte[] value = "value".getBytes(UTF_8);
+        _fs.createTag(top, "aTag");
+        _fs.setTag(top, "aTag", value, 0, value.length);
+
+        _fs.getAllTags(top).get("aTag")[0] = 'X';
+
+        assertThat(_fs.getAllTags(top), hasEntry("aTag", value));
+    }
+
     @Test
     public void testTashTimestampOnRemove() throws Exception {
         final String name = "testTashTimestampOnRemove";
@@ -1377,8 +1451,55 @@ public class BasicTest extends ChimeraTestCaseHelper {
     public void testFsStat() throws ChimeraFsException {
 
         FsStat fsStat = _fs.getFsStat();
-        assertThat(fsStat.getUsedSpace(), is(1048576L));
-        assertThat(fsStat.getUsedFiles(), is(1048576L));
+        assertThat(fsStat.getUsedSpace(), is(0L));
+        assertThat(fsStat.getUsedFiles(), is(0L));
+    }
+
+    @Test
+    public void testFsStatFollowsCreateResizeAndRemove() throws Exception {
+        JdbcFs fs = (JdbcFs) _fs;
+        FsInode dir = _rootInode.mkdir("dir");
+        FsInode file1 = dir.create("file1", 0, 0, 0644);
+        FsInode file2 = dir.create("file2", 0, 0, 0644);
+
+        Stat stat = new Stat();
+        stat.setSize(1000);
+        file1.setStat(stat);
+        stat = new Stat();
+        stat.setSize(24);
+        file2.setStat(stat);
+        assertThat(fs.getFsStat0().getUsedFiles(), is(2L));
+        assertThat(fs.getFsStat0().getUsedSpace(), is(1024L));
+
+        stat = new Stat();
+        stat.setSize(500);
+        file1.setStat(stat);
+        assertThat(fs.getFsStat0().getUsedSpace(), is(524L));
+
+        _fs.remove(dir, "file1", file1);
+        assertThat(fs.getFsStat0().getUsedFiles(), is(1L));
+        assertThat(fs.getFsStat0().getUsedSpace(), is(24L));
+
+        _fs.remove(file2);
+        assertThat(fs.getFsStat0().getUsedFiles(), is(0L));
+        assertThat(fs.getFsStat0().getUsedSpace(), is(0L));
+    }
+
+    @Test
+    public void testFsStatDriftIsCorrected() throws Exception {
+        JdbcFs fs = (JdbcFs) _fs;
+        FsInode file = _rootInode.create("aFile", 0, 0, 0644);
+        Stat stat = new Stat();
+        stat.setSize(42);
+        file.setStat(stat);
+
+        new JdbcTemplate(_dataSource).update(
+              "UPDATE t_fstat_counters SET iusedfiles=iusedfiles+7, iusedspace=iusedspace-2");
+        assertThat(fs.getFsStat0().getUsedFiles(), is(1L + 7 * FsSqlDriver.FSSTAT_SHARDS));
+
+        _fs.updateFsStat();
+        assertThat(fs.getFsStat0().getUsedFiles(), is(1L));
+        assertThat(fs.getFsStat0().getUsedSpace(), is(42L));
     }
 
     @Test
@@ -1574,6 +1695,23 @@ public class BasicTest extends ChimeraTestCaseHelper {
 
     }
 
+    @Test
+    public void testGetAllXattrs() throws Exception {
+        FsInode dir = _fs.mkdir("/test");
+        FsInode inode = _fs.createFile(dir, "aFile");
+
+        byte[] large = Strings.repeat("x", 16 * 1024).getBytes(UTF_8);
+        byte[] small = "cat".getBytes(UTF_8);
+        _fs.setXattr(inode, "large", large, SetXattrMode.CREATE);
+        _fs.setXattr(inode, "small", small, SetXattrMode.CREATE);
+
+        Map<String, byte[]> xattrs = _fs.getAllXattrs(inode);
+        assertEquals(Set.of("large", "small"), xattrs.keySet());
+        assertArrayEquals(large, xattrs.get("large"));
+        assertArrayEquals(small, xattrs.get("small"));
+        assertTrue(_fs.getAllXattrs(dir).isEmpty());
+    }
+
     @Test(expected = FileExistsChimeraFsException.class)
     public void testExclusiveCreateXattr() throws Exception {
 
@@ -1699,6 +1837,312 @@ public class BasicTest extends ChimeraTestCaseHelper {
               _fs.stat(inode).getGeneration(), greaterThan(s0.getGeneration()));
     }
 
+    @Test
+    public void testReaddirPlusInChunks() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        for (String name : List.of("e", "b", "d", "a", "c")) {
+            base.create(name, 0, 0, 0644);
+        }
+
+        try (DirectoryStreamB<ChimeraDirectoryEntry> dirStream = _fs.readdirPlus(base, null, 2,
+              EnumSet.noneOf(InodeAttribute.class))) {
+            List<String> names = dirStream.stream().map(ChimeraDirectoryEntry::getName)
+                  .collect(Collectors.toList());
+            assertEquals(List.of("a", "b", "c", "d", "e"), names);
+        }
+    }
+
+    @Test
+    public void testReaddirPlusResumeFromCookie() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        for (String name : List.of("a", "b", "c", "d")) {
+            base.create(name, 0, 0, 0644);
+        }
+
+        try (DirectoryStreamB<ChimeraDirectoryEntry> dirStream = _fs.readdirPlus(base, "b", 10,
+              EnumSet.noneOf(InodeAttribute.class))) {
+            List<String> names = dirStream.stream().map(ChimeraDirectoryEntry::getName)
+                  .collect(Collectors.toList());
+            assertEquals(List.of("c", "d"), names);
+        }
+    }
+
+    @Test
+    public void testReaddirPlusWithLocationsAndChecksums() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode withLocation = base.create("withLocation", 0, 0, 0644);
+        base.create("without", 0, 0, 0644);
+        _fs.addInodeLocation(withLocation, StorageGenericLocation.DISK, "pool1");
+        _fs.setInodeChecksum(withLocation, 1, "abc");
+
+        try (DirectoryStreamB<ChimeraDirectoryEntry> dirStream = _fs.readdirPlus(base, null, 10,
+              EnumSet.allOf(InodeAttribute.class))) {
+            List<ChimeraDirectoryEntry> entries = Lists.newArrayList(dirStream);
+            assertEquals(2, entries.size());
+
+            ChimeraDirectoryEntry entry = entries.get(0);
+            assertEquals("withLocation", entry.getName());
+            assertEquals(withLocation.ino(), entry.getInode().ino());
+            assertEquals("pool1", entry.getLocations().get(0).location());
+            assertEquals(new Checksum(ChecksumType.getChecksumType(1), "abc"),
+                  entry.getChecksums().get(0));
+
+            assertTrue(entries.get(1).getLocations().isEmpty());
+            assertTrue(entries.get(1).getChecksums().isEmpty());
+        }
+    }
+
+    @Test
+    public void testReaddirPlusWithoutAttributes() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        base.create("aFile", 0, 0, 0644);
+
+        try (DirectoryStreamB<ChimeraDirectoryEntry> dirStream = _fs.readdirPlus(base, null, 10,
+              EnumSet.noneOf(InodeAttribute.class))) {
+            ChimeraDirectoryEntry entry = dirStream.iterator().next();
+            assertNull(entry.getLocations());
+            assertNull(entry.getChecksums());
+        }
+    }
+
+    @Test
+    public void testGetInodesInBulk() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode withLocation = base.create("withLocation", 0, 0, 0644);
+        FsInode without = base.create("without", 0, 0, 0644);
+        _fs.addInodeLocation(withLocation, StorageGenericLocation.DISK, "pool1");
+        _fs.setInodeChecksum(withLocation, 1, "abc");
+
+        Map<String, ChimeraInodeEntry> entries = _fs.getInodes(
+              List.of(withLocation.getId(), without.getId(), "000000000000000000000000000000000042"),
+              EnumSet.allOf(InodeAttribute.class));
+        assertEquals(2, entries.size());
+
+        ChimeraInodeEntry entry = entries.get(withLocation.getId());
+        assertEquals(withLocation.ino(), entry.getInode().ino());
+        assertEquals(withLocation.ino(), entry.getStat().getIno());
+        assertEquals("pool1", entry.getLocations().get(0).location());
+        assertEquals(new Checksum(ChecksumType.getChecksumType(1), "abc"),
+              entry.getChecksums().get(0));
+
+        ChimeraInodeEntry other = entries.get(without.getId());
+        assertTrue(other.getLocations().isEmpty());
+        assertTrue(other.getChecksums().isEmpty());
+    }
+
+    @Test
+    public void testGetInodesWithMergedAttributeClasses() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode file = base.create("aFile", 0, 0, 0644);
+        _fs.addInodeLocation(file, StorageGenericLocation.DISK, "pool1");
+        _fs.addInodeLocation(file, StorageGenericLocation.DISK, "pool2");
+        _fs.setInodeChecksum(file, 1, "abc");
+        _fs.setInodeChecksum(file, 2, "def");
+        _fs.setStorageInfo(file, new InodeStorageInformation(file, "osm", "exp", "raw"));
+
+        ChimeraInodeEntry entry = _fs.getInodes(List.of(file.getId()),
+              EnumSet.allOf(InodeAttribute.class)).get(file.getId());
+        assertEquals(Set.of("pool1", "pool2"), entry.getLocations().stream()
+              .map(StorageLocatable::location).collect(Collectors.toSet()));
+        assertEquals(2, entry.getChecksums().size());
+        assertEquals("osm", entry.getStorageInfo().hsmName());
+        assertEquals("exp", entry.getStorageInfo().storageGroup());
+        assertEquals("raw", entry.getStorageInfo().storageSubGroup());
+
+        entry = _fs.getInodes(List.of(file.getId()),
+              EnumSet.of(InodeAttribute.CHECKSUMS, InodeAttribute.STORAGE_INFO))
+              .get(file.getId());
+        assertNull(entry.getLocations());
+        assertEquals(2, entry.getChecksums().size());
+        assertEquals("osm", entry.getStorageInfo().hsmName());
+    }
+
+    @Test
+    public void testPathResolutionAfterDirectoryRename() throws Exception {
+        FsInode a = _rootInode.mkdir("a");
+        FsInode b = a.mkdir("b");
+        FsInode file = b.mkdir("c").create("aFile", 0, 0, 0644);
+
+        assertEquals(file, _fs.path2inode("/a/b/c/aFile"));
+        _fs.rename(b, a, "b", a, "x");
+
+        assertEquals(file, _fs.path2inode("/a/x/c/aFile"));
+        try {
+            _fs.path2inode("/a/b/c/aFile");
+            fail("Renamed directory is still resolved");
+        } catch (FileNotFoundChimeraFsException expected) {
+        }
+    }
+
+    @Test
+    public void testPathResolutionAfterDirectoryRecreate() throws Exception {
+        FsInode a = _rootInode.mkdir("a");
+        a.mkdir("b").mkdir("c");
+        assertNotNull(_fs.path2inode("/a/b/c"));
+
+        _fs.remove("/a/b/c");
+        _fs.remove("/a/b");
+        FsInode file = a.mkdir("b").mkdir("c").create("aFile", 0, 0, 0644);
+
+        assertEquals(file, _fs.path2inode("/a/b/c/aFile"));
+        assertEquals(List.of(_rootInode, a, _fs.path2inode("/a/b"), _fs.path2inode("/a/b/c"),
+              file), _fs.path2inodes("/a/b/c/aFile"));
+    }
+
+    @Test
+    public void testPathResolutionThroughLinkedDirectory() throws Exception {
+        FsInode dir = _rootInode.mkdir("a").mkdir("b");
+        FsInode file = dir.create("aFile", 0, 0, 0644);
+        _fs.createLink(_rootInode, "link", "/a/b");
+
+        assertEquals(file, _fs.path2inode("/link/aFile"));
+        assertEquals(file, _fs.path2inode("/link/aFile"));
+        assertEquals(file, _fs.path2inode("/a/b/../b/aFile"));
+    }
+
+    @Test
+    public void testCreateFilesInBulk() throws Exception {
+        FsInode dir1 = _rootInode.mkdir("dir1");
+        FsInode dir2 = _rootInode.mkdir("dir2");
+        int dir1Links = dir1.stat().getNlink();
+
+        List<FsInode> inodes = _fs.createFiles(List.of(
+              new CreateFileRequest(dir1, "file1", 1, 2, 0644),
+              new CreateFileRequest(dir1, "file2", 3, 4, 0600),
+              new CreateFileRequest(dir2, "file3", 5, 6, 0640)));
+
+        assertEquals(3, inodes.size());
+        assertEquals(inodes.get(0), _fs.path2inode("/dir1/file1"));
+        assertEquals(inodes.get(1), _fs.path2inode("/dir1/file2"));
+        assertEquals(inodes.get(2), _fs.path2inode("/dir2/file3"));
+
+        Stat stat = _fs.path2inode("/dir1/file2").stat();
+        assertEquals(UnixPermission.S_IFREG | 0600, stat.getMode());
+        assertEquals(3, stat.getUid());
+        assertEquals(4, stat.getGid());
+        assertEquals(1, stat.getNlink());
+        assertEquals(0, stat.getSize());
+
+        assertEquals(dir1Links + 2, dir1.stat().getNlink());
+        assertEquals(3, ((JdbcFs) _fs).getFsStat0().getUsedFiles());
+    }
+
+    @Test
+    public void testCreateFilesInBulkIsAtomic() throws Exception {
+        FsInode dir = _rootInode.mkdir("dir");
+        dir.create("file2", 0, 0, 0644);
+
+        try {
+            _fs.createFiles(List.of(
+                  new CreateFileRequest(dir, "file1", 0, 0, 0644),
+                  new CreateFileRequest(dir, "file2", 0, 0, 0644)));
+            fail("Existing file was created again");
+        } catch (FileExistsChimeraFsException expected) {
+        }
+
+        try {
+            _fs.path2inode("/dir/file1");
+            fail("File of failed bulk create exists");
+        } catch (FileNotFoundChimeraFsException expected) {
+        }
+        assertEquals(1, ((JdbcFs) _fs).getFsStat0().getUsedFiles());
+    }
+
+    @Test
+    public void testCreateFilesInBulkInheritsAcl() throws Exception {
+        FsInode dir = _rootInode.mkdir("dir");
+        _fs.setACL(dir, List.of(
+              new ACE(AceType.ACCESS_ALLOWED_ACE_TYPE, AceFlags.FILE_INHERIT_ACE.getValue(),
+                    AccessMask.READ_DATA.getValue(), Who.USER, 1001),
+              new ACE(AceType.ACCESS_DENIED_ACE_TYPE, AceFlags.DIRECTORY_INHERIT_ACE.getValue(),
+                    AccessMask.ADD_FILE.getValue(), Who.USER, 1001)));
+
+        List<FsInode> inodes = _fs.createFiles(List.of(
+              new CreateFileRequest(dir, "file1", 0, 0, 0644),
+              new CreateFileRequest(dir, "file2", 0, 0, 0644)));
+
+        for (FsInode inode : inodes) {
+            assertEquals(List.of(new ACE(AceType.ACCESS_ALLOWED_ACE_TYPE, 0,
+                  AccessMask.READ_DATA.getValue(), Who.USER, 1001)), _fs.getACL(inode));
+        }
+    }
+
+    @Test
+    public void testTreeWalkerVisitsAllEntries() throws Exception {
+        FsInode top = _rootInode.mkdir("top");
+        FsInode a = top.mkdir("a");
+        a.create("f1", 0, 0, 0644);
+        a.create("f2", 0, 0, 0644);
+        FsInode b = a.mkdir("b");
+        b.create("f3", 0, 0, 0644);
+        b.mkdir("c").create("f4", 0, 0, 0644);
+        top.mkdir("d").create("f5", 0, 0, 0644);
+
+        List<String> names = Collections.synchronizedList(new ArrayList<>());
+        TreeWalker.Checkpoint checkpoint = new TreeWalker.Checkpoint();
+        long visited = new TreeWalker(_fs, 4, 2, 2, EnumSet.noneOf(InodeAttribute.class))
+              .walk(top, (parent, entry) -> names.add(entry.getName()), checkpoint);
+
+        assertThat(names, containsInAnyOrder("a", "f1", "f2", "b", "f3", "c", "f4", "d", "f5"));
+        assertEquals(9, visited);
+        assertThat(checkpoint.getCompletedDirectories(), is(Set.of(top.ino())));
+    }
+
+    @Test
+    public void testTreeWalkerResumesFromCheckpoint() throws Exception {
+        FsInode top = _rootInode.mkdir("top");
+        for (int i = 0; i < 4; i++) {
+            FsInode dir = top.mkdir("dir" + i);
+            for (int j = 0; j < 3; j++) {
+                dir.mkdir("sub" + j).create("file", 0, 0, 0644);
+            }
+        }
+        FsInode failing = _fs.path2inode("/top/dir2/sub1");
+
+        TreeWalker walker = new TreeWalker(_fs, 4, 2, 100, EnumSet.noneOf(InodeAttribute.class));
+        TreeWalker.Checkpoint checkpoint = new TreeWalker.Checkpoint();
+        try {
+            walker.walk(top, (parent, entry) -> {
+                if (parent.equals(failing)) {
+                    throw new ChimeraFsException("injected failure");
+                }
+            }, checkpoint);
+            fail("Walk did not fail");
+        } catch (ChimeraFsException e) {
+            assertEquals("injected failure", e.getMessage());
+        }
+
+        Set<Long> completed = checkpoint.getCompletedDirectories();
+        assertFalse(completed.contains(top.ino()));
+        assertFalse(completed.contains(failing.ino()));
+
+        List<Long> parents = Collections.synchronizedList(new ArrayList<>());
+        walker.walk(top, (parent, entry) -> parents.add(parent.ino()), checkpoint);
+
+        assertTrue(parents.contains(failing.ino()));
+        assertTrue(parents.stream().noneMatch(completed::contains));
+        assertThat(checkpoint.getCompletedDirectories(), is(Set.of(top.ino())));
+    }
+
+    @Test
+    public void testPathResolutionAfterRenameByOtherInstance() throws Exception {
+        FsInode a = _rootInode.mkdir("a");
+        FsInode b = a.mkdir("b");
+        b.create("aFile", 0, 0, 0644);
+        assertNotNull(_fs.path2inode("/a/b/aFile"));
+
+        try (JdbcFs other = new JdbcFs(_dataSource,
+              new DataSourceTransactionManager(_dataSource))) {
+            FsInode otherA = other.path2inode("/a");
+            other.rename(other.path2inode("/a/b"), otherA, "b", otherA, "old");
+            FsInode replacement = other.path2inode("/a").mkdir("b");
+            FsInode file = replacement.create("aFile", 0, 0, 0644);
+
+            assertEquals(file.ino(), _fs.path2inode("/a/b/aFile").ino());
+            assertEquals(replacement.ino(), _fs.path2inode("/a/b").ino());
+        }
+    }
+
     private long getDirEntryCount(FsInode dir) throws IOException {
         try (var s = _fs.newDirectoryStream(dir)) {
             return s.stream().count();
@@ -0,0 +1,208 @@
+package org.dcache.chimera;
+
+import com.google.common.collect.Lists;
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.dcache.chimera.posix.Stat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+/**
+ * Measures the latency of common JdbcFs operations against the embedded databases supported by
+ * Chimera, using {@link H2FsSqlDriver} and {@link HsqlDBFsSqlDriver}.
+ * <p>
+ * Every trial starts with a fresh in-memory database seeded with a synthetic tree: {@code depth}
+ * levels of {@code fanout} directories each, with {@code files} files in every leaf directory.
+ * Operations on existing objects pick a random file or leaf directory of that tree.
+ * <p>
+ * Not run as part of the unit tests. Run with
+ * <pre>
+ *     mvn -pl modules/chimera test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=org.dcache.chimera.JdbcFsBenchmark
+ * </pre>
+ * Arguments are passed on to JMH, e.g. {@code -Dexec.args="-p database=h2 -p files=1000"}
+ * limits the run to H2 with larger directories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcFsBenchmark {
+
+    private static final AtomicLong DATABASE_ID = new AtomicLong();
+
+    @Param({"h2", "hsqldb"})
+    public String database;
+
+    @Param({"2"})
+    public int depth;
+
+    @Param({"10"})
+    public int fanout;
+
+    @Param({"100"})
+    public int files;
+
+    private HikariDataSource dataSource;
+    private JdbcFs fs;
+    private FsInode scratch;
+    private List<FsInode> leaves;
+    private List<FsInode> inodes;
+    private List<String> paths;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String url;
+        switch (database) {
+            case "h2":
+                url = "jdbc:h2:mem:bench" + DATABASE_ID.incrementAndGet();
+                break;
+            case "hsqldb":
+                url = "jdbc:hsqldb:mem:bench" + DATABASE_ID.incrementAndGet();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported database: " + database);
+        }
+        dataSource = FsFactory.getDataSource(url, "sa", "");
+
+        try (Connection conn = dataSource.getConnection()) {
+            Database db = DatabaseFactory.getInstance()
+                  .findCorrectDatabaseImplementation(new JdbcConnection(conn));
+            new Liquibase("org/dcache/chimera/changelog/changelog-master.xml",
+                  new ClassLoaderResourceAccessor(), db).update("");
+        }
+
+        fs = new JdbcFs(dataSource, new DataSourceTransactionManager(dataSource));
+        FsInode root = fs.path2inode("/");
+        scratch = root.mkdir("scratch");
+
+        leaves = new ArrayList<>();
+        List<String> leafPaths = new ArrayList<>();
+        seed(root.mkdir("tree"), "/tree", depth, leafPaths);
+
+        inodes = new ArrayList<>();
+        paths = new ArrayList<>();
+        List<CreateFileRequest> requests = new ArrayList<>();
+        for (int i = 0; i < leaves.size(); i++) {
+            for (int j = 0; j < files; j++) {
+                requests.add(new CreateFileRequest(leaves.get(i), "file" + j, 0, 0, 0644));
+                paths.add(leafPaths.get(i) + "/file" + j);
+            }
+        }
+        for (List<CreateFileRequest> chunk : Lists.partition(requests, 1000)) {
+            inodes.addAll(fs.createFiles(chunk));
+        }
+    }
+
+    private void seed(FsInode dir, String path, int levels, List<String> leafPaths)
+          throws ChimeraFsException {
+        if (levels == 0) {
+            leaves.add(dir);
+            leafPaths.add(path);
+            return;
+        }
+        for (int i = 0; i < fanout; i++) {
+            String name = "dir" + i;
+            seed(dir.mkdir(name), path + "/" + name, levels - 1, leafPaths);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.createStatement().execute("SHUTDOWN");
+        }
+        dataSource.close();
+    }
+
+    private FsInode randomFile() {
+        return inodes.get(ThreadLocalRandom.current().nextInt(inodes.size()));
+    }
+
+    @Benchmark
+    public FsInode create() throws ChimeraFsException {
+        return fs.createFile(scratch, "file" + counter.incrementAndGet());
+    }
+
+    @Benchmark
+    public Stat stat() throws ChimeraFsException {
+        return fs.stat(randomFile());
+    }
+
+    @Benchmark
+    public FsInode path2inode() throws ChimeraFsException {
+        return fs.path2inode(paths.get(ThreadLocalRandom.current().nextInt(paths.size())));
+    }
+
+    @Benchmark
+    public void readdir(Blackhole blackhole) throws Exception {
+        FsInode dir = leaves.get(ThreadLocalRandom.current().nextInt(leaves.size()));
+        try (DirectoryStreamB<ChimeraDirectoryEntry> stream = fs.newDirectoryStream(dir)) {
+            for (ChimeraDirectoryEntry entry : stream) {
+                blackhole.consume(entry);
+            }
+        }
+    }
+
+    @Benchmark
+    public void setattr() throws ChimeraFsException {
+        Stat stat = new Stat();
+        stat.setSize(ThreadLocalRandom.current().nextLong(1L << 40));
+        stat.setMTime(System.currentTimeMillis());
+        fs.setInodeAttributes(randomFile(), 0, stat);
+    }
+
+    @Benchmark
+    public void addAndRemoveLocation() throws ChimeraFsException {
+        FsInode inode = randomFile();
+        fs.addInodeLocation(inode, StorageGenericLocation.DISK, "pool");
+        fs.clearInodeLocation(inode, StorageGenericLocation.DISK, "pool");
+    }
+
+    @Benchmark
+    public void setChecksum() throws ChimeraFsException {
+        FsInode inode = randomFile();
+        fs.setInodeChecksum(inode, 1, "1a2b3c4d");
+        fs.removeInodeChecksum(inode, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+              .parent(new CommandLineOptions(args))
+              .include(JdbcFsBenchmark.class.getSimpleName())
+              .build();
+        new Runner(options).run();
+    }
+}
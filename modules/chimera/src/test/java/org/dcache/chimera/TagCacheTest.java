@@ -0,0 +1,105 @@
+package org.dcache.chimera;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.dcache.chimera.posix.Stat;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TagCacheTest {
+
+    private TagCache cache;
+    private FsInode dir;
+    private FsInode file;
+
+    @Before
+    public void setUp() {
+        cache = new TagCache(100, 1, TimeUnit.HOURS);
+        dir = inode(1, UnixPermission.S_IFDIR | 0755);
+        file = inode(2, UnixPermission.S_IFREG | 0644);
+    }
+
+    private static FsInode inode(long ino, int mode) {
+        Stat stat = new Stat();
+        stat.setIno(ino);
+        stat.setMode(mode);
+        return new FsInode(null, ino, FsInodeType.INODE, 0, stat);
+    }
+
+    private static Supplier<Map<String, byte[]>> tags(AtomicInteger loads, String value) {
+        return () -> {
+            loads.incrementAndGet();
+            return Map.of("OSMTemplate", value.getBytes(US_ASCII));
+        };
+    }
+
+    @Test
+    public void shouldCacheTagsOfDirectories() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(dir, tags(loads, "a"));
+        cache.get(dir, tags(loads, "a"));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldNotCacheTagsOfFiles() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(file, tags(loads, "a"));
+        cache.get(file, tags(loads, "a"));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldReloadAfterInvalidation() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(dir, tags(loads, "a"));
+        cache.invalidate(dir.ino());
+
+        assertArrayEquals("b".getBytes(US_ASCII),
+              cache.get(dir, tags(loads, "b")).get("OSMTemplate"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void shouldDiscardSnapshotLoadedDuringInvalidateAll() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Map<String, byte[]>> racing = () -> {
+            if (loads.incrementAndGet() == 1) {
+                /* A tag is changed while the old tags are being read. */
+                cache.invalidateAll();
+                return Map.of("OSMTemplate", "old".getBytes(US_ASCII));
+            }
+            return Map.of("OSMTemplate", "new".getBytes(US_ASCII));
+        };
+
+        assertArrayEquals("new".getBytes(US_ASCII), cache.get(dir, racing).get("OSMTemplate"));
+        assertArrayEquals("new".getBytes(US_ASCII),
+              cache.get(dir, tags(loads, "unused")).get("OSMTemplate"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void shouldDiscardSnapshotLoadedDuringInvalidate() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Map<String, byte[]>> racing = () -> {
+            if (loads.incrementAndGet() == 1) {
+                cache.invalidate(dir.ino());
+                return Map.of("OSMTemplate", "old".getBytes(US_ASCII));
+            }
+            return Map.of("OSMTemplate", "new".getBytes(US_ASCII));
+        };
+
+        assertArrayEquals("new".getBytes(US_ASCII), cache.get(dir, racing).get("OSMTemplate"));
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,106 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.util;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads on Java runtimes that provide them.
+ * <p>
+ * dCache is compiled for a Java release that predates virtual threads. This class looks up the
+ * virtual thread builder API reflectively, so virtual threads can be used whenever dCache runs
+ * on a runtime that supports them.
+ */
+public class VirtualThreads {
+
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle FACTORY;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle factory = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> virtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", methodType(virtualBuilder));
+            name = lookup.findVirtual(builder, "name",
+                  methodType(builder, String.class, long.class));
+            factory = lookup.findVirtual(builder, "factory", methodType(ThreadFactory.class));
+            /* Virtual threads are a preview feature on some runtimes, in which case
+             * creating a builder fails unless previews are enabled.
+             */
+            ofVirtual.invoke();
+        } catch (Throwable e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns whether the Java runtime supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns a factory for unstarted virtual threads named {@code prefix} followed by a
+     * counter.
+     *
+     * @throws UnsupportedOperationException if the runtime does not support virtual threads
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException(
+                  "Virtual threads are not supported by Java " + Runtime.version().feature()
+                        + ".");
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke();
+            builder = NAME.invoke(builder, prefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to create virtual thread factory: " + e, e);
+        }
+    }
+
+    /**
+     * Returns an executor that runs every task on a new thread created by {@code factory}.
+     * <p>
+     * This is the appropriate way to use virtual threads: they are cheap to create and must not
+     * be pooled. Combine with a {@link BoundedExecutor} to limit concurrency.
+     */
+    public static Executor newThreadPerTaskExecutor(ThreadFactory factory) {
+        return task -> factory.newThread(task).start();
+    }
+}
@@ -0,0 +1,70 @@
+package org.dcache.commons.stats;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class LogHistogramTest {
+
+    @Test
+    public void shouldMapValuesIntoEquivalentRange() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int index = LogHistogram.indexOf(value);
+            assertThat(value, is(both(greaterThanOrEqualTo(LogHistogram.lowestEquivalentValue(index)))
+                  .and(lessThanOrEqualTo(LogHistogram.highestEquivalentValue(index)))));
+        }
+    }
+
+    @Test
+    public void shouldRecordSmallValuesExactly() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < LogHistogram.SUB_BUCKETS; i++) {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.getCount(), is((long) LogHistogram.SUB_BUCKETS));
+        assertThat(histogram.getValueAtPercentile(0), is(0L));
+        assertThat(histogram.getValueAtPercentile(100), is((long) LogHistogram.SUB_BUCKETS - 1));
+    }
+
+    @Test
+    public void shouldEstimatePercentilesWithinRelativeError() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.getMean(), is(5000.5));
+        assertThat(histogram.getMax(), is(10_000L));
+        assertThat((double) histogram.getValueAtPercentile(50),
+              is(both(greaterThanOrEqualTo(5000.0)).and(lessThanOrEqualTo(5000 * 1.0625))));
+        assertThat((double) histogram.getValueAtPercentile(99),
+              is(both(greaterThanOrEqualTo(9900.0)).and(lessThanOrEqualTo(10_000.0))));
+    }
+
+    @Test
+    public void shouldRecordNegativeValuesAsZero() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(-5);
+
+        assertThat(histogram.getMax(), is(0L));
+        assertThat(histogram.getValueAtPercentile(100), is(0L));
+    }
+
+    @Test
+    public void shouldForgetValuesOnReset() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getValueAtPercentile(50), is(0L));
+    }
+}
@@ -0,0 +1,36 @@
+package org.dcache.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void shouldRunTasksOnVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+
+        Executor executor = VirtualThreads.newThreadPerTaskExecutor(
+              VirtualThreads.newThreadFactory("test-"));
+        CompletableFuture<Thread> thread = CompletableFuture.supplyAsync(Thread::currentThread,
+              executor);
+
+        assertThat(thread.get(1, TimeUnit.SECONDS).isDaemon(), is(true));
+        assertThat(thread.get().getName(), startsWith("test-"));
+        assertThat(thread.get().toString(), startsWith("VirtualThread"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectFactoryIfUnsupported() {
+        assumeFalse(VirtualThreads.isSupported());
+
+        VirtualThreads.newThreadFactory("test-");
+    }
+}
@@ -354,6 +354,8 @@ public class DCacheAwareJdbcFs extends JdbcFs implements CellIdentityAware {
             File destinationPath = new File(destinationDirectory, dest);
             pnfsHandler.renameEntry(sourcePath.getCanonicalPath(),
                   destinationPath.getCanonicalPath(), true);
+            invalidateDentry(srcDir, source);
+            invalidateDentry(destDir, dest);
         } catch (PermissionDeniedCacheException e) {
             throw new PermissionDeniedChimeraFsException(e.getMessage());
         } catch (CacheException | IOException e) {
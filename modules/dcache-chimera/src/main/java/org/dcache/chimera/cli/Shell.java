@@ -42,6 +42,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -62,9 +63,11 @@ import org.dcache.chimera.FileNotFoundChimeraFsException;
 import org.dcache.chimera.FileSystemProvider;
 import org.dcache.chimera.FsFactory;
 import org.dcache.chimera.FsInode;
+import org.dcache.chimera.InodeAttribute;
 import org.dcache.chimera.NoLabelChimeraException;
 import org.dcache.chimera.NotDirChimeraException;
 import org.dcache.chimera.OriginTag;
+import org.dcache.chimera.TreeWalker;
 import org.dcache.chimera.UnixPermission;
 import org.dcache.chimera.namespace.ChimeraStorageInfoExtractable;
 import org.dcache.chimera.namespace.ExtendedInode;
@@ -76,6 +79,9 @@ import org.dcache.util.cli.ShellApplication;
 
 public class Shell extends ShellApplication {
 
+    private static final int WALK_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int WALK_CHUNK_SIZE = 1000;
+
     private final FileSystemProvider fs;
     private final ChimeraStorageInfoExtractable extractor;
 
@@ -256,7 +262,7 @@ public class Shell extends ShellApplication {
         }
 
         @Override
-        public Serializable call() throws IOException, CommandException {
+        public Serializable call() throws IOException, CommandException, InterruptedException {
             Stat updateOwnership = buildUpdatedOwnership(owner);
 
             FsInode inode = lookup(path);
@@ -270,24 +276,13 @@ public class Shell extends ShellApplication {
         }
 
         private void chownRecursively(Stat updateOwnership, FsInode dirNode)
-              throws IOException {
+              throws IOException, InterruptedException {
             assert dirNode.isDirectory();
 
-            try (var dirStream = dirNode.newDirectoryStream()) {
-                for (var entry : dirStream) {
-                    String name = entry.getName();
-                    if (name.equals(".") || name.equals("..")) {
-                        continue;
-                    }
-
-                    FsInode child = entry.getInode();
-                    child.setStat(updateOwnership);
-
-                    if (child.isDirectory()) {
-                        chownRecursively(updateOwnership, child);
-                    }
-                }
-            }
+            new TreeWalker(fs, WALK_PARALLELISM, WALK_PARALLELISM, WALK_CHUNK_SIZE,
+                  EnumSet.noneOf(InodeAttribute.class))
+                  .walk(dirNode, (parent, entry) -> entry.getInode().setStat(updateOwnership),
+                        new TreeWalker.Checkpoint());
         }
     }
 
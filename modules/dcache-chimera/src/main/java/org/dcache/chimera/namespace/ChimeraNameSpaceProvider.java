@@ -84,6 +84,7 @@ import org.dcache.acl.ACL;
 import org.dcache.auth.Subjects;
 import org.dcache.chimera.ChimeraDirectoryEntry;
 import org.dcache.chimera.ChimeraFsException;
+import org.dcache.chimera.ChimeraInodeEntry;
 import org.dcache.chimera.DirNotEmptyChimeraFsException;
 import org.dcache.chimera.DirectoryStreamB;
 import org.dcache.chimera.FileExistsChimeraFsException;
@@ -92,6 +93,7 @@ import org.dcache.chimera.FileState;
 import org.dcache.chimera.FileSystemProvider;
 import org.dcache.chimera.FileSystemProvider.SetXattrMode;
 import org.dcache.chimera.FsInode;
+import org.dcache.chimera.InodeAttribute;
 import org.dcache.chimera.NoXdataChimeraException;
 import org.dcache.chimera.NotDirChimeraException;
 import org.dcache.chimera.StorageGenericLocation;
@@ -122,6 +124,11 @@ public class ChimeraNameSpaceProvider
 
     private static final int INHERIT_MODE = -1;
 
+    /**
+     * Number of directory entries fetched per query when listing a directory.
+     */
+    private static final int LIST_CHUNK_SIZE = 500;
+
     public static final String TAG_EXPECTED_SIZE = "ExpectedSize";
     public static final String TAG_PATH = "Path";
     public static final String TAG_WRITE_TOKEN = "WriteToken";
@@ -1002,12 +1009,10 @@ public class ChimeraNameSpaceProvider
                     attributes.setNlink(stat.getNlink());
                     break;
                 case XATTR:
-                    Set<String> names = _fs.listXattrs(inode);
-                    Map<String, String> xattrs = new HashMap<>(names.size());
-                    for (String name : names) {
-                        byte[] data = _fs.getXattr(inode, name);
-                        xattrs.put(name, new String(data, StandardCharsets.UTF_8));
-                    }
+                    Map<String, byte[]> values = _fs.getAllXattrs(inode);
+                    Map<String, String> xattrs = new HashMap<>(values.size());
+                    values.forEach((name, data) ->
+                          xattrs.put(name, new String(data, StandardCharsets.UTF_8)));
                     attributes.setXattrs(xattrs);
                     break;
                 case LABELS:
@@ -1026,10 +1031,8 @@ public class ChimeraNameSpaceProvider
           Set<FileAttribute> attr)
           throws CacheException {
         try {
-            ExtendedInode inode = new ExtendedInode(_fs, pnfsId, STAT);
-
             if (Subjects.isExemptFromNamespaceChecks(subject)) {
-                return getFileAttributes(inode, attr);
+                return getFileAttributes(inodeWith(pnfsId, attr), attr);
             }
 
             /* If we have to authorize the check then we fetch
@@ -1040,7 +1043,7 @@ public class ChimeraNameSpaceProvider
             required.addAll(_permissionHandler.getRequiredAttributes());
             required.addAll(attr);
             FileAttributes fileAttributes =
-                  getFileAttributes(inode, required);
+                  getFileAttributes(inodeWith(pnfsId, required), required);
 
             /* The permission check is performed after we fetched the
              * attributes to avoid fetching the attributes twice.
@@ -1058,6 +1061,48 @@ public class ChimeraNameSpaceProvider
         }
     }
 
+    @Override
+    public Map<PnfsId, FileAttributes> getFileAttributes(Subject subject,
+          Collection<PnfsId> pnfsIds, Set<FileAttribute> attr)
+          throws CacheException {
+        try {
+            boolean isExempt = Subjects.isExemptFromNamespaceChecks(subject);
+            Set<FileAttribute> required = EnumSet.noneOf(FileAttribute.class);
+            required.addAll(attr);
+            if (!isExempt) {
+                required.addAll(_permissionHandler.getRequiredAttributes());
+            }
+
+            List<String> ids = pnfsIds.stream().map(PnfsId::toString)
+                  .collect(Collectors.toList());
+            Map<String, ChimeraInodeEntry> entries =
+                  _fs.getInodes(ids, inodeAttributesFor(required));
+
+            Map<PnfsId, FileAttributes> result = new HashMap<>();
+            for (PnfsId pnfsId : pnfsIds) {
+                ChimeraInodeEntry entry = entries.get(pnfsId.toString());
+                if (entry == null) {
+                    continue;
+                }
+                try {
+                    FileAttributes fileAttributes =
+                          getFileAttributes(new ExtendedInode(_fs, entry), required);
+                    if (isExempt || _permissionHandler.canGetAttributes(subject, fileAttributes,
+                          attr) == ACCESS_ALLOWED) {
+                        result.put(pnfsId, fileAttributes);
+                    }
+                } catch (FileNotFoundChimeraFsException e) {
+                    /* Not an error; files may be deleted concurrently.
+                     */
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new CacheException(CacheException.UNEXPECTED_SYSTEM_EXCEPTION,
+                  e.getMessage());
+        }
+    }
+
     @Override
     public FileAttributes setFileAttributes(Subject subject, PnfsId pnfsId,
           FileAttributes attr, Set<FileAttribute> acquire)
@@ -1237,22 +1282,17 @@ public class ChimeraNameSpaceProvider
             }
 
             int counter = 0;
-            try (DirectoryStreamB<ChimeraDirectoryEntry> dirStream = dir
-                  .newDirectoryStream()) {
+            try (DirectoryStreamB<ChimeraDirectoryEntry> dirStream =
+                  _fs.readdirPlus(dir, null, LIST_CHUNK_SIZE, inodeAttributesFor(attrs))) {
                 for (ChimeraDirectoryEntry entry : dirStream) {
                     try {
                         String name = entry.getName();
-                        if (!name.equals(".") && !name.equals("..") &&
-                              (pattern == null || pattern.matcher(name)
-                                    .matches()) &&
+                        if ((pattern == null || pattern.matcher(name).matches()) &&
                               range.contains(counter++)) {
-                            // FIXME: actually, ChimeraDirectoryEntry
-                            // already contains most of attributes
                             FileAttributes fa =
                                   attrs.isEmpty()
                                         ? null
-                                        : getFileAttributes(
-                                              new ExtendedInode(_fs, entry.getInode()), attrs);
+                                        : getFileAttributes(new ExtendedInode(_fs, entry), attrs);
                             handler.addEntry(name, fa);
                         }
                     } catch (FileNotFoundChimeraFsException e) {
@@ -1260,6 +1300,10 @@ public class ChimeraNameSpaceProvider
                          * list operation.
                          */
                     }
+                    if (range.hasUpperBound() && counter > range.upperEndpoint()) {
+                        /* Entries are ordered by name, so no later entry can be in range. */
+                        break;
+                    }
                 }
             }
 
@@ -1271,6 +1315,52 @@ public class ChimeraNameSpaceProvider
         }
     }
 
+    /**
+     * Looks up an inode together with the additional attributes needed to provide {@code attrs}.
+     * The stat information and all attribute classes are fetched with at most two queries;
+     * anything else is loaded lazily by {@link ExtendedInode} when first accessed.
+     */
+    private ExtendedInode inodeWith(PnfsId pnfsId, Set<FileAttribute> attrs)
+          throws ChimeraFsException {
+        Set<InodeAttribute> attributes = inodeAttributesFor(attrs);
+        if (attributes.isEmpty()) {
+            return new ExtendedInode(_fs, pnfsId, STAT);
+        }
+        String id = pnfsId.toString();
+        ChimeraInodeEntry entry = _fs.getInodes(Collections.singletonList(id), attributes).get(id);
+        if (entry == null) {
+            throw new FileNotFoundChimeraFsException(id);
+        }
+        return new ExtendedInode(_fs, entry);
+    }
+
+    /**
+     * Returns the inode attributes to fetch together with several inodes, such as the entries of
+     * a directory listing, so that providing {@code attrs} does not require additional queries
+     * for every inode.
+     */
+    private static Set<InodeAttribute> inodeAttributesFor(Set<FileAttribute> attrs) {
+        Set<InodeAttribute> attributes = EnumSet.noneOf(InodeAttribute.class);
+        for (FileAttribute attr : attrs) {
+            switch (attr) {
+                case LOCATIONS:
+                    attributes.add(InodeAttribute.LOCATIONS);
+                    break;
+                case STORAGEINFO:
+                case STORAGECLASS:
+                case CACHECLASS:
+                case HSM:
+                    attributes.add(InodeAttribute.LOCATIONS);
+                    attributes.add(InodeAttribute.STORAGE_INFO);
+                    break;
+                case CHECKSUM:
+                    attributes.add(InodeAttribute.CHECKSUMS);
+                    break;
+            }
+        }
+        return attributes;
+    }
+
     private ExtendedInode mkdir(Subject subject, ExtendedInode parent, String name, int uid,
           int gid, int mode)
           throws ChimeraFsException, CacheException {
@@ -33,6 +33,7 @@ import java.util.Optional;
 import org.dcache.acl.ACE;
 import org.dcache.acl.ACL;
 import org.dcache.acl.enums.RsType;
+import org.dcache.chimera.ChimeraInodeEntry;
 import org.dcache.chimera.ChimeraFsException;
 import org.dcache.chimera.FileSystemProvider;
 import org.dcache.chimera.FsInode;
@@ -76,6 +77,21 @@ public class ExtendedInode extends FsInode {
         super(fs, inode);
     }
 
+    /**
+     * Creates an inode using the stat information and any other attributes that were fetched
+     * with it, such as those of a directory entry.
+     */
+    public ExtendedInode(FileSystemProvider fs, ChimeraInodeEntry entry) {
+        super(fs, entry.getInode());
+        if (entry.getLocations() != null) {
+            locations = ImmutableList.copyOf(entry.getLocations());
+        }
+        if (entry.getChecksums() != null) {
+            checksums = ImmutableList.copyOf(entry.getChecksums());
+        }
+        storageInfo = entry.getStorageInfo();
+    }
+
     public ExtendedInode(FileSystemProvider fs, long id, FsInodeType type) {
         super(fs, id, type);
     }
@@ -6,6 +6,7 @@ import static org.dcache.namespace.FileAttribute.ACCESS_LATENCY;
 import static org.dcache.namespace.FileAttribute.ACCESS_TIME;
 import static org.dcache.namespace.FileAttribute.CHANGE_TIME;
 import static org.dcache.namespace.FileAttribute.CREATION_TIME;
+import static org.dcache.namespace.FileAttribute.LOCATIONS;
 import static org.dcache.namespace.FileAttribute.MODE;
 import static org.dcache.namespace.FileAttribute.MODIFICATION_TIME;
 import static org.dcache.namespace.FileAttribute.OWNER;
@@ -18,6 +19,8 @@ import static org.dcache.namespace.FileAttribute.TYPE;
 import static org.dcache.namespace.FileType.DIR;
 import static org.dcache.namespace.FileType.REGULAR;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -47,6 +50,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import junit.framework.JUnit4TestAdapter;
@@ -72,6 +76,7 @@ import org.dcache.namespace.PosixPermissionHandler;
 import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
 import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsGetBulkFileAttributes;
 import org.dcache.vehicles.PnfsGetFileAttributes;
 import org.dcache.vehicles.PnfsSetFileAttributes;
 import org.junit.After;
@@ -539,6 +544,33 @@ public class PnfsManagerTest {
 
     }
 
+    @Test
+    public void testGetBulkFileAttributes() throws Exception {
+        PnfsCreateEntryMessage first = new PnfsCreateEntryMessage(
+              "/pnfs/testRoot/bulkFile1", FileAttributes.ofFileType(REGULAR));
+        _pnfsManager.createEntry(first);
+        PnfsCreateEntryMessage second = new PnfsCreateEntryMessage(
+              "/pnfs/testRoot/bulkFile2", FileAttributes.ofFileType(REGULAR));
+        _pnfsManager.createEntry(second);
+
+        PnfsAddCacheLocationMessage addLocation =
+              new PnfsAddCacheLocationMessage(first.getPnfsId(), "aPool");
+        _pnfsManager.addCacheLocation(addLocation);
+
+        PnfsId missing = new PnfsId("000000000000000000000000000000000042");
+        PnfsGetBulkFileAttributes message = new PnfsGetBulkFileAttributes(
+              List.of(first.getPnfsId(), second.getPnfsId(), missing),
+              EnumSet.of(PNFSID, TYPE, LOCATIONS));
+        _pnfsManager.getBulkFileAttributes(message);
+
+        assertThat(message.getReturnCode(), is(0));
+        Map<PnfsId, FileAttributes> attributes = message.getFileAttributes();
+        assertThat(attributes.keySet(), containsInAnyOrder(first.getPnfsId(), second.getPnfsId()));
+        assertThat(attributes.get(first.getPnfsId()).getLocations(), contains("aPool"));
+        assertTrue(attributes.get(second.getPnfsId()).getLocations().isEmpty());
+        assertThat(attributes.get(second.getPnfsId()).getFileType(), is(REGULAR));
+    }
+
     @Test
     public void testIgnoreFilesizeUpdateOnFlush() throws Exception {
 
@@ -33,6 +33,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.AccessController;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
@@ -67,6 +68,7 @@ import org.dcache.chimera.FsInode_PSET;
 import org.dcache.chimera.FsInode_SURI;
 import org.dcache.chimera.FsInode_TAG;
 import org.dcache.chimera.FsInode_TAGS;
+import org.dcache.chimera.InodeAttribute;
 import org.dcache.chimera.InvalidArgumentChimeraException;
 import org.dcache.chimera.IsDirChimeraException;
 import org.dcache.chimera.JdbcFs;
@@ -126,6 +128,11 @@ public class ChimeraVfs implements VirtualFileSystem, AclCheckable {
      */
     private static final int MIN_HANDLE_LEN = 4;
 
+    /**
+     * Number of directory entries fetched per query when listing a directory.
+     */
+    private static final int LIST_CHUNK_SIZE = 1000;
+
     public ChimeraVfs(JdbcFs fs, NfsIdMapping idMapping) {
         _fs = fs;
         _idMapping = idMapping;
@@ -280,9 +287,19 @@ public class ChimeraVfs implements VirtualFileSystem, AclCheckable {
         // ignore whatever is sent by client
         byte[] currentVerifier = directoryVerifier(inode);
 
+        /* The chunked listing omits "." and "..", so add them explicitly. The root directory
+         * has no "..".
+         */
+        List<ChimeraDirectoryEntry> dots = new ArrayList<>(2);
+        dots.add(new ChimeraDirectoryEntry(".", parentFsInode, parentFsInode.stat()));
+        FsInode grandParent = parentFsInode.getParent();
+        if (grandParent != null) {
+            dots.add(new ChimeraDirectoryEntry("..", grandParent, grandParent.stat()));
+        }
+
         try (Stream<ChimeraDirectoryEntry> dirStream = DirectoryStreamHelper.streamOf(
-              parentFsInode)) {
-            TreeSet<DirectoryEntry> list = dirStream.map(
+              parentFsInode, LIST_CHUNK_SIZE, EnumSet.noneOf(InodeAttribute.class))) {
+            TreeSet<DirectoryEntry> list = Stream.concat(dots.stream(), dirStream).map(
                         e -> new DirectoryEntry(e.getName(), toInode(e.getInode()),
                               fromChimeraStat(e.getStat(), e.getInode().ino()),
                               directoryCookieOf(e.getStat(), e.getName()))
@@ -0,0 +1,70 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.vehicles;
+
+import static java.util.Objects.requireNonNull;
+
+import diskCacheV111.vehicles.Message;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Envelope for a sequence of independent requests to the same cell.
+ * <p>
+ * The receiving cell unpacks the batch, processes every item as if it had been sent on its own
+ * and returns the batch once all items have been answered. Each item carries its own return
+ * code, so a failure of one item does not fail the batch. The return code of the batch itself is
+ * only set if the batch as a whole could not be processed.
+ * <p>
+ * In the reply, the items are in the same order as in the request. Only messages that are
+ * answered with a single reply may be batched; streaming replies such as those of
+ * {@link PnfsListDirectoryMessage} are not supported.
+ */
+public class BatchMessage extends Message {
+
+    private static final long serialVersionUID = -6618301418786329845L;
+
+    private final ArrayList<Message> _items;
+
+    public BatchMessage(List<? extends Message> items) {
+        super(true);
+        _items = new ArrayList<>(requireNonNull(items));
+    }
+
+    public List<Message> getItems() {
+        return Collections.unmodifiableList(_items);
+    }
+
+    public int size() {
+        return _items.size();
+    }
+
+    /**
+     * Replaces the item at the given position with its reply.
+     */
+    public void setItem(int index, Message reply) {
+        _items.set(index, requireNonNull(reply));
+    }
+
+    @Override
+    public String toString() {
+        return "BatchMessage[" + _items.size() + " items]" + super.toString();
+    }
+}
@@ -81,7 +81,7 @@ public class FileAttributes implements Serializable, Cloneable {
     /**
      * Set of attributes which have been set.
      */
-    private final EnumSet<FileAttribute> _definedAttributes =
+    private EnumSet<FileAttribute> _definedAttributes =
           EnumSet.noneOf(FileAttribute.class);
 
     /**
@@ -200,10 +200,18 @@ public class FileAttributes implements Serializable, Cloneable {
 
     private Set<String> _labels;
 
+    /**
+     * Attributes read through the getters, if access is tracked. Shared with clones, and thus
+     * updated concurrently by any thread reading this object or one of its clones.
+     */
+    private transient volatile Set<FileAttribute> _accessedAttributes;
+
     @Override
     public FileAttributes clone() {
         try {
             FileAttributes clone = (FileAttributes) super.clone();
+            clone._definedAttributes = EnumSet.copyOf(_definedAttributes);
+            clone._labels = null;
 
             if (isDefined(ACL)) {
                 clone.setAcl(getAcl());
@@ -294,7 +302,7 @@ public class FileAttributes implements Serializable, Cloneable {
             }
 
             if (isDefined(XATTR)) {
-                clone.setXattrs(_xattr);
+                clone.setXattrs(_xattr == null ? null : new HashMap<>(_xattr));
             }
 
             if (isDefined(LABELS)) {
@@ -315,6 +323,23 @@ public class FileAttributes implements Serializable, Cloneable {
             throw new IllegalStateException("Attribute is not defined: " +
                   attribute);
         }
+        Set<FileAttribute> accessed = _accessedAttributes;
+        if (accessed != null) {
+            accessed.add(attribute);
+        }
+    }
+
+    /**
+     * Records every attribute subsequently read from this object, or from any of its clones, in
+     * {@code accessed}. Used to find callers that request attributes they never use. The
+     * set is not transferred when the object is serialized.
+     * <p>
+     * The set is updated by whichever thread reads an attribute and must therefore be safe for
+     * concurrent use, such as a set created by {@link
+     * java.util.concurrent.ConcurrentHashMap#newKeySet()}.
+     */
+    public void trackAccessIn(Set<FileAttribute> accessed) {
+        _accessedAttributes = accessed;
     }
 
     private void define(FileAttribute... attributes) {
@@ -676,7 +701,10 @@ public class FileAttributes implements Serializable, Cloneable {
     }
 
     public Set<String> getLabels() {
-
+        Set<FileAttribute> accessed = _accessedAttributes;
+        if (accessed != null) {
+            accessed.add(LABELS);
+        }
         return _labels == null ? new HashSet() : _labels;
     }
 
@@ -769,7 +797,11 @@ public class FileAttributes implements Serializable, Cloneable {
 
     @Nonnull
     private <T> Optional<T> toOptional(FileAttribute attribute, T value) {
-        return isDefined(attribute) ? Optional.of(value) : Optional.empty();
+        if (!isDefined(attribute)) {
+            return Optional.empty();
+        }
+        guard(attribute);
+        return Optional.of(value);
     }
 
     private void readObject(ObjectInputStream stream)
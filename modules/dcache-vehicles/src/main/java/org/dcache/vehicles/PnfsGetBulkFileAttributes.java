@@ -0,0 +1,103 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.vehicles;
+
+import static java.util.Objects.requireNonNull;
+
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.Message;
+import diskCacheV111.vehicles.PnfsMessage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.dcache.namespace.FileAttribute;
+
+/**
+ * Requests the file attributes of several files at once.
+ * <p>
+ * Unlike a {@link BatchMessage} of {@link PnfsGetFileAttributes}, which PnfsManager processes
+ * item by item, the attributes of all files are fetched from the name space with a fixed number
+ * of queries. This is intended for services that work on many files, such as the QoS scanner or
+ * the migration module.
+ * <p>
+ * Files that do not exist or whose attributes the subject is not allowed to read are not
+ * included in the reply. Unlike for {@link PnfsGetFileAttributes}, the storage info is not
+ * enriched with the path, owner and extended attributes of the file.
+ */
+public class PnfsGetBulkFileAttributes extends PnfsMessage {
+
+    private static final long serialVersionUID = 4427810391236870519L;
+
+    private final ArrayList<PnfsId> _pnfsIds;
+    private final Set<FileAttribute> _attributes;
+    private HashMap<PnfsId, FileAttributes> _fileAttributes;
+
+    public PnfsGetBulkFileAttributes(Collection<PnfsId> pnfsIds, Set<FileAttribute> attr) {
+        _pnfsIds = new ArrayList<>(requireNonNull(pnfsIds));
+        _attributes = attr.isEmpty() ? EnumSet.noneOf(FileAttribute.class) : EnumSet.copyOf(attr);
+        setReplyRequired(true);
+    }
+
+    public List<PnfsId> getPnfsIds() {
+        return Collections.unmodifiableList(_pnfsIds);
+    }
+
+    /**
+     * Get set of requested {@link FileAttributes}. An empty set indicates that the client is
+     * interested in file existence only.
+     */
+    public Set<FileAttribute> getRequestedAttributes() {
+        return _attributes;
+    }
+
+    public void setFileAttributes(Map<PnfsId, FileAttributes> fileAttributes) {
+        _fileAttributes = new HashMap<>(fileAttributes);
+    }
+
+    /**
+     * Returns the attributes of the files that exist and are readable by the subject.
+     */
+    public Map<PnfsId, FileAttributes> getFileAttributes() {
+        return _fileAttributes == null
+              ? Collections.emptyMap()
+              : Collections.unmodifiableMap(_fileAttributes);
+    }
+
+    @Override
+    public boolean invalidates(Message message) {
+        return false;
+    }
+
+    @Override
+    public boolean fold(Message message) {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "PnfsGetBulkFileAttributes[files=" + _pnfsIds.size()
+              + (_fileAttributes == null ? "" : ",found=" + _fileAttributes.size())
+              + ",attributes=" + _attributes + ']';
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.dcache.vehicles;
 
+import static org.dcache.namespace.FileAttribute.SIZE;
 import static org.dcache.namespace.FileAttribute.XATTR;
 import static org.dcache.util.FileAttributesBuilder.fileAttributes;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -85,6 +86,19 @@ public class FileAttributesTest {
         assertThat(fileAttributes.getXattrs(), hasEntry("my-xattr", "my-value"));
     }
 
+    @Test
+    public void shouldCloneIndependently() {
+        given(fileAttributes().withXattr("my-xattr", "my-value"));
+
+        FileAttributes clone = fileAttributes.clone();
+        clone.setSize(42);
+        clone.updateXattr("my-xattr", "my-other-value");
+
+        assertFalse(fileAttributes.isDefined(SIZE));
+        assertTrue(clone.isDefined(SIZE));
+        assertThat(fileAttributes.getXattrs(), hasEntry("my-xattr", "my-value"));
+    }
+
     private void given(FileAttributesBuilder builder) {
         fileAttributes = builder.build();
     }
@@ -0,0 +1,478 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package diskCacheV111.namespace;
+
+import static java.util.Objects.requireNonNull;
+import static org.dcache.acl.enums.AccessType.ACCESS_ALLOWED;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.FileNotFoundCacheException;
+import diskCacheV111.util.FsPath;
+import diskCacheV111.util.PermissionDeniedCacheException;
+import diskCacheV111.util.PnfsId;
+import dmg.cells.nucleus.CellInfoProvider;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.security.auth.Subject;
+import org.dcache.auth.Subjects;
+import org.dcache.namespace.CreateOption;
+import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.FileType;
+import org.dcache.namespace.PermissionHandler;
+import org.dcache.util.ChecksumType;
+import org.dcache.vehicles.FileAttributes;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * An implementation of NameSpaceProvider that wraps some other instance of NameSpaceProvider and
+ * caches the attributes of files.
+ * <p>
+ * File attribute lookups by PNFS id are served from the cache if all requested attributes and
+ * the attributes required by the permission handler are cached; the permission check is
+ * performed on the cached attributes. Otherwise the attributes are fetched from the wrapped
+ * provider, together with those already cached for the file, and the cache entry is replaced.
+ * Directories are not cached, as their attributes change with every entry created or deleted.
+ * <p>
+ * Updates made through this provider invalidate the affected entries. Files identified by path
+ * only, including files replaced by a rename or an upload, are resolved to their PNFS id before
+ * the update; the entire cache is only invalidated if that fails. Updates made by other clients
+ * of the name space are only observed once the entry expires.
+ */
+public class CachingNameSpaceProvider extends ForwardingNameSpaceProvider
+      implements CellInfoProvider {
+
+    private static final Set<FileAttribute> ALWAYS_FETCHED =
+          EnumSet.of(FileAttribute.PNFSID, FileAttribute.TYPE);
+
+    /**
+     * Number of stripes of the invalidation counters.
+     */
+    private static final int STRIPES = 1024;
+
+    private NameSpaceProvider delegate;
+    private PermissionHandler permissionHandler;
+    private long maximumSize;
+    private long lifetime;
+    private TimeUnit lifetimeUnit;
+
+    private Cache<PnfsId, FileAttributes> cache;
+
+    /* A lookup only populates the cache if the file has not been invalidated while the lookup
+     * was in progress. Invalidations are counted per stripe of PNFS ids and globally.
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+    private final AtomicLong globalInvalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLongArray attributeHits = new AtomicLongArray(FileAttribute.values().length);
+    private final AtomicLongArray attributeMisses = new AtomicLongArray(
+          FileAttribute.values().length);
+
+    @Required
+    public void setNameSpaceProvider(NameSpaceProvider namespace) {
+        delegate = requireNonNull(namespace);
+    }
+
+    @Required
+    public void setPermissionHandler(PermissionHandler handler) {
+        permissionHandler = requireNonNull(handler);
+    }
+
+    /**
+     * Sets the approximate memory footprint of the cache in bytes. Zero disables the cache.
+     */
+    @Required
+    public void setMaximumSize(long size) {
+        maximumSize = size;
+    }
+
+    @Required
+    public void setLifetime(long lifetime) {
+        this.lifetime = lifetime;
+    }
+
+    @Required
+    public void setLifetimeUnit(TimeUnit unit) {
+        lifetimeUnit = requireNonNull(unit);
+    }
+
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+              .maximumWeight(maximumSize)
+              .weigher((PnfsId id, FileAttributes attributes) -> weigh(attributes))
+              .expireAfterWrite(lifetime, lifetimeUnit)
+              .build();
+    }
+
+    @Override
+    protected NameSpaceProvider delegate() {
+        return delegate;
+    }
+
+    @Override
+    public FileAttributes getFileAttributes(Subject subject, PnfsId pnfsId,
+          Set<FileAttribute> attr) throws CacheException {
+        if (maximumSize == 0) {
+            return super.getFileAttributes(subject, pnfsId, attr);
+        }
+
+        boolean isExempt = Subjects.isExemptFromNamespaceChecks(subject);
+        Set<FileAttribute> required = EnumSet.copyOf(ALWAYS_FETCHED);
+        required.addAll(attr);
+        if (!isExempt) {
+            required.addAll(permissionHandler.getRequiredAttributes());
+        }
+
+        FileAttributes cached = cache.getIfPresent(pnfsId);
+        for (FileAttribute attribute : attr) {
+            if (cached != null && cached.isDefined(attribute)) {
+                attributeHits.incrementAndGet(attribute.ordinal());
+            } else {
+                attributeMisses.incrementAndGet(attribute.ordinal());
+            }
+        }
+
+        if (cached != null && cached.isDefined(required)) {
+            hits.increment();
+            if (!isExempt
+                  && permissionHandler.canGetAttributes(subject, cached, attr) != ACCESS_ALLOWED) {
+                throw new PermissionDeniedCacheException("Access denied: " + pnfsId);
+            }
+            return cached.clone();
+        }
+
+        misses.increment();
+        if (cached != null) {
+            required.addAll(cached.getDefinedAttributes());
+        }
+        long stamp = stampOf(pnfsId);
+        FileAttributes attributes = super.getFileAttributes(subject, pnfsId, required);
+        if (attributes.isDefined(ALWAYS_FETCHED) && attributes.getFileType() != FileType.DIR) {
+            FileAttributes entry = attributes.clone();
+            synchronized (this) {
+                if (stamp == stampOf(pnfsId)) {
+                    cache.put(pnfsId, entry);
+                }
+            }
+        }
+        return attributes;
+    }
+
+    private long stampOf(PnfsId pnfsId) {
+        return globalInvalidations.get() + invalidations.get(stripeOf(pnfsId));
+    }
+
+    private static int stripeOf(PnfsId pnfsId) {
+        return Math.floorMod(pnfsId.hashCode(), STRIPES);
+    }
+
+    private void invalidate(PnfsId pnfsId) {
+        if (pnfsId != null && cache != null) {
+            synchronized (this) {
+                invalidations.incrementAndGet(stripeOf(pnfsId));
+            }
+            cache.invalidate(pnfsId);
+        }
+    }
+
+    private void invalidate(FileAttributes attributes) {
+        if (attributes != null && attributes.isDefined(FileAttribute.PNFSID)) {
+            invalidate(attributes.getPnfsId());
+        }
+    }
+
+    /**
+     * Returns the PNFS id of the file at {@code path}, or null if there is no such file.
+     */
+    private PnfsId pnfsIdOf(String path, boolean followLinks) throws CacheException {
+        try {
+            return super.pathToPnfsid(Subjects.ROOT, path, followLinks);
+        } catch (FileNotFoundCacheException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the files about to be updated, so that their entries can be invalidated once
+     * the update is done. A null element of {@code ids} stands for a file that could not be
+     * resolved.
+     */
+    private void resolve(List<PnfsId> ids, String path, boolean followLinks) {
+        if (maximumSize > 0) {
+            try {
+                PnfsId id = pnfsIdOf(path, followLinks);
+                if (id != null) {
+                    ids.add(id);
+                }
+            } catch (CacheException | RuntimeException e) {
+                ids.add(null);
+            }
+        }
+    }
+
+    private void invalidate(List<PnfsId> ids) {
+        if (ids.contains(null)) {
+            invalidateAll();
+        } else {
+            for (PnfsId id : ids) {
+                invalidate(id);
+            }
+        }
+    }
+
+    private void invalidateAll() {
+        if (cache != null) {
+            synchronized (this) {
+                globalInvalidations.incrementAndGet();
+            }
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns an estimate of the memory footprint of the given attributes in bytes.
+     */
+    private static int weigh(FileAttributes attributes) {
+        int weight = 256;
+        if (attributes.isDefined(FileAttribute.LOCATIONS)) {
+            weight += 64 * attributes.getLocations().size();
+        }
+        if (attributes.isDefined(FileAttribute.CHECKSUM)) {
+            weight += 96 * attributes.getChecksums().size();
+        }
+        if (attributes.isDefined(FileAttribute.ACL)) {
+            weight += 64 * attributes.getAcl().getList().size();
+        }
+        if (attributes.isDefined(FileAttribute.STORAGEINFO)) {
+            weight += 512;
+        }
+        if (attributes.isDefined(FileAttribute.FLAGS)) {
+            weight += attributes.getFlags().entrySet().stream()
+                  .mapToInt(e -> 64 + 2 * (e.getKey().length() + e.getValue().length()))
+                  .sum();
+        }
+        if (attributes.isDefined(FileAttribute.XATTR)) {
+            weight += attributes.getXattrs().entrySet().stream()
+                  .mapToInt(e -> 64 + 2 * (e.getKey().length() + e.getValue().length()))
+                  .sum();
+        }
+        if (attributes.isDefined(FileAttribute.LABELS)) {
+            weight += attributes.getLabels().stream().mapToInt(l -> 48 + 2 * l.length()).sum();
+        }
+        return weight;
+    }
+
+    @Override
+    public FileAttributes deleteEntry(Subject subject, Set<FileType> allowed,
+          PnfsId pnfsId, Set<FileAttribute> attr) throws CacheException {
+        try {
+            return super.deleteEntry(subject, allowed, pnfsId, attr);
+        } finally {
+            invalidate(pnfsId);
+        }
+    }
+
+    @Override
+    public FileAttributes deleteEntry(Subject subject, Set<FileType> allowed,
+          String path, Set<FileAttribute> attr) throws CacheException {
+        Set<FileAttribute> fetch = EnumSet.of(FileAttribute.PNFSID);
+        fetch.addAll(attr);
+        FileAttributes deleted = super.deleteEntry(subject, allowed, path, fetch);
+        invalidate(deleted);
+        return deleted;
+    }
+
+    @Override
+    public FileAttributes deleteEntry(Subject subject, Set<FileType> allowed,
+          PnfsId pnfsId, String path, Set<FileAttribute> attr) throws CacheException {
+        try {
+            return super.deleteEntry(subject, allowed, pnfsId, path, attr);
+        } finally {
+            invalidate(pnfsId);
+        }
+    }
+
+    @Override
+    public void rename(Subject subject, PnfsId pnfsId, String sourcePath,
+          String destinationPath, boolean overwrite) throws CacheException {
+        List<PnfsId> affected = new ArrayList<>(2);
+        if (pnfsId != null) {
+            affected.add(pnfsId);
+        } else {
+            resolve(affected, sourcePath, false);
+        }
+        if (overwrite) {
+            resolve(affected, destinationPath, false);
+        }
+        try {
+            super.rename(subject, pnfsId, sourcePath, destinationPath, overwrite);
+        } finally {
+            invalidate(affected);
+        }
+    }
+
+    @Override
+    public void removeFileAttribute(Subject subject, PnfsId pnfsId,
+          String attribute) throws CacheException {
+        try {
+            super.removeFileAttribute(subject, pnfsId, attribute);
+        } finally {
+            invalidate(pnfsId);
+        }
+    }
+
+    @Override
+    public void removeChecksum(Subject subject, PnfsId pnfsId,
+          ChecksumType type) throws CacheException {
+        try {
+            super.removeChecksum(subject, pnfsId, type);
+        } finally {
+            invalidate(pnfsId);
+        }
+    }
+
+    @Override
+    public void addCacheLocation(Subject subject, PnfsId pnfsId,
+          String cacheLocation) throws CacheException {
+        try {
+            super.addCacheLocation(subject, pnfsId, cacheLocation);
+        } finally {
+            invalidate(pnfsId);
+        }
+    }
+
+    @Override
+    public void clearCacheLocation(Subject subject, PnfsId pnfsId,
+          String cacheLocation, boolean removeIfLast) throws CacheException {
+        try {
+            super.clearCacheLocation(subject, pnfsId, cacheLocation, removeIfLast);
+        } finally {
+            invalidate(pnfsId);
+        }
+    }
+
+    @Override
+    public FileAttributes setFileAttributes(Subject subject, PnfsId pnfsId,
+          FileAttributes attr, Set<FileAttribute> fetch) throws CacheException {
+        try {
+            return super.setFileAttributes(subject, pnfsId, attr, fetch);
+        } finally {
+            invalidate(pnfsId);
+        }
+    }
+
+    @Override
+    public FileAttributes commitUpload(Subject subject, FsPath uploadPath,
+          FsPath path, Set<CreateOption> options, Set<FileAttribute> fetch)
+          throws CacheException {
+        List<PnfsId> affected = new ArrayList<>(2);
+        resolve(affected, uploadPath.toString(), false);
+        if (options.contains(CreateOption.OVERWRITE_EXISTING)) {
+            resolve(affected, path.toString(), false);
+        }
+        try {
+            return super.commitUpload(subject, uploadPath, path, options, fetch);
+        } finally {
+            invalidate(affected);
+        }
+    }
+
+    @Override
+    public Collection<FileAttributes> cancelUpload(Subject subject,
+          FsPath uploadPath, FsPath path, Set<FileAttribute> attr,
+          String explanation) throws CacheException {
+        List<PnfsId> affected = new ArrayList<>(1);
+        resolve(affected, uploadPath.toString(), false);
+        try {
+            return super.cancelUpload(subject, uploadPath, path, attr, explanation);
+        } finally {
+            invalidate(affected);
+        }
+    }
+
+    @Override
+    public void writeExtendedAttribute(Subject subject, FsPath path, String name,
+          byte[] value, SetExtendedAttributeMode mode) throws CacheException {
+        List<PnfsId> affected = new ArrayList<>(1);
+        resolve(affected, path.toString(), true);
+        try {
+            super.writeExtendedAttribute(subject, path, name, value, mode);
+        } finally {
+            invalidate(affected);
+        }
+    }
+
+    @Override
+    public void removeExtendedAttribute(Subject subject, FsPath path, String name)
+          throws CacheException {
+        List<PnfsId> affected = new ArrayList<>(1);
+        resolve(affected, path.toString(), true);
+        try {
+            super.removeExtendedAttribute(subject, path, name);
+        } finally {
+            invalidate(affected);
+        }
+    }
+
+    @Override
+    public void removeLabel(Subject subject, FsPath path, String name) throws CacheException {
+        List<PnfsId> affected = new ArrayList<>(1);
+        resolve(affected, path.toString(), true);
+        try {
+            super.removeLabel(subject, path, name);
+        } finally {
+            invalidate(affected);
+        }
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        if (maximumSize == 0) {
+            pw.println("Attribute cache: disabled");
+            return;
+        }
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        pw.println("Attribute cache:");
+        pw.println("    Entries  : " + cache.size());
+        pw.println("    Lifetime : " + lifetime + " " + lifetimeUnit);
+        pw.println("    Hits     : " + hitCount + " of " + lookups
+              + (lookups == 0 ? "" : String.format(" (%.1f%%)", 100.0 * hitCount / lookups)));
+        pw.println("    Attribute             hits     misses");
+        for (FileAttribute attribute : FileAttribute.values()) {
+            long attributeHitCount = attributeHits.get(attribute.ordinal());
+            long attributeMissCount = attributeMisses.get(attribute.ordinal());
+            if (attributeHitCount + attributeMissCount > 0) {
+                pw.println(String.format("    %-17s %10d %10d", attribute, attributeHitCount,
+                      attributeMissCount));
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import diskCacheV111.util.PnfsId;
 import diskCacheV111.util.RetentionPolicy;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.security.auth.Subject;
 import org.dcache.namespace.CreateOption;
@@ -143,6 +144,12 @@ public abstract class ForwardingNameSpaceProvider implements NameSpaceProvider {
         return delegate().getFileAttributes(subject, pnfsId, attr);
     }
 
+    @Override
+    public Map<PnfsId, FileAttributes> getFileAttributes(Subject subject,
+          Collection<PnfsId> pnfsIds, Set<FileAttribute> attr) throws CacheException {
+        return delegate().getFileAttributes(subject, pnfsIds, attr);
+    }
+
     @Override
     public FileAttributes setFileAttributes(Subject subject, PnfsId pnfsId,
           FileAttributes attr, Set<FileAttribute> fetch) throws CacheException {
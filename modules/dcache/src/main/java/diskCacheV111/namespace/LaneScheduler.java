@@ -0,0 +1,351 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package diskCacheV111.namespace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import dmg.cells.nucleus.CellMessage;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Schedules name space requests onto a fixed set of worker threads.
+ * <p>
+ * Requests are assigned to a lane by the hash of their key, typically the PNFS id or path of
+ * the target. Every worker has a home lane that it serves first; a worker that finds its home
+ * lane empty steals requests from the other lanes. Requests with the same key are never
+ * processed concurrently and are processed in submission order, but a request is not held up by
+ * a slow request with a different key that happens to share its lane.
+ * <p>
+ * Within a lane, requests for which the preference predicate holds are taken ahead of older
+ * requests, as long as this does not reorder requests with the same key. To avoid starvation,
+ * the request at the head of a lane is taken once it has been overtaken {@value #MAX_BYPASS}
+ * times.
+ */
+class LaneScheduler {
+
+    /**
+     * Maximum number of queued requests inspected per lane when looking for an eligible
+     * request.
+     */
+    private static final int SCAN_LIMIT = 64;
+
+    /**
+     * Number of times the request at the head of a lane may be overtaken by preferred requests.
+     */
+    static final int MAX_BYPASS = 16;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition hasWork = lock.newCondition();
+    private final Lane[] lanes;
+    private final int maxLaneSize;
+    private final Predicate<CellMessage> isPreferred;
+
+    /* Keys of requests currently being processed, guarded by lock. */
+    private final Set<Object> activeKeys = new HashSet<>();
+    private boolean isShutdown;
+
+    /**
+     * A queued or active request.
+     */
+    static class Request {
+
+        private final CellMessage envelope;
+        private final Object key;
+        private final boolean isPreferred;
+        private final Lane lane;
+        private final long enqueuedAt = System.nanoTime();
+        private int bypassed;
+
+        private Request(CellMessage envelope, Object key, boolean isPreferred, Lane lane) {
+            this.envelope = envelope;
+            this.key = key;
+            this.isPreferred = isPreferred;
+            this.lane = lane;
+        }
+
+        CellMessage getEnvelope() {
+            return envelope;
+        }
+    }
+
+    private static class Lane {
+
+        private final Deque<Request> queue = new ArrayDeque<>();
+        private int maxDepth;
+        private long processed;
+        private long stolen;
+        private long totalWait;
+        private long maxWait;
+    }
+
+    /**
+     * @param lanes       number of lanes, and thus of workers
+     * @param maxLaneSize maximum number of requests queued per lane, or zero for no limit
+     * @param isPreferred selects requests that are taken ahead of other requests
+     */
+    LaneScheduler(int lanes, int maxLaneSize, Predicate<CellMessage> isPreferred) {
+        checkArgument(lanes > 0, "Number of lanes must be positive");
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane();
+        }
+        this.maxLaneSize = maxLaneSize;
+        this.isPreferred = isPreferred;
+    }
+
+    int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Returns the lane requests with the given key are queued in.
+     */
+    int laneOf(Object key) {
+        return (int) (Math.abs((long) key.hashCode()) % lanes.length);
+    }
+
+    /**
+     * Queues a request.
+     *
+     * @param key      key of the request, or null if the request may be processed at any time
+     *                 and is placed in a random lane
+     * @param envelope the request
+     * @return the lane the request was queued in, or -1 if the lane is full or the scheduler has
+     * been shut down
+     */
+    int offer(Object key, CellMessage envelope) {
+        int index = (key == null) ? ThreadLocalRandom.current().nextInt(lanes.length) : laneOf(key);
+        Lane lane = lanes[index];
+        boolean preferred = isPreferred.test(envelope);
+        lock.lock();
+        try {
+            if (isShutdown || (maxLaneSize > 0 && lane.queue.size() >= maxLaneSize)) {
+                return -1;
+            }
+            lane.queue.add(new Request(envelope, key, preferred, lane));
+            lane.maxDepth = Math.max(lane.maxDepth, lane.queue.size());
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+        return index;
+    }
+
+    /**
+     * Waits for and returns the next eligible request. The caller must call {@link #done} once
+     * the request has been processed.
+     *
+     * @param worker the worker, whose home lane is served first
+     * @return the next request, or null if the scheduler has been shut down
+     */
+    Request take(int worker) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!isShutdown) {
+                for (int i = 0; i < lanes.length; i++) {
+                    Lane lane = lanes[(worker + i) % lanes.length];
+                    Request request = poll(lane);
+                    if (request != null) {
+                        long wait = System.nanoTime() - request.enqueuedAt;
+                        lane.processed++;
+                        lane.totalWait += wait;
+                        lane.maxWait = Math.max(lane.maxWait, wait);
+                        if (i > 0) {
+                            lane.stolen++;
+                        }
+                        if (request.key != null) {
+                            activeKeys.add(request.key);
+                        }
+                        return request;
+                    }
+                }
+                hasWork.await();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns the request to process next from a lane, or null if the lane holds no
+     * eligible request. A request is eligible if no request with the same key is active or
+     * queued ahead of it.
+     */
+    private Request poll(Lane lane) {
+        Request head = null;
+        Request candidate = null;
+        Set<Object> seen = new HashSet<>();
+        int scanned = 0;
+        for (Iterator<Request> i = lane.queue.iterator(); i.hasNext() && scanned < SCAN_LIMIT;
+              scanned++) {
+            Request request = i.next();
+            boolean isEligible = request.key == null
+                  || (!activeKeys.contains(request.key) && !seen.contains(request.key));
+            if (isEligible) {
+                if (head == null) {
+                    head = request;
+                    candidate = request;
+                    if (request.isPreferred || request.bypassed >= MAX_BYPASS) {
+                        break;
+                    }
+                } else if (request.isPreferred) {
+                    candidate = request;
+                    break;
+                }
+            }
+            if (request.key != null) {
+                seen.add(request.key);
+            }
+        }
+        if (candidate != null) {
+            if (candidate != head) {
+                head.bypassed++;
+            }
+            lane.queue.removeFirstOccurrence(candidate);
+        }
+        return candidate;
+    }
+
+    /**
+     * Signals that processing of a request has completed, allowing requests with the same key
+     * to be taken.
+     */
+    void done(Request request) {
+        lock.lock();
+        try {
+            if (request.key != null) {
+                activeKeys.remove(request.key);
+                hasWork.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes queued requests that may be answered with the result of a processed request.
+     * <p>
+     * The lane of the processed request is inspected in order. Inspection stops at the first
+     * request that is invalidated by the processed request; any request before it for which the
+     * fold predicate holds is removed and returned.
+     */
+    List<CellMessage> fold(Request processed, Predicate<CellMessage> invalidates,
+          Predicate<CellMessage> fold) {
+        List<CellMessage> folded = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<Request> i = processed.lane.queue.iterator();
+            while (i.hasNext()) {
+                CellMessage envelope = i.next().envelope;
+                if (invalidates.test(envelope)) {
+                    break;
+                }
+                if (fold.test(envelope)) {
+                    i.remove();
+                    folded.add(envelope);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return folded;
+    }
+
+    /**
+     * Shuts down the scheduler. Workers waiting for requests are released and the requests
+     * still queued are returned.
+     */
+    List<CellMessage> shutdown() {
+        List<CellMessage> drained = new ArrayList<>();
+        lock.lock();
+        try {
+            isShutdown = true;
+            for (Lane lane : lanes) {
+                lane.queue.forEach(r -> drained.add(r.envelope));
+                lane.queue.clear();
+            }
+            hasWork.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return drained;
+    }
+
+    /**
+     * Returns the requests queued in a lane.
+     */
+    List<CellMessage> getQueued(int lane) {
+        checkArgument(lane >= 0 && lane < lanes.length, "Illegal lane #%s", lane);
+        lock.lock();
+        try {
+            List<CellMessage> queued = new ArrayList<>(lanes[lane].queue.size());
+            lanes[lane].queue.forEach(r -> queued.add(r.envelope));
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            int size = 0;
+            for (Lane lane : lanes) {
+                size += lane.queue.size();
+            }
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void getInfo(PrintWriter pw) {
+        lock.lock();
+        try {
+            pw.println("Lanes (" + lanes.length + ")  depth    max  processed     stolen"
+                  + "  avg wait [ms]  max wait [ms]");
+            int total = 0;
+            for (int i = 0; i < lanes.length; i++) {
+                Lane lane = lanes[i];
+                total += lane.queue.size();
+                pw.println(String.format("    [%d] %10d %6d %10d %10d %14.2f %14d", i,
+                      lane.queue.size(), lane.maxDepth, lane.processed, lane.stolen,
+                      lane.processed == 0 ? 0.0 : lane.totalWait / (lane.processed * 1e6),
+                      TimeUnit.NANOSECONDS.toMillis(lane.maxWait)));
+            }
+            pw.println("Queued: " + total + ", active keys: " + activeKeys.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
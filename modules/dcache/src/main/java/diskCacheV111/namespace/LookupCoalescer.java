@@ -0,0 +1,208 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package diskCacheV111.namespace;
+
+import static java.util.stream.Collectors.toSet;
+
+import dmg.cells.nucleus.CellMessage;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import javax.security.auth.Subject;
+import org.dcache.auth.GidPrincipal;
+import org.dcache.auth.Subjects;
+import org.dcache.auth.UidPrincipal;
+import org.dcache.namespace.FileAttribute;
+import org.dcache.vehicles.PnfsGetFileAttributes;
+
+/**
+ * Coalesces identical concurrent file attribute lookups.
+ * <p>
+ * A lookup that arrives while an identical lookup is queued or being processed is attached to
+ * the pending lookup rather than processed on its own, and is answered with its result. Two
+ * lookups are identical if they target the same PNFS id or path, request the same attributes
+ * with the same options and restriction, and are issued by subjects in the same permission
+ * class, i.e. with the same UIDs and GIDs. Other principals, such as the origin, do not affect
+ * the result of a lookup.
+ * <p>
+ * To preserve the order of requests on the same file, any other request for the same target
+ * closes the pending lookups of that target: later lookups are processed after that request
+ * rather than joining a lookup issued before it.
+ */
+class LookupCoalescer {
+
+    private static class Key {
+
+        private final Object target;
+        private final String path;
+        private final Set<FileAttribute> attributes;
+        private final boolean updateAtime;
+        private final boolean followSymlink;
+        private final Object accessMask;
+        private final Object restriction;
+        private final boolean isExempt;
+        private final Set<Principal> principals;
+        private final int hashCode;
+
+        private Key(Object target, PnfsGetFileAttributes message) {
+            Subject subject = message.getSubject();
+            this.target = target;
+            this.path = message.getPnfsPath();
+            Set<FileAttribute> requested = message.getRequestedAttributes();
+            this.attributes = requested.isEmpty()
+                  ? EnumSet.noneOf(FileAttribute.class) : EnumSet.copyOf(requested);
+            this.updateAtime = message.getUpdateAtime();
+            this.followSymlink = message.isFollowSymlink();
+            this.accessMask = message.getAccessMask();
+            this.restriction = message.getRestriction();
+            this.isExempt = Subjects.isExemptFromNamespaceChecks(subject);
+            this.principals = subject.getPrincipals().stream()
+                  .filter(p -> p instanceof UidPrincipal || p instanceof GidPrincipal)
+                  .collect(toSet());
+            this.hashCode = Objects.hash(target, path, attributes, updateAtime, followSymlink,
+                  accessMask, restriction, isExempt, principals);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                  && updateAtime == other.updateAtime
+                  && followSymlink == other.followSymlink
+                  && isExempt == other.isExempt
+                  && target.equals(other.target)
+                  && Objects.equals(path, other.path)
+                  && attributes.equals(other.attributes)
+                  && Objects.equals(accessMask, other.accessMask)
+                  && Objects.equals(restriction, other.restriction)
+                  && principals.equals(other.principals);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class Lookup {
+
+        private final Object target;
+        private final Key key;
+        private final List<CellMessage> waiters = new ArrayList<>();
+
+        private Lookup(Object target, Key key) {
+            this.target = target;
+            this.key = key;
+        }
+    }
+
+    /* Lookups that may still be joined, by target; guarded by this. */
+    private final Map<Object, Map<Key, Lookup>> joinable = new HashMap<>();
+
+    /* All pending lookups, by the envelope of the leading request; guarded by this. The
+     * identity of the envelope is used as its UOID changes when the reply is sent. */
+    private final Map<CellMessage, Lookup> pending = new IdentityHashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Registers a lookup.
+     *
+     * @param target   the PNFS id or path of the lookup
+     * @param envelope the lookup request
+     * @return true if the request was attached to a pending lookup, in which case the caller
+     * must not process it
+     */
+    boolean join(Object target, CellMessage envelope) {
+        PnfsGetFileAttributes message = (PnfsGetFileAttributes) envelope.getMessageObject();
+        Key key = new Key(target, message);
+        lookups.increment();
+        synchronized (this) {
+            Map<Key, Lookup> lookupsOfTarget = joinable.computeIfAbsent(target,
+                  t -> new HashMap<>());
+            Lookup lookup = lookupsOfTarget.get(key);
+            if (lookup != null) {
+                lookup.waiters.add(envelope);
+                coalesced.increment();
+                return true;
+            }
+            lookup = new Lookup(target, key);
+            lookupsOfTarget.put(key, lookup);
+            pending.put(envelope, lookup);
+            return false;
+        }
+    }
+
+    /**
+     * Closes all pending lookups of a target for further joins.
+     */
+    synchronized void close(Object target) {
+        joinable.remove(target);
+    }
+
+    /**
+     * Completes a lookup, returning the requests that were attached to it. Returns an empty
+     * list if the request is not the leader of a pending lookup.
+     */
+    synchronized List<CellMessage> complete(CellMessage envelope) {
+        Lookup lookup = pending.remove(envelope);
+        if (lookup == null) {
+            return Collections.emptyList();
+        }
+        Map<Key, Lookup> lookupsOfTarget = joinable.get(lookup.target);
+        if (lookupsOfTarget != null && lookupsOfTarget.get(lookup.key) == lookup) {
+            lookupsOfTarget.remove(lookup.key);
+            if (lookupsOfTarget.isEmpty()) {
+                joinable.remove(lookup.target);
+            }
+        }
+        return lookup.waiters;
+    }
+
+    long getLookups() {
+        return lookups.sum();
+    }
+
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public String toString() {
+        long total = lookups.sum();
+        long saved = coalesced.sum();
+        return String.format("Coalesced lookups: %d of %d (%.1f%%)", saved, total,
+              total == 0 ? 0.0 : 100.0 * saved / total);
+    }
+}
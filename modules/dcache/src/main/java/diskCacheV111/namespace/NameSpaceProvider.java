@@ -12,6 +12,7 @@ import diskCacheV111.util.PnfsId;
 import diskCacheV111.util.RetentionPolicy;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 import javax.security.auth.Subject;
@@ -260,6 +261,21 @@ public interface NameSpaceProvider {
           Set<FileAttribute> attr)
           throws CacheException;
 
+    /**
+     * Get files attributes defined by <code>attr</code> for several files at once. This is
+     * equivalent to calling {@link #getFileAttributes(Subject, PnfsId, Set)} for every file, but
+     * a provider may fetch the attributes of all files with a fixed number of queries.
+     *
+     * @param subject Subject of user who invoked this method.
+     * @param pnfsIds of the files
+     * @param attr    array of requested attributes
+     * @return map of file attributes; files that do not exist or whose attributes the subject is
+     * not allowed to read are not included
+     */
+    Map<PnfsId, FileAttributes> getFileAttributes(Subject subject, Collection<PnfsId> pnfsIds,
+          Set<FileAttribute> attr)
+          throws CacheException;
+
     /**
      * Set files attributes defined by <code>attr</code>.
      * <p>
@@ -414,7 +430,7 @@ public interface NameSpaceProvider {
           throws CacheException;
 
     /**
-     * Update FS stat cache.
+     * Verify the FS statistics against the name space and correct any drift.
      */
     void updateFsStat() throws CacheException;
 
@@ -88,16 +88,15 @@ import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -117,6 +116,7 @@ import org.dcache.acl.enums.AccessType;
 import org.dcache.auth.Subjects;
 import org.dcache.auth.attributes.Activity;
 import org.dcache.auth.attributes.Restriction;
+import org.dcache.auth.attributes.Restrictions;
 import org.dcache.cells.CellStub;
 import org.dcache.chimera.UnixPermission;
 import org.dcache.chimera.quota.JdbcQuota;
@@ -141,6 +141,7 @@ import org.dcache.util.FireAndForgetTask;
 import org.dcache.util.TimeUtils;
 import org.dcache.vehicles.FileAttributes;
 import org.dcache.vehicles.PnfsCreateSymLinkMessage;
+import org.dcache.vehicles.PnfsGetBulkFileAttributes;
 import org.dcache.vehicles.PnfsGetFileAttributes;
 import org.dcache.vehicles.PnfsListDirectoryMessage;
 import org.dcache.vehicles.PnfsRemoveChecksumMessage;
@@ -168,8 +169,6 @@ public class PnfsManagerV3
 
     private static final String STORAGE_INFO_XATTR_PREFIX = "xattr.";
 
-    private final Random _random = new Random(System.currentTimeMillis());
-
     private final RequestExecutionTimeGauges<Class<? extends PnfsMessage>> _gauges =
           new RequestExecutionTimeGauges<>("PnfsManagerV3");
     private final RequestCounters<Class<?>> _foldedCounters =
@@ -186,9 +185,21 @@ public class PnfsManagerV3
           PnfsCreateEntryMessage.class,
           PnfsCreateUploadPath.class,
           PnfsGetFileAttributes.class,
+          PnfsGetBulkFileAttributes.class,
           PnfsListDirectoryMessage.class
     };
 
+    /**
+     * These read-only messages are scheduled ahead of other messages of the same lane, as long
+     * as this does not reorder messages for the same file.
+     */
+    private static final Set<Class<?>> PREFERRED = Set.of(
+          PnfsGetFileAttributes.class,
+          PnfsMapPathMessage.class,
+          PnfsGetParentMessage.class,
+          PnfsGetCacheLocationsMessage.class
+    );
+
     private int _threads;
     private int _directoryListLimit;
     private int _queueMaxSize;
@@ -218,9 +229,14 @@ public class PnfsManagerV3
     private BlockingQueue<CellMessage> _listQueue;
 
     /**
-     * Tasks queues used for messages that do not operate on cache locations.
+     * Scheduler for messages that are not list operations.
      */
-    private BlockingQueue<CellMessage>[] _fifos;
+    private LaneScheduler _scheduler;
+
+    /**
+     * Identical concurrent file attribute lookups, subject to folding.
+     */
+    private final LookupCoalescer _coalescer = new LookupCoalescer();
 
     /**
      * Executor for ProcessThread instances.
@@ -266,6 +282,7 @@ public class PnfsManagerV3
         _gauges.addGauge(PnfsGetParentMessage.class);
         _gauges.addGauge(PnfsSetFileAttributes.class);
         _gauges.addGauge(PnfsGetFileAttributes.class);
+        _gauges.addGauge(PnfsGetBulkFileAttributes.class);
         _gauges.addGauge(PnfsListDirectoryMessage.class);
         _gauges.addGauge(PnfsRemoveChecksumMessage.class);
         _gauges.addGauge(PnfsCreateSymLinkMessage.class);
@@ -408,15 +425,11 @@ public class PnfsManagerV3
     public void init() {
         _stub = new CellStub(getCellEndpoint());
 
-        _fifos = new BlockingQueue[_threads];
-        LOGGER.info("Starting {} threads", _fifos.length);
-        for (int i = 0; i < _fifos.length; i++) {
-            if (_queueMaxSize > 0) {
-                _fifos[i] = new LinkedBlockingQueue<>(_queueMaxSize);
-            } else {
-                _fifos[i] = new LinkedBlockingQueue<>();
-            }
-            executor.execute(new ProcessThread(_fifos[i]));
+        _scheduler = new LaneScheduler(_threads, _queueMaxSize,
+              envelope -> PREFERRED.contains(envelope.getMessageObject().getClass()));
+        LOGGER.info("Starting {} threads", _threads);
+        for (int i = 0; i < _threads; i++) {
+            executor.execute(new LaneProcessThread(i));
         }
 
         /* Start a seperate queue for list operations.  We use a shared queue,
@@ -425,27 +438,30 @@ public class PnfsManagerV3
          */
         _listQueue = new LinkedBlockingQueue<>();
         for (int j = 0; j < _listThreads; j++) {
-            ProcessThread t = new ProcessThread(_listQueue);
+            ProcessThread t = new QueueProcessThread(_listQueue);
             _listProcessThreads.add(t);
             executor.execute(t);
         }
     }
 
     public void shutdown() throws InterruptedException {
-        drainQueues(_fifos);
+        rejectQueued(_scheduler.shutdown());
         drainQueue(_listQueue);
         MoreExecutors.shutdownAndAwaitTermination(executor, 1, TimeUnit.SECONDS);
     }
 
-    private void drainQueues(BlockingQueue<CellMessage>[] queues) {
-        Arrays.stream(queues).forEach(this::drainQueue);
-    }
-
     private void drainQueue(BlockingQueue<CellMessage> queue) {
-        String error = "Name space is shutting down.";
         ArrayList<CellMessage> drained = new ArrayList<>();
         queue.drainTo(drained);
-        for (CellMessage envelope : drained) {
+        rejectQueued(drained);
+        queue.offer(SHUTDOWN_SENTINEL);
+    }
+
+    private void rejectQueued(List<CellMessage> drained) {
+        String error = "Name space is shutting down.";
+        List<CellMessage> rejected = new ArrayList<>(drained);
+        drained.forEach(envelope -> rejected.addAll(_coalescer.complete(envelope)));
+        for (CellMessage envelope : rejected) {
             Message msg = (Message) envelope.getMessageObject();
             if (msg.getReplyRequired()) {
                 envelope.setMessageObject(new NoRouteToCellException(envelope, error));
@@ -453,7 +469,6 @@ public class PnfsManagerV3
                 sendMessage(envelope);
             }
         }
-        queue.offer(SHUTDOWN_SENTINEL);
     }
 
     @Override
@@ -521,18 +536,13 @@ public class PnfsManagerV3
         pw.println();
         pw.println("List queue: " + _listQueue.size());
         pw.println();
-        pw.println("Threads (" + _fifos.length + ") Queue");
-        for (int i = 0; i < _fifos.length; i++) {
-            pw.println("    [" + i + "] " + _fifos[i].size());
-        }
-        pw.println();
-        pw.println("Threads: "
-              + Arrays.stream(_fifos).mapToInt(BlockingQueue::size).sum());
+        _scheduler.getInfo(pw);
         pw.println();
 
         pw.println("Statistics:");
         pw.println(_gauges.toString());
         pw.println(_foldedCounters.toString());
+        pw.println(_coalescer.toString());
     }
 
     @Command(name = "pnfsidof",
@@ -874,7 +884,7 @@ public class PnfsManagerV3
             dumpThreadQueue(threadId);
             return "dumped";
         }
-        for (int threadId = 0; threadId < _fifos.length; ++threadId) {
+        for (int threadId = 0; threadId < _scheduler.getLaneCount(); ++threadId) {
             dumpThreadQueue(threadId);
         }
         return "dumped";
@@ -1554,11 +1564,10 @@ public class PnfsManagerV3
     }
 
     private void dumpThreadQueue(int queueId) {
-        if (queueId < 0 || queueId >= _fifos.length) {
+        if (queueId < 0 || queueId >= _scheduler.getLaneCount()) {
             throw new IllegalArgumentException(" illegal queue #" + queueId);
         }
-        BlockingQueue<CellMessage> fifo = _fifos[queueId];
-        Object[] fifoContent = fifo.toArray();
+        Object[] fifoContent = _scheduler.getQueued(queueId).toArray();
 
         LOGGER.warn("PnfsManager thread #{} queue dump ({}):", queueId, fifoContent.length);
 
@@ -2201,17 +2210,27 @@ public class PnfsManagerV3
         }
     }
 
-    private class ProcessThread implements Runnable {
-
-        private final BlockingQueue<CellMessage> _fifo;
+    private abstract class ProcessThread implements Runnable {
 
         private volatile CellMessage _activeMessage;
         private volatile Instant _whenStarted;
 
-        private ProcessThread(BlockingQueue<CellMessage> fifo) {
-            _fifo = fifo;
+        /**
+         * Waits for the next message, returning null on shutdown.
+         */
+        protected abstract CellMessage take() throws InterruptedException;
+
+        /**
+         * Called when processing of a message taken from the queue has completed.
+         */
+        protected void done() {
         }
 
+        /**
+         * Answers queued messages with the result of the message just processed.
+         */
+        protected abstract void fold(PnfsMessage message);
+
         public synchronized Optional<ActivityReport> getCurrentActivity() {
             if (_activeMessage == null) {
                 return Optional.empty();
@@ -2234,9 +2253,9 @@ public class PnfsManagerV3
         @Override
         public void run() {
             try {
-                for (CellMessage message = _fifo.take(); message != SHUTDOWN_SENTINEL;
-                      message = _fifo.take()) {
+                for (CellMessage message = take(); message != null; message = take()) {
                     CDC.setMessageContext(message);
+                    boolean isProcessed = false;
                     try {
                         recordActivity(message);
 
@@ -2254,11 +2273,14 @@ public class PnfsManagerV3
                         }
 
                         processPnfsMessage(message, pnfs);
+                        isProcessed = true;
                         fold(pnfs);
                     } catch (Throwable e) {
                         LOGGER.warn("processPnfsMessage: {} : {}", Thread.currentThread().getName(),
                               e);
                     } finally {
+                        answerCoalesced(message, isProcessed);
+                        done();
                         clearActivity();
                         CDC.clearMessageContext();
                     }
@@ -2267,7 +2289,26 @@ public class PnfsManagerV3
                 Thread.currentThread().interrupt();
             }
         }
+    }
+
+    /**
+     * Processes messages of a shared queue in order.
+     */
+    private class QueueProcessThread extends ProcessThread {
+
+        private final BlockingQueue<CellMessage> _fifo;
+
+        private QueueProcessThread(BlockingQueue<CellMessage> fifo) {
+            _fifo = fifo;
+        }
 
+        @Override
+        protected CellMessage take() throws InterruptedException {
+            CellMessage message = _fifo.take();
+            return message == SHUTDOWN_SENTINEL ? null : message;
+        }
+
+        @Override
         protected void fold(PnfsMessage message) {
             if (_canFold && message.getReturnCode() == 0) {
                 Iterator<CellMessage> i = _fifo.iterator();
@@ -2294,6 +2335,87 @@ public class PnfsManagerV3
         }
     }
 
+    /**
+     * Processes messages of the lane scheduler, serving the given lane first.
+     */
+    private class LaneProcessThread extends ProcessThread {
+
+        private final int _lane;
+        private LaneScheduler.Request _request;
+
+        private LaneProcessThread(int lane) {
+            _lane = lane;
+        }
+
+        @Override
+        protected CellMessage take() throws InterruptedException {
+            _request = _scheduler.take(_lane);
+            return _request == null ? null : _request.getEnvelope();
+        }
+
+        @Override
+        protected void done() {
+            _scheduler.done(_request);
+        }
+
+        @Override
+        protected void fold(PnfsMessage message) {
+            if (_canFold && message.getReturnCode() == 0) {
+                List<CellMessage> folded = _scheduler.fold(_request,
+                      envelope -> ((PnfsMessage) envelope.getMessageObject()).invalidates(message),
+                      envelope -> ((PnfsMessage) envelope.getMessageObject()).fold(message));
+                for (CellMessage envelope : folded) {
+                    LOGGER.info("Folded {}",
+                          envelope.getMessageObject().getClass().getSimpleName());
+                    _foldedCounters.incrementRequests(message.getClass());
+                    envelope.revertDirection();
+                    sendMessage(envelope);
+                    answerCoalesced(envelope, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the lookups that were coalesced with the given request. If the request was not
+     * processed, the coalesced lookups are resubmitted, as they may still be answered in time.
+     */
+    private void answerCoalesced(CellMessage envelope, boolean isProcessed) {
+        List<CellMessage> waiters = _coalescer.complete(envelope);
+        if (waiters.isEmpty()) {
+            return;
+        }
+        PnfsGetFileAttributes result = (PnfsGetFileAttributes) envelope.getMessageObject();
+        for (CellMessage waiter : waiters) {
+            PnfsGetFileAttributes message = (PnfsGetFileAttributes) waiter.getMessageObject();
+            if (!isProcessed) {
+                try {
+                    messageArrived(waiter, message);
+                    continue;
+                } catch (CacheException e) {
+                    message.setFailed(e.getRc(), e);
+                }
+            } else if (result.getReturnCode() == 0) {
+                message.setPnfsId(result.getPnfsId());
+                message.setFileAttributes(result.getFileAttributes());
+                message.setSucceeded();
+            } else {
+                message.setFailed(result.getReturnCode(), result.getErrorObject());
+            }
+            waiter.revertDirection();
+            sendMessage(waiter);
+        }
+    }
+
+    private void rejectCoalesced(CellMessage envelope, CacheException e) {
+        for (CellMessage waiter : _coalescer.complete(envelope)) {
+            PnfsMessage message = (PnfsMessage) waiter.getMessageObject();
+            message.setFailed(e.getRc(), e);
+            waiter.revertDirection();
+            sendMessage(waiter);
+        }
+    }
+
     /*
      *  ------------------------------------- QUOTA SYSTEM -------------------------------------
      */
@@ -2508,25 +2630,37 @@ public class PnfsManagerV3
         PnfsId pnfsId = message.getPnfsId();
         String path = message.getPnfsPath();
 
-        int index;
-        if (pnfsId != null) {
-            index = (int) (Math.abs((long) pnfsId.hashCode()) % _threads);
-            LOGGER.info("Using thread [{}] {}", pnfsId, index);
-        } else if (path != null) {
-            index = (int) (Math.abs((long) path.hashCode()) % _threads);
-            LOGGER.info("Using thread [{}] {}", path, index);
-        } else {
-            index = _random.nextInt(_fifos.length);
-            LOGGER.info("Using random thread {}", index);
+        /* Messages for the same file are processed in order; messages
+         * without a file are processed in any order.
+         */
+        Object key = (pnfsId != null) ? pnfsId : path;
+
+        /* Identical concurrent lookups are answered by a single lookup. Any
+         * other request on the same file ends the coalescing of earlier
+         * lookups, as later lookups must observe its effect.
+         */
+        if (_canFold && key != null) {
+            if (message.getClass() == PnfsGetFileAttributes.class && message.getReplyRequired()) {
+                if (_coalescer.join(key, envelope)) {
+                    return;
+                }
+            } else {
+                _coalescer.close(key);
+            }
         }
 
         /*
          * try to add a message into queue.
          * tell requester, that queue is full
          */
-        if (!_fifos[index].offer(envelope)) {
-            throw new MissingResourceCacheException("PnfsManager queue limit exceeded");
+        int index = _scheduler.offer(key, envelope);
+        if (index < 0) {
+            MissingResourceCacheException e =
+                  new MissingResourceCacheException("PnfsManager queue limit exceeded");
+            rejectCoalesced(envelope, e);
+            throw e;
         }
+        LOGGER.info("Using lane [{}] {}", key, index);
     }
 
     @VisibleForTesting
@@ -2592,6 +2726,8 @@ public class PnfsManagerV3
             listDirectory(message, (PnfsListDirectoryMessage) pnfsMessage);
         } else if (pnfsMessage instanceof PnfsGetFileAttributes) {
             getFileAttributes((PnfsGetFileAttributes) pnfsMessage);
+        } else if (pnfsMessage instanceof PnfsGetBulkFileAttributes) {
+            getBulkFileAttributes((PnfsGetBulkFileAttributes) pnfsMessage);
         } else if (pnfsMessage instanceof PnfsSetFileAttributes) {
             setFileAttributes((PnfsSetFileAttributes) pnfsMessage);
         } else if (pnfsMessage instanceof PnfsRemoveChecksumMessage) {
@@ -2837,6 +2973,42 @@ public class PnfsManagerV3
         }
     }
 
+    public void getBulkFileAttributes(PnfsGetBulkFileAttributes message) {
+        try {
+            Subject subject = message.getSubject();
+            Map<PnfsId, FileAttributes> attributes =
+                  new HashMap<>(_nameSpaceProvider.getFileAttributes(subject,
+                        message.getPnfsIds(), message.getRequestedAttributes()));
+
+            /* Access masks and restrictions are checked per file, which requires additional
+             * lookups. Both are usually absent for the services using this message.
+             */
+            if (!Subjects.isRoot(subject) && (!message.getAccessMask().isEmpty()
+                  || !message.getRestriction().equals(Restrictions.none()))) {
+                Iterator<PnfsId> i = attributes.keySet().iterator();
+                while (i.hasNext()) {
+                    PnfsId pnfsId = i.next();
+                    try {
+                        checkMask(subject, pnfsId, message.getAccessMask());
+                        checkRestriction(message, READ_METADATA,
+                              FsPath.create(_nameSpaceProvider.pnfsidToPath(subject, pnfsId)));
+                    } catch (PermissionDeniedCacheException | FileNotFoundCacheException e) {
+                        i.remove();
+                    }
+                }
+            }
+
+            message.setFileAttributes(attributes);
+            message.setSucceeded();
+        } catch (CacheException e) {
+            LOGGER.warn("Error while retrieving file attributes: {}", e.getMessage());
+            message.setFailed(e.getRc(), e);
+        } catch (RuntimeException e) {
+            LOGGER.error("Error while retrieving file attributes: " + e.getMessage(), e);
+            message.setFailed(CacheException.UNEXPECTED_SYSTEM_EXCEPTION, e);
+        }
+    }
+
     public void setFileAttributes(PnfsSetFileAttributes message) {
         try {
             FileAttributes attr = message.getFileAttributes();
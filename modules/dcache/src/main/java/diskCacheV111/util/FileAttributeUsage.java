@@ -0,0 +1,123 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package diskCacheV111.util;
+
+import java.io.PrintWriter;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.dcache.namespace.FileAttribute;
+import org.dcache.vehicles.FileAttributes;
+
+/**
+ * Statistics on the file attributes requested from PnfsManager compared to the attributes the
+ * caller actually reads, per calling method.
+ * <p>
+ * One in {@value #SAMPLE_INTERVAL} replies is tracked. The attributes read from a tracked
+ * {@link FileAttributes} are recorded until it becomes unreachable, at which point they are
+ * compared with the attributes that were requested. Attributes that are requested but rarely
+ * read point to callers that could request less and thus spare PnfsManager the queries.
+ */
+class FileAttributeUsage {
+
+    static final int SAMPLE_INTERVAL = 64;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private final AtomicLong _calls = new AtomicLong();
+    private final ConcurrentMap<String, Caller> _callers = new ConcurrentHashMap<>();
+
+    /**
+     * Starts tracking the usage of {@code attributes} if the reply is sampled.
+     *
+     * @param attributes the attributes returned to the caller
+     * @param requested  the attributes requested by the caller
+     * @return attributes
+     */
+    FileAttributes track(FileAttributes attributes, Set<FileAttribute> requested) {
+        if (!requested.isEmpty() && _calls.incrementAndGet() % SAMPLE_INTERVAL == 0) {
+            Caller caller = _callers.computeIfAbsent(callerOf(), k -> new Caller());
+            Set<FileAttribute> wanted = EnumSet.copyOf(requested);
+            /* Read concurrently by any thread using the attributes or a clone of them, and
+             * finally by the cleaner thread.
+             */
+            Set<FileAttribute> accessed = ConcurrentHashMap.newKeySet();
+            attributes.trackAccessIn(accessed);
+            CLEANER.register(attributes, () -> caller.record(wanted, accessed));
+        }
+        return attributes;
+    }
+
+    private static String callerOf() {
+        return WALKER.walk(frames -> frames
+              .filter(f -> !f.getClassName().equals(PnfsHandler.class.getName())
+                    && !f.getClassName().equals(FileAttributeUsage.class.getName()))
+              .findFirst()
+              .map(f -> f.getClassName() + "." + f.getMethodName())
+              .orElse("unknown"));
+    }
+
+    void getInfo(PrintWriter pw) {
+        Map<String, Caller> callers = new TreeMap<>(_callers);
+        if (callers.isEmpty()) {
+            return;
+        }
+        pw.println("Attribute usage (1 in " + SAMPLE_INTERVAL + " replies sampled):");
+        callers.forEach((name, caller) -> {
+            List<String> unused = new ArrayList<>();
+            for (FileAttribute attribute : FileAttribute.values()) {
+                long requested = caller._requested.get(attribute.ordinal());
+                long used = caller._used.get(attribute.ordinal());
+                if (used < requested) {
+                    unused.add(attribute + " " + (100 * (requested - used) / requested) + "%");
+                }
+            }
+            pw.println("    " + name + " : " + caller._samples + " samples"
+                  + (unused.isEmpty() ? "" : ", unused " + String.join(", ", unused)));
+        });
+    }
+
+    private static class Caller {
+
+        private final LongAdder _samples = new LongAdder();
+        private final AtomicLongArray _requested =
+              new AtomicLongArray(FileAttribute.values().length);
+        private final AtomicLongArray _used = new AtomicLongArray(FileAttribute.values().length);
+
+        private void record(Set<FileAttribute> requested, Set<FileAttribute> accessed) {
+            _samples.increment();
+            for (FileAttribute attribute : requested) {
+                _requested.incrementAndGet(attribute.ordinal());
+                if (accessed.contains(attribute)) {
+                    _used.incrementAndGet(attribute.ordinal());
+                }
+            }
+        }
+    }
+}
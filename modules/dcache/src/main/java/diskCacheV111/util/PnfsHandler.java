@@ -25,9 +25,11 @@ import diskCacheV111.vehicles.PnfsWriteExtendedAttributesMessage;
 import diskCacheV111.vehicles.PnfsWriteExtendedAttributesMessage.Mode;
 import diskCacheV111.vehicles.PoolFileFlushedMessage;
 import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellInfoProvider;
 import dmg.cells.nucleus.CellMessageSender;
 import dmg.cells.nucleus.CellPath;
 import dmg.cells.nucleus.NoRouteToCellException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -45,13 +47,14 @@ import org.dcache.namespace.FileType;
 import org.dcache.util.ChecksumType;
 import org.dcache.vehicles.FileAttributes;
 import org.dcache.vehicles.PnfsCreateSymLinkMessage;
+import org.dcache.vehicles.PnfsGetBulkFileAttributes;
 import org.dcache.vehicles.PnfsGetFileAttributes;
 import org.dcache.vehicles.PnfsRemoveChecksumMessage;
 import org.dcache.vehicles.PnfsSetFileAttributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class PnfsHandler implements CellMessageSender {
+public class PnfsHandler implements CellMessageSender, CellInfoProvider {
 
     private final String _poolName;
     private static final long DEFAULT_PNFS_TIMEOUT = TimeUnit.MINUTES.toMillis(
@@ -59,6 +62,8 @@ public class PnfsHandler implements CellMessageSender {
 
     private final CellStub _cellStub;
 
+    private final FileAttributeUsage _attributeUsage;
+
     private Subject _subject;
     private Restriction _restriction;
 
@@ -97,6 +102,7 @@ public class PnfsHandler implements CellMessageSender {
     public PnfsHandler(CellStub stub, String poolName) {
         _cellStub = stub;
         _poolName = poolName;
+        _attributeUsage = new FileAttributeUsage();
     }
 
     /**
@@ -111,6 +117,7 @@ public class PnfsHandler implements CellMessageSender {
     public PnfsHandler(PnfsHandler handler, Subject subject, Restriction restriction) {
         _poolName = handler._poolName;
         _cellStub = handler._cellStub;
+        _attributeUsage = handler._attributeUsage;
         _subject = subject;
         _restriction = restriction;
     }
@@ -132,6 +139,11 @@ public class PnfsHandler implements CellMessageSender {
         _cellStub.setCellEndpoint(endpoint);
     }
 
+    @Override
+    public void getInfo(PrintWriter pw) {
+        _attributeUsage.getInfo(pw);
+    }
+
     public void setSubject(Subject subject) {
         _subject = subject;
     }
@@ -481,7 +493,24 @@ public class PnfsHandler implements CellMessageSender {
      */
     public FileAttributes getFileAttributes(PnfsId pnfsid, Set<FileAttribute> attr)
           throws CacheException {
-        return request(new PnfsGetFileAttributes(pnfsid, attr)).getFileAttributes();
+        return _attributeUsage.track(
+              request(new PnfsGetFileAttributes(pnfsid, attr)).getFileAttributes(), attr);
+    }
+
+    /**
+     * Get file attributes of several files with a single request. The PnfsManager is free to
+     * return fewer attributes than requested. If <code>attr</code> is an empty array, file
+     * existence is checked.
+     *
+     * @param pnfsids
+     * @param attr    array of requested attributes.
+     * @return requested attributes; files that do not exist or whose attributes may not be read
+     * are not included
+     */
+    public Map<PnfsId, FileAttributes> getFileAttributes(Collection<PnfsId> pnfsids,
+          Set<FileAttribute> attr)
+          throws CacheException {
+        return request(new PnfsGetBulkFileAttributes(pnfsids, attr)).getFileAttributes();
     }
 
     /**
@@ -500,7 +529,7 @@ public class PnfsHandler implements CellMessageSender {
         PnfsGetFileAttributes msg = new PnfsGetFileAttributes(pnfsid, attr);
         msg.setAccessMask(mask);
         msg.setUpdateAtime(updateAtime);
-        return request(msg).getFileAttributes();
+        return _attributeUsage.track(request(msg).getFileAttributes(), attr);
     }
 
     /**
@@ -513,7 +542,8 @@ public class PnfsHandler implements CellMessageSender {
      */
     public FileAttributes getFileAttributes(String path, Set<FileAttribute> attr)
           throws CacheException {
-        return request(new PnfsGetFileAttributes(path, attr)).getFileAttributes();
+        return _attributeUsage.track(
+              request(new PnfsGetFileAttributes(path, attr)).getFileAttributes(), attr);
     }
 
     public FileAttributes getFileAttributes(FsPath path, Set<FileAttribute> attr)
@@ -538,7 +568,7 @@ public class PnfsHandler implements CellMessageSender {
         PnfsGetFileAttributes msg = new PnfsGetFileAttributes(path, attr);
         msg.setAccessMask(mask);
         msg.setUpdateAtime(updateAtime);
-        return request(msg).getFileAttributes();
+        return _attributeUsage.track(request(msg).getFileAttributes(), attr);
     }
 
     /**
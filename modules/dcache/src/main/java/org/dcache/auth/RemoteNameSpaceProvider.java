@@ -26,6 +26,7 @@ import diskCacheV111.vehicles.PnfsRemoveLabelsMessage;
 import diskCacheV111.vehicles.PnfsWriteExtendedAttributesMessage;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.security.auth.Subject;
 import org.dcache.auth.attributes.Restrictions;
@@ -179,6 +180,13 @@ public class RemoteNameSpaceProvider implements NameSpaceProvider {
         return pnfs.getFileAttributes(id, attr);
     }
 
+    @Override
+    public Map<PnfsId, FileAttributes> getFileAttributes(Subject subject,
+          Collection<PnfsId> ids, Set<FileAttribute> attr) throws CacheException {
+        PnfsHandler pnfs = new PnfsHandler(_pnfs, subject, Restrictions.none());
+        return pnfs.getFileAttributes(ids, attr);
+    }
+
     @Override
     public FileAttributes setFileAttributes(Subject subject, PnfsId id,
           FileAttributes attr, Set<FileAttribute> acquire) throws CacheException {
@@ -5,15 +5,18 @@ import diskCacheV111.vehicles.Message;
 import dmg.cells.nucleus.CellAdapter;
 import dmg.cells.nucleus.CellAddressCore;
 import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellEndpoint.SendFlag;
 import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellMessageReceiver;
 import dmg.cells.nucleus.Reply;
+import dmg.cells.nucleus.SerializationException;
 import dmg.cells.nucleus.UOID;
 import java.io.Serializable;
 import java.util.concurrent.Executor;
 import org.dcache.util.Args;
 import org.dcache.util.Option;
 import org.dcache.util.OptionParser;
+import org.dcache.vehicles.BatchMessage;
 
 /**
  * Abstract cell implementation providing features needed by many dCache cells.
@@ -118,6 +121,8 @@ public class AbstractCell extends CellAdapter implements CellMessageReceiver {
 
     protected MessageProcessingMonitor _monitor;
 
+    private final BatchMessageAggregator _batches = new BatchMessageAggregator();
+
     /**
      * Returns the cell type specified as option 'cellType', or "Generic" if the option was not
      * given.
@@ -293,12 +298,21 @@ public class AbstractCell extends CellAdapter implements CellMessageReceiver {
      * <p>
      * Return values implementing Reply are recognized and the reply is delivered by calling the
      * deliver method on the Reply object.
+     * <p>
+     * A BatchMessage is unpacked and each item is processed as described above. The replies to
+     * the items are collected and returned as a single BatchMessage.
      */
     @Override
     public void messageArrived(CellMessage envelope) {
         CellEndpoint endpoint = _monitor.getReplyCellEndpoint(envelope);
         UOID uoid = envelope.getUOID();
         boolean isReply = isReply(envelope);
+
+        if (envelope.getMessageObject() instanceof BatchMessage && !isReply) {
+            _batches.unpack(envelope, endpoint, this::messageArrived);
+            return;
+        }
+
         Object result = _messageDispatcher.call(envelope);
 
         if (result != null && !isReply) {
@@ -345,4 +359,16 @@ public class AbstractCell extends CellAdapter implements CellMessageReceiver {
             }
         }
     }
+
+    /**
+     * Sends a message. Replies to items of a BatchMessage are held back until the batch is
+     * complete.
+     */
+    @Override
+    public void sendMessage(CellMessage envelope, SendFlag... flags)
+          throws SerializationException {
+        if (!_batches.offer(envelope)) {
+            super.sendMessage(envelope, flags);
+        }
+    }
 }
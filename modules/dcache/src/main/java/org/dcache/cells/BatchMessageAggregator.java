@@ -0,0 +1,184 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.cells;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import diskCacheV111.util.CacheException;
+import diskCacheV111.vehicles.Message;
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.UOID;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.dcache.vehicles.BatchMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unpacks {@link BatchMessage}s and aggregates the replies to the individual items.
+ * <p>
+ * Every item is wrapped in an envelope of its own that shares source path, TTL and session with
+ * the envelope of the batch, and is then dispatched like any other message. Message listeners
+ * thus need not be aware of batching: whether they reply synchronously, through a {@link dmg.cells.nucleus.Reply}
+ * or by sending the envelope themselves, the reply passes through {@link #offer}, which captures
+ * it instead of routing it. Once all items have been answered, the batch is returned to the
+ * requester as a single message.
+ */
+class BatchMessageAggregator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchMessageAggregator.class);
+
+    /**
+     * Items for which no reply has been seen. Items whose listener never replies expire
+     * eventually; the requester will have timed out long before.
+     */
+    private final Cache<UOID, Item> _items =
+          CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.HOURS).build();
+
+    /**
+     * Unpacks the batch in {@code envelope} and passes each item to {@code dispatcher}.
+     *
+     * @param envelope   an envelope containing a BatchMessage
+     * @param endpoint   endpoint through which to return the batch
+     * @param dispatcher delivers an item envelope to the message listeners
+     */
+    void unpack(CellMessage envelope, CellEndpoint endpoint, Consumer<CellMessage> dispatcher) {
+        BatchMessage message = (BatchMessage) envelope.getMessageObject();
+        List<Message> items = message.getItems();
+        Batch batch = new Batch(envelope, endpoint, message);
+        if (items.isEmpty()) {
+            batch.send();
+            return;
+        }
+
+        CellMessage[] envelopes = new CellMessage[items.size()];
+        for (int i = 0; i < envelopes.length; i++) {
+            Message item = items.get(i);
+            item.setReplyRequired(true);
+
+            UOID uoid = new UOID();
+            CellMessage itemEnvelope = envelope.clone();
+            itemEnvelope.setUOID(uoid);
+            itemEnvelope.setLastUOID(uoid);
+            itemEnvelope.setMessageObject(item);
+            envelopes[i] = itemEnvelope;
+            _items.put(uoid, new Item(batch, i));
+        }
+
+        for (CellMessage itemEnvelope : envelopes) {
+            try {
+                dispatcher.accept(itemEnvelope);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to process batch item {}. Please report this to "
+                      + "support@dcache.org.", itemEnvelope.getMessageObject(), e);
+                Item item = _items.asMap().remove(itemEnvelope.getUOID());
+                if (item != null) {
+                    item.fail(CacheException.UNEXPECTED_SYSTEM_EXCEPTION, e.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Captures the reply to an item of a batch.
+     *
+     * @return true if {@code envelope} was a reply to a batch item and has been consumed, false
+     * if it should be sent as usual
+     */
+    boolean offer(CellMessage envelope) {
+        if (!envelope.isReply()) {
+            return false;
+        }
+        Item item = _items.asMap().remove(envelope.getLastUOID());
+        if (item == null) {
+            return false;
+        }
+        item.reply(envelope.getMessageObject());
+        return true;
+    }
+
+    private static class Item {
+
+        private final Batch _batch;
+        private final int _index;
+
+        Item(Batch batch, int index) {
+            _batch = batch;
+            _index = index;
+        }
+
+        void reply(Serializable reply) {
+            if (reply instanceof Message) {
+                _batch.complete(_index, (Message) reply);
+            } else if (reply instanceof CacheException) {
+                CacheException e = (CacheException) reply;
+                fail(e.getRc(), e.getMessage());
+            } else if (reply instanceof Exception) {
+                fail(CacheException.UNEXPECTED_SYSTEM_EXCEPTION, (Exception) reply);
+            } else {
+                fail(CacheException.UNEXPECTED_SYSTEM_EXCEPTION, "Unexpected reply: " + reply);
+            }
+        }
+
+        void fail(int rc, Serializable error) {
+            Message request = _batch.getRequest(_index);
+            request.setFailed(rc, error);
+            _batch.complete(_index, request);
+        }
+    }
+
+    private static class Batch {
+
+        private final CellMessage _envelope;
+        private final CellEndpoint _endpoint;
+        private final BatchMessage _message;
+        private int _outstanding;
+
+        Batch(CellMessage envelope, CellEndpoint endpoint, BatchMessage message) {
+            _envelope = envelope;
+            _endpoint = endpoint;
+            _message = message;
+            _outstanding = message.size();
+        }
+
+        synchronized Message getRequest(int index) {
+            return _message.getItems().get(index);
+        }
+
+        void complete(int index, Message reply) {
+            synchronized (this) {
+                _message.setItem(index, reply);
+                if (--_outstanding > 0) {
+                    return;
+                }
+            }
+            send();
+        }
+
+        void send() {
+            _message.setSucceeded();
+            _envelope.revertDirection();
+            _envelope.setMessageObject(_message);
+            _endpoint.sendMessage(_envelope);
+        }
+    }
+}
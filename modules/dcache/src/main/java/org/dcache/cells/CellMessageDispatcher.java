@@ -1,28 +1,52 @@
 package org.dcache.cells;
 
+import static java.lang.invoke.MethodType.methodType;
+
 import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellMessageReceiver;
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import javax.annotation.concurrent.GuardedBy;
 import org.dcache.util.ReflectionUtils;
 
 /**
  * Automatic dispatch of dCache messages to message handlers.
+ * <p>
+ * The receivers of a message type are resolved once, on the first delivery of a message of that
+ * type, and are invoked through method handles bound to the receiving object. The dispatch table
+ * is replaced whenever listeners are added or removed, so delivery does not take any locks.
  */
 public class CellMessageDispatcher {
 
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Receiver[] NO_RECEIVERS = new Receiver[0];
+
     /**
-     * Cached message handlers for fast dispatch.
+     * Cached message handlers for fast dispatch. Replaced rather than cleared when the set of
+     * listeners changes.
      */
-    private final Map<Class<? extends Serializable>, Collection<Receiver>>
-          _receivers = new HashMap<>();
+    private volatile ConcurrentMap<Class<?>, Receiver[]> _receivers =
+          new ConcurrentHashMap<>();
+
+    /**
+     * The most recently dispatched message type and its receivers. Most cells receive long
+     * sequences of messages of the same type, for which this avoids the map lookup.
+     * <p>
+     * Deliberately not volatile to keep the cost of writing it low when several message types
+     * are dispatched concurrently. DispatchEntry is immutable and thus safely published; an entry
+     * is only used if it belongs to the current dispatch table.
+     */
+    private DispatchEntry _lastDispatch = new DispatchEntry(null, null, NO_RECEIVERS);
 
     /**
      * Name of receiver methods.
@@ -71,9 +95,9 @@ public class CellMessageDispatcher {
     public void addMessageListener(CellMessageReceiver o) {
         Class<? extends CellMessageReceiver> c = o.getClass();
         if (hasListener(c)) {
-            synchronized (_receivers) {
+            synchronized (_messageListeners) {
                 if (_messageListeners.add(o)) {
-                    _receivers.clear();
+                    invalidateReceivers();
                 }
             }
         }
@@ -83,13 +107,17 @@ public class CellMessageDispatcher {
      * Removes a listener previously added with addMessageListener.
      */
     public void removeMessageListener(CellMessageReceiver o) {
-        synchronized (_receivers) {
+        synchronized (_messageListeners) {
             if (_messageListeners.remove(o)) {
-                _receivers.clear();
+                invalidateReceivers();
             }
         }
     }
 
+    private void invalidateReceivers() {
+        _receivers = new ConcurrentHashMap<>();
+    }
+
     /**
      * Returns the message types that can be reveived by an object of the given class.
      */
@@ -122,9 +150,8 @@ public class CellMessageDispatcher {
      * and messageArrived(Y) and Y is more specific than X, then you would expect the latter to be
      * called for message Y. This is not yet the case.
      */
-    @GuardedBy(value = "_receivers")
-    private Collection<Receiver> findReceivers(Class<?> c) {
-        Collection<Receiver> receivers = new ArrayList<>();
+    private Receiver[] findReceivers(Class<?> c) {
+        List<Receiver> receivers = new ArrayList<>();
         for (CellMessageReceiver listener : _messageListeners) {
             Method m = ReflectionUtils.resolve(listener.getClass(),
                   _receiverName,
@@ -143,13 +170,27 @@ public class CellMessageDispatcher {
                 receivers.add(new ShortReceiver(listener, m));
             }
         }
+        return receivers.toArray(NO_RECEIVERS);
+    }
+
+    private Receiver[] getReceivers(Class<?> c) {
+        ConcurrentMap<Class<?>, Receiver[]> map = _receivers;
+        DispatchEntry last = _lastDispatch;
+        if (last.type == c && last.table == map) {
+            return last.receivers;
+        }
+        Receiver[] receivers = map.get(c);
+        if (receivers == null) {
+            receivers = map.computeIfAbsent(c, this::findReceivers);
+        }
+        _lastDispatch = new DispatchEntry(map, c, receivers);
         return receivers;
     }
 
-    private String multipleRepliesError(Collection<Receiver> receivers, Object message) {
+    private String multipleRepliesError(Receiver[] receivers, Object message) {
         return String.format(
               "Processing of message [%s] of type %s failed: Multiple replies were generated by %s.",
-              message, message.getClass().getName(), receivers);
+              message, message.getClass().getName(), Arrays.toString(receivers));
     }
 
     /**
@@ -171,31 +212,14 @@ public class CellMessageDispatcher {
      */
     public Object call(CellMessage envelope) {
         Serializable message = envelope.getMessageObject();
-        Class<? extends Serializable> c = message.getClass();
-        Collection<Receiver> receivers;
-
-        synchronized (_receivers) {
-            receivers = _receivers.get(c);
-            if (receivers == null) {
-                receivers = findReceivers(c);
-                _receivers.put(c, receivers);
-            }
-        }
+        Receiver[] receivers = getReceivers(message.getClass());
 
         Object result = null;
         for (Receiver receiver : receivers) {
+            Object obj;
             try {
-                Object obj = receiver.deliver(envelope, message);
-                if (obj != null) {
-                    if (result != null) {
-                        throw new RuntimeException(multipleRepliesError(receivers, message));
-                    }
-                    result = obj;
-                }
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException("Cannot process message due to access error", e);
-            } catch (InvocationTargetException e) {
-                Throwable cause = e.getCause();
+                obj = receiver.deliver(envelope, message);
+            } catch (Throwable cause) {
                 if (cause instanceof IllegalArgumentException ||
                       cause instanceof IllegalStateException ||
                       receiver.isDeclaredToThrow(cause.getClass())) {
@@ -205,6 +229,7 @@ public class CellMessageDispatcher {
                      * the public contract of the receiver and
                      * propagate the exception back to the client.
                      */
+                    obj = cause;
                 } else if (cause instanceof RuntimeException) {
                     throw (RuntimeException) cause;
                 } else if (cause instanceof Error) {
@@ -219,17 +244,35 @@ public class CellMessageDispatcher {
                           "Bug: This should have been unreachable. Please report to support@dcache.org.",
                           cause);
                 }
+            }
 
+            if (obj != null) {
                 if (result != null) {
                     throw new RuntimeException(multipleRepliesError(receivers, message));
                 }
-                result = cause;
+                result = obj;
             }
         }
 
         return result;
     }
 
+    /**
+     * A message type together with its receivers and the dispatch table they were taken from.
+     */
+    private static class DispatchEntry {
+
+        final Map<Class<?>, Receiver[]> table;
+        final Class<?> type;
+        final Receiver[] receivers;
+
+        DispatchEntry(Map<Class<?>, Receiver[]> table, Class<?> type, Receiver[] receivers) {
+            this.table = table;
+            this.type = type;
+            this.receivers = receivers;
+        }
+    }
+
     /**
      * Helper class for message dispatching.
      */
@@ -243,8 +286,21 @@ public class CellMessageDispatcher {
             _method = method;
         }
 
-        public abstract Object deliver(CellMessage envelope, Object message)
-              throws IllegalAccessException, InvocationTargetException;
+        /**
+         * Returns a method handle for the receiver method bound to the receiving object and
+         * adapted to the given type.
+         */
+        protected MethodHandle bind(Class<?>... parameterTypes) {
+            try {
+                return LOOKUP.unreflect(_method)
+                      .bindTo(_object)
+                      .asType(methodType(Object.class, parameterTypes));
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Cannot process message due to access error", e);
+            }
+        }
+
+        public abstract Object deliver(CellMessage envelope, Object message) throws Throwable;
 
         public String toString() {
             return String.format("Object: %1$s; Method: %2$s", _object, _method);
@@ -262,28 +318,32 @@ public class CellMessageDispatcher {
 
     static class ShortReceiver extends Receiver {
 
+        private final MethodHandle _handle;
+
         public ShortReceiver(CellMessageReceiver object, Method method) {
             super(object, method);
+            _handle = bind(Object.class);
         }
 
         @Override
-        public Object deliver(CellMessage envelope, Object message)
-              throws IllegalAccessException, InvocationTargetException {
-            return _method.invoke(_object, message);
+        public Object deliver(CellMessage envelope, Object message) throws Throwable {
+            return (Object) _handle.invokeExact(message);
         }
     }
 
 
     static class LongReceiver extends Receiver {
 
+        private final MethodHandle _handle;
+
         public LongReceiver(CellMessageReceiver object, Method method) {
             super(object, method);
+            _handle = bind(CellMessage.class, Object.class);
         }
 
         @Override
-        public Object deliver(CellMessage envelope, Object message)
-              throws IllegalAccessException, InvocationTargetException {
-            return _method.invoke(_object, envelope, message);
+        public Object deliver(CellMessage envelope, Object message) throws Throwable {
+            return (Object) _handle.invokeExact(envelope, message);
         }
     }
 }
@@ -12,6 +12,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.SettableFuture;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.TimeoutCacheException;
 import diskCacheV111.vehicles.Message;
@@ -21,12 +22,15 @@ import dmg.cells.nucleus.CellMessageSender;
 import dmg.cells.nucleus.CellPath;
 import dmg.cells.nucleus.NoRouteToCellException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import org.dcache.util.CacheExceptionFactory;
+import org.dcache.vehicles.BatchMessage;
 
 /**
  * Stub class for common cell communication patterns. An instance of the template class encapsulates
@@ -377,6 +381,67 @@ public class CellStub
         return future;
     }
 
+    public <T extends Message> List<ListenableFuture<T>> sendBatch(List<T> messages,
+          CellEndpoint.SendFlag... flags) {
+        return sendBatch(_destination, messages, getTimeoutInMillis(), flags);
+    }
+
+    public <T extends Message> List<ListenableFuture<T>> sendBatch(List<T> messages,
+          long timeout, CellEndpoint.SendFlag... flags) {
+        return sendBatch(_destination, messages, timeout, flags);
+    }
+
+    /**
+     * Sends several messages to {@code destination} as a single {@link BatchMessage}.
+     * <p>
+     * The messages are processed independently by the destination and may fail independently;
+     * the future of each message completes like the future returned by {@link #send} would.
+     * Only if the batch as a whole fails, for instance because it timed out or the destination
+     * is unreachable, do all futures fail with the same exception. The batch counts as a single
+     * message with respect to the concurrency and rate limits of this stub.
+     *
+     * @return a list of futures in the same order as {@code messages}
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Message> List<ListenableFuture<T>> sendBatch(CellPath destination,
+          List<T> messages, long timeout, CellEndpoint.SendFlag... flags) {
+        List<SettableFuture<T>> futures = new ArrayList<>(messages.size());
+        for (T message : messages) {
+            message.setReplyRequired(true);
+            futures.add(SettableFuture.create());
+        }
+        if (!messages.isEmpty()) {
+            ListenableFuture<BatchMessage> batch =
+                  send(destination, new BatchMessage(messages), timeout, flags);
+            batch.addListener(() -> {
+                try {
+                    BatchMessage reply = getMessage(batch);
+                    List<Message> items = reply.getItems();
+                    if (items.size() != futures.size()) {
+                        throw new CacheException(CacheException.UNEXPECTED_SYSTEM_EXCEPTION,
+                              "Batch reply contains " + items.size() + " items, expected "
+                                    + futures.size() + ".");
+                    }
+                    for (int i = 0; i < items.size(); i++) {
+                        Class<?> type = messages.get(i).getClass();
+                        Message item = items.get(i);
+                        if (type.isInstance(item)) {
+                            futures.get(i).set((T) item);
+                        } else {
+                            futures.get(i).setException(
+                                  new CacheException(CacheException.UNEXPECTED_SYSTEM_EXCEPTION,
+                                        "Unexpected reply: " + item));
+                        }
+                    }
+                } catch (CacheException | NoRouteToCellException | InterruptedException
+                      | RuntimeException e) {
+                    futures.forEach(f -> f.setException(e));
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return new ArrayList<>(futures);
+    }
+
     private CellEndpoint.SendFlag[] mergeFlags(CellEndpoint.SendFlag[] a,
           CellEndpoint.SendFlag[] b) {
         return (a.length == 0) ? b
@@ -53,6 +53,7 @@ import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedInput;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
@@ -72,6 +73,7 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.pool.movers.NettyTransferService;
+import org.dcache.pool.repository.FileRepositoryChannel;
 import org.dcache.pool.repository.OutOfDiskException;
 import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
@@ -103,6 +105,11 @@ public class HttpPoolRequestHandler extends HttpRequestHandler {
     private static final List<String> SUPPORTED_CONTENT_HEADERS
           = ImmutableList.of(CONTENT_LENGTH, CONTENT_MD5);
 
+    /**
+     * Maximum number of bytes sent by a single file region in zero-copy mode.
+     */
+    private static final long REGION_SIZE = 64 * 1024 * 1024;
+
     /**
      * The mover channels that were opened.
      */
@@ -116,6 +123,8 @@ public class HttpPoolRequestHandler extends HttpRequestHandler {
 
     private final int _chunkSize;
 
+    private final boolean _isZeroCopyEnabled;
+
     /**
      * The file being uploaded. Even though we only keep the file open for the processing of a
      * single HTTP message, that one message may have been split into several chunks. Hence we have
@@ -146,8 +155,18 @@ public class HttpPoolRequestHandler extends HttpRequestHandler {
     }
 
     public HttpPoolRequestHandler(NettyTransferService<HttpProtocolInfo> server, int chunkSize) {
+        this(server, chunkSize, false);
+    }
+
+    /**
+     * @param zeroCopy whether to send single ranges without copying the data through user space
+     *                 when the connection permits
+     */
+    public HttpPoolRequestHandler(NettyTransferService<HttpProtocolInfo> server, int chunkSize,
+          boolean zeroCopy) {
         _server = server;
         _chunkSize = chunkSize;
+        _isZeroCopyEnabled = zeroCopy;
     }
 
     private static Optional<String> wantDigest(HttpRequest request) {
@@ -376,7 +395,9 @@ public class HttpPoolRequestHandler extends HttpRequestHandler {
      * Single GET operation.
      * <p>
      * Finds the correct mover channel using the UUID in the GET. Range queries are supported. The
-     * file will be sent to the remote peer in chunks to avoid server side memory issues.
+     * file will be sent to the remote peer in chunks to avoid server side memory issues. Whole
+     * files and single ranges are sent as file regions if zero-copy is enabled and the
+     * connection is not encrypted.
      */
     @Override
     protected ChannelFuture doOnGet(ChannelHandlerContext context,
@@ -420,7 +441,7 @@ public class HttpPoolRequestHandler extends HttpRequestHandler {
              */
             context.write(new HttpGetResponse(fileSize, file, digest))
                   .addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
-            context.write(read(file, 0, fileSize - 1))
+            context.write(transfer(context, file, 0, fileSize - 1))
                   .addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
             return context.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
         } else if (ranges.size() == 1) {
@@ -431,7 +452,7 @@ public class HttpPoolRequestHandler extends HttpRequestHandler {
             context.write(new HttpPartialContentResponse(range.getLower(), range.getUpper(),
                         fileSize, digest))
                   .addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
-            context.write(read(file, range.getLower(), range.getUpper()))
+            context.write(transfer(context, file, range.getLower(), range.getUpper()))
                   .addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
             return context.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
         } else {
@@ -720,6 +741,32 @@ public class HttpPoolRequestHandler extends HttpRequestHandler {
         return new ReusableChunkedNioFile(file, lowerRange, length, _chunkSize);
     }
 
+    /**
+     * Like {@link #read}, but sends the requested range as file regions if zero-copy is enabled,
+     * the file is stored in a local file system and no handler in the pipeline needs to see the
+     * data. The regions are written by the socket transport using {@link
+     * org.dcache.pool.repository.RepositoryChannel#transferTo}, avoiding the copy through a
+     * buffer. Other backends, such as Ceph, either do not support {@code transferTo} or would
+     * copy the data anyway.
+     *
+     * @param context    the context of this handler
+     * @param file       the mover channel to read from
+     * @param lowerRange The lower delimiter of the requested byte range of the file
+     * @param upperRange The upper delimiter of the requested byte range of the file
+     * @return ChunkedInput View upon the file suitable for sending with netty and representing the
+     * requested parts.
+     */
+    private ChunkedInput transfer(ChannelHandlerContext context,
+          NettyTransferService<HttpProtocolInfo>.NettyMoverChannel file,
+          long lowerRange, long upperRange) {
+        if (!_isZeroCopyEnabled || context.pipeline().get(SslHandler.class) != null
+              || !file.optionallyAs(FileRepositoryChannel.class).isPresent()) {
+            return read(file, lowerRange, upperRange);
+        }
+        long length = (upperRange - lowerRange) + 1;
+        return new ReusableChunkedFileRegion(file, lowerRange, length, REGION_SIZE);
+    }
+
     private static String buildDigest(
           NettyTransferService<HttpProtocolInfo>.NettyMoverChannel file) {
         FileAttributes attributes = file.getFileAttributes();
@@ -0,0 +1,224 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.http;
+
+import static java.util.Objects.requireNonNull;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.AbstractReferenceCounted;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import org.dcache.pool.repository.RepositoryChannel;
+
+/**
+ * A {@link ChunkedInput} that provides a range of a file as a sequence of {@link FileRegion}s.
+ * <p>
+ * Unlike {@link ReusableChunkedNioFile}, the data is not copied into buffers. The socket
+ * transport writes each region with {@link RepositoryChannel#transferTo}, which for a file on a
+ * local file system and a plain TCP socket allows the kernel to send the data directly from
+ * the page cache. The regions can therefore not be used if any handler in the pipeline has to
+ * see the data, such as a TLS handler.
+ * <p>
+ * The range is split into regions of at most {@code regionSize} bytes so that the completion of
+ * every region counts as write activity for the idle state handler, and so that a transfer of a
+ * large file is not a single, unbounded write.
+ */
+public class ReusableChunkedFileRegion implements ChunkedInput<FileRegion> {
+
+    private final RepositoryChannel _channel;
+    private final long _startOffset;
+    private final long _endOffset;
+    private final long _regionSize;
+
+    private volatile long _offset;
+
+    public ReusableChunkedFileRegion(RepositoryChannel channel, long offset, long length,
+          long regionSize) {
+        requireNonNull(channel, "Channel must not be null");
+
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset: " + offset +
+                  " (expected: 0 or greater)");
+        }
+
+        if (length < 0) {
+            throw new IllegalArgumentException("length: " + length +
+                  " (expected: 0 or greater)");
+        }
+
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("regionSize: " + regionSize +
+                  " (expected: 1 or greater)");
+        }
+
+        _channel = channel;
+        _regionSize = regionSize;
+        _startOffset = _offset = offset;
+        _endOffset = offset + length;
+    }
+
+    /**
+     * Like {@link ReusableChunkedNioFile#close}, this is a no-op so that the mover channel stays
+     * usable for further requests on a kept-alive connection.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return _offset >= _endOffset || !_channel.isOpen();
+    }
+
+    @Override
+    public FileRegion readChunk(ChannelHandlerContext ctx) {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public FileRegion readChunk(ByteBufAllocator allocator) {
+        long offset = _offset;
+        if (offset >= _endOffset) {
+            return null;
+        }
+        long count = Math.min(_regionSize, _endOffset - offset);
+        _offset = offset + count;
+        return new Region(_channel, offset, count);
+    }
+
+    @Override
+    public long length() {
+        return _endOffset - _startOffset;
+    }
+
+    @Override
+    public long progress() {
+        return _offset - _startOffset;
+    }
+
+    /**
+     * Returns the repository channel. Used for unit testing.
+     */
+    RepositoryChannel getChannel() {
+        return _channel;
+    }
+
+    /**
+     * Returns the end offset. Used for unit testing.
+     */
+    long getEndOffset() {
+        return _endOffset;
+    }
+
+    /**
+     * Returns the current offset. Used for unit testing.
+     */
+    long getOffset() {
+        return _offset;
+    }
+
+    /**
+     * A region of a repository channel. Releasing the region does not close the channel.
+     */
+    static class Region extends AbstractReferenceCounted implements FileRegion {
+
+        private final RepositoryChannel _channel;
+        private final long _position;
+        private final long _count;
+        private long _transferred;
+
+        Region(RepositoryChannel channel, long position, long count) {
+            _channel = channel;
+            _position = position;
+            _count = count;
+        }
+
+        @Override
+        public long position() {
+            return _position;
+        }
+
+        @Override
+        @Deprecated
+        public long transfered() {
+            return _transferred;
+        }
+
+        @Override
+        public long transferred() {
+            return _transferred;
+        }
+
+        @Override
+        public long count() {
+            return _count;
+        }
+
+        @Override
+        public long transferTo(WritableByteChannel target, long position) throws IOException {
+            long count = _count - position;
+            if (count < 0 || position < 0) {
+                throw new IllegalArgumentException("position out of range: " + position +
+                      " (expected: 0 - " + (_count - 1) + ')');
+            }
+            if (count == 0) {
+                return 0L;
+            }
+
+            long written = _channel.transferTo(_position + position, count, target);
+            if (written > 0) {
+                _transferred += written;
+            } else if (written == 0 && _channel.size() < _position + _count) {
+                /* Without this check, the transport would retry the write forever. */
+                throw new IOException("File is shorter than expected: " + _channel.size()
+                      + " < " + (_position + _count));
+            }
+            return written;
+        }
+
+        @Override
+        public Region retain() {
+            super.retain();
+            return this;
+        }
+
+        @Override
+        public Region retain(int increment) {
+            super.retain(increment);
+            return this;
+        }
+
+        @Override
+        public Region touch() {
+            return this;
+        }
+
+        @Override
+        public Region touch(Object hint) {
+            return this;
+        }
+
+        @Override
+        protected void deallocate() {
+            /* The channel is owned by the mover. */
+        }
+    }
+}
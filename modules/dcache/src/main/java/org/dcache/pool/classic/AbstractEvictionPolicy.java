@@ -0,0 +1,97 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import diskCacheV111.util.PnfsId;
+import java.util.stream.LongStream;
+
+/**
+ * Base class for eviction policies. Tracks the candidates and their last access times, and
+ * leaves the order of eviction to subclasses.
+ */
+abstract class AbstractEvictionPolicy implements EvictionPolicy {
+
+    /**
+     * The candidates by last access time.
+     */
+    protected final LruIndex lru = new LruIndex();
+
+    @Override
+    public boolean add(PnfsId id, long size, long time) {
+        if (!lru.add(id, time)) {
+            return false;
+        }
+        added(id, size, time);
+        return true;
+    }
+
+    @Override
+    public boolean remove(PnfsId id) {
+        if (!lru.remove(id)) {
+            return false;
+        }
+        removed(id, false);
+        return true;
+    }
+
+    @Override
+    public void accessed(PnfsId id, long size, long time) {
+        accessed(id, size, time, lru.touch(id, time));
+    }
+
+    @Override
+    public void deleted(PnfsId id, long size) {
+        if (lru.remove(id)) {
+            removed(id, true);
+        }
+    }
+
+    @Override
+    public int size() {
+        return lru.size();
+    }
+
+    @Override
+    public long getLru() {
+        return lru.eldestTime();
+    }
+
+    @Override
+    public LongStream lastAccessTimes() {
+        return lru.snapshot().lastAccessTimes();
+    }
+
+    /**
+     * Called after a replica was added to the candidates.
+     */
+    protected abstract void added(PnfsId id, long size, long time);
+
+    /**
+     * Called after a replica was removed from the candidates.
+     *
+     * @param deleted true if the replica was deleted from the pool
+     */
+    protected abstract void removed(PnfsId id, boolean deleted);
+
+    /**
+     * Called on a read of a replica.
+     *
+     * @param isCandidate whether the replica is a candidate
+     */
+    protected abstract void accessed(PnfsId id, long size, long time, boolean isCandidate);
+}
@@ -0,0 +1,191 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import diskCacheV111.util.PnfsId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Adaptive Replacement Cache (ARC), weighted by replica size.
+ * <p>
+ * Candidates read at most once since becoming removable are kept in a recency list T1,
+ * candidates read again in a frequency list T2; both are ordered by last access time. Becoming
+ * removable is not a read, so a replica fetched for a read stays in T1 for that read. Replicas evicted from
+ * either list are remembered in ghost lists B1 and B2. A replica fetched again while in B1
+ * shows that T1 is too small and shifts the target size p of T1 up; one in B2 shifts it down.
+ * The eldest replica of T1 is evicted while T1 holds more than p bytes, otherwise the eldest of
+ * T2.
+ * <p>
+ * Only removable replicas take part, so the cache size c is the number of bytes in T1 and T2.
+ * Each ghost list is limited to c bytes.
+ */
+class ArcEvictionPolicy extends AbstractEvictionPolicy {
+
+    private final LruIndex t1 = new LruIndex();
+    private final LruIndex t2 = new LruIndex();
+    private final Map<PnfsId, Long> sizes = new HashMap<>();
+
+    /**
+     * The candidates in T1 that were not read since becoming removable.
+     */
+    private final Set<PnfsId> unread = new HashSet<>();
+    private final LinkedHashMap<PnfsId, Long> b1 = new LinkedHashMap<>();
+    private final LinkedHashMap<PnfsId, Long> b2 = new LinkedHashMap<>();
+
+    private long t1Bytes;
+    private long t2Bytes;
+    private long b1Bytes;
+    private long b2Bytes;
+
+    /**
+     * Target size of T1 in bytes.
+     */
+    private long p;
+
+    @Override
+    public String getName() {
+        return "arc";
+    }
+
+    @Override
+    public synchronized PnfsId victim() {
+        if (t1.size() > 0 && (t1Bytes > p || t2.size() == 0)) {
+            return t1.eldest();
+        }
+        return t2.eldest();
+    }
+
+    @Override
+    public synchronized Iterable<PnfsId> candidates() {
+        LruIndex.Snapshot recent = t1.snapshot();
+        LruIndex.Snapshot frequent = t2.snapshot();
+        Map<PnfsId, Long> sizes = new HashMap<>(this.sizes);
+        long bytes = t1Bytes;
+        long target = p;
+        return () -> new Iterator<>() {
+            private final Iterator<PnfsId> i1 = recent.iterator();
+            private final Iterator<PnfsId> i2 = frequent.iterator();
+            private long remaining = bytes;
+
+            @Override
+            public boolean hasNext() {
+                return i1.hasNext() || i2.hasNext();
+            }
+
+            @Override
+            public PnfsId next() {
+                if (i1.hasNext() && (remaining > target || !i2.hasNext())) {
+                    PnfsId id = i1.next();
+                    remaining -= sizes.getOrDefault(id, 0L);
+                    return id;
+                }
+                if (i2.hasNext()) {
+                    return i2.next();
+                }
+                throw new NoSuchElementException();
+            }
+        };
+    }
+
+    @Override
+    protected synchronized void added(PnfsId id, long size, long time) {
+        Long ghost;
+        if ((ghost = b1.remove(id)) != null) {
+            b1Bytes -= ghost;
+            long delta = b1Bytes > 0 ? Math.max(size, size * b2Bytes / b1Bytes) : size;
+            p = Math.min(t1Bytes + t2Bytes + size, p + delta);
+            insert(t2, id, size, time);
+        } else if ((ghost = b2.remove(id)) != null) {
+            b2Bytes -= ghost;
+            long delta = b2Bytes > 0 ? Math.max(size, size * b1Bytes / b2Bytes) : size;
+            p = Math.max(0, p - delta);
+            insert(t2, id, size, time);
+        } else {
+            insert(t1, id, size, time);
+            unread.add(id);
+        }
+    }
+
+    private void insert(LruIndex list, PnfsId id, long size, long time) {
+        list.add(id, time);
+        sizes.put(id, size);
+        if (list == t1) {
+            t1Bytes += size;
+        } else {
+            t2Bytes += size;
+        }
+    }
+
+    @Override
+    protected synchronized void removed(PnfsId id, boolean deleted) {
+        Long size = sizes.remove(id);
+        if (size == null) {
+            return;
+        }
+        unread.remove(id);
+        if (t1.remove(id)) {
+            t1Bytes -= size;
+            if (deleted) {
+                b1.put(id, size);
+                b1Bytes += size;
+            }
+        } else if (t2.remove(id)) {
+            t2Bytes -= size;
+            if (deleted) {
+                b2.put(id, size);
+                b2Bytes += size;
+            }
+        }
+        long capacity = t1Bytes + t2Bytes;
+        b1Bytes = trim(b1, b1Bytes, capacity);
+        b2Bytes = trim(b2, b2Bytes, capacity);
+        p = Math.min(p, capacity);
+    }
+
+    private static long trim(LinkedHashMap<PnfsId, Long> ghosts, long bytes, long capacity) {
+        Iterator<Long> i = ghosts.values().iterator();
+        while (bytes > capacity && i.hasNext()) {
+            bytes -= i.next();
+            i.remove();
+        }
+        return bytes;
+    }
+
+    @Override
+    protected synchronized void accessed(PnfsId id, long size, long time, boolean isCandidate) {
+        if (!isCandidate) {
+            return;
+        }
+        if (unread.remove(id)) {
+            t1.touch(id, time);
+        } else if (t1.remove(id)) {
+            long bytes = sizes.getOrDefault(id, size);
+            t1Bytes -= bytes;
+            t2.add(id, time);
+            t2Bytes += bytes;
+        } else {
+            t2.touch(id, time);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import diskCacheV111.util.PnfsId;
+import java.util.stream.LongStream;
+
+/**
+ * Decides in which order the sweeper removes removable replicas.
+ * <p>
+ * The sweeper informs the policy about replicas becoming removable, about replicas no longer
+ * being removable, about reads of any replica, and about replicas being deleted. A policy may
+ * remember replicas that are not removable or no longer on the pool to estimate how often they
+ * are used.
+ * <p>
+ * Implementations are thread safe. Calls for the same replica are not concurrent.
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Returns the name of the policy as used in the configuration.
+     */
+    String getName();
+
+    /**
+     * Adds a replica to the eviction candidates unless it is a candidate already.
+     *
+     * @param size the size of the replica in bytes
+     * @param time the last access time of the replica
+     * @return true if the replica was added
+     */
+    boolean add(PnfsId id, long size, long time);
+
+    /**
+     * Removes a replica from the eviction candidates, for instance because it became sticky.
+     *
+     * @return true if the replica was a candidate
+     */
+    boolean remove(PnfsId id);
+
+    /**
+     * Records a read of a replica. The replica need not be a candidate.
+     *
+     * @param size the size of the replica in bytes
+     * @param time the new last access time of the replica
+     */
+    void accessed(PnfsId id, long size, long time);
+
+    /**
+     * Records that a replica was deleted from the pool. The replica is removed from the eviction
+     * candidates.
+     *
+     * @param size the size of the replica in bytes
+     */
+    void deleted(PnfsId id, long size);
+
+    /**
+     * Returns the candidate to evict next, or null if there are no candidates.
+     */
+    PnfsId victim();
+
+    /**
+     * Returns a copy of the candidates in the order in which they should be evicted.
+     */
+    Iterable<PnfsId> candidates();
+
+    /**
+     * Returns the number of candidates.
+     */
+    int size();
+
+    /**
+     * Returns the last access time of the least recently used candidate, or 0 if there are no
+     * candidates.
+     */
+    long getLru();
+
+    /**
+     * Returns the last access times of all candidates in no particular order.
+     */
+    LongStream lastAccessTimes();
+}
@@ -0,0 +1,59 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import java.util.List;
+
+public class EvictionPolicyFactory {
+
+    /**
+     * Number of replicas for which frequency aware policies remember past reads.
+     */
+    private static final int HISTORY_SIZE = 1_000_000;
+
+    /**
+     * Names of the available policies.
+     */
+    public static final List<String> POLICIES = List.of("lru", "lru-2", "arc", "gdsf");
+
+    /**
+     * Factory method for creating eviction policies by name.
+     *
+     * @param name lru, lru-K for a positive number K, arc or gdsf
+     */
+    public static EvictionPolicy createInstance(String name) {
+        switch (name) {
+            case "lru":
+                return new LruEvictionPolicy();
+            case "arc":
+                return new ArcEvictionPolicy();
+            case "gdsf":
+                return new GdsfEvictionPolicy(HISTORY_SIZE);
+            default:
+                if (name.startsWith("lru-")) {
+                    try {
+                        return new LruKEvictionPolicy(Integer.parseInt(name.substring(4)),
+                              HISTORY_SIZE);
+                    } catch (NumberFormatException e) {
+                        // fall through
+                    }
+                }
+                throw new IllegalArgumentException("Unknown eviction policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.base.Function;
+import diskCacheV111.util.DiskSpace;
+import diskCacheV111.util.PnfsId;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.dcache.boot.LayoutBuilder;
+import org.dcache.services.billing.text.BillingParserBuilder;
+import org.dcache.services.billing.text.Indexer;
+import org.dcache.util.Args;
+
+/**
+ * Replays the reads and writes of a pool recorded in billing files against several eviction
+ * policies, to choose a policy for the pool offline.
+ * <p>
+ * Every pool selection for reading (a pool hit billing entry) of the pool is a read. The read is
+ * a hit if the replica is on the simulated pool, otherwise the replica has to be copied from
+ * another pool or staged, possibly evicting other replicas. Replicas uploaded to the pool are
+ * added without counting a hit or miss. Replicas the pool removed for other reasons than
+ * eviction, e.g. because the file was deleted, are removed; replicas the pool evicted are left
+ * to the simulated policies. A file deleted after the pool evicted its replica may thus stay on
+ * a simulated pool. All replicas are assumed to be removable; precious and sticky replicas are
+ * not modelled.
+ * <p>
+ * Run with the dCache class path and configuration, e.g.
+ * <pre>
+ *     java -Ddcache.home=/usr/share/dcache -Ddcache.paths.defaults=/usr/share/dcache/defaults \
+ *         -cp '/usr/share/dcache/classes/*' org.dcache.pool.classic.EvictionSimulator \
+ *         -pool=pool1 -size=100T [-policies=lru,lru-2,arc,gdsf] billing-2021.05.*
+ * </pre>
+ * The billing files have to be in chronological order and uncompressed.
+ */
+public class EvictionSimulator {
+
+    private final String pool;
+    private final long capacity;
+    private final List<SimulatedPool> pools;
+
+    /**
+     * Logical time advanced on every read and write.
+     */
+    private long clock;
+
+    public EvictionSimulator(String pool, long capacity, List<EvictionPolicy> policies) {
+        this.pool = pool;
+        this.capacity = capacity;
+        this.pools = policies.stream().map(SimulatedPool::new).collect(toList());
+    }
+
+    /**
+     * Replays the entries of a billing file. Format headers in the file take precedence over the
+     * formats of {@code builder}.
+     */
+    public void replay(Reader in, BillingParserBuilder builder) throws IOException {
+        Function<String, Map<String, String>> parser = builder.addAllAttributes().buildToMap();
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("##")) {
+                parser = builder.withFormat(line).addAllAttributes().buildToMap();
+            } else if (!line.isEmpty() && line.charAt(0) != '#') {
+                replay(parser.apply(line));
+            }
+        }
+    }
+
+    private void replay(Map<String, String> entry) {
+        String type = entry.get("type");
+        String id = entry.get("pnfsid");
+        String size = entry.get("filesize");
+        if (type == null || id == null || size == null) {
+            return;
+        }
+        String cell = entry.getOrDefault("cellName.cell", entry.get("cellName"));
+        switch (type) {
+            case "hit":
+                if (pool.equals(cell)) {
+                    read(new PnfsId(id), Long.parseLong(size));
+                }
+                break;
+            case "transfer":
+                if (pool.equals(cell) && "0".equals(entry.get("rc"))
+                      && "true".equals(entry.get("created"))) {
+                    write(new PnfsId(id), Long.parseLong(size));
+                }
+                break;
+            case "remove":
+                if (pool.equals(cellName(cell)) && !isEviction(entry.get("message"))) {
+                    delete(new PnfsId(id));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Returns the name of a cell given its address, which may be qualified by the domain.
+     */
+    private static String cellName(String address) {
+        if (address == null) {
+            return null;
+        }
+        int i = address.indexOf('@');
+        return i < 0 ? address : address.substring(0, i);
+    }
+
+    /**
+     * Returns whether the reason for removing a replica is that the sweeper evicted it. Which
+     * replicas get evicted is up to the simulated policies.
+     */
+    private static boolean isEviction(String reason) {
+        return reason != null && reason.startsWith("sweeper ")
+              || "'sweeper purge' command".equals(reason)
+              || "'sweeper free' command".equals(reason);
+    }
+
+    /**
+     * Simulates a read of a replica from the pool.
+     */
+    public void read(PnfsId id, long size) {
+        clock++;
+        for (SimulatedPool pool : pools) {
+            pool.read(id, size, clock);
+        }
+    }
+
+    /**
+     * Simulates a replica being written to the pool.
+     */
+    public void write(PnfsId id, long size) {
+        clock++;
+        for (SimulatedPool pool : pools) {
+            pool.write(id, size, clock);
+        }
+    }
+
+    /**
+     * Simulates a replica being deleted.
+     */
+    public void delete(PnfsId id) {
+        for (SimulatedPool pool : pools) {
+            pool.delete(id);
+        }
+    }
+
+    /**
+     * Prints the results of each policy. Requests avoided are relative to the first policy.
+     */
+    public void print(PrintWriter pw) {
+        pw.printf("%-8s %12s %8s %8s %12s %10s %10s%n",
+              "Policy", "Hits", "Hit %", "Byte %", "Bytes saved", "Fetches", "Avoided");
+        long baseline = pools.isEmpty() ? 0 : pools.get(0).misses;
+        for (SimulatedPool pool : pools) {
+            pw.printf("%-8s %12d %8.2f %8.2f %12s %10d %10d%n",
+                  pool.policy.getName(), pool.hits,
+                  percentage(pool.hits, pool.hits + pool.misses),
+                  percentage(pool.hitBytes, pool.hitBytes + pool.missBytes),
+                  DiskSpace.toUnitString(pool.hitBytes), pool.misses, baseline - pool.misses);
+        }
+    }
+
+    private static double percentage(long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+
+    SimulatedPool getResult(String policy) {
+        return pools.stream().filter(p -> p.policy.getName().equals(policy)).findFirst()
+              .orElseThrow();
+    }
+
+    /**
+     * The replicas on the pool under one eviction policy.
+     */
+    class SimulatedPool {
+
+        private final EvictionPolicy policy;
+        private final Map<PnfsId, Long> replicas = new HashMap<>();
+        private long used;
+
+        long hits;
+        long hitBytes;
+        long misses;
+        long missBytes;
+
+        SimulatedPool(EvictionPolicy policy) {
+            this.policy = policy;
+        }
+
+        void read(PnfsId id, long size, long time) {
+            if (replicas.containsKey(id)) {
+                hits++;
+                hitBytes += size;
+                policy.accessed(id, size, time);
+            } else {
+                misses++;
+                missBytes += size;
+                if (add(id, size, time)) {
+                    /* Like on a pool, the replica is read once it has been fetched. */
+                    policy.accessed(id, size, time);
+                }
+            }
+        }
+
+        void write(PnfsId id, long size, long time) {
+            if (!replicas.containsKey(id)) {
+                add(id, size, time);
+            }
+        }
+
+        void delete(PnfsId id) {
+            Long size = replicas.remove(id);
+            if (size != null) {
+                used -= size;
+                policy.deleted(id, size);
+            }
+        }
+
+        private boolean add(PnfsId id, long size, long time) {
+            if (size > capacity) {
+                return false;
+            }
+            PnfsId victim;
+            while (used + size > capacity && (victim = policy.victim()) != null) {
+                delete(victim);
+            }
+            replicas.put(id, size);
+            used += size;
+            policy.add(id, size, time);
+            return true;
+        }
+    }
+
+    public static void main(String[] arguments) throws Exception {
+        Args args = new Args(arguments);
+        if (!args.hasOption("pool") || !args.hasOption("size") || args.argc() == 0) {
+            System.err.println("Usage: EvictionSimulator -pool=NAME -size=SIZE "
+                  + "[-policies=POLICY,...] BILLING-FILE...");
+            System.exit(1);
+        }
+
+        List<EvictionPolicy> policies =
+              Arrays.stream(args.getOption("policies", String.join(",",
+                          EvictionPolicyFactory.POLICIES)).split(","))
+                    .map(EvictionPolicyFactory::createInstance)
+                    .collect(toList());
+        EvictionSimulator simulator = new EvictionSimulator(args.getOption("pool"),
+              new DiskSpace(args.getOption("size")).longValue(), policies);
+
+        Map<String, String> formats =
+              Indexer.getBillingFormats(new LayoutBuilder().build().properties());
+        for (String file : args.getArguments()) {
+            try (Reader in = Files.newBufferedReader(Paths.get(file), UTF_8)) {
+                simulator.replay(in, new BillingParserBuilder(formats));
+            }
+        }
+
+        PrintWriter out = new PrintWriter(System.out);
+        simulator.print(out);
+        out.flush();
+    }
+}
@@ -0,0 +1,109 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import diskCacheV111.util.PnfsId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Greedy-Dual-Size-Frequency: evicts the replica with the lowest priority L + F / S, in which F
+ * is the number of reads of the replica, S its size, and L the priority of the last evicted
+ * replica.
+ * <p>
+ * Small and frequently read replicas are kept in favour of large replicas read rarely, which
+ * maximizes the number of reads served from the pool rather than the number of bytes. L ages
+ * replicas that were read often in the past but no longer are. Read counts are retained for a
+ * bounded number of replicas, including replicas that are not candidates or were deleted.
+ */
+class GdsfEvictionPolicy extends AbstractEvictionPolicy {
+
+    /**
+     * The candidates by priority. Priorities are non-negative doubles, which are ordered like
+     * their bit patterns.
+     */
+    private final LruIndex order = new LruIndex();
+
+    /**
+     * The number of reads of recently used replicas.
+     */
+    private final Map<PnfsId, Integer> frequencies;
+
+    /**
+     * The priority of the last evicted replica.
+     */
+    private double inflation;
+
+    GdsfEvictionPolicy(int historySize) {
+        checkArgument(historySize > 0, "History size must be positive: %s", historySize);
+        this.frequencies = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PnfsId, Integer> eldest) {
+                return size() > historySize;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return "gdsf";
+    }
+
+    @Override
+    public PnfsId victim() {
+        return order.eldest();
+    }
+
+    @Override
+    public Iterable<PnfsId> candidates() {
+        return order.snapshot();
+    }
+
+    private long priority(int frequency, long size) {
+        return Double.doubleToLongBits(inflation + frequency / (double) Math.max(size, 1));
+    }
+
+    /**
+     * Becoming a candidate is not a read, but a replica not read yet is ranked like one read
+     * once.
+     */
+    @Override
+    protected synchronized void added(PnfsId id, long size, long time) {
+        int frequency = frequencies.getOrDefault(id, 0);
+        order.add(id, priority(Math.max(frequency, 1), size));
+    }
+
+    @Override
+    protected synchronized void removed(PnfsId id, boolean deleted) {
+        long priority = order.getTime(id, -1);
+        order.remove(id);
+        if (deleted && priority >= 0) {
+            inflation = Math.max(inflation, Double.longBitsToDouble(priority));
+        }
+    }
+
+    @Override
+    protected synchronized void accessed(PnfsId id, long size, long time, boolean isCandidate) {
+        int frequency = frequencies.merge(id, 1, Integer::sum);
+        if (isCandidate) {
+            order.touch(id, priority(frequency, size));
+        }
+    }
+}
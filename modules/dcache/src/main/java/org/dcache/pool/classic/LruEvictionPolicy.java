@@ -0,0 +1,53 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import diskCacheV111.util.PnfsId;
+
+/**
+ * Evicts the least recently used replica first.
+ */
+class LruEvictionPolicy extends AbstractEvictionPolicy {
+
+    @Override
+    public String getName() {
+        return "lru";
+    }
+
+    @Override
+    public PnfsId victim() {
+        return lru.eldest();
+    }
+
+    @Override
+    public Iterable<PnfsId> candidates() {
+        return lru.snapshot();
+    }
+
+    @Override
+    protected void added(PnfsId id, long size, long time) {
+    }
+
+    @Override
+    protected void removed(PnfsId id, boolean deleted) {
+    }
+
+    @Override
+    protected void accessed(PnfsId id, long size, long time, boolean isCandidate) {
+    }
+}
@@ -0,0 +1,458 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import diskCacheV111.util.PnfsId;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.LongStream;
+
+/**
+ * Index of replicas ordered by last access time.
+ * <p>
+ * The index is divided into a fixed number of stripes selected by the hash of the PNFS ID. Each
+ * stripe is a binary min-heap on the access time held in primitive arrays, together with an open
+ * addressing hash table from PNFS ID to heap position. An entry thus costs about 24 bytes in
+ * addition to the PNFS ID, compared to several objects per entry for a tree set and a hash map.
+ * <p>
+ * Updates lock a single stripe only. The least recently used entry is found by comparing the
+ * heads of all stripes. Entries with the same access time are ordered by PNFS ID.
+ */
+class LruIndex {
+
+    private static final int DEFAULT_STRIPES = 16;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Stripe[] stripes;
+
+    LruIndex() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes number of stripes, a power of two
+     */
+    LruIndex(int stripes) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Number of stripes must be a power of two: "
+                  + stripes);
+        }
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    private static int hash(PnfsId id) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Stripe stripeOf(int hash) {
+        return stripes[(hash >>> 24) & (stripes.length - 1)];
+    }
+
+    private static int compare(long time1, PnfsId id1, long time2, PnfsId id2) {
+        int c = Long.compare(time1, time2);
+        return c != 0 ? c : id1.compareTo(id2);
+    }
+
+    /**
+     * Adds an entry unless the index already contains the PNFS ID.
+     *
+     * @return true if the entry was added
+     */
+    boolean add(PnfsId id, long time) {
+        int hash = hash(id);
+        return stripeOf(hash).add(id, hash, time);
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @return true if the index contained the PNFS ID
+     */
+    boolean remove(PnfsId id) {
+        int hash = hash(id);
+        return stripeOf(hash).remove(id, hash);
+    }
+
+    /**
+     * Updates the access time of an entry if the index contains the PNFS ID.
+     *
+     * @return true if the index contained the PNFS ID
+     */
+    boolean touch(PnfsId id, long time) {
+        int hash = hash(id);
+        return stripeOf(hash).touch(id, hash, time);
+    }
+
+    boolean contains(PnfsId id) {
+        int hash = hash(id);
+        return stripeOf(hash).contains(id, hash);
+    }
+
+    /**
+     * Returns the time of an entry, or {@code defaultTime} if the index does not contain the
+     * PNFS ID.
+     */
+    long getTime(PnfsId id, long defaultTime) {
+        int hash = hash(id);
+        return stripeOf(hash).getTime(id, hash, defaultTime);
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the PNFS ID of the least recently used entry, or null if the index is empty.
+     */
+    PnfsId eldest() {
+        PnfsId eldest = null;
+        long eldestTime = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.size > 0 && (eldest == null
+                      || compare(stripe.times[0], stripe.ids[0], eldestTime, eldest) < 0)) {
+                    eldest = stripe.ids[0];
+                    eldestTime = stripe.times[0];
+                }
+            }
+        }
+        return eldest;
+    }
+
+    /**
+     * Returns the access time of the least recently used entry, or 0 if the index is empty.
+     */
+    long eldestTime() {
+        long eldestTime = Long.MAX_VALUE;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.size > 0) {
+                    eldestTime = Math.min(eldestTime, stripe.times[0]);
+                }
+            }
+        }
+        return eldestTime == Long.MAX_VALUE ? 0 : eldestTime;
+    }
+
+    /**
+     * Returns a copy of the index. Each stripe is copied atomically, but the stripes are copied
+     * one after another.
+     */
+    Snapshot snapshot() {
+        int capacity = size();
+        PnfsId[] ids = new PnfsId[capacity];
+        long[] times = new long[capacity];
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (size + stripe.size > ids.length) {
+                    capacity = Math.max(2 * ids.length, size + stripe.size);
+                    ids = Arrays.copyOf(ids, capacity);
+                    times = Arrays.copyOf(times, capacity);
+                }
+                System.arraycopy(stripe.ids, 0, ids, size, stripe.size);
+                System.arraycopy(stripe.times, 0, times, size, stripe.size);
+                size += stripe.size;
+            }
+        }
+        return new Snapshot(ids, times, size);
+    }
+
+    /**
+     * A copy of the index.
+     */
+    static class Snapshot implements Iterable<PnfsId> {
+
+        private final PnfsId[] ids;
+        private final long[] times;
+        private final int size;
+
+        private Snapshot(PnfsId[] ids, long[] times, int size) {
+            this.ids = ids;
+            this.times = times;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the access times of all entries in no particular order.
+         */
+        LongStream lastAccessTimes() {
+            return Arrays.stream(times, 0, size);
+        }
+
+        /**
+         * Returns the PNFS IDs from the least to the most recently used. The order is
+         * established lazily, so iterating over the first k of n entries takes O(n + k log n).
+         */
+        @Override
+        public Iterator<PnfsId> iterator() {
+            PnfsId[] heapIds = Arrays.copyOf(ids, size);
+            long[] heapTimes = Arrays.copyOf(times, size);
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(heapIds, heapTimes, i, size);
+            }
+            return new Iterator<>() {
+                private int remaining = size;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                public PnfsId next() {
+                    if (remaining == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    PnfsId next = heapIds[0];
+                    remaining--;
+                    heapIds[0] = heapIds[remaining];
+                    heapTimes[0] = heapTimes[remaining];
+                    heapIds[remaining] = null;
+                    siftDown(heapIds, heapTimes, 0, remaining);
+                    return next;
+                }
+            };
+        }
+
+        private static void siftDown(PnfsId[] ids, long[] times, int i, int size) {
+            PnfsId id = ids[i];
+            long time = times[i];
+            int child;
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size
+                      && compare(times[child + 1], ids[child + 1], times[child], ids[child]) < 0) {
+                    child++;
+                }
+                if (compare(times[child], ids[child], time, id) >= 0) {
+                    break;
+                }
+                ids[i] = ids[child];
+                times[i] = times[child];
+                i = child;
+            }
+            ids[i] = id;
+            times[i] = time;
+        }
+    }
+
+    /**
+     * A binary min-heap of entries with a hash table from PNFS ID to heap position.
+     * <p>
+     * {@code ids}, {@code times} and {@code slots} are indexed by heap position; {@code slots}
+     * holds the hash table slot of each entry. {@code table} holds the heap position plus one of
+     * the entry in each slot, or zero for free slots. The table uses linear probing and is kept
+     * at most half full.
+     */
+    private static class Stripe {
+
+        private PnfsId[] ids = new PnfsId[INITIAL_CAPACITY];
+        private long[] times = new long[INITIAL_CAPACITY];
+        private int[] slots = new int[INITIAL_CAPACITY];
+        private int[] table = new int[2 * INITIAL_CAPACITY];
+        private int size;
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized boolean contains(PnfsId id, int hash) {
+            return find(id, hash) >= 0;
+        }
+
+        synchronized long getTime(PnfsId id, int hash, long defaultTime) {
+            int slot = find(id, hash);
+            return slot < 0 ? defaultTime : times[table[slot] - 1];
+        }
+
+        synchronized boolean add(PnfsId id, int hash, long time) {
+            int slot = find(id, hash);
+            if (slot >= 0) {
+                return false;
+            }
+            if (size == ids.length) {
+                grow();
+                slot = find(id, hash);
+            }
+            slot = -slot - 1;
+            int i = size++;
+            ids[i] = id;
+            times[i] = time;
+            slots[i] = slot;
+            table[slot] = i + 1;
+            siftUp(i);
+            return true;
+        }
+
+        synchronized boolean remove(PnfsId id, int hash) {
+            int slot = find(id, hash);
+            if (slot < 0) {
+                return false;
+            }
+            int i = table[slot] - 1;
+            deleteSlot(slot);
+            int last = --size;
+            if (i != last) {
+                move(last, i);
+                ids[last] = null;
+                siftDown(i);
+                siftUp(i);
+            } else {
+                ids[last] = null;
+            }
+            return true;
+        }
+
+        synchronized boolean touch(PnfsId id, int hash, long time) {
+            int slot = find(id, hash);
+            if (slot < 0) {
+                return false;
+            }
+            int i = table[slot] - 1;
+            times[i] = time;
+            siftDown(i);
+            siftUp(i);
+            return true;
+        }
+
+        /**
+         * Returns the slot of the PNFS ID, or -(slot + 1) for the free slot at which it would
+         * be inserted.
+         */
+        private int find(PnfsId id, int hash) {
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            int position;
+            while ((position = table[slot]) != 0) {
+                if (ids[position - 1].equals(id)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -slot - 1;
+        }
+
+        /**
+         * Frees a slot, moving subsequent entries of the same probe sequence back so that
+         * lookups do not stop early.
+         */
+        private void deleteSlot(int slot) {
+            int mask = table.length - 1;
+            table[slot] = 0;
+            int j = slot;
+            while (true) {
+                j = (j + 1) & mask;
+                int position = table[j];
+                if (position == 0) {
+                    return;
+                }
+                int home = hash(ids[position - 1]) & mask;
+                boolean reachable = slot <= j
+                      ? slot < home && home <= j
+                      : slot < home || home <= j;
+                if (!reachable) {
+                    table[slot] = position;
+                    slots[position - 1] = slot;
+                    table[j] = 0;
+                    slot = j;
+                }
+            }
+        }
+
+        private void grow() {
+            int capacity = 2 * ids.length;
+            ids = Arrays.copyOf(ids, capacity);
+            times = Arrays.copyOf(times, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+            table = new int[2 * capacity];
+            int mask = table.length - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = hash(ids[i]) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+                slots[i] = slot;
+            }
+        }
+
+        private boolean less(int i, int j) {
+            return compare(times[i], ids[i], times[j], ids[j]) < 0;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!less(i, parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            int child;
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size && less(child + 1, child)) {
+                    child++;
+                }
+                if (!less(child, i)) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            PnfsId id = ids[i];
+            long time = times[i];
+            int slot = slots[i];
+            ids[i] = ids[j];
+            times[i] = times[j];
+            slots[i] = slots[j];
+            ids[j] = id;
+            times[j] = time;
+            slots[j] = slot;
+            table[slots[i]] = i + 1;
+            table[slots[j]] = j + 1;
+        }
+
+        private void move(int from, int to) {
+            ids[to] = ids[from];
+            times[to] = times[from];
+            slots[to] = slots[from];
+            table[slots[to]] = to + 1;
+        }
+    }
+}
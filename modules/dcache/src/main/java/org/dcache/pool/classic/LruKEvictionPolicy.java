@@ -0,0 +1,127 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import diskCacheV111.util.PnfsId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Evicts the replica whose K-th most recent read lies furthest in the past (LRU-K).
+ * <p>
+ * Replicas read fewer than K times are evicted before all others, least recently used first. A
+ * replica read once by a scan thus does not displace replicas that are read repeatedly. The
+ * access history is retained for a bounded number of replicas, including replicas that are not
+ * candidates or were deleted, so that a replica fetched again is recognized.
+ */
+class LruKEvictionPolicy extends AbstractEvictionPolicy {
+
+    /**
+     * Offset moving replicas with fewer than K reads before all others.
+     */
+    private static final long FEW_READS = Long.MIN_VALUE / 2;
+
+    private final int k;
+
+    /**
+     * The history of a replica without recorded reads.
+     */
+    private final long[] noReads;
+
+    /**
+     * The candidates by eviction priority.
+     */
+    private final LruIndex order = new LruIndex();
+
+    /**
+     * The last K access times of recently used replicas, most recent first. Unknown times are
+     * zero.
+     */
+    private final Map<PnfsId, long[]> history;
+
+    LruKEvictionPolicy(int k, int historySize) {
+        checkArgument(k >= 1, "K must be positive: %s", k);
+        checkArgument(historySize > 0, "History size must be positive: %s", historySize);
+        this.k = k;
+        this.noReads = new long[k];
+        this.history = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PnfsId, long[]> eldest) {
+                return size() > historySize;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return "lru-" + k;
+    }
+
+    @Override
+    public PnfsId victim() {
+        return order.eldest();
+    }
+
+    @Override
+    public Iterable<PnfsId> candidates() {
+        return order.snapshot();
+    }
+
+    /**
+     * Returns the eviction priority of a replica given its read history and last access time.
+     */
+    private long priority(long[] times, long time) {
+        return times[k - 1] != 0 ? times[k - 1] : FEW_READS + Math.max(times[0], time);
+    }
+
+    private long[] historyOf(PnfsId id) {
+        return history.computeIfAbsent(id, key -> new long[k]);
+    }
+
+    private static void record(long[] times, long time) {
+        System.arraycopy(times, 0, times, 1, times.length - 1);
+        times[0] = time;
+    }
+
+    /**
+     * The time of a replica becoming a candidate is not a read: it is the arrival of a replica
+     * that is yet to be read, or the last access time of a replica found when the pool starts.
+     * It only orders the replica among those with fewer than K reads.
+     */
+    @Override
+    protected synchronized void added(PnfsId id, long size, long time) {
+        long[] times = history.getOrDefault(id, noReads);
+        order.add(id, priority(times, time));
+    }
+
+    @Override
+    protected synchronized void removed(PnfsId id, boolean deleted) {
+        order.remove(id);
+    }
+
+    @Override
+    protected synchronized void accessed(PnfsId id, long size, long time, boolean isCandidate) {
+        long[] times = historyOf(id);
+        record(times, time);
+        if (isCandidate) {
+            order.touch(id, priority(times, time));
+        }
+    }
+}
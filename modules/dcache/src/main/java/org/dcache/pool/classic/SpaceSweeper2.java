@@ -1,13 +1,12 @@
 package org.dcache.pool.classic;
 
-import static java.util.Comparator.naturalOrder;
-
 import com.google.common.base.Preconditions;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileNotInCacheException;
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.vehicles.StorageInfos;
 import dmg.cells.nucleus.CellCommandListener;
+import dmg.cells.nucleus.CellInfoProvider;
 import dmg.cells.nucleus.CellSetupProvider;
 import dmg.util.Formats;
 import dmg.util.command.Argument;
@@ -19,13 +18,9 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.pool.PoolDataBeanProvider;
 import org.dcache.pool.classic.json.SweeperData;
@@ -43,18 +38,31 @@ import org.dcache.util.histograms.CountingHistogram;
 import org.dcache.vehicles.FileAttributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Required;
 
 public class SpaceSweeper2
-      implements Runnable, CellCommandListener, StateChangeListener, CellSetupProvider,
-      SpaceSweeperPolicy, PoolDataBeanProvider<SweeperData> {
+      implements Runnable, CellCommandListener, CellInfoProvider, StateChangeListener,
+      CellSetupProvider, SpaceSweeperPolicy, PoolDataBeanProvider<SweeperData> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SpaceSweeper2.class);
 
     private static final DateTimeFormatter ISO8601_FORMAT =
           DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneId.systemDefault());
 
-    private final LruQueue<PnfsId> _queue = new LruQueue<>();
+    private EvictionPolicy _policy = new LruEvictionPolicy();
+
+    /**
+     * Reads of cached or precious replicas.
+     */
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _hitBytes = new LongAdder();
+
+    /**
+     * Replicas copied from other pools or staged from tape.
+     */
+    private final LongAdder _poolToPoolFetches = new LongAdder();
+    private final LongAdder _stageFetches = new LongAdder();
 
     private Repository _repository;
 
@@ -75,6 +83,11 @@ public class SpaceSweeper2
         _repository.addListener(this);
     }
 
+    @Autowired(required = false)
+    public void setEvictionPolicy(EvictionPolicy policy) {
+        _policy = policy;
+    }
+
     @Required
     public void setAccount(Account account) {
         _account = account;
@@ -116,8 +129,8 @@ public class SpaceSweeper2
     /**
      * Returns the pnfsid of the eldest removable entry.
      */
-    private synchronized PnfsId getEldest() {
-        return _queue.getLeastRecentlyUsedElement();
+    private PnfsId getEldest() {
+        return _policy.victim();
     }
 
     /**
@@ -125,7 +138,7 @@ public class SpaceSweeper2
      */
     @Override
     public long getLru() {
-        return _queue.getTimeOfLeastRecentlyUsedElement();
+        return _policy.getLru();
     }
 
     /**
@@ -133,41 +146,56 @@ public class SpaceSweeper2
      *
      * @throws IllegalArgumentException if entry is precious or not cached
      */
-    private synchronized void add(CacheEntry entry) {
+    private void add(CacheEntry entry) {
         if (!isRemovable(entry)) {
             throw new IllegalArgumentException(
                   "Cannot add a precious or un-cached file to the sweeper queue.");
         }
 
         PnfsId id = entry.getPnfsId();
-        if (_queue.add(id, entry.getLastAccessTime())) {
+        if (_policy.add(id, entry.getReplicaSize(), entry.getLastAccessTime())) {
             LOGGER.debug("Added {} to sweeper", id);
             /* The sweeper thread may be waiting for more files to
              * delete.
              */
-            notifyAll();
+            synchronized (this) {
+                notifyAll();
+            }
         }
     }
 
     /**
      * Remove entry from the queue.
      */
-    private synchronized boolean remove(CacheEntry entry) {
+    private boolean remove(CacheEntry entry) {
         PnfsId id = entry.getPnfsId();
-        if (_queue.remove(id)) {
+        if (_policy.remove(id)) {
             LOGGER.debug("Removed {} from sweeper", id);
             return true;
         }
         return false;
     }
 
+    /* The repository delivers state, sticky and access time events on a single notification
+     * thread (see StateChangeListeners) in the order in which they occurred; synchronous
+     * notification is only used by tests. That is what keeps these unsynchronized callbacks
+     * safe: events for the same replica are never processed concurrently or out of order, which
+     * the eviction policy relies on. The policy itself is thread safe with respect to the
+     * sweeper thread reading the candidates.
+     */
     @Override
-    public synchronized void stateChanged(StateChangeEvent event) {
+    public void stateChanged(StateChangeEvent event) {
         CacheEntry entry = event.getNewEntry();
+        if (event.getNewState() == ReplicaState.FROM_POOL) {
+            _poolToPoolFetches.increment();
+        } else if (event.getNewState() == ReplicaState.FROM_STORE) {
+            _stageFetches.increment();
+        }
+
         switch (event.getNewState()) {
             case REMOVED:
             case DESTROYED:
-                remove(entry);
+                _policy.deleted(entry.getPnfsId(), entry.getReplicaSize());
                 break;
 
             default:
@@ -181,7 +209,7 @@ public class SpaceSweeper2
     }
 
     @Override
-    public synchronized void stickyChanged(StickyChangeEvent event) {
+    public void stickyChanged(StickyChangeEvent event) {
         CacheEntry entry = event.getNewEntry();
         if (isRemovable(entry)) {
             add(entry);
@@ -191,10 +219,14 @@ public class SpaceSweeper2
     }
 
     @Override
-    public synchronized void accessTimeChanged(EntryChangeEvent event) {
+    public void accessTimeChanged(EntryChangeEvent event) {
         CacheEntry entry = event.getNewEntry();
-        if (remove(entry)) {
-            add(entry);
+        ReplicaState state = entry.getState();
+        if (state == ReplicaState.CACHED || state == ReplicaState.PRECIOUS) {
+            long size = entry.getReplicaSize();
+            _hits.increment();
+            _hitBytes.add(size);
+            _policy.accessed(entry.getPnfsId(), size, entry.getLastAccessTime());
         }
     }
 
@@ -278,12 +310,8 @@ public class SpaceSweeper2
         protected String execute()
               throws CacheException, InterruptedException {
             StringBuilder sb = new StringBuilder();
-            List<PnfsId> list;
-            synchronized (SpaceSweeper2.this) {
-                list = _queue.values();
-            }
             int i = 0;
-            for (PnfsId id : list) {
+            for (PnfsId id : _policy.candidates()) {
                 try {
                     CacheEntry entry = _repository.getEntry(id);
                     if (showVerbose) {
@@ -326,32 +354,26 @@ public class SpaceSweeper2
         info.setLabel("Space Sweeper v2");
         info.setMargin(_margin);
 
-        List<PnfsId> list;
-
-        synchronized (this) {
-            list = _queue.values();
-            info.setLruQueueSize(_queue.values().size());
-            info.setLruTimestamp(System.currentTimeMillis() - getLru());
-        }
+        info.setEvictionPolicy(_policy.getName());
+        info.setLruQueueSize(_policy.size());
+        info.setLruTimestamp(System.currentTimeMillis() - getLru());
+        info.setHits(_hits.sum());
+        info.setHitBytes(_hitBytes.sum());
+        info.setPoolToPoolFetches(_poolToPoolFetches.sum());
+        info.setStageFetches(_stageFetches.sum());
 
         List<Double> fileLifetime = new ArrayList<>();
         long now = System.currentTimeMillis();
 
-        for (PnfsId id : list) {
-            Long lastAccess = _queue.timeStamps.get(id);
-            if (lastAccess == null) {
-                continue;
-            }
+        for (long lastAccess : _policy.lastAccessTimes().toArray()) {
             long lvalue = now - lastAccess;
             if (lvalue < 0L) {
                 now = System.currentTimeMillis();
                 lvalue = now - lastAccess;
                 if (lvalue < 0L) {
-                    LOGGER.warn("repository last access time for {}"
-                                + " is later than current "
-                                + "system time - now {}, "
-                                + "last access {}",
-                          id, now, lastAccess);
+                    LOGGER.warn("repository last access time is later than current "
+                                + "system time - now {}, last access {}",
+                          now, lastAccess);
                 }
             }
             fileLifetime.add((double) lvalue);
@@ -387,6 +409,19 @@ public class SpaceSweeper2
         return sb.toString();
     }
 
+    @Override
+    public void getInfo(PrintWriter pw) {
+        long hits = _hits.sum();
+        long fetches = _poolToPoolFetches.sum() + _stageFetches.sum();
+        pw.println("Eviction policy : " + _policy.getName());
+        pw.println("Hits            : " + hits + " (" + _hitBytes.sum() + " bytes)");
+        pw.println("P2P fetches     : " + _poolToPoolFetches.sum());
+        pw.println("Stage fetches   : " + _stageFetches.sum());
+        if (hits + fetches > 0) {
+            pw.printf("Hit ratio       : %.1f%%%n", 100.0 * hits / (hits + fetches));
+        }
+    }
+
     @Command(name = "sweeper get lru", hint = "get lru file time",
           description = "Return last access time (in seconds) of the least recently " +
                 "used (lsu) file on the pool.")
@@ -406,15 +441,15 @@ public class SpaceSweeper2
           throws InterruptedException {
         LOGGER.debug("Sweeper tries to reclaim {} bytes.", amount);
 
-        /* We copy the entries into a tmp list to avoid
-         * ConcurrentModificationException.
+        /* We iterate over a copy, as deleting files modifies
+         * the candidates.
          */
-        List<PnfsId> tmpList = _queue.values();
+        Iterable<PnfsId> candidates = _policy.candidates();
 
         /* Delete the files.
          */
         long deleted = 0;
-        for (PnfsId id : tmpList) {
+        for (PnfsId id : candidates) {
             try {
                 CacheEntry entry = _repository.getEntry(id);
 
@@ -499,64 +534,4 @@ public class SpaceSweeper2
             _repository.removeListener(this);
         }
     }
-
-    /**
-     * Queue of keys ordered by a timestamp.
-     */
-    private static class LruQueue<T extends Comparable<T>> {
-
-        /**
-         * Tracks the time stamp of each element in the queue.
-         */
-        private final Map<T, Long> timeStamps = new HashMap<>();
-
-        /**
-         * Elements sorted by access time and value.
-         * <p>
-         * The comparator uses {@code timeStamps} to look up the time of keys. A compound comparator
-         * is used to ensure consistency with equals (otherwise two keys with the same time would be
-         * collapsed to a single element in the set).
-         * <p>
-         * Any element inserted into this set must have its access time recorded in {@code
-         * timeStamps} before being inserted into the set. The time must not change while the key is
-         * in the set.
-         */
-        private final SortedSet<T> queue =
-              new TreeSet<>(Comparator.<T, Long>comparing(k -> timeStamps.getOrDefault(k, 0L))
-                    .thenComparing(naturalOrder()));
-
-        public synchronized boolean add(T key, long time) {
-            if (timeStamps.putIfAbsent(key, time) == null) {
-                queue.add(key);
-                return true;
-            }
-            return false;
-        }
-
-        public synchronized boolean remove(T key) {
-            if (queue.remove(key)) {
-                timeStamps.remove(key);
-                return true;
-            }
-            return false;
-        }
-
-        public synchronized T getLeastRecentlyUsedElement() {
-            if (queue.isEmpty()) {
-                return null;
-            }
-            return queue.first();
-        }
-
-        public synchronized long getTimeOfLeastRecentlyUsedElement() {
-            if (queue.isEmpty()) {
-                return 0;
-            }
-            return timeStamps.get(queue.first());
-        }
-
-        public synchronized List<T> values() {
-            return new ArrayList<>(queue);
-        }
-    }
 }
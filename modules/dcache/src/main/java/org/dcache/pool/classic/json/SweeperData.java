@@ -104,6 +104,11 @@ public class SweeperData implements Serializable {
     private Integer lruQueueSize;
     private Long lruTimestamp;
     private Double margin;
+    private String evictionPolicy;
+    private Long hits;
+    private Long hitBytes;
+    private Long poolToPoolFetches;
+    private Long stageFetches;
 
     public SweeperData() {
         lastAccess = DEFAULT_HISTOGRAM;
@@ -113,6 +118,18 @@ public class SweeperData implements Serializable {
         this.lastAccess = lastAccess;
     }
 
+    public String getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public Long getHitBytes() {
+        return hitBytes;
+    }
+
+    public Long getHits() {
+        return hits;
+    }
+
     public String getLabel() {
         return label;
     }
@@ -133,6 +150,26 @@ public class SweeperData implements Serializable {
         return margin;
     }
 
+    public Long getPoolToPoolFetches() {
+        return poolToPoolFetches;
+    }
+
+    public Long getStageFetches() {
+        return stageFetches;
+    }
+
+    public void setEvictionPolicy(String evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    public void setHitBytes(Long hitBytes) {
+        this.hitBytes = hitBytes;
+    }
+
+    public void setHits(Long hits) {
+        this.hits = hits;
+    }
+
     public void setLabel(String label) {
         this.label = label;
     }
@@ -152,4 +189,12 @@ public class SweeperData implements Serializable {
     public void setMargin(Double margin) {
         this.margin = margin;
     }
+
+    public void setPoolToPoolFetches(Long poolToPoolFetches) {
+        this.poolToPoolFetches = poolToPoolFetches;
+    }
+
+    public void setStageFetches(Long stageFetches) {
+        this.stageFetches = stageFetches;
+    }
 }
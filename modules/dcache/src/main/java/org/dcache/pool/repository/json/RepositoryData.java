@@ -73,6 +73,7 @@ public class RepositoryData implements Serializable {
     private String label;
     private String state;
     private Integer initializationProgress;
+    private Long initializationRate;
     private Integer files;
     private String filesException;
     private String totalDiskSpace;
@@ -128,6 +129,10 @@ public class RepositoryData implements Serializable {
         return initializationProgress;
     }
 
+    public Long getInitializationRate() {
+        return initializationRate;
+    }
+
     public String getLabel() {
         return label;
     }
@@ -180,8 +185,11 @@ public class RepositoryData implements Serializable {
         pw.append("State : ").append(String.valueOf(state));
         if (initializationProgress != null) {
             pw.append(" (").append(
-                  String.valueOf(initializationProgress)).append(
-                  "% done)");
+                  String.valueOf(initializationProgress)).append("% done");
+            if (initializationRate != null) {
+                pw.append(", ").append(String.valueOf(initializationRate)).append(" files/s");
+            }
+            pw.append(")");
         }
         pw.println();
 
@@ -249,6 +257,10 @@ public class RepositoryData implements Serializable {
         this.initializationProgress = initializationProgress;
     }
 
+    public void setInitializationRate(Long initializationRate) {
+        this.initializationRate = initializationRate;
+    }
+
     public void setLabel(String label) {
         this.label = label;
     }
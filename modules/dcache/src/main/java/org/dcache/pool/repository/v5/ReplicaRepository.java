@@ -11,6 +11,8 @@ import static org.dcache.pool.repository.ReplicaState.REMOVED;
 import static org.dcache.util.ByteUnit.GiB;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.DiskErrorCacheException;
 import diskCacheV111.util.DiskSpace;
@@ -34,27 +36,24 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalLong;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.concurrent.GuardedBy;
@@ -123,6 +122,11 @@ public class ReplicaRepository
 
     public static final long DEFAULT_GAP = GiB.toBytes(4L);
 
+    /**
+     * Seconds between progress messages while loading the repository.
+     */
+    private static final long PROGRESS_LOG_INTERVAL = 30;
+
     private final List<FaultListener> _faultListeners =
           new CopyOnWriteArrayList<>();
 
@@ -146,13 +150,6 @@ public class ReplicaRepository
      */
     private Integer scanThreads;
 
-    /**
-     * workQueue attributes to scan the repository to check metadata.
-     */
-    private int _workQueueCapacity = 10000;
-    private long _workQueuekeepAliveTime = 60;
-    private TimeUnit _workQueueTimeUnit = TimeUnit.SECONDS;
-
     /**
      * Executor for periodic tasks.
      */
@@ -198,6 +195,12 @@ public class ReplicaRepository
      */
     private volatile float _initializationProgress;
 
+    /**
+     * Number of records loaded so far and the time loading started, in nanoseconds.
+     */
+    private final AtomicInteger _loadedRecords = new AtomicInteger();
+    private volatile long _loadStarted;
+
     /**
      * Shared repository account object for tracking space.
      */
@@ -539,60 +542,15 @@ public class ReplicaRepository
             LOGGER.warn("Reading inventory from {}.", _store);
             _store.init();
 
-            Collection<PnfsId> ids = _store.index();
-            int fileCount = ids.size();
+            List<PnfsId> ids = new ArrayList<>(_store.index());
+            int threads = Math.max(1, Math.min(scanThreads, ids.size()));
 
-            LOGGER.info("Checking meta data for {} files with {} threads.", fileCount, scanThreads);
-            int cnt = 0;
-
-            if (scanThreads == 1) {
-                for (PnfsId id : ids) {
-                    loadRecord(id);
-                    _initializationProgress = ((float) ++cnt) / fileCount;
-                }
+            LOGGER.info("Checking meta data for {} files with {} threads.", ids.size(), threads);
+            _loadStarted = System.nanoTime();
+            if (threads == 1) {
+                loadRecords(ids, new AtomicInteger());
             } else {
-                BlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<Runnable>(
-                      _workQueueCapacity);
-                ThreadPoolExecutor scanExecutor = new ThreadPoolExecutor(1, scanThreads,
-                      _workQueuekeepAliveTime, _workQueueTimeUnit, workQueue);
-                CompletionService<PnfsId> completionService = new ExecutorCompletionService<PnfsId>(
-                      scanExecutor);
-                Set<Future<PnfsId>> futures = new HashSet<Future<PnfsId>>();
-
-                for (PnfsId id : ids) {
-
-                    ArrayList<Future<PnfsId>> completedFutures = new ArrayList<Future<PnfsId>>();
-                    while (true) {
-                        try {
-                            futures.add(completionService.submit(() -> {
-                                return loadRecord(id);
-                            }));
-                            break;
-                        } catch (RejectedExecutionException e) {
-                            completedFutures.add(completionService.take());
-                        }
-                    }
-
-                    while (completedFutures.size() > 0 || (futures.size() + cnt == fileCount
-                          && futures.size() > 0)) {
-
-                        Future<PnfsId> future = completionService.poll();
-                        if (future != null) {
-                            completedFutures.add(future);
-                        }
-                        if (completedFutures.size() > 0) {
-                            future = completedFutures.remove(0);
-                            futures.remove(future);
-                            try {
-                                future.get();
-                                _initializationProgress = ((float) ++cnt) / fileCount;
-                            } catch (ExecutionException e) {
-                                throw new RuntimeException(e);
-                            }
-                        }
-                    }
-                }
-                scanExecutor.shutdown();
+                loadRecords(ids, threads);
             }
             LOGGER.debug("Checked meta data for {} % of the files.", _initializationProgress);
 
@@ -615,6 +573,74 @@ public class ReplicaRepository
         LOGGER.info("Done generating inventory in {}", watch);
     }
 
+    /**
+     * Loads the records of {@code ids}, starting at the position given by {@code next}. The
+     * position is shared between all scan threads; each thread takes the next unclaimed record
+     * until all have been loaded or another thread failed.
+     */
+    private void loadRecords(List<PnfsId> ids, AtomicInteger next)
+          throws CacheException, InterruptedException {
+        int fileCount = ids.size();
+        try {
+            int i;
+            while ((i = next.getAndIncrement()) < fileCount) {
+                loadRecord(ids.get(i));
+                _initializationProgress = ((float) _loadedRecords.incrementAndGet()) / fileCount;
+            }
+        } catch (CacheException | InterruptedException | RuntimeException | Error e) {
+            next.set(fileCount);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the records of {@code ids} using {@code threads} scan threads, logging the progress
+     * periodically. Replicas can be read while the scan is in progress, as records not yet
+     * loaded are read on first access.
+     */
+    private void loadRecords(List<PnfsId> ids, int threads)
+          throws CacheException, InterruptedException {
+        ExecutorService scanExecutor = Executors.newFixedThreadPool(threads,
+              new ThreadFactoryBuilder().setNameFormat("repository-scan-%d").build());
+        try {
+            AtomicInteger next = new AtomicInteger();
+            List<Future<Void>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(scanExecutor.submit(() -> {
+                    loadRecords(ids, next);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                while (true) {
+                    try {
+                        future.get(PROGRESS_LOG_INTERVAL, TimeUnit.SECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        LOGGER.info("Checked meta data for {} of {} files ({} files/s).",
+                              _loadedRecords.get(), ids.size(), getLoadRate());
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Throwables.throwIfInstanceOf(cause, CacheException.class);
+            Throwables.throwIfInstanceOf(cause, InterruptedException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new RuntimeException(cause);
+        } finally {
+            scanExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of records loaded per second since loading started.
+     */
+    private long getLoadRate() {
+        long elapsed = System.nanoTime() - _loadStarted;
+        return elapsed <= 0 ? 0 : _loadedRecords.get() * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
     @Override
     public Iterator<PnfsId> iterator() {
         _stateLock.readLock().lock();
@@ -969,6 +995,7 @@ public class ReplicaRepository
             info.setState(_state.name());
             if (_state == State.LOADING) {
                 info.setInitializationProgress((int) (_initializationProgress * 100));
+                info.setInitializationRate(getLoadRate());
             }
             try {
                 if (_state == State.OPEN ||
@@ -565,7 +565,7 @@ public class Indexer {
     /**
      * Returns all billing format strings from configuration.
      */
-    private static ImmutableMap<String, String> getBillingFormats(
+    public static ImmutableMap<String, String> getBillingFormats(
           ConfigurationProperties configuration) {
         ImmutableMap.Builder<String, String> formats = ImmutableMap.builder();
         for (String name : configuration.stringPropertyNames()) {
@@ -0,0 +1,206 @@
+package diskCacheV111.namespace;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import diskCacheV111.namespace.NameSpaceProvider.SetExtendedAttributeMode;
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.FsPath;
+import diskCacheV111.util.PermissionDeniedCacheException;
+import diskCacheV111.util.PnfsId;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.Subject;
+import org.dcache.acl.enums.AccessType;
+import org.dcache.auth.Subjects;
+import org.dcache.namespace.CreateOption;
+import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.FileType;
+import org.dcache.namespace.PermissionHandler;
+import org.dcache.vehicles.FileAttributes;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingNameSpaceProviderTest {
+
+    private static final PnfsId PNFSID = new PnfsId("000000000000000000000000000000000001");
+    private static final PnfsId OTHER = new PnfsId("000000000000000000000000000000000002");
+    private static final Set<FileAttribute> SIZE = EnumSet.of(FileAttribute.SIZE);
+
+    private NameSpaceProvider inner;
+    private PermissionHandler permissionHandler;
+    private CachingNameSpaceProvider provider;
+    private Subject user;
+
+    @Before
+    public void setup() throws Exception {
+        inner = mock(NameSpaceProvider.class);
+        permissionHandler = mock(PermissionHandler.class);
+        given(permissionHandler.getRequiredAttributes())
+              .willReturn(EnumSet.of(FileAttribute.OWNER, FileAttribute.MODE));
+        given(permissionHandler.canGetAttributes(any(), any(), anySet()))
+              .willReturn(AccessType.ACCESS_ALLOWED);
+        user = Subjects.of(1000, 1000, new int[]{1000});
+
+        provider = new CachingNameSpaceProvider();
+        provider.setNameSpaceProvider(inner);
+        provider.setPermissionHandler(permissionHandler);
+        provider.setMaximumSize(1024 * 1024);
+        provider.setLifetime(1);
+        provider.setLifetimeUnit(TimeUnit.MINUTES);
+        provider.init();
+    }
+
+    @Test
+    public void shouldServeRepeatedLookupFromCache() throws Exception {
+        givenFile(PNFSID, FileType.REGULAR, 42);
+
+        provider.getFileAttributes(user, PNFSID, SIZE);
+        FileAttributes attributes = provider.getFileAttributes(user, PNFSID, SIZE);
+
+        assertThat(attributes.getSize(), is(equalTo(42L)));
+        verify(inner, times(1)).getFileAttributes(eq(user), eq(PNFSID), anySet());
+    }
+
+    @Test
+    public void shouldInvalidateOnUpdate() throws Exception {
+        givenFile(PNFSID, FileType.REGULAR, 42);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+
+        provider.setFileAttributes(user, PNFSID, FileAttributes.ofSize(43), SIZE);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+
+        verify(inner, times(2)).getFileAttributes(eq(user), eq(PNFSID), anySet());
+    }
+
+    @Test
+    public void shouldInvalidateOnCacheLocationChange() throws Exception {
+        givenFile(PNFSID, FileType.REGULAR, 42);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+
+        provider.addCacheLocation(Subjects.ROOT, PNFSID, "pool");
+        provider.getFileAttributes(user, PNFSID, SIZE);
+
+        verify(inner, times(2)).getFileAttributes(eq(user), eq(PNFSID), anySet());
+    }
+
+    @Test
+    public void shouldOnlyInvalidateRenamedFile() throws Exception {
+        givenFile(PNFSID, FileType.REGULAR, 42);
+        givenFile(OTHER, FileType.REGULAR, 43);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+        provider.getFileAttributes(user, OTHER, SIZE);
+
+        provider.rename(user, PNFSID, "/a", "/b", false);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+        provider.getFileAttributes(user, OTHER, SIZE);
+
+        verify(inner, times(2)).getFileAttributes(eq(user), eq(PNFSID), anySet());
+        verify(inner, times(1)).getFileAttributes(eq(user), eq(OTHER), anySet());
+    }
+
+    @Test
+    public void shouldInvalidateFileReplacedByRename() throws Exception {
+        givenFile(OTHER, FileType.REGULAR, 43);
+        given(inner.pathToPnfsid(any(), eq("/b"), eq(false))).willReturn(OTHER);
+        provider.getFileAttributes(user, OTHER, SIZE);
+
+        provider.rename(user, PNFSID, "/a", "/b", true);
+        provider.getFileAttributes(user, OTHER, SIZE);
+
+        verify(inner, times(2)).getFileAttributes(eq(user), eq(OTHER), anySet());
+    }
+
+    @Test
+    public void shouldOnlyInvalidateFileWithChangedExtendedAttribute() throws Exception {
+        givenFile(PNFSID, FileType.REGULAR, 42);
+        givenFile(OTHER, FileType.REGULAR, 43);
+        given(inner.pathToPnfsid(any(), eq("/a"), eq(true))).willReturn(PNFSID);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+        provider.getFileAttributes(user, OTHER, SIZE);
+
+        provider.writeExtendedAttribute(user, FsPath.create("/a"), "name", new byte[0],
+              SetExtendedAttributeMode.EITHER);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+        provider.getFileAttributes(user, OTHER, SIZE);
+
+        verify(inner, times(2)).getFileAttributes(eq(user), eq(PNFSID), anySet());
+        verify(inner, times(1)).getFileAttributes(eq(user), eq(OTHER), anySet());
+    }
+
+    @Test
+    public void shouldInvalidateAllIfCommittedUploadCannotBeResolved() throws Exception {
+        givenFile(OTHER, FileType.REGULAR, 43);
+        given(inner.pathToPnfsid(any(), eq("/upload/a"), eq(false)))
+              .willThrow(new CacheException("failure"));
+        provider.getFileAttributes(user, OTHER, SIZE);
+
+        provider.commitUpload(user, FsPath.create("/upload/a"), FsPath.create("/a"),
+              EnumSet.noneOf(CreateOption.class), SIZE);
+        provider.getFileAttributes(user, OTHER, SIZE);
+
+        verify(inner, times(2)).getFileAttributes(eq(user), eq(OTHER), anySet());
+    }
+
+    @Test
+    public void shouldNotCacheDirectories() throws Exception {
+        givenFile(PNFSID, FileType.DIR, 512);
+
+        provider.getFileAttributes(user, PNFSID, SIZE);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+
+        verify(inner, times(2)).getFileAttributes(eq(user), eq(PNFSID), anySet());
+    }
+
+    @Test(expected = PermissionDeniedCacheException.class)
+    public void shouldCheckPermissionOnCachedAttributes() throws Exception {
+        givenFile(PNFSID, FileType.REGULAR, 42);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+        given(permissionHandler.canGetAttributes(any(), any(), anySet()))
+              .willReturn(AccessType.ACCESS_DENIED);
+
+        provider.getFileAttributes(user, PNFSID, SIZE);
+    }
+
+    @Test
+    public void shouldReturnIndependentCopies() throws Exception {
+        givenFile(PNFSID, FileType.REGULAR, 42);
+        provider.getFileAttributes(user, PNFSID, SIZE).setSize(43);
+
+        FileAttributes attributes = provider.getFileAttributes(user, PNFSID, SIZE);
+
+        assertThat(attributes.getSize(), is(equalTo(42L)));
+    }
+
+    @Test
+    public void shouldForwardWhenDisabled() throws Exception {
+        provider.setMaximumSize(0);
+        provider.init();
+        givenFile(PNFSID, FileType.REGULAR, 42);
+
+        provider.getFileAttributes(user, PNFSID, SIZE);
+        provider.getFileAttributes(user, PNFSID, SIZE);
+
+        verify(inner, times(2)).getFileAttributes(user, PNFSID, SIZE);
+    }
+
+    private void givenFile(PnfsId pnfsId, FileType type, long size) throws Exception {
+        given(inner.getFileAttributes(any(), eq(pnfsId), anySet())).willAnswer(i ->
+              FileAttributes.of()
+                    .pnfsId(pnfsId)
+                    .fileType(type)
+                    .size(size)
+                    .uid(1000)
+                    .mode(0644)
+                    .build());
+    }
+}
@@ -0,0 +1,150 @@
+package diskCacheV111.namespace;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class LaneSchedulerTest {
+
+    private LaneScheduler scheduler;
+
+    @Test
+    public void shouldNotProcessSameKeyConcurrently() throws Exception {
+        givenScheduler(1, 0);
+        offer("a", "write-1");
+        offer("a", "write-2");
+        offer("b", "write-3");
+
+        LaneScheduler.Request first = scheduler.take(0);
+        LaneScheduler.Request second = scheduler.take(0);
+        scheduler.done(first);
+        LaneScheduler.Request third = scheduler.take(0);
+
+        assertThat(payloadOf(first), is(equalTo("write-1")));
+        assertThat(payloadOf(second), is(equalTo("write-3")));
+        assertThat(payloadOf(third), is(equalTo("write-2")));
+    }
+
+    @Test
+    public void shouldTakePreferredRequestsFirst() throws Exception {
+        givenScheduler(1, 0);
+        offer("a", "write-1");
+        offer("b", "read-1");
+
+        assertThat(payloadOf(scheduler.take(0)), is(equalTo("read-1")));
+        assertThat(payloadOf(scheduler.take(0)), is(equalTo("write-1")));
+    }
+
+    @Test
+    public void shouldNotReorderRequestsWithSameKey() throws Exception {
+        givenScheduler(1, 0);
+        offer("a", "write-1");
+        offer("a", "read-1");
+
+        assertThat(payloadOf(scheduler.take(0)), is(equalTo("write-1")));
+        assertThat(queued(0), is(equalTo(List.of("read-1"))));
+    }
+
+    @Test
+    public void shouldTakeHeadAfterMaxBypass() throws Exception {
+        givenScheduler(1, 0);
+        offer("w", "write-1");
+        for (int i = 0; i <= LaneScheduler.MAX_BYPASS; i++) {
+            offer("r" + i, "read-" + i);
+        }
+
+        for (int i = 0; i < LaneScheduler.MAX_BYPASS; i++) {
+            LaneScheduler.Request request = scheduler.take(0);
+            assertThat(payloadOf(request), is(equalTo("read-" + i)));
+            scheduler.done(request);
+        }
+        assertThat(payloadOf(scheduler.take(0)), is(equalTo("write-1")));
+    }
+
+    @Test
+    public void shouldStealFromOtherLanes() throws Exception {
+        givenScheduler(2, 0);
+        String key = keyInLane(0);
+        offer(key, "write-1");
+
+        assertThat(payloadOf(scheduler.take(1)), is(equalTo("write-1")));
+    }
+
+    @Test
+    public void shouldRejectRequestsWhenLaneIsFull() {
+        givenScheduler(1, 1);
+
+        assertThat(scheduler.offer("a", envelope("write-1")), is(0));
+        assertThat(scheduler.offer("b", envelope("write-2")), is(-1));
+    }
+
+    @Test
+    public void shouldFoldUntilInvalidated() throws Exception {
+        givenScheduler(1, 0);
+        offer("a", "read-1");
+        offer("a", "read-2");
+        offer("a", "write-1");
+        offer("a", "read-3");
+
+        LaneScheduler.Request request = scheduler.take(0);
+        List<CellMessage> folded = scheduler.fold(request,
+              e -> e.getMessageObject().toString().startsWith("write"),
+              e -> e.getMessageObject().toString().startsWith("read"));
+
+        assertThat(folded.stream().map(e -> e.getMessageObject().toString())
+              .collect(Collectors.toList()), is(equalTo(List.of("read-2"))));
+        assertThat(queued(0), is(equalTo(List.of("write-1", "read-3"))));
+    }
+
+    @Test
+    public void shouldReturnQueuedRequestsOnShutdown() throws Exception {
+        givenScheduler(2, 0);
+        offer("a", "write-1");
+        offer("b", "write-2");
+
+        List<CellMessage> drained = scheduler.shutdown();
+
+        assertThat(drained.size(), is(2));
+        assertThat(scheduler.take(0), is(nullValue()));
+        assertThat(scheduler.offer("c", envelope("write-3")), is(-1));
+    }
+
+    private void givenScheduler(int lanes, int maxLaneSize) {
+        scheduler = new LaneScheduler(lanes, maxLaneSize,
+              e -> e.getMessageObject().toString().startsWith("read"));
+    }
+
+    private void offer(String key, String payload) {
+        assertThat(scheduler.offer(key, envelope(payload)) >= 0, is(true));
+    }
+
+    private String keyInLane(int lane) {
+        for (int i = 0; ; i++) {
+            String key = "key-" + i;
+            if (scheduler.laneOf(key) == lane) {
+                return key;
+            }
+        }
+    }
+
+    private List<String> queued(int lane) {
+        return scheduler.getQueued(lane).stream()
+              .map(e -> e.getMessageObject().toString())
+              .collect(Collectors.toList());
+    }
+
+    private static CellMessage envelope(String payload) {
+        return new CellMessage(new CellPath("PnfsManager"), payload);
+    }
+
+    private static String payloadOf(LaneScheduler.Request request) {
+        return request.getEnvelope().getMessageObject().toString();
+    }
+}
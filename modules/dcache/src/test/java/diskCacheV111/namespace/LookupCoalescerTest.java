@@ -0,0 +1,114 @@
+package diskCacheV111.namespace;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import diskCacheV111.util.PnfsId;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+import java.net.InetAddress;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import javax.security.auth.Subject;
+import org.dcache.auth.GidPrincipal;
+import org.dcache.auth.Origin;
+import org.dcache.auth.UidPrincipal;
+import org.dcache.namespace.FileAttribute;
+import org.dcache.vehicles.PnfsGetFileAttributes;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LookupCoalescerTest {
+
+    private static final PnfsId PNFSID = new PnfsId("000000000000000000000000000000000001");
+
+    private LookupCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        coalescer = new LookupCoalescer();
+    }
+
+    @Test
+    public void shouldCoalesceIdenticalLookups() throws Exception {
+        CellMessage first = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+        CellMessage second = lookup(subject(1000, 100, "192.168.1.2"),
+              EnumSet.of(FileAttribute.SIZE));
+
+        assertThat(coalescer.join(PNFSID, first), is(false));
+        assertThat(coalescer.join(PNFSID, second), is(true));
+        assertThat(coalescer.complete(first), is(equalTo(List.of(second))));
+        assertThat(coalescer.getLookups(), is(2L));
+        assertThat(coalescer.getCoalesced(), is(1L));
+    }
+
+    @Test
+    public void shouldNotCoalesceLookupsOfDifferentUsers() throws Exception {
+        CellMessage first = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+        CellMessage second = lookup(subject(1001, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+
+        assertThat(coalescer.join(PNFSID, first), is(false));
+        assertThat(coalescer.join(PNFSID, second), is(false));
+    }
+
+    @Test
+    public void shouldNotCoalesceLookupsOfDifferentAttributes() throws Exception {
+        CellMessage first = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+        CellMessage second = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE, FileAttribute.CHECKSUM));
+
+        assertThat(coalescer.join(PNFSID, first), is(false));
+        assertThat(coalescer.join(PNFSID, second), is(false));
+    }
+
+    @Test
+    public void shouldNotCoalesceAfterClose() throws Exception {
+        CellMessage first = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+        CellMessage second = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+        CellMessage third = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+
+        coalescer.join(PNFSID, first);
+        coalescer.join(PNFSID, second);
+        coalescer.close(PNFSID);
+
+        assertThat(coalescer.join(PNFSID, third), is(false));
+        assertThat(coalescer.complete(first), is(equalTo(List.of(second))));
+        assertThat(coalescer.complete(third).isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldStartNewLookupAfterCompletion() throws Exception {
+        CellMessage first = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+        CellMessage second = lookup(subject(1000, 100, "192.168.1.1"),
+              EnumSet.of(FileAttribute.SIZE));
+
+        coalescer.join(PNFSID, first);
+        coalescer.complete(first);
+
+        assertThat(coalescer.join(PNFSID, second), is(false));
+    }
+
+    private static CellMessage lookup(Subject subject, Set<FileAttribute> attributes) {
+        PnfsGetFileAttributes message = new PnfsGetFileAttributes(PNFSID, attributes);
+        message.setSubject(subject);
+        return new CellMessage(new CellPath("PnfsManager"), message);
+    }
+
+    private static Subject subject(int uid, int gid, String origin) throws Exception {
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new UidPrincipal(uid));
+        subject.getPrincipals().add(new GidPrincipal(gid, true));
+        subject.getPrincipals().add(new Origin(InetAddress.getByName(origin)));
+        return subject;
+    }
+}
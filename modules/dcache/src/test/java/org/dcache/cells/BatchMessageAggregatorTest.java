@@ -0,0 +1,135 @@
+package org.dcache.cells;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.vehicles.Message;
+import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+import java.util.ArrayList;
+import java.util.List;
+import org.dcache.vehicles.BatchMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class BatchMessageAggregatorTest {
+
+    private BatchMessageAggregator aggregator;
+    private CellEndpoint endpoint;
+    private List<CellMessage> delivered;
+
+    @Before
+    public void setup() {
+        aggregator = new BatchMessageAggregator();
+        endpoint = mock(CellEndpoint.class);
+        delivered = new ArrayList<>();
+    }
+
+    @Test
+    public void shouldDeliverItemsInEnvelopesOfTheirOwn() {
+        Message first = new Message();
+        Message second = new Message();
+        CellMessage envelope = batchOf(first, second);
+
+        aggregator.unpack(envelope, endpoint, delivered::add);
+
+        assertThat(delivered.size(), is(2));
+        assertThat(delivered.get(0).getMessageObject(), is(first));
+        assertThat(delivered.get(1).getMessageObject(), is(second));
+        assertThat(delivered.get(0).getUOID(), is(not(envelope.getUOID())));
+        assertThat(delivered.get(0).getSourcePath(), is(envelope.getSourcePath()));
+        assertThat(first.getReplyRequired(), is(true));
+    }
+
+    @Test
+    public void shouldReturnBatchOnceAllItemsAreAnswered() {
+        Message first = new Message();
+        Message second = new Message();
+        aggregator.unpack(batchOf(first, second), endpoint, delivered::add);
+
+        reply(delivered.get(1), CacheException.FILE_NOT_FOUND);
+        verify(endpoint, never()).sendMessage(any(CellMessage.class));
+        reply(delivered.get(0), 0);
+
+        BatchMessage batch = sentBatch();
+        assertThat(batch.getReturnCode(), is(0));
+        assertThat(batch.getItems().get(0).getReturnCode(), is(0));
+        assertThat(batch.getItems().get(1).getReturnCode(), is(CacheException.FILE_NOT_FOUND));
+    }
+
+    @Test
+    public void shouldFailItemIfListenerFails() {
+        aggregator.unpack(batchOf(new Message(), new Message()), endpoint,
+              envelope -> {
+                  delivered.add(envelope);
+                  if (delivered.size() == 1) {
+                      throw new IllegalStateException("bug");
+                  }
+              });
+        reply(delivered.get(1), 0);
+
+        BatchMessage batch = sentBatch();
+        assertThat(batch.getItems().get(0).getReturnCode(),
+              is(CacheException.UNEXPECTED_SYSTEM_EXCEPTION));
+        assertThat(batch.getItems().get(1).getReturnCode(), is(0));
+    }
+
+    @Test
+    public void shouldReturnEmptyBatchImmediately() {
+        aggregator.unpack(batchOf(), endpoint, delivered::add);
+
+        assertThat(delivered.isEmpty(), is(true));
+        assertThat(sentBatch().size(), is(0));
+    }
+
+    @Test
+    public void shouldNotCaptureOtherReplies() {
+        aggregator.unpack(batchOf(new Message()), endpoint, delivered::add);
+
+        CellMessage other = envelopeWith(new Message());
+        other.revertDirection();
+
+        assertThat(aggregator.offer(other), is(false));
+    }
+
+    @Test
+    public void shouldNotCaptureRequests() {
+        aggregator.unpack(batchOf(new Message()), endpoint, delivered::add);
+
+        assertThat(aggregator.offer(delivered.get(0)), is(false));
+    }
+
+    private CellMessage batchOf(Message... items) {
+        return envelopeWith(new BatchMessage(asList(items)));
+    }
+
+    private static CellMessage envelopeWith(Message message) {
+        CellMessage envelope = new CellMessage(new CellPath("PnfsManager"), message);
+        envelope.addSourceAddress(new CellAddressCore("door", "doorDomain"));
+        return envelope;
+    }
+
+    private void reply(CellMessage envelope, int rc) {
+        Message message = (Message) envelope.getMessageObject();
+        message.setReply(rc, rc == 0 ? null : "failed");
+        envelope.revertDirection();
+        assertThat(aggregator.offer(envelope), is(true));
+    }
+
+    private BatchMessage sentBatch() {
+        ArgumentCaptor<CellMessage> envelope = ArgumentCaptor.forClass(CellMessage.class);
+        verify(endpoint).sendMessage(envelope.capture());
+        assertThat(envelope.getValue().isReply(), is(true));
+        return (BatchMessage) envelope.getValue().getMessageObject();
+    }
+}
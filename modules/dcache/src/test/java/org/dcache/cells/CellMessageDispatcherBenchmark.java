@@ -0,0 +1,161 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.cells;
+
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellPath;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.dcache.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares message dispatch through CellMessageDispatcher with the previous implementation,
+ * which looked up receivers in a synchronized map and invoked them with Method.invoke.
+ * <p>
+ * Not run as part of the unit tests. Run with
+ * <pre>
+ *     mvn -pl modules/dcache test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=org.dcache.cells.CellMessageDispatcherBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellMessageDispatcherBenchmark {
+
+    private final Receiver receiver = new Receiver();
+    private final Map<Class<?>, Method> reflectionReceivers = new HashMap<>();
+
+    private CellMessageDispatcher dispatcher;
+    private CellMessage shortEnvelope;
+    private CellMessage longEnvelope;
+    private CellMessage mixedEnvelope;
+
+    @Setup
+    public void setUp() {
+        dispatcher = new CellMessageDispatcher("messageArrived");
+        dispatcher.addMessageListener(receiver);
+        shortEnvelope = new CellMessage(new CellPath("destination"), "message");
+        longEnvelope = new CellMessage(new CellPath("destination"), 42);
+        mixedEnvelope = new CellMessage(new CellPath("destination"), 42L);
+    }
+
+    @Benchmark
+    public Object reflectionShort() throws Exception {
+        return reflectionCall(shortEnvelope);
+    }
+
+    @Benchmark
+    public Object methodHandleShort() {
+        return dispatcher.call(shortEnvelope);
+    }
+
+    @Benchmark
+    public Object reflectionLong() throws Exception {
+        return reflectionCall(longEnvelope);
+    }
+
+    @Benchmark
+    public Object methodHandleLong() {
+        return dispatcher.call(longEnvelope);
+    }
+
+    /**
+     * Alternates between message types, defeating the single entry dispatch cache.
+     */
+    @Benchmark
+    @Threads(4)
+    public Object methodHandlePolymorphic() {
+        dispatcher.call(shortEnvelope);
+        dispatcher.call(longEnvelope);
+        return dispatcher.call(mixedEnvelope);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object reflectionPolymorphic() throws Exception {
+        reflectionCall(shortEnvelope);
+        reflectionCall(longEnvelope);
+        return reflectionCall(mixedEnvelope);
+    }
+
+    private Object reflectionCall(CellMessage envelope) throws Exception {
+        Object message = envelope.getMessageObject();
+        Method method;
+        boolean isLong;
+        synchronized (reflectionReceivers) {
+            method = reflectionReceivers.get(message.getClass());
+            if (method == null) {
+                method = ReflectionUtils.resolve(Receiver.class, "messageArrived",
+                      CellMessage.class, message.getClass());
+                if (method == null) {
+                    method = ReflectionUtils.resolve(Receiver.class, "messageArrived",
+                          message.getClass());
+                }
+                method.setAccessible(true);
+                reflectionReceivers.put(message.getClass(), method);
+            }
+        }
+        isLong = method.getParameterCount() == 2;
+        return isLong ? method.invoke(receiver, envelope, message)
+              : method.invoke(receiver, message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+              .include(CellMessageDispatcherBenchmark.class.getSimpleName())
+              .build();
+        new Runner(options).run();
+    }
+
+    public static class Receiver implements CellMessageReceiver {
+
+        public String messageArrived(String message) {
+            return message;
+        }
+
+        public Integer messageArrived(CellMessage envelope, Integer message) {
+            return message;
+        }
+
+        public Long messageArrived(Long message) {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.dcache.cells;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellPath;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellMessageDispatcherTest {
+
+    private CellMessageDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new CellMessageDispatcher("messageArrived");
+    }
+
+    @Test
+    public void shouldReturnReplyOfShortReceiver() {
+        dispatcher.addMessageListener(new ShortReceiver());
+
+        assertThat(dispatcher.call(envelope("hello")), is("HELLO"));
+    }
+
+    @Test
+    public void shouldPassEnvelopeToLongReceiver() {
+        LongReceiver receiver = new LongReceiver();
+        dispatcher.addMessageListener(receiver);
+        CellMessage envelope = envelope(42);
+
+        assertThat(dispatcher.call(envelope), nullValue());
+        assertThat(receiver.envelopes, contains(envelope));
+    }
+
+    @Test
+    public void shouldReturnDeclaredCheckedException() {
+        dispatcher.addMessageListener(new FailingReceiver());
+
+        assertThat(dispatcher.call(envelope(1L)), instanceOf(IOException.class));
+    }
+
+    @Test
+    public void shouldReturnIllegalArgumentException() {
+        dispatcher.addMessageListener(new FailingReceiver());
+
+        assertThat(dispatcher.call(envelope(1.0)), instanceOf(IllegalArgumentException.class));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRethrowUndeclaredRuntimeException() {
+        dispatcher.addMessageListener(new FailingReceiver());
+
+        dispatcher.call(envelope(true));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldFailOnMultipleReplies() {
+        dispatcher.addMessageListener(new ShortReceiver());
+        dispatcher.addMessageListener(new ShortReceiver());
+
+        dispatcher.call(envelope("hello"));
+    }
+
+    @Test
+    public void shouldDispatchToListenersAddedAfterFirstDelivery() {
+        LongReceiver receiver = new LongReceiver();
+        dispatcher.addMessageListener(new ShortReceiver());
+        dispatcher.call(envelope(1));
+
+        dispatcher.addMessageListener(receiver);
+        dispatcher.call(envelope(2));
+
+        assertThat(receiver.envelopes.size(), is(1));
+    }
+
+    @Test
+    public void shouldNotDispatchToRemovedListeners() {
+        LongReceiver receiver = new LongReceiver();
+        dispatcher.addMessageListener(receiver);
+        dispatcher.call(envelope(1));
+
+        dispatcher.removeMessageListener(receiver);
+        dispatcher.call(envelope(2));
+
+        assertThat(receiver.envelopes.size(), is(1));
+    }
+
+    private static CellMessage envelope(Serializable message) {
+        return new CellMessage(new CellPath("destination"), message);
+    }
+
+    public static class ShortReceiver implements CellMessageReceiver {
+
+        public String messageArrived(String message) {
+            return message.toUpperCase();
+        }
+    }
+
+    public static class LongReceiver implements CellMessageReceiver {
+
+        private final List<CellMessage> envelopes = new ArrayList<>();
+
+        public void messageArrived(CellMessage envelope, Integer message) {
+            envelopes.add(envelope);
+        }
+    }
+
+    public static class FailingReceiver implements CellMessageReceiver {
+
+        public void messageArrived(Long message) throws IOException {
+            throw new IOException("failed");
+        }
+
+        public void messageArrived(Double message) {
+            throw new IllegalArgumentException("bad argument");
+        }
+
+        public void messageArrived(Boolean message) {
+            throw new UnsupportedOperationException("unsupported");
+        }
+    }
+}
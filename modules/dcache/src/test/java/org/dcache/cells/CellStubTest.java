@@ -19,16 +19,28 @@ package org.dcache.cells;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.TimeoutCacheException;
 import diskCacheV111.vehicles.Message;
 import dmg.cells.nucleus.CellEndpoint;
 import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageAnswerable;
 import dmg.cells.nucleus.CellPath;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import org.dcache.vehicles.BatchMessage;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -78,4 +90,66 @@ public class CellStubTest {
         verifyNoMoreInteractions(callback);
     }
 
+    @Test
+    public void shouldSendBatchAsSingleMessage() {
+        stub.sendBatch(asList(new Message(), new Message()));
+
+        ArgumentCaptor<CellMessage> envelope = ArgumentCaptor.forClass(CellMessage.class);
+        verify(endpoint).sendMessage(envelope.capture(), any(CellMessageAnswerable.class),
+              any(Executor.class), anyLong());
+        verifyNoMoreInteractions(endpoint);
+        Object batch = envelope.getValue().getMessageObject();
+        assertThat(batch, is(instanceOf(BatchMessage.class)));
+        assertThat(((BatchMessage) batch).size(), is(2));
+    }
+
+    @Test
+    public void shouldCompleteBatchItemsIndividually() throws Exception {
+        List<ListenableFuture<Message>> futures =
+              stub.sendBatch(asList(new Message(), new Message()));
+
+        ArgumentCaptor<CellMessage> envelope = ArgumentCaptor.forClass(CellMessage.class);
+        ArgumentCaptor<CellMessageAnswerable> callback =
+              ArgumentCaptor.forClass(CellMessageAnswerable.class);
+        verify(endpoint).sendMessage(envelope.capture(), callback.capture(),
+              any(Executor.class), anyLong());
+        BatchMessage batch = (BatchMessage) envelope.getValue().getMessageObject();
+        Message succeeded = new Message();
+        succeeded.setSucceeded();
+        Message failed = new Message();
+        failed.setFailed(CacheException.FILE_NOT_FOUND, "not found");
+        batch.setItem(0, succeeded);
+        batch.setItem(1, failed);
+        batch.setSucceeded();
+        callback.getValue().answerArrived(envelope.getValue(),
+              new CellMessage(new CellPath("source"), batch));
+
+        assertThat(futures.get(0).get(), is(succeeded));
+        assertThat(futures.get(1).get(), is(failed));
+        assertThat(futures.get(1).get().getReturnCode(), is(CacheException.FILE_NOT_FOUND));
+    }
+
+    @Test
+    public void shouldFailAllBatchItemsOnTimeout() throws Exception {
+        List<ListenableFuture<Message>> futures =
+              stub.sendBatch(asList(new Message(), new Message()));
+
+        ArgumentCaptor<CellMessage> envelope = ArgumentCaptor.forClass(CellMessage.class);
+        ArgumentCaptor<CellMessageAnswerable> callback =
+              ArgumentCaptor.forClass(CellMessageAnswerable.class);
+        verify(endpoint).sendMessage(envelope.capture(), callback.capture(),
+              any(Executor.class), anyLong());
+        callback.getValue().answerTimedOut(envelope.getValue());
+
+        for (ListenableFuture<Message> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), is(instanceOf(TimeoutCacheException.class)));
+                continue;
+            }
+            throw new AssertionError("Batch item did not fail");
+        }
+    }
+
 }
@@ -115,6 +115,7 @@ public class HttpPoolRequestHandlerTests {
     private List<Object> _additionalWrites;
     private HttpResponse _response;
     private EmbeddedChannel _channel;
+    private boolean _isPoolFileBased = true;
 
     @Before
     public void setup() {
@@ -391,6 +392,71 @@ public class HttpPoolRequestHandlerTests {
               line("--__AAAAAAAAAAAAAAAA__--"));
     }
 
+    @Test
+    public void shouldSendFileRegionsIfZeroCopyIsEnabled() throws Exception {
+        givenZeroCopyIsEnabled();
+        givenPoolHas(file("/path/to/file").withSize(100));
+        givenDoorHasOrganisedReadOf(file("/path/to/file").with(SOME_UUID));
+
+        whenClientMakes(a(GET).
+              forUri("/path/to/file?dcache-http-uuid=" + SOME_UUID));
+
+        assertThat(_response.status(), is(OK));
+        assertThat(_response, hasHeader(CONTENT_LENGTH, "100"));
+
+        assertThat(_additionalWrites, hasSize(2));
+        assertThat(_additionalWrites.get(0), isRegionTransfer("/path/to/file", 0, 99));
+        assertThat(_additionalWrites.get(1), instanceOf(LastHttpContent.class));
+    }
+
+    @Test
+    public void shouldSendFileRegionForSingleRangeIfZeroCopyIsEnabled() throws Exception {
+        givenZeroCopyIsEnabled();
+        givenPoolHas(file("/path/to/file").withSize(1024));
+        givenDoorHasOrganisedReadOf(file("/path/to/file").with(SOME_UUID));
+
+        whenClientMakes(a(GET).withHeader("Range", "bytes=0-499").
+              forUri("/path/to/file?dcache-http-uuid=" + SOME_UUID));
+
+        assertThat(_response.status(), is(PARTIAL_CONTENT));
+        assertThat(_response, hasHeader(CONTENT_LENGTH, "500"));
+
+        assertThat(_additionalWrites, hasSize(2));
+        assertThat(_additionalWrites.get(0), isRegionTransfer("/path/to/file", 0, 499));
+        assertThat(_additionalWrites.get(1), instanceOf(LastHttpContent.class));
+    }
+
+    @Test
+    public void shouldReadInChunksIfZeroCopyIsEnabledButPoolIsNotFileBased() throws Exception {
+        givenZeroCopyIsEnabled();
+        givenPoolIsNotFileBased();
+        givenPoolHas(file("/path/to/file").withSize(100));
+        givenDoorHasOrganisedReadOf(file("/path/to/file").with(SOME_UUID));
+
+        whenClientMakes(a(GET).
+              forUri("/path/to/file?dcache-http-uuid=" + SOME_UUID));
+
+        assertThat(_response.status(), is(OK));
+        assertThat(_additionalWrites, hasSize(2));
+        assertThat(_additionalWrites.get(0), isCompleteRead("/path/to/file"));
+        assertThat(_additionalWrites.get(1), instanceOf(LastHttpContent.class));
+    }
+
+    @Test
+    public void shouldReadMultipleRangesInChunksIfZeroCopyIsEnabled() throws Exception {
+        givenZeroCopyIsEnabled();
+        givenPoolHas(file("/path/to/file").withSize(1024));
+        givenDoorHasOrganisedReadOf(file("/path/to/file").with(SOME_UUID));
+
+        whenClientMakes(a(GET).withHeader("Range", "bytes=0-0,-1")
+              .forUri("/path/to/file?dcache-http-uuid=" + SOME_UUID));
+
+        assertThat(_response.status(), is(PARTIAL_CONTENT));
+        assertThat(_additionalWrites, hasSize(5));
+        assertThat(_additionalWrites.get(1), isPartialRead("/path/to/file", 0, 0));
+        assertThat(_additionalWrites.get(3), isPartialRead("/path/to/file", 1023, 1023));
+    }
+
     @Test
     public void shouldRejectDeleteRequests() throws Exception {
         whenClientMakes(a(DELETE).forUri("/path/to/file"));
@@ -521,6 +587,10 @@ public class HttpPoolRequestHandlerTests {
                     new URI("http", "localhost", path, null)));
         given(channel.getFileAttributes()).willReturn(file.getFileAttributes());
         given(channel.release()).willReturn(Futures.immediateCheckedFuture(null));
+        if (_isPoolFileBased) {
+            given(channel.optionallyAs(FileRepositoryChannel.class))
+                  .willReturn(Optional.of(mock(FileRepositoryChannel.class)));
+        }
         given(_server.openFile(eq(file.getUuid()), anyBoolean())).willReturn(channel);
     }
 
@@ -576,6 +646,15 @@ public class HttpPoolRequestHandlerTests {
         given(_server.openFile(eq(file.getUuid()), anyBoolean())).willReturn(channel);
     }
 
+    private void givenPoolIsNotFileBased() {
+        _isPoolFileBased = false;
+    }
+
+    private void givenZeroCopyIsEnabled() {
+        _handler = new HttpPoolRequestHandler(_server, SOME_CHUNK_SIZE, true);
+        _channel = new EmbeddedChannel(_handler);
+    }
+
     private long sizeOfFile(FileInfo file) {
         checkState(_files.containsKey(file.getPath()),
               "missing file: " + file.getPath());
@@ -860,6 +939,54 @@ public class HttpPoolRequestHandlerTests {
         }
     }
 
+    private static FileRegionTransferMatcher isRegionTransfer(String path, long lower,
+          long upper) {
+        return new FileRegionTransferMatcher(path, lower, upper);
+    }
+
+    /**
+     * A Matcher that checks whether one of the written objects sends a range of a file as file
+     * regions.
+     */
+    private static class FileRegionTransferMatcher extends BaseMatcher<Object> {
+
+        private final long _lower;
+        private final long _upper;
+        private final String _path;
+
+        public FileRegionTransferMatcher(String path, long lower, long upper) {
+            _lower = lower;
+            _upper = upper;
+            _path = path;
+        }
+
+        @Override
+        public boolean matches(Object o) {
+            if (!(o instanceof ReusableChunkedFileRegion)) {
+                return false;
+            }
+
+            ReusableChunkedFileRegion regions = (ReusableChunkedFileRegion) o;
+
+            NettyTransferService<HttpProtocolInfo>.NettyMoverChannel channel =
+                  (NettyTransferService<HttpProtocolInfo>.NettyMoverChannel) regions.getChannel();
+
+            if (!_path.equals(channel.getProtocolInfo().getPath())) {
+                return false;
+            }
+
+            return regions.getOffset() == _lower && regions.getEndOffset() == _upper + 1;
+        }
+
+        @Override
+        public void describeTo(Description d) {
+            d.appendText("match a file region transfer from ");
+            d.appendValue(_lower);
+            d.appendText(" to ");
+            d.appendValue(_upper);
+        }
+    }
+
     private MultipartMatcher isMultipart() {
         return new MultipartMatcher();
     }
@@ -0,0 +1,178 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.FileRegion;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the throughput of sending a file over a loopback TCP connection in chunks, as done by
+ * {@link ReusableChunkedNioFile}, with sending it as file regions, as done by {@link
+ * ReusableChunkedFileRegion}.
+ * <p>
+ * Each invocation sends the whole file; the throughput in bytes per second is the reported
+ * score multiplied by {@code fileSize}. The receiving end discards the data on a separate
+ * thread. Loopback is not limited by a NIC, so the results show the CPU cost per byte that
+ * limits a single stream on 10 and 100 GbE links. The file is usually in the page cache.
+ * <p>
+ * Not run as part of the unit tests. Run with
+ * <pre>
+ *     mvn -pl modules/dcache test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=org.dcache.http.ZeroCopyTransferBenchmark
+ * </pre>
+ * Arguments are passed on to JMH, e.g. {@code -Dexec.args="-p fileSize=4294967296"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ZeroCopyTransferBenchmark {
+
+    private static final long REGION_SIZE = 64 * 1024 * 1024;
+
+    @Param({"268435456"})
+    public long fileSize;
+
+    @Param({"8192", "1048576"})
+    public int chunkSize;
+
+    private Path path;
+    private RepositoryChannel file;
+    private ServerSocketChannel server;
+    private SocketChannel sender;
+    private Thread receiver;
+    private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        path = Files.createTempFile("zero-copy", ".dat");
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer block = ByteBuffer.allocate(1024 * 1024);
+            for (long written = 0; written < fileSize; ) {
+                block.clear().limit((int) Math.min(block.capacity(), fileSize - written));
+                written += out.write(block, written);
+            }
+        }
+        file = new FileRepositoryChannel(path, EnumSet.of(StandardOpenOption.READ));
+
+        server = ServerSocketChannel.open()
+              .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        sender = SocketChannel.open(server.getLocalAddress());
+        SocketChannel peer = server.accept();
+        receiver = new Thread(() -> {
+            ByteBuffer sink = ByteBuffer.allocateDirect(1024 * 1024);
+            try (SocketChannel in = peer) {
+                while (in.read(sink) >= 0) {
+                    sink.clear();
+                }
+            } catch (IOException ignored) {
+            }
+        }, "receiver");
+        receiver.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        sender.close();
+        receiver.join();
+        server.close();
+        file.close();
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public long chunked() throws Exception {
+        ReusableChunkedNioFile input = new ReusableChunkedNioFile(file, 0, fileSize, chunkSize);
+        long sent = 0;
+        ByteBuf chunk;
+        while ((chunk = input.readChunk(allocator)) != null) {
+            try {
+                ByteBuffer buffer = chunk.nioBuffer();
+                while (buffer.hasRemaining()) {
+                    sent += sender.write(buffer);
+                }
+            } finally {
+                chunk.release();
+            }
+        }
+        return sent;
+    }
+
+    @Benchmark
+    public long fileRegion() throws Exception {
+        ReusableChunkedFileRegion input =
+              new ReusableChunkedFileRegion(file, 0, fileSize, REGION_SIZE);
+        long sent = 0;
+        FileRegion region;
+        while ((region = input.readChunk(allocator)) != null) {
+            try {
+                while (region.transferred() < region.count()) {
+                    sent += region.transferTo(sender, region.transferred());
+                }
+            } finally {
+                region.release();
+            }
+        }
+        return sent;
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+              .parent(new CommandLineOptions(args))
+              .include(ZeroCopyTransferBenchmark.class.getSimpleName())
+              .build();
+        new Runner(options).run();
+    }
+}
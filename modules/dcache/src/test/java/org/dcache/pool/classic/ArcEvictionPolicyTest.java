@@ -0,0 +1,81 @@
+package org.dcache.pool.classic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.Lists;
+import diskCacheV111.util.PnfsId;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArcEvictionPolicyTest {
+
+    private ArcEvictionPolicy policy;
+
+    @Before
+    public void setUp() {
+        policy = new ArcEvictionPolicy();
+    }
+
+    private static PnfsId id(int i) {
+        return new PnfsId(String.format("%024X", i));
+    }
+
+    private void fetchAndRead(PnfsId id, long time) {
+        policy.add(id, 10, time);
+        policy.accessed(id, 10, time);
+    }
+
+    @Test
+    public void shouldBeEmptyInitially() {
+        assertNull(policy.victim());
+        assertEquals(0, policy.size());
+    }
+
+    @Test
+    public void shouldEvictReplicasReadOnceBeforeReplicasReadAgain() {
+        fetchAndRead(id(1), 1);
+        policy.accessed(id(1), 10, 5);
+        fetchAndRead(id(2), 6);
+
+        assertEquals(id(2), policy.victim());
+    }
+
+    @Test
+    public void shouldEvictEldestReplicaReadOnce() {
+        fetchAndRead(id(1), 1);
+        fetchAndRead(id(2), 2);
+        policy.accessed(id(1), 10, 3);
+        fetchAndRead(id(3), 4);
+
+        assertEquals(id(2), policy.victim());
+        assertEquals(Arrays.asList(id(2), id(3), id(1)),
+              Lists.newArrayList(policy.candidates()));
+    }
+
+    @Test
+    public void shouldFavourRecentlyEvictedReplicasFetchedAgain() {
+        fetchAndRead(id(1), 1);
+        fetchAndRead(id(2), 2);
+        policy.deleted(id(1), 10);
+        fetchAndRead(id(3), 3);
+        fetchAndRead(id(1), 4);
+
+        assertEquals(id(2), policy.victim());
+        assertEquals(Arrays.asList(id(2), id(1), id(3)),
+              Lists.newArrayList(policy.candidates()));
+    }
+
+    @Test
+    public void shouldNotRememberReplicasThatBecameNonRemovable() {
+        fetchAndRead(id(1), 1);
+        fetchAndRead(id(2), 2);
+        policy.remove(id(1));
+        fetchAndRead(id(3), 3);
+        fetchAndRead(id(1), 4);
+
+        assertEquals(Arrays.asList(id(2), id(3), id(1)),
+              Lists.newArrayList(policy.candidates()));
+    }
+}
@@ -0,0 +1,144 @@
+package org.dcache.pool.classic;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import diskCacheV111.util.PnfsId;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.dcache.services.billing.text.BillingParserBuilder;
+import org.junit.Test;
+
+public class EvictionSimulatorTest {
+
+    private static final ImmutableMap<String, String> FORMATS =
+          ImmutableMap.of(
+                "mover-info-message",
+                "$date$ [$cellType$:$cellName.cell$:$type$] [$pnfsid$,$filesize$] [$path$] $if(storage)$$storage.storageClass$@$storage.hsm$$else$<Unknown>$endif$ $transferred$ $connectionTime$ $created$ {$protocol$} [$initiator$] {$rc$:\"$message$\"}",
+                "remove-file-info-message",
+                "$date$ [$cellType$:$cellName$:$type$] [$pnfsid$,$filesize$] [$path$] $if(storage)$$storage.storageClass$@$storage.hsm$$else$<Unknown>$endif$ {$rc$:\"$message$\"}",
+                "pool-hit-info-message",
+                "$date$ [$cellType$:$cellName.cell$:$type$] [$pnfsid$,$filesize$] [$path$] $if(storage)$$storage.storageClass$@$storage.hsm$$else$<Unknown>$endif$ $cached$ {$protocol$} {$rc$:\"$message$\"}");
+
+    private static PnfsId id(int i) {
+        return new PnfsId(String.format("%024X", i));
+    }
+
+    private static EvictionSimulator simulator(long capacity) {
+        List<EvictionPolicy> policies = EvictionPolicyFactory.POLICIES.stream()
+              .map(EvictionPolicyFactory::createInstance)
+              .collect(Collectors.toList());
+        return new EvictionSimulator("pool1", capacity, policies);
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        EvictionSimulator simulator = simulator(2);
+
+        simulator.read(id(1), 1);
+        simulator.read(id(1), 1);
+        simulator.read(id(2), 1);
+        simulator.read(id(3), 1);
+        simulator.read(id(3), 1);
+
+        EvictionSimulator.SimulatedPool lru = simulator.getResult("lru");
+        assertEquals(2, lru.hits);
+        assertEquals(3, lru.misses);
+        assertEquals(3, lru.missBytes);
+    }
+
+    @Test
+    public void shouldNotCountWritesAsMisses() {
+        EvictionSimulator simulator = simulator(10);
+
+        simulator.write(id(1), 5);
+        simulator.read(id(1), 5);
+
+        EvictionSimulator.SimulatedPool lru = simulator.getResult("lru");
+        assertEquals(1, lru.hits);
+        assertEquals(5, lru.hitBytes);
+        assertEquals(0, lru.misses);
+    }
+
+    @Test
+    public void shouldMissDeletedReplicas() {
+        EvictionSimulator simulator = simulator(10);
+
+        simulator.read(id(1), 1);
+        simulator.delete(id(1));
+        simulator.read(id(1), 1);
+
+        assertEquals(2, simulator.getResult("lru").misses);
+    }
+
+    @Test
+    public void shouldResistScansWithFrequencyAwarePolicies() {
+        EvictionSimulator simulator = simulator(1000);
+        Random random = new Random(7);
+        int scan = 100_000;
+        for (int i = 0; i < 100_000; i++) {
+            if (random.nextBoolean()) {
+                simulator.read(id(random.nextInt(800)), 1);
+            } else {
+                simulator.read(id(scan++), 1);
+            }
+        }
+
+        long lruHits = simulator.getResult("lru").hits;
+        assertThat(simulator.getResult("lru-2").hits, greaterThan(lruHits + lruHits / 2));
+        assertThat(simulator.getResult("arc").hits, greaterThan(lruHits + lruHits / 2));
+        assertThat(simulator.getResult("gdsf").hits, greaterThan(lruHits + lruHits / 2));
+    }
+
+    @Test
+    public void shouldReplayBillingEntriesOfPool() throws Exception {
+        EvictionSimulator simulator = simulator(1000);
+        String billing = ""
+              + "05.31 22:35:16 [pool:pool1:transfer] [000000000000000000000001,100] [/data/a] "
+              + "atlas:default@osm 100 10 true {DCap-3.0:10.0.0.1:1234} [door:dcap@dcapDomain:1] {0:\"\"}\n"
+              + "05.31 22:35:17 [pool:pool1:hit] [000000000000000000000001,100] [/data/a] "
+              + "atlas:default@osm true {DCap-3.0:10.0.0.1:1234} {0:\"\"}\n"
+              + "05.31 22:35:18 [pool:pool2:hit] [000000000000000000000002,200] [/data/b] "
+              + "atlas:default@osm false {DCap-3.0:10.0.0.1:1234} {0:\"\"}\n"
+              + "05.31 22:35:19 [pool:pool1:hit] [000000000000000000000003,300] [/data/c] "
+              + "atlas:default@osm false {DCap-3.0:10.0.0.1:1234} {0:\"\"}\n"
+              + "05.31 22:35:20 [pool:pool1@poolDomain:remove] [000000000000000000000001,100] "
+              + "[/data/a] atlas:default@osm "
+              + "{0:\"[>cleaner@cleanerDomain] [PoolRemoveFiles]\"}\n"
+              + "05.31 22:35:21 [pool:pool1:hit] [000000000000000000000001,100] [/data/a] "
+              + "atlas:default@osm false {DCap-3.0:10.0.0.1:1234} {0:\"\"}\n";
+
+        simulator.replay(new StringReader(billing), new BillingParserBuilder(FORMATS));
+
+        EvictionSimulator.SimulatedPool lru = simulator.getResult("lru");
+        assertEquals(1, lru.hits);
+        assertEquals(100, lru.hitBytes);
+        assertEquals(2, lru.misses);
+        assertEquals(400, lru.missBytes);
+    }
+
+    @Test
+    public void shouldIgnoreEvictionsAndRemovesOfOtherPools() throws Exception {
+        EvictionSimulator simulator = simulator(1000);
+        String billing = ""
+              + "05.31 22:35:16 [pool:pool1:hit] [000000000000000000000001,100] [/data/a] "
+              + "atlas:default@osm false {DCap-3.0:10.0.0.1:1234} {0:\"\"}\n"
+              + "05.31 22:35:17 [pool:pool1@poolDomain:remove] [000000000000000000000001,100] "
+              + "[/data/a] atlas:default@osm {0:\"sweeper making space for new data\"}\n"
+              + "05.31 22:35:18 [pool:pool2@pool2Domain:remove] [000000000000000000000001,100] "
+              + "[/data/a] atlas:default@osm "
+              + "{0:\"[>cleaner@cleanerDomain] [PoolRemoveFiles]\"}\n"
+              + "05.31 22:35:19 [pool:pool1:hit] [000000000000000000000001,100] [/data/a] "
+              + "atlas:default@osm true {DCap-3.0:10.0.0.1:1234} {0:\"\"}\n";
+
+        simulator.replay(new StringReader(billing), new BillingParserBuilder(FORMATS));
+
+        EvictionSimulator.SimulatedPool lru = simulator.getResult("lru");
+        assertEquals(1, lru.hits);
+        assertEquals(1, lru.misses);
+    }
+}
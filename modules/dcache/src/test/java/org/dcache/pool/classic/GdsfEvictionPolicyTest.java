@@ -0,0 +1,74 @@
+package org.dcache.pool.classic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import diskCacheV111.util.PnfsId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GdsfEvictionPolicyTest {
+
+    private GdsfEvictionPolicy policy;
+
+    @Before
+    public void setUp() {
+        policy = new GdsfEvictionPolicy(100);
+    }
+
+    private static PnfsId id(int i) {
+        return new PnfsId(String.format("%024X", i));
+    }
+
+    private void fetchAndRead(PnfsId id, long size, int reads) {
+        policy.add(id, size, 0);
+        for (int i = 0; i < reads; i++) {
+            policy.accessed(id, size, 0);
+        }
+    }
+
+    @Test
+    public void shouldBeEmptyInitially() {
+        assertNull(policy.victim());
+        assertEquals(0, policy.size());
+    }
+
+    @Test
+    public void shouldEvictLargeReplicasFirst() {
+        fetchAndRead(id(1), 100, 1);
+        fetchAndRead(id(2), 10, 1);
+
+        assertEquals(id(1), policy.victim());
+    }
+
+    @Test
+    public void shouldNotCountBecomingCandidateAsRead() {
+        fetchAndRead(id(1), 10, 1);
+        fetchAndRead(id(2), 16, 2);
+
+        assertEquals(id(1), policy.victim());
+    }
+
+    @Test
+    public void shouldAgeReplicasNoLongerRead() {
+        fetchAndRead(id(1), 1, 3);
+        fetchAndRead(id(2), 1, 1);
+        policy.deleted(policy.victim(), 1);
+        fetchAndRead(id(3), 1, 1);
+        assertEquals(id(3), policy.victim());
+
+        policy.accessed(id(3), 1, 0);
+        policy.accessed(id(3), 1, 0);
+        assertEquals(id(1), policy.victim());
+    }
+
+    @Test
+    public void shouldRememberReadsOfDeletedReplicas() {
+        fetchAndRead(id(1), 1, 2);
+        policy.deleted(id(1), 1);
+        policy.add(id(1), 1, 0);
+        fetchAndRead(id(2), 1, 1);
+
+        assertEquals(id(2), policy.victim());
+    }
+}
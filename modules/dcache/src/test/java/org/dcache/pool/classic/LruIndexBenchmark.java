@@ -0,0 +1,223 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.classic;
+
+import static java.util.Comparator.naturalOrder;
+
+import diskCacheV111.util.PnfsId;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link LruIndex} with the tree set and hash map previously used by {@link
+ * SpaceSweeper2}, guarded by a single monitor as in the sweeper.
+ * <p>
+ * The index is filled with {@code entries} replicas with random access times. The {@code touch}
+ * benchmarks update the access time of a random replica to the current time, as happens when a
+ * replica is read; the {@code churn} benchmarks remove a random replica and add it again, as
+ * happens on state and sticky changes. Heap usage can be compared by running with {@code -prof
+ * gc} or by inspecting a heap dump.
+ * <p>
+ * Not run as part of the unit tests. Run with
+ * <pre>
+ *     mvn -pl modules/dcache test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=org.dcache.pool.classic.LruIndexBenchmark
+ * </pre>
+ * Arguments are passed on to JMH, e.g. {@code -Dexec.args="-p entries=5000000 -t 16"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LruIndexBenchmark {
+
+    @Param({"lru-index", "tree-set"})
+    public String implementation;
+
+    @Param({"1000000"})
+    public int entries;
+
+    private Queue queue;
+    private PnfsId[] ids;
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * The operations of the sweeper queue used by the benchmarks.
+     */
+    private interface Queue {
+
+        boolean add(PnfsId id, long time);
+
+        boolean remove(PnfsId id);
+
+        boolean touch(PnfsId id, long time);
+
+        PnfsId eldest();
+    }
+
+    private static class IndexQueue implements Queue {
+
+        private final LruIndex index = new LruIndex();
+
+        @Override
+        public boolean add(PnfsId id, long time) {
+            return index.add(id, time);
+        }
+
+        @Override
+        public boolean remove(PnfsId id) {
+            return index.remove(id);
+        }
+
+        @Override
+        public boolean touch(PnfsId id, long time) {
+            return index.touch(id, time);
+        }
+
+        @Override
+        public PnfsId eldest() {
+            return index.eldest();
+        }
+    }
+
+    private static class TreeSetQueue implements Queue {
+
+        private final Map<PnfsId, Long> timeStamps = new HashMap<>();
+
+        private final SortedSet<PnfsId> queue =
+              new TreeSet<>(Comparator.<PnfsId, Long>comparing(k -> timeStamps.getOrDefault(k, 0L))
+                    .thenComparing(naturalOrder()));
+
+        @Override
+        public synchronized boolean add(PnfsId id, long time) {
+            if (timeStamps.putIfAbsent(id, time) == null) {
+                queue.add(id);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public synchronized boolean remove(PnfsId id) {
+            if (queue.remove(id)) {
+                timeStamps.remove(id);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public synchronized boolean touch(PnfsId id, long time) {
+            return remove(id) && add(id, time);
+        }
+
+        @Override
+        public synchronized PnfsId eldest() {
+            return queue.isEmpty() ? null : queue.first();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (implementation) {
+            case "lru-index":
+                queue = new IndexQueue();
+                break;
+            case "tree-set":
+                queue = new TreeSetQueue();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+        ids = new PnfsId[entries];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < entries; i++) {
+            ids[i] = new PnfsId(String.format("0000%032X", i));
+            queue.add(ids[i], random.nextLong(entries));
+        }
+        clock.set(entries);
+    }
+
+    private PnfsId randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    @Benchmark
+    public boolean touch() {
+        return queue.touch(randomId(), clock.incrementAndGet());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean touchConcurrently() {
+        return queue.touch(randomId(), clock.incrementAndGet());
+    }
+
+    @Benchmark
+    public boolean churn() {
+        PnfsId id = randomId();
+        return queue.remove(id) && queue.add(id, clock.incrementAndGet());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean churnConcurrently() {
+        PnfsId id = randomId();
+        return queue.remove(id) && queue.add(id, clock.incrementAndGet());
+    }
+
+    @Benchmark
+    public PnfsId eldest() {
+        return queue.eldest();
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+              .parent(new CommandLineOptions(args))
+              .include(LruIndexBenchmark.class.getSimpleName())
+              .build();
+        new Runner(options).run();
+    }
+}
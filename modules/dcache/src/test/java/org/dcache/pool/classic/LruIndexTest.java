@@ -0,0 +1,138 @@
+package org.dcache.pool.classic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import diskCacheV111.util.PnfsId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LruIndexTest {
+
+    private LruIndex index;
+
+    @Before
+    public void setUp() {
+        index = new LruIndex(4);
+    }
+
+    private static PnfsId id(int i) {
+        return new PnfsId(String.format("%024X", i));
+    }
+
+    @Test
+    public void shouldBeEmptyInitially() {
+        assertEquals(0, index.size());
+        assertNull(index.eldest());
+        assertEquals(0, index.eldestTime());
+        assertFalse(index.snapshot().iterator().hasNext());
+    }
+
+    @Test
+    public void shouldNotAddExistingEntry() {
+        assertTrue(index.add(id(1), 10));
+        assertFalse(index.add(id(1), 5));
+
+        assertEquals(1, index.size());
+        assertEquals(10, index.eldestTime());
+    }
+
+    @Test
+    public void shouldReturnEldestEntry() {
+        index.add(id(1), 30);
+        index.add(id(2), 10);
+        index.add(id(3), 20);
+
+        assertEquals(id(2), index.eldest());
+        assertEquals(10, index.eldestTime());
+    }
+
+    @Test
+    public void shouldOrderEntriesWithSameTimeById() {
+        index.add(id(3), 10);
+        index.add(id(1), 10);
+        index.add(id(2), 10);
+
+        assertEquals(List.of(id(1), id(2), id(3)), Lists.newArrayList(index.snapshot()));
+    }
+
+    @Test
+    public void shouldRemoveEntry() {
+        index.add(id(1), 10);
+        index.add(id(2), 20);
+
+        assertTrue(index.remove(id(1)));
+        assertFalse(index.remove(id(1)));
+
+        assertFalse(index.contains(id(1)));
+        assertEquals(id(2), index.eldest());
+    }
+
+    @Test
+    public void shouldMoveTouchedEntry() {
+        index.add(id(1), 10);
+        index.add(id(2), 20);
+
+        assertTrue(index.touch(id(1), 30));
+
+        assertEquals(List.of(id(2), id(1)), Lists.newArrayList(index.snapshot()));
+    }
+
+    @Test
+    public void shouldNotAddTouchedEntry() {
+        assertFalse(index.touch(id(1), 10));
+        assertFalse(index.contains(id(1)));
+    }
+
+    @Test
+    public void shouldNotChangeSnapshotOnUpdate() {
+        index.add(id(1), 10);
+        index.add(id(2), 20);
+        LruIndex.Snapshot snapshot = index.snapshot();
+
+        index.remove(id(1));
+        index.add(id(3), 5);
+
+        assertEquals(2, snapshot.size());
+        assertEquals(List.of(id(1), id(2)), Lists.newArrayList(snapshot));
+        assertEquals(30, snapshot.lastAccessTimes().sum());
+    }
+
+    @Test
+    public void shouldAgreeWithReferenceUnderRandomUpdates() {
+        Random random = new Random(42);
+        Map<PnfsId, Long> reference = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            PnfsId id = id(random.nextInt(2000));
+            long time = random.nextInt(500);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(reference.putIfAbsent(id, time) == null, index.add(id, time));
+                    break;
+                case 1:
+                    assertEquals(reference.remove(id) != null, index.remove(id));
+                    break;
+                default:
+                    boolean present = reference.computeIfPresent(id, (k, v) -> time) != null;
+                    assertEquals(present, index.touch(id, time));
+                    break;
+            }
+        }
+
+        List<PnfsId> expected = new ArrayList<>(reference.keySet());
+        expected.sort(Comparator.<PnfsId, Long>comparing(reference::get)
+              .thenComparing(Comparator.naturalOrder()));
+        assertEquals(expected.size(), index.size());
+        assertEquals(expected, Lists.newArrayList(index.snapshot()));
+        assertEquals(expected.get(0), index.eldest());
+    }
+}
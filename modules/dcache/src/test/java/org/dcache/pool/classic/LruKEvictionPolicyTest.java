@@ -0,0 +1,85 @@
+package org.dcache.pool.classic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import diskCacheV111.util.PnfsId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LruKEvictionPolicyTest {
+
+    private LruKEvictionPolicy policy;
+
+    @Before
+    public void setUp() {
+        policy = new LruKEvictionPolicy(2, 100);
+    }
+
+    private static PnfsId id(int i) {
+        return new PnfsId(String.format("%024X", i));
+    }
+
+    private void fetchAndRead(PnfsId id, long time) {
+        policy.add(id, 1, time);
+        policy.accessed(id, 1, time);
+    }
+
+    @Test
+    public void shouldBeEmptyInitially() {
+        assertNull(policy.victim());
+        assertEquals(0, policy.size());
+    }
+
+    @Test
+    public void shouldEvictReplicasReadOnceBeforeReplicasReadTwice() {
+        fetchAndRead(id(1), 1);
+        policy.accessed(id(1), 1, 2);
+        fetchAndRead(id(2), 10);
+
+        assertEquals(id(2), policy.victim());
+    }
+
+    @Test
+    public void shouldEvictReplicasReadFewerThanKTimesLeastRecentlyUsedFirst() {
+        policy.add(id(1), 1, 5);
+        policy.add(id(2), 1, 3);
+        assertEquals(id(2), policy.victim());
+
+        policy.accessed(id(2), 1, 6);
+        assertEquals(id(1), policy.victim());
+    }
+
+    @Test
+    public void shouldEvictByKthMostRecentRead() {
+        fetchAndRead(id(1), 1);
+        policy.accessed(id(1), 1, 10);
+        fetchAndRead(id(2), 5);
+        policy.accessed(id(2), 1, 6);
+
+        assertEquals(id(1), policy.victim());
+    }
+
+    @Test
+    public void shouldRememberReadsOfDeletedReplicas() {
+        fetchAndRead(id(1), 1);
+        policy.accessed(id(1), 1, 2);
+        policy.deleted(id(1), 1);
+        assertNull(policy.victim());
+
+        fetchAndRead(id(2), 3);
+        policy.add(id(1), 1, 4);
+
+        assertEquals(id(2), policy.victim());
+    }
+
+    @Test
+    public void shouldNotEvictReplicasThatAreNoLongerCandidates() {
+        fetchAndRead(id(1), 1);
+        policy.remove(id(1));
+        policy.accessed(id(1), 1, 2);
+
+        assertNull(policy.victim());
+        assertEquals(0, policy.size());
+    }
+}
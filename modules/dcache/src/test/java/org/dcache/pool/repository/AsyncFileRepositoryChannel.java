@@ -0,0 +1,328 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2021 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.repository;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.SyncFailedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link RepositoryChannel} on top of an {@link AsynchronousFileChannel}.
+ * <p>
+ * Reads and writes are submitted to an executor shared by several channels, rather than being
+ * performed by the calling thread. Callers using {@link #readAsync} and {@link
+ * #writeAsync} can keep many requests outstanding with few threads, which lets the disk
+ * scheduler reorder them; this increases the number of random reads per second on rotating
+ * disks when many small requests are served concurrently. The blocking methods submit the
+ * request and wait for its completion.
+ * <p>
+ * The channel is a prototype for {@link RepositoryChannelBenchmark} and not used by pools:
+ * movers read through the blocking methods, for which it only adds a thread hand-off. It is
+ * worth offering to pools once a mover submits its reads with {@link #readAsync}.
+ * <p>
+ * As for {@link java.nio.channels.FileChannel}, interrupting a thread blocked in an operation
+ * closes the channel and causes a {@link ClosedByInterruptException}. There is no zero-copy
+ * transfer to or from other channels; {@link #transferTo} and {@link #transferFrom} copy
+ * through a buffer. Bytes read by {@link #transferTo} that a non-blocking target did not accept
+ * are kept for the next transfer continuing at that position, rather than being read again.
+ */
+public class AsyncFileRepositoryChannel implements RepositoryChannel {
+
+    private static final FileAttribute<?>[] NO_ATTRIBUTES = new FileAttribute<?>[0];
+
+    /**
+     * Size of the buffer used by {@link #transferTo} and {@link #transferFrom}.
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+
+    private final AsynchronousFileChannel _channel;
+
+    /*
+     * Cached value of files size. If value is -1, then we have to get file size
+     * by querying the underlying file system.
+     */
+    private final long _fileSize;
+
+    /**
+     * Position used by relative reads and writes.
+     */
+    private long _position;
+
+    private final Object _transferLock = new Object();
+
+    /**
+     * Buffer of {@link #transferTo} in read mode, allocated on first use, and the file position
+     * of its remaining bytes. Guarded by {@link #_transferLock}.
+     */
+    private ByteBuffer _transferBuffer;
+    private long _transferPosition;
+
+    /**
+     * Creates a {@link RepositoryChannel} to read from, and optionally to write to, the file at
+     * {@code path}.
+     *
+     * @param path        the file
+     * @param openOptions options specifying how the file is opened
+     * @param executor    executor performing the reads and writes
+     */
+    public AsyncFileRepositoryChannel(Path path, Set<? extends OpenOption> openOptions,
+          ExecutorService executor) throws IOException {
+        _channel = AsynchronousFileChannel.open(path, openOptions, executor, NO_ATTRIBUTES);
+        _fileSize = !openOptions.contains(StandardOpenOption.WRITE) ? _channel.size() : -1;
+    }
+
+    /**
+     * Reads a sequence of bytes from this channel into the given buffer, starting at the given
+     * file position, without waiting for the read to complete.
+     *
+     * @return a future completed with the number of bytes read, or -1 if the position is at or
+     * beyond the end of the file
+     */
+    public CompletableFuture<Integer> readAsync(ByteBuffer buffer, long position) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        _channel.read(buffer, position, future, COMPLETE);
+        return future;
+    }
+
+    /**
+     * Writes a sequence of bytes to this channel from the given buffer, starting at the given
+     * file position, without waiting for the write to complete.
+     *
+     * @return a future completed with the number of bytes written
+     */
+    public CompletableFuture<Integer> writeAsync(ByteBuffer buffer, long position) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        _channel.write(buffer, position, future, COMPLETE);
+        return future;
+    }
+
+    private static final CompletionHandler<Integer, CompletableFuture<Integer>> COMPLETE =
+          new CompletionHandler<>() {
+              @Override
+              public void completed(Integer result, CompletableFuture<Integer> future) {
+                  future.complete(result);
+              }
+
+              @Override
+              public void failed(Throwable t, CompletableFuture<Integer> future) {
+                  future.completeExceptionally(t);
+              }
+          };
+
+    /**
+     * Waits for an operation to complete. The channel is closed if the calling thread is
+     * interrupted.
+     */
+    private int await(Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            _channel.close();
+            Thread.currentThread().interrupt();
+            throw new ClosedByInterruptException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new InterruptedIOException(cause.toString());
+        }
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        return _position;
+    }
+
+    @Override
+    public synchronized RepositoryChannel position(long position) throws IOException {
+        checkArgument(position >= 0, "Negative position");
+        _position = position;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return _fileSize == -1 ? _channel.size() : _fileSize;
+    }
+
+    @Override
+    public void sync() throws SyncFailedException, IOException {
+        _channel.force(false);
+    }
+
+    @Override
+    public synchronized RepositoryChannel truncate(long size) throws IOException {
+        _channel.truncate(size);
+        _position = Math.min(_position, size);
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return _channel.isOpen();
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, long position) throws IOException {
+        return await(_channel.read(buffer, position));
+    }
+
+    @Override
+    public int write(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            total += await(_channel.write(buffer, position + total));
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        int n = read(dst, _position);
+        if (n > 0) {
+            _position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            while (dsts[i].hasRemaining()) {
+                int n = read(dsts[i]);
+                if (n <= 0) {
+                    return total == 0 ? n : total;
+                }
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        int n = write(src, _position);
+        _position += n;
+        return n;
+    }
+
+    @Override
+    public synchronized long write(ByteBuffer[] srcs, int offset, int length)
+          throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            total += write(srcs[i]);
+        }
+        return total;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target)
+          throws IOException {
+        synchronized (_transferLock) {
+            ByteBuffer buffer = _transferBuffer;
+            if (buffer == null) {
+                buffer = _transferBuffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+                buffer.limit(0);
+            } else if (_transferPosition != position) {
+                buffer.limit(0);
+            }
+
+            long total = 0;
+            while (total < count) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), count - total));
+                    int n = read(buffer, position + total);
+                    buffer.flip();
+                    if (n <= 0) {
+                        break;
+                    }
+                }
+                int limit = buffer.limit();
+                buffer.limit((int) Math.min(limit, buffer.position() + count - total));
+                int n = target.write(buffer);
+                buffer.limit(limit);
+                if (n == 0) {
+                    break;
+                }
+                total += n;
+            }
+            _transferPosition = position + total;
+            return total;
+        }
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count)
+          throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+        long total = 0;
+        while (total < count) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count - total));
+            int n = src.read(buffer);
+            if (n <= 0) {
+                break;
+            }
+            buffer.flip();
+            write(buffer, position + total);
+            total += n;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,158 @@
+package org.dcache.pool.repository;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncFileRepositoryChannelTest {
+
+    private static final byte[] DATA = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(US_ASCII);
+
+    private ExecutorService executor;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+        file = Files.createTempFile("async-channel", null);
+        Files.write(file, DATA);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    private AsyncFileRepositoryChannel open(StandardOpenOption... options) throws IOException {
+        return new AsyncFileRepositoryChannel(file, EnumSet.of(StandardOpenOption.READ, options),
+              executor);
+    }
+
+    @Test
+    public void shouldReadSequentially() throws Exception {
+        try (RepositoryChannel channel = open()) {
+            ByteBuffer buffer = ByteBuffer.allocate(10);
+            assertEquals(10, channel.read(buffer));
+            assertEquals(10, channel.position());
+            buffer.clear();
+            assertEquals(10, channel.read(buffer));
+            assertArrayEquals("abcdefghij".getBytes(US_ASCII), buffer.array());
+        }
+    }
+
+    @Test
+    public void shouldReturnEofAtEndOfFile() throws Exception {
+        try (RepositoryChannel channel = open()) {
+            channel.position(DATA.length);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+        }
+    }
+
+    @Test
+    public void shouldReadAtPositionAsynchronously() throws Exception {
+        try (AsyncFileRepositoryChannel channel = open()) {
+            ByteBuffer first = ByteBuffer.allocate(3);
+            ByteBuffer second = ByteBuffer.allocate(3);
+            CompletableFuture<Integer> a = channel.readAsync(first, 10);
+            CompletableFuture<Integer> b = channel.readAsync(second, 20);
+            assertEquals(3, (int) a.get());
+            assertEquals(3, (int) b.get());
+            assertArrayEquals("abc".getBytes(US_ASCII), first.array());
+            assertArrayEquals("klm".getBytes(US_ASCII), second.array());
+            assertEquals(0, channel.position());
+        }
+    }
+
+    @Test
+    public void shouldWriteAndTruncate() throws Exception {
+        try (RepositoryChannel channel = open(StandardOpenOption.WRITE)) {
+            channel.position(DATA.length);
+            channel.write(ByteBuffer.wrap("XYZ".getBytes(US_ASCII)));
+            assertEquals(DATA.length + 3, channel.size());
+            channel.truncate(5);
+            assertEquals(5, channel.size());
+            assertEquals(5, channel.position());
+            channel.sync();
+        }
+        assertArrayEquals("01234".getBytes(US_ASCII), Files.readAllBytes(file));
+    }
+
+    @Test
+    public void shouldTransferTo() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RepositoryChannel channel = open()) {
+            assertEquals(20, channel.transferTo(5, 20, Channels.newChannel(out)));
+        }
+        assertArrayEquals("56789abcdefghijklmno".getBytes(US_ASCII), out.toByteArray());
+    }
+
+    @Test
+    public void shouldKeepBytesNotAcceptedByTarget() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel target = new WritableByteChannel() {
+            private int capacity = 4;
+
+            @Override
+            public int write(ByteBuffer src) {
+                int n = Math.min(src.remaining(), capacity);
+                out.write(src.array(), src.arrayOffset() + src.position(), n);
+                src.position(src.position() + n);
+                capacity -= n;
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (RepositoryChannel channel = open()) {
+            assertEquals(4, channel.transferTo(5, 20, target));
+            Files.write(file, new byte[DATA.length]);
+            assertEquals(16, channel.transferTo(9, 16, Channels.newChannel(out)));
+        }
+        assertArrayEquals("56789abcdefghijklmno".getBytes(US_ASCII), out.toByteArray());
+    }
+
+    @Test
+    public void shouldTransferFrom() throws Exception {
+        try (RepositoryChannel channel = open(StandardOpenOption.WRITE)) {
+            channel.transferFrom(Channels.newChannel(
+                  new ByteArrayInputStream("ABC".getBytes(US_ASCII))), 1, 3);
+        }
+        assertArrayEquals("0ABC456789".getBytes(US_ASCII),
+              Arrays.copyOf(Files.readAllBytes(file), 10));
+    }
+
+    @Test
+    public void shouldCloseChannel() throws Exception {
+        RepositoryChannel channel = open();
+        channel.close();
+        assertFalse(channel.isOpen());
+    }
+}
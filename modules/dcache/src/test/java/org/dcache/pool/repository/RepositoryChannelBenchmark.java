@@ -0,0 +1,160 @@
+package org.dcache.pool.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures random read throughput, in reads per second, of {@link FileRepositoryChannel} and
+ * {@link AsyncFileRepositoryChannel} with many concurrent readers.
+ * <p>
+ * Every trial creates a file of {@code size} MiB in {@code dir} (the system temporary directory
+ * if empty) and reads {@code block} bytes at random aligned offsets. {@code blockingRead} does
+ * so from 64 threads; {@code asyncRead} from 4 threads, each submitting batches of {@value
+ * #ASYNC_BATCH} reads to {@code threads} I/O threads. Use a file larger than the page cache and
+ * a directory on the disk under test to measure the disk rather than memory.
+ * <p>
+ * Not run as part of the unit tests. Run with
+ * <pre>
+ *     mvn -pl modules/dcache test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=org.dcache.pool.repository.RepositoryChannelBenchmark
+ * </pre>
+ * Arguments are passed on to JMH, e.g. {@code -Dexec.args="-p dir=/pool -p size=65536"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RepositoryChannelBenchmark {
+
+    private static final int ASYNC_BATCH = 16;
+
+    @Param({""})
+    public String dir;
+
+    @Param({"1024"})
+    public int size;
+
+    @Param({"4096"})
+    public int block;
+
+    @Param({"16", "64"})
+    public int threads;
+
+    private Path file;
+    private ExecutorService executor;
+    private FileRepositoryChannel blocking;
+    private AsyncFileRepositoryChannel async;
+    private long blocks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = dir.isEmpty()
+              ? Files.createTempFile("channel-benchmark", null)
+              : Files.createTempFile(Paths.get(dir), "channel-benchmark", null);
+        ByteBuffer chunk = ByteBuffer.allocate(1024 * 1024);
+        ThreadLocalRandom.current().nextBytes(chunk.array());
+        try (FileRepositoryChannel channel = new FileRepositoryChannel(file,
+              EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE))) {
+            for (int i = 0; i < size; i++) {
+                chunk.clear();
+                channel.write(chunk);
+            }
+            channel.sync();
+        }
+        blocks = (long) size * 1024 * 1024 / block;
+
+        executor = Executors.newFixedThreadPool(threads);
+        blocking = new FileRepositoryChannel(file, EnumSet.of(StandardOpenOption.READ));
+        async = new AsyncFileRepositoryChannel(file, EnumSet.of(StandardOpenOption.READ),
+              executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        blocking.close();
+        async.close();
+        executor.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @State(Scope.Thread)
+    public static class Buffers {
+
+        ByteBuffer[] buffers;
+
+        @Setup
+        public void setUp(RepositoryChannelBenchmark benchmark) {
+            buffers = new ByteBuffer[ASYNC_BATCH];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(benchmark.block);
+            }
+        }
+    }
+
+    private long randomOffset() {
+        return ThreadLocalRandom.current().nextLong(blocks) * block;
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int blockingRead(Buffers buffers) throws IOException {
+        ByteBuffer buffer = buffers.buffers[0];
+        buffer.clear();
+        return blocking.read(buffer, randomOffset());
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(ASYNC_BATCH)
+    public int asyncRead(Buffers buffers) throws Exception {
+        CompletableFuture<?>[] reads = new CompletableFuture<?>[ASYNC_BATCH];
+        for (int i = 0; i < ASYNC_BATCH; i++) {
+            ByteBuffer buffer = buffers.buffers[i];
+            buffer.clear();
+            reads[i] = async.readAsync(buffer, randomOffset());
+        }
+        CompletableFuture.allOf(reads).get();
+        return reads.length;
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+              .parent(new CommandLineOptions(args))
+              .include(RepositoryChannelBenchmark.class.getSimpleName())
+              .build();
+        new Runner(options).run();
+    }
+}